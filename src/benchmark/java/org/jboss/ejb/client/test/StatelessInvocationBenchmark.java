@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.client.test;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ejb.client.EJBClient;
+import org.jboss.ejb.client.EJBClientContext;
+import org.jboss.ejb.client.EJBReceiver;
+import org.jboss.ejb.client.EJBReceiverContext;
+import org.jboss.ejb.client.EJBReceiverInvocationContext;
+import org.jboss.ejb.client.EJBTransportProvider;
+import org.jboss.ejb.client.StatelessEJBLocator;
+import org.jboss.ejb.client.URIAffinity;
+import org.jboss.ejb.client.legacy.JBossEJBProperties;
+import org.jboss.ejb.client.test.common.DummyServer;
+import org.jboss.ejb.client.test.common.Echo;
+import org.jboss.ejb.client.test.common.EchoBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the allocation of a warm stateless invocation.  Run it with the allocation profiler, for example through
+ * {@link #main(String[])}, and compare {@code gc.alloc.rate.norm}, the number of bytes allocated per invocation.
+ * <p>
+ * {@link Local} sends the invocation to a receiver which answers it right away, which isolates the client side of
+ * the invocation path.  {@link Remote} makes a real round trip over a loopback connection to a {@link DummyServer}
+ * running in the same JVM, so its figure also includes the allocations of the server and of the transport.
+ * <p>
+ * The benchmark is only compiled with the {@code benchmark} Maven profile, which adds JMH to the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatelessInvocationBenchmark {
+
+    private static final String APP_NAME = "my-foo-app";
+    private static final String MODULE_NAME = "my-bar-module";
+    private static final String DISTINCT_NAME = "";
+
+    private static final String MESSAGE = "hello!";
+
+    @State(Scope.Benchmark)
+    public static class Local {
+        Echo proxy;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            final EJBReceiver receiver = new EchoReceiver();
+            final EJBClientContext context = new EJBClientContext.Builder().addTransportProvider(new EJBTransportProvider() {
+                public boolean supportsProtocol(final String uriScheme) {
+                    return EchoReceiver.SCHEME.equals(uriScheme);
+                }
+
+                public EJBReceiver getReceiver(final EJBReceiverContext receiverContext, final String uriScheme) {
+                    return receiver;
+                }
+            }).build();
+            EJBClientContext.getContextManager().setGlobalDefault(context);
+            proxy = EJBClient.createProxy(new StatelessEJBLocator<>(Echo.class, APP_NAME, MODULE_NAME, Echo.class.getSimpleName(), DISTINCT_NAME));
+            EJBClient.setStrongAffinity(proxy, URIAffinity.forUri(new URI(EchoReceiver.SCHEME, "-", null)));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Remote {
+        DummyServer server;
+        Echo proxy;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            final JBossEJBProperties ejbProperties = JBossEJBProperties.fromClassPath(StatelessInvocationBenchmark.class.getClassLoader(), "jboss-ejb-client.properties");
+            JBossEJBProperties.getContextManager().setGlobalDefault(ejbProperties);
+            server = new DummyServer("localhost", 6999, "test-server");
+            server.start();
+            server.register(APP_NAME, MODULE_NAME, DISTINCT_NAME, Echo.class.getSimpleName(), new EchoBean());
+            proxy = EJBClient.createProxy(new StatelessEJBLocator<>(Echo.class, APP_NAME, MODULE_NAME, Echo.class.getSimpleName(), DISTINCT_NAME));
+            EJBClient.setStrongAffinity(proxy, URIAffinity.forUri(new URI("remote", null, "localhost", 6999, null, null, null)));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            server.unregister(APP_NAME, MODULE_NAME, DISTINCT_NAME, Echo.class.getName());
+            server.stop();
+        }
+    }
+
+    @Benchmark
+    public String local(final Local state) {
+        return state.proxy.echo(MESSAGE);
+    }
+
+    @Benchmark
+    public String remote(final Remote state) {
+        return state.proxy.echo(MESSAGE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(StatelessInvocationBenchmark.class.getName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+
+    static final class EchoReceiver extends EJBReceiver {
+        static final String SCHEME = "echo";
+
+        // the benchmark always sends the same message, so the answer can be shared
+        private static final EJBReceiverInvocationContext.ResultProducer RESULT = new EJBReceiverInvocationContext.ResultProducer.Immediate(MESSAGE);
+
+        protected void processInvocation(final EJBReceiverInvocationContext receiverContext) {
+            receiverContext.resultReady(RESULT);
+        }
+    }
+}
@@ -422,6 +422,9 @@ public interface Logs extends BasicLogger {
     @Message(id = 510, value = "Failed to configure SSL context")
     IOException failedToConfigureSslContext(@Cause Throwable cause);
 
+    @Message(id = 511, value = "Discovery connection to %s was not established within %d milliseconds")
+    IOException discoveryConnectTimedOut(URI destination, long timeout);
+
     // Remote messages; no ID for brevity but should be translated
 
     @Message(value = "No such EJB: %s")
@@ -439,4 +442,7 @@ public interface Logs extends BasicLogger {
     @Message(value = "EJB view is not remote: %s")
     String remoteMessageBadViewType(EJBIdentifier ejbIdentifier);
 
+    @Message(value = "Server is too busy to accept an invocation of %s")
+    String remoteMessageServerBusy(EJBIdentifier ejbIdentifier);
+
 }
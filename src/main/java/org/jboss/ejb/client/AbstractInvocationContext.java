@@ -88,6 +88,16 @@ public abstract class AbstractInvocationContext extends Attachable {
         }
     }
 
+    /**
+     * Determine whether any context data was established, without creating the context data map if there is none.
+     *
+     * @return {@code true} if there may be context data, {@code false} if there is certainly none
+     */
+    public boolean hasContextData() {
+        final Map<String, Object> contextData = this.contextData;
+        return contextData != null && ! contextData.isEmpty();
+    }
+
     /**
      * Get the locator for the invocation target.
      *
@@ -21,24 +21,28 @@ package org.jboss.ejb.client;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.wildfly.common.Assert;
 
 /**
  * An object which may have attachments.  Even if the object is serializable, its
  * attachment map is not and will always deserialize empty.
+ * <p>
+ * The attachment map is only created once the first attachment is added, since most objects (invocation contexts in
+ * particular) only ever carry a few attachments, if any.  Access to the attachments is synchronized on the map.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public abstract class Attachable {
-    private final Map<AttachmentKey<?>, Object> attachments;
+    private static final int INITIAL_SIZE = 4;
 
-    private Attachable(Map<AttachmentKey<?>, Object> attachments) {
-        this.attachments = attachments;
-    }
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Attachable, Map> attachmentsUpdater = AtomicReferenceFieldUpdater.newUpdater(Attachable.class, Map.class, "attachments");
+
+    private volatile Map<AttachmentKey<?>, Object> attachments;
 
     Attachable() {
-        this(new IdentityHashMap<AttachmentKey<?>, Object>());
     }
 
     /**
@@ -47,7 +51,18 @@ public abstract class Attachable {
      * @param attachable the attachments to share
      */
     Attachable(final Attachable attachable) {
-        this(attachable.attachments);
+        attachments = attachable.attachments();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<AttachmentKey<?>, Object> attachments() {
+        final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        if (attachments != null) {
+            return attachments;
+        }
+        final Map<AttachmentKey<?>, Object> newAttachments = new IdentityHashMap<>(INITIAL_SIZE);
+        // another thread may have created the map first
+        return attachmentsUpdater.compareAndSet(this, null, newAttachments) ? newAttachments : this.attachments;
     }
 
     /**
@@ -61,6 +76,7 @@ public abstract class Attachable {
     public <T> T getAttachment(AttachmentKey<T> key) {
         if (key == null) return null;
         final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        if (attachments == null) return null;
         synchronized (attachments) {
             return (T) attachments.get(key);
         }
@@ -75,10 +91,11 @@ public abstract class Attachable {
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public Map<AttachmentKey<?>, ?> getAttachments() {
-        if (this.attachments == null) {
+        final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        if (attachments == null) {
             return Collections.emptyMap();
         }
-        return Collections.unmodifiableMap((Map) this.attachments);
+        return Collections.unmodifiableMap((Map) attachments);
     }
 
     /**
@@ -93,7 +110,7 @@ public abstract class Attachable {
     public <T> T putAttachment(AttachmentKey<T> key, T value) {
         Assert.checkNotNullParam("key", key);
         Assert.checkNotNullParam("value", value);
-        final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        final Map<AttachmentKey<?>, Object> attachments = attachments();
         synchronized (attachments) {
             return (T) attachments.put(key, value);
         }
@@ -111,7 +128,7 @@ public abstract class Attachable {
     public <T> T putAttachmentIfAbsent(AttachmentKey<T> key, T value) {
         Assert.checkNotNullParam("key", key);
         Assert.checkNotNullParam("value", value);
-        final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        final Map<AttachmentKey<?>, Object> attachments = attachments();
         synchronized (attachments) {
             return (T) (attachments.containsKey(key) ? attachments.get(key) : attachments.put(key, value));
         }
@@ -130,6 +147,7 @@ public abstract class Attachable {
         if (key == null) return null;
         Assert.checkNotNullParam("value", value);
         final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        if (attachments == null) return null;
         synchronized (attachments) {
             return (T) (attachments.containsKey(key) ? attachments.put(key, value) : null);
         }
@@ -150,6 +168,7 @@ public abstract class Attachable {
         if (oldValue == null) return false;
         Assert.checkNotNullParam("newValue", newValue);
         final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        if (attachments == null) return false;
         synchronized (attachments) {
             Object lhs = attachments.get(key);
             return attachments.containsKey(key) && oldValue.equals(lhs) && attachments.put(key, newValue) != null;
@@ -167,6 +186,7 @@ public abstract class Attachable {
     public <T> T removeAttachment(AttachmentKey<T> key) {
         if (key == null) return null;
         final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        if (attachments == null) return null;
         synchronized (attachments) {
             return (T) attachments.remove(key);
         }
@@ -185,6 +205,7 @@ public abstract class Attachable {
         if (key == null) return false;
         if (value == null) return false;
         final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        if (attachments == null) return false;
         synchronized (attachments) {
             Object lhs = attachments.get(key);
             return attachments.containsKey(key) && value.equals(lhs) && attachments.remove(key) != null;
@@ -192,6 +213,11 @@ public abstract class Attachable {
     }
 
     void clearAttachments() {
-        attachments.clear();
+        final Map<AttachmentKey<?>, Object> attachments = this.attachments;
+        if (attachments != null) {
+            synchronized (attachments) {
+                attachments.clear();
+            }
+        }
     }
 }
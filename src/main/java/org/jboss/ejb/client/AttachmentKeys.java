@@ -20,6 +20,7 @@ package org.jboss.ejb.client;
 
 import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import javax.transaction.Transaction;
 
@@ -46,6 +47,13 @@ public final class AttachmentKeys {
      */
     public static final AttachmentKey<Affinity> WEAK_AFFINITY = new AttachmentKey<Affinity>();
 
+    /**
+     * The batch an invocation was submitted in by {@link EJBClient#invokeBatch(Object, java.util.List)}.  The future
+     * is completed once every invocation of the batch has been submitted, which allows a receiver to hold the requests
+     * back and send them together.  This key is normally associated with an invocation.
+     */
+    public static final AttachmentKey<CompletableFuture<Void>> INVOCATION_BATCH = new AttachmentKey<>();
+
     /**
      * The attachment key for legacy transaction IDs.  This key is normally associated with an invocation.
      */
@@ -0,0 +1,222 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.client;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.wildfly.discovery.Discovery;
+import org.wildfly.discovery.FilterSpec;
+import org.wildfly.discovery.ServiceURL;
+import org.wildfly.security.auth.client.AuthenticationContext;
+
+/**
+ * A cache of the services found by complete discoveries, keyed by filter specification, EJB client context and the
+ * authentication context which the discovery providers would connect with.  Invocations on a proxy
+ * without any affinity would otherwise run a discovery each, even though the modules and cluster members which are
+ * known to the client hardly ever change.
+ * <p>
+ * All entries are invalidated together when a transport {@linkplain #invalidateAll() reports} a change of
+ * deployments or topology.  Entries also expire after a while, for the sake of discovery providers which never
+ * report anything.  Only discoveries which found something and met no problems are cached.
+ */
+final class DiscoveryCache {
+
+    static final long TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(doPrivileged((PrivilegedAction<Long>) () -> {
+        String val = System.getProperty("org.jboss.ejb.client.discovery.cache-ttl-millis");
+        try {
+            return Long.valueOf(val);
+        } catch (NumberFormatException e) {
+            return Long.valueOf(30_000L);
+        }
+    }).longValue());
+
+    static final int MAX_ENTRIES = 1024;
+
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    private final ConcurrentHashMap<Key, Result> entries = new ConcurrentHashMap<>();
+
+    DiscoveryCache() {
+    }
+
+    /**
+     * Invalidate the entries of all caches.
+     */
+    static void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Get the current generation, which must be read before a discovery is started so that a change which is
+     * reported while it runs invalidates its result.
+     *
+     * @return the current generation
+     */
+    static int currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Get the cache key of a discovery which is run by the current thread.
+     *
+     * @param filterSpec the filter specification (must not be {@code null})
+     * @param clientContext the EJB client context of the invocation (must not be {@code null})
+     * @return the cache key (not {@code null})
+     */
+    static Key keyFor(final FilterSpec filterSpec, final EJBClientContext clientContext) {
+        return new Key(filterSpec.toString(), clientContext, AuthenticationContext.captureCurrent());
+    }
+
+    /**
+     * Get the cached result of a discovery.
+     *
+     * @param discovery the discovery which would be used (must not be {@code null})
+     * @param key the cache key (must not be {@code null})
+     * @return the result, or {@code null} if there is no valid cached result
+     */
+    Result get(final Discovery discovery, final Key key) {
+        final Result result = entries.get(key);
+        if (result == null) {
+            return null;
+        }
+        if (result.discovery != discovery || isStale(result, System.nanoTime())) {
+            entries.remove(key, result);
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Record the result of a discovery, which is cached if it is worth caching.
+     *
+     * @param discovery the discovery which was used (must not be {@code null})
+     * @param key the cache key (must not be {@code null})
+     * @param generation the generation read before the discovery started
+     * @param services the services which were found (must not be {@code null})
+     * @param problems the problems which were met (must not be {@code null})
+     * @return the result (not {@code null})
+     */
+    Result put(final Discovery discovery, final Key key, final int generation, final List<ServiceURL> services, final List<Throwable> problems) {
+        final long now = System.nanoTime();
+        final Result result = new Result(key, discovery, generation, now + TTL_NANOS, services, problems);
+        if (TTL_NANOS > 0 && problems.isEmpty() && ! services.isEmpty() && generation == DiscoveryCache.generation.get()) {
+            if (entries.size() >= MAX_ENTRIES) {
+                evict(now);
+            }
+            entries.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Discard a result, if it is still cached.  Used when the services of the result turn out to be wrong.
+     *
+     * @param result the result to discard (must not be {@code null})
+     */
+    void remove(final Result result) {
+        entries.remove(result.key, result);
+    }
+
+    /**
+     * Make room for a new entry by discarding the stale entries, or if there are none, the entry which expires first.
+     */
+    private void evict(final long now) {
+        Map.Entry<Key, Result> first = null;
+        boolean evicted = false;
+        for (Map.Entry<Key, Result> entry : entries.entrySet()) {
+            final Result result = entry.getValue();
+            if (isStale(result, now)) {
+                evicted |= entries.remove(entry.getKey(), result);
+            } else if (first == null || result.expiry - first.getValue().expiry < 0) {
+                first = entry;
+            }
+        }
+        if (! evicted && first != null) {
+            entries.remove(first.getKey(), first.getValue());
+        }
+    }
+
+    private static boolean isStale(final Result result, final long now) {
+        return result.generation != generation.get() || now - result.expiry > 0;
+    }
+
+    /**
+     * The key of a cached discovery.  The contexts are compared by identity.
+     */
+    static final class Key {
+        private final String filterSpec;
+        private final EJBClientContext clientContext;
+        private final AuthenticationContext authenticationContext;
+        private final int hashCode;
+
+        Key(final String filterSpec, final EJBClientContext clientContext, final AuthenticationContext authenticationContext) {
+            this.filterSpec = filterSpec;
+            this.clientContext = clientContext;
+            this.authenticationContext = authenticationContext;
+            hashCode = filterSpec.hashCode() + 13 * (System.identityHashCode(clientContext) + 13 * System.identityHashCode(authenticationContext));
+        }
+
+        public boolean equals(final Object other) {
+            return other instanceof Key && equals((Key) other);
+        }
+
+        boolean equals(final Key other) {
+            return other == this || other != null && hashCode == other.hashCode && filterSpec.equals(other.filterSpec)
+                && clientContext == other.clientContext && authenticationContext == other.authenticationContext;
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    static final class Result {
+        private final Key key;
+        private final Discovery discovery;
+        private final int generation;
+        private final long expiry;
+        private final List<ServiceURL> services;
+        private final List<Throwable> problems;
+
+        Result(final Key key, final Discovery discovery, final int generation, final long expiry, final List<ServiceURL> services, final List<Throwable> problems) {
+            this.key = key;
+            this.discovery = discovery;
+            this.generation = generation;
+            this.expiry = expiry;
+            this.services = Collections.unmodifiableList(services);
+            this.problems = problems;
+        }
+
+        List<ServiceURL> getServices() {
+            return services;
+        }
+
+        List<Throwable> getProblems() {
+            return problems;
+        }
+    }
+}
@@ -76,6 +76,10 @@ public final class DiscoveryEJBClientInterceptor implements EJBClientInterceptor
     public static final int PRIORITY = ClientInterceptorPriority.JBOSS_AFTER + 100;
 
     private static final AttachmentKey<Set<URI>> BL_KEY = new AttachmentKey<>();
+    // the discovery result which the destination of the invocation was chosen from
+    private static final AttachmentKey<DiscoveryCache.Result> DISCOVERY_RESULT_KEY = new AttachmentKey<>();
+
+    private final DiscoveryCache cache = new DiscoveryCache();
 
     /**
      * Construct a new instance.
@@ -83,6 +87,14 @@ public final class DiscoveryEJBClientInterceptor implements EJBClientInterceptor
     public DiscoveryEJBClientInterceptor() {
     }
 
+    /**
+     * Discard the results of earlier discoveries which are reused for invocations without a destination.  Transports
+     * call this when they learn that the modules deployed on a node or the members of a cluster have changed.
+     */
+    public static void invalidateDiscoveryCache() {
+        DiscoveryCache.invalidateAll();
+    }
+
     public void handleInvocation(final EJBClientInvocationContext context) throws Exception {
         if (context.getDestination() != null) {
             // already discovered!
@@ -194,6 +206,11 @@ public final class DiscoveryEJBClientInterceptor implements EJBClientInterceptor
         }
         // Oops, we got some wrong information!
         addBlackListedDestination(context, destination);
+        // ...which may have come from the cache
+        final DiscoveryCache.Result result = context.removeAttachment(DISCOVERY_RESULT_KEY);
+        if (result != null) {
+            cache.remove(result);
+        }
 
         // clear the weak affinity so that cluster invocations can be re-targeted.
         context.setWeakAffinity(Affinity.NONE);
@@ -233,6 +250,40 @@ public final class DiscoveryEJBClientInterceptor implements EJBClientInterceptor
         return DISCOVERY_SUPPLIER.get();
     }
 
+    /**
+     * Run a discovery to completion, or reuse the services found by an earlier one with the same filter.
+     *
+     * @param context the invocation context
+     * @param filterSpec the filter specification
+     * @return the discovery result
+     */
+    private DiscoveryCache.Result discoverAll(final AbstractInvocationContext context, final FilterSpec filterSpec) {
+        final Discovery discovery = getDiscovery();
+        final DiscoveryCache.Key key = DiscoveryCache.keyFor(filterSpec, context.getClientContext());
+        final DiscoveryCache.Result cached = cache.get(discovery, key);
+        if (cached != null) {
+            Logs.INVOCATION.tracef("Using cached discovery result (filter spec = %s)", filterSpec);
+            context.putAttachment(DISCOVERY_RESULT_KEY, cached);
+            return cached;
+        }
+        final int generation = DiscoveryCache.currentGeneration();
+        final List<ServiceURL> services = new ArrayList<>();
+        final List<Throwable> problems;
+        try (final ServicesQueue queue = discover(filterSpec)) {
+            ServiceURL serviceURL;
+            while ((serviceURL = queue.takeService()) != null) {
+                services.add(serviceURL);
+            }
+            problems = queue.getProblems();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Logs.MAIN.operationInterrupted();
+        }
+        final DiscoveryCache.Result result = cache.put(discovery, key, generation, services, problems);
+        context.putAttachment(DISCOVERY_RESULT_KEY, result);
+        return result;
+    }
+
     private List<Throwable> executeDiscovery(AbstractInvocationContext context) {
         assert context.getDestination() == null;
         final EJBLocator<?> locator = context.getLocator();
@@ -355,51 +406,46 @@ public final class DiscoveryEJBClientInterceptor implements EJBClientInterceptor
         final Map<URI, List<String>> clusterAssociations = new HashMap<>();
 
         int nodeless = 0;
-        try (final ServicesQueue queue = discover(filterSpec)) {
-            ServiceURL serviceURL;
-            while ((serviceURL = queue.takeService()) != null) {
-                final URI location = serviceURL.getLocationURI();
-                if (blacklist == null || ! blacklist.contains(location)) {
-                    // Got a match!  See if there's a node affinity to set for the invocation.
-                    final AttributeValue nodeValue = serviceURL.getFirstAttributeValue(FILTER_ATTR_NODE);
-                    if (nodeValue != null) {
-                        if (nodes.remove(location, null)) {
-                            nodeless--;
-                        }
-                        final String nodeName = nodeValue.toString();
-                        nodes.put(location, nodeName);
-                        uris.put(nodeName, location);
-                    } else {
-                        // just set the URI but don't overwrite a separately-found node name
-                        if (nodes.putIfAbsent(location, null) == null) {
-                            nodeless++;
-                        }
+        final DiscoveryCache.Result result = discoverAll(context, filterSpec);
+        for (ServiceURL serviceURL : result.getServices()) {
+            final URI location = serviceURL.getLocationURI();
+            if (blacklist == null || ! blacklist.contains(location)) {
+                // Got a match!  See if there's a node affinity to set for the invocation.
+                final AttributeValue nodeValue = serviceURL.getFirstAttributeValue(FILTER_ATTR_NODE);
+                if (nodeValue != null) {
+                    if (nodes.remove(location, null)) {
+                        nodeless--;
+                    }
+                    final String nodeName = nodeValue.toString();
+                    nodes.put(location, nodeName);
+                    uris.put(nodeName, location);
+                } else {
+                    // just set the URI but don't overwrite a separately-found node name
+                    if (nodes.putIfAbsent(location, null) == null) {
+                        nodeless++;
                     }
+                }
 
-                    // Handle multiple cluster specifications per entry, and also multiple entries with
-                    // cluster specifications that refer to the same URI. Currently multi-membership is
-                    // represented in the latter form, however, handle the first form as well, just in
-                    // case this changes in the future.
-                    final List<AttributeValue> clusters = serviceURL.getAttributeValues(FILTER_ATTR_CLUSTER);
-                    if (clusters != null) {
-                        for (AttributeValue cluster : clusters) {
-                            List<String> list = clusterAssociations.putIfAbsent(location, Collections.singletonList(cluster.toString()));
-                            if (list != null) {
-                                if (!(list instanceof ArrayList)) {
-                                    list = new ArrayList<>(list);
-                                    clusterAssociations.put(location, list);
-                                }
-                                list.add(cluster.toString());
+                // Handle multiple cluster specifications per entry, and also multiple entries with
+                // cluster specifications that refer to the same URI. Currently multi-membership is
+                // represented in the latter form, however, handle the first form as well, just in
+                // case this changes in the future.
+                final List<AttributeValue> clusters = serviceURL.getAttributeValues(FILTER_ATTR_CLUSTER);
+                if (clusters != null) {
+                    for (AttributeValue cluster : clusters) {
+                        List<String> list = clusterAssociations.putIfAbsent(location, Collections.singletonList(cluster.toString()));
+                        if (list != null) {
+                            if (!(list instanceof ArrayList)) {
+                                list = new ArrayList<>(list);
+                                clusterAssociations.put(location, list);
                             }
+                            list.add(cluster.toString());
                         }
                     }
                 }
             }
-            problems = queue.getProblems();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw Logs.MAIN.operationInterrupted();
         }
+        problems = result.getProblems();
 
         if (nodes.isEmpty()) {
             // no match
@@ -470,26 +516,21 @@ public final class DiscoveryEJBClientInterceptor implements EJBClientInterceptor
         final EJBClientContext clientContext = context.getClientContext();
         final List<Throwable> problems;
         final Set<URI> set = context.getAttachment(BL_KEY);
-        try (final ServicesQueue queue = discover(filterSpec)) {
-            ServiceURL serviceURL;
-            while ((serviceURL = queue.takeService()) != null) {
-                final URI location = serviceURL.getLocationURI();
-                if (set == null || ! set.contains(location)) {
-                    final EJBReceiver transportProvider = clientContext.getTransportProvider(location.getScheme());
-                    if (transportProvider != null && satisfiesSourceAddress(serviceURL, transportProvider)) {
-                        final AttributeValue nodeNameValue = serviceURL.getFirstAttributeValue(FILTER_ATTR_NODE);
-                        // should always be true, but no harm in checking
-                        if (nodeNameValue != null) {
-                            nodes.put(nodeNameValue.toString(), location);
-                        }
+        final DiscoveryCache.Result result = discoverAll(context, filterSpec);
+        for (ServiceURL serviceURL : result.getServices()) {
+            final URI location = serviceURL.getLocationURI();
+            if (set == null || ! set.contains(location)) {
+                final EJBReceiver transportProvider = clientContext.getTransportProvider(location.getScheme());
+                if (transportProvider != null && satisfiesSourceAddress(serviceURL, transportProvider)) {
+                    final AttributeValue nodeNameValue = serviceURL.getFirstAttributeValue(FILTER_ATTR_NODE);
+                    // should always be true, but no harm in checking
+                    if (nodeNameValue != null) {
+                        nodes.put(nodeNameValue.toString(), location);
                     }
                 }
             }
-            problems = queue.getProblems();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw Logs.MAIN.operationInterrupted();
         }
+        problems = result.getProblems();
 
         // Prefer nodes associated with a transaction, if possible
         nodes = tryFilterToPreferredNodes(context, nodes);
@@ -22,6 +22,9 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.net.SocketAddress;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
@@ -140,6 +143,23 @@ public final class EJBClient {
         }
     }
 
+    /**
+     * Get the result of an operation as a {@link CompletableFuture}, which is completed without any thread having to
+     * wait for the response.  Should be called in conjunction with {@link #asynchronous(Object)}.
+     *
+     * @param operation the operation
+     * @param <T>       the result type
+     * @return the future result
+     * @throws IllegalStateException if the operation is not appropriately given
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> getCompletableResult(final T operation) throws IllegalStateException {
+        if (operation != null) {
+            return CompletableFuture.completedFuture(operation);
+        }
+        return (CompletableFuture<T>) ((EJBClientInvocationContext.FutureResponse) getFutureResult()).toCompletableFuture();
+    }
+
     static void setFutureResult(final Future<?> future) {
         FUTURE_RESULT.set(future);
     }
@@ -361,6 +381,24 @@ public final class EJBClient {
         return (Future<?>) invocationHandler.invoke(proxy, proxyMethodInfo, args);
     }
 
+    /**
+     * Perform an asynchronous invocation by method locator on a proxy, returning a {@link CompletableFuture} which is
+     * completed with the result without any thread having to wait for the response.  Cancelling the future requests
+     * cancellation of the invocation.
+     *
+     * @param proxy the EJB proxy
+     * @param methodLocator the method locator
+     * @param args the invocation arguments
+     * @param <T> the view type
+     * @return the future result
+     * @throws Exception if the invocation failed for some reason
+     */
+    public static <T> CompletableFuture<?> invokeCompletable(T proxy, EJBMethodLocator methodLocator, Object... args) throws Exception {
+        final EJBInvocationHandler<? extends T> invocationHandler = EJBInvocationHandler.forProxy(proxy);
+        final EJBProxyInformation.ProxyMethodInfo proxyMethodInfo = invocationHandler.getProxyMethodInfo(methodLocator);
+        return invocationHandler.invokeCompletable(proxy, proxyMethodInfo, args);
+    }
+
     /**
      * Perform an invocation by method locator on a proxy, returning the result.
      *
@@ -376,6 +414,35 @@ public final class EJBClient {
         return invocationHandler.invoke(proxy, proxyMethodInfo, args);
     }
 
+    /**
+     * Perform a batch of asynchronous invocations by method locator on a proxy, returning the future results in the
+     * order of the calls.  Each invocation is processed separately by the client interceptors and may fail
+     * independently, but transports which support it send the requests of a batch which go to the same destination
+     * together.
+     *
+     * @param proxy the EJB proxy
+     * @param calls the calls to make (must not be {@code null})
+     * @param <T> the view type
+     * @return the future results of the calls
+     * @throws Exception if submitting one of the invocations failed for some reason
+     */
+    public static <T> List<Future<?>> invokeBatch(T proxy, List<EJBMethodCall> calls) throws Exception {
+        Assert.checkNotNullParam("calls", calls);
+        final EJBInvocationHandler<? extends T> invocationHandler = EJBInvocationHandler.forProxy(proxy);
+        final CompletableFuture<Void> batch = new CompletableFuture<>();
+        final List<Future<?>> results = new ArrayList<>(calls.size());
+        try {
+            for (EJBMethodCall call : calls) {
+                final EJBProxyInformation.ProxyMethodInfo proxyMethodInfo = invocationHandler.getProxyMethodInfo(call.getMethodLocator());
+                results.add(invocationHandler.invokeBatched(proxy, proxyMethodInfo, batch, call.getArguments()));
+            }
+        } finally {
+            // release the requests which are being held back
+            batch.complete(null);
+        }
+        return results;
+    }
+
     /**
      * Get the locator for a proxy, if it has one.
      *
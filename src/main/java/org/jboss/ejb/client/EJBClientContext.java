@@ -39,6 +39,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -77,6 +79,9 @@ public final class EJBClientContext extends Attachable implements Contextual<EJB
     private static final EJBClientInterceptor.Registration[] NO_INTERCEPTORS = new EJBClientInterceptor.Registration[0];
     private static final AtomicReferenceFieldUpdater<EJBClientContext, EJBClientInterceptor.Registration[]> registrationsUpdater = AtomicReferenceFieldUpdater.newUpdater(EJBClientContext.class, EJBClientInterceptor.Registration[].class, "registrations");
     private volatile EJBClientInterceptor.Registration[] registrations = NO_INTERCEPTORS;
+    private static final AtomicLongFieldUpdater<EJBClientContext> timeToFirstSuccessUpdater = AtomicLongFieldUpdater.newUpdater(EJBClientContext.class, "timeToFirstSuccess");
+    private final long creationTime = System.nanoTime();
+    private volatile long timeToFirstSuccess = -1;
 
     /**
      * The discovery attribute name which contains the application and module name of the located EJB.
@@ -135,6 +140,8 @@ public final class EJBClientContext extends Attachable implements Contextual<EJB
     private final Map<String, InterceptorList> configuredPerClassInterceptors;
     private final Map<String, Map<EJBMethodLocator, InterceptorList>> configuredPerMethodInterceptors;
     private final int maximumConnectedClusterNodes;
+    private final int adaptiveCompressionThreshold;
+    private final int adaptiveCompressionLevel;
 
     EJBClientContext(Builder builder) {
         final List<EJBTransportProvider> builderTransportProviders = builder.transportProviders;
@@ -169,6 +176,8 @@ public final class EJBClientContext extends Attachable implements Contextual<EJB
         clusterNodeSelector = builder.clusterNodeSelector;
         deploymentNodeSelector = builder.deploymentNodeSelector;
         maximumConnectedClusterNodes = builder.maximumConnectedClusterNodes;
+        adaptiveCompressionThreshold = builder.adaptiveCompressionThreshold;
+        adaptiveCompressionLevel = builder.adaptiveCompressionLevel;
 
         // global interceptors
         final List<EJBClientInterceptorInformation> globalInterceptors = builder.globalInterceptors;
@@ -477,6 +486,47 @@ public final class EJBClientContext extends Attachable implements Contextual<EJB
         return maximumConnectedClusterNodes;
     }
 
+    /**
+     * Get the adaptive compression threshold.  When adaptive compression is enabled, requests and responses of methods
+     * which carry no {@link org.jboss.ejb.client.annotation.CompressionHint CompressionHint} are compressed only when
+     * their marshalled body is larger than this many bytes.  A value of -1 indicates that adaptive compression is
+     * disabled.
+     *
+     * @return the adaptive compression threshold in bytes, or -1 if adaptive compression is disabled
+     */
+    public int getAdaptiveCompressionThreshold() {
+        return adaptiveCompressionThreshold;
+    }
+
+    /**
+     * Get the compression level used for adaptively compressed requests and responses.
+     *
+     * @return the adaptive compression level ({@link java.util.zip.Deflater#DEFAULT_COMPRESSION} or 1 through 9)
+     */
+    public int getAdaptiveCompressionLevel() {
+        return adaptiveCompressionLevel;
+    }
+
+    /**
+     * Get the time it took from the creation of this context until the first invocation through it completed
+     * successfully.  This includes the time needed to discover and connect to the first target, so it is a
+     * measure of how quickly a freshly started client becomes usable.
+     *
+     * @return the time in milliseconds, or -1 if no invocation has completed successfully yet
+     */
+    public long getTimeToFirstSuccessfulInvocation() {
+        return timeToFirstSuccess;
+    }
+
+    void invocationSucceeded() {
+        if (timeToFirstSuccess == -1) {
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - creationTime);
+            if (timeToFirstSuccessUpdater.compareAndSet(this, -1, elapsed)) {
+                Logs.MAIN.debugf("First successful invocation completed %d ms after the EJB client context was created", elapsed);
+            }
+        }
+    }
+
     /**
      * Get a copy of this context with the given interceptor(s) added.  If the array is {@code null} or empty, the
      * current context is returned as-is.
@@ -636,6 +686,8 @@ public final class EJBClientContext extends Attachable implements Contextual<EJB
         DeploymentNodeSelector deploymentNodeSelector = DeploymentNodeSelector.RANDOM;
         long invocationTimeout;
         int maximumConnectedClusterNodes = 10;
+        int adaptiveCompressionThreshold = -1;
+        int adaptiveCompressionLevel = -1;
 
         /**
          * Construct a new instance.
@@ -671,6 +723,8 @@ public final class EJBClientContext extends Attachable implements Contextual<EJB
             clusterNodeSelector = clientContext.clusterNodeSelector;
             deploymentNodeSelector = clientContext.deploymentNodeSelector;
             invocationTimeout = clientContext.invocationTimeout;
+            adaptiveCompressionThreshold = clientContext.adaptiveCompressionThreshold;
+            adaptiveCompressionLevel = clientContext.adaptiveCompressionLevel;
         }
 
         public Builder addInterceptor(EJBClientInterceptor interceptor) {
@@ -784,6 +838,36 @@ public final class EJBClientContext extends Attachable implements Contextual<EJB
             return this;
         }
 
+        /**
+         * Set the adaptive compression threshold, in bytes.  Invocations of methods without a compression hint will
+         * have their request and response compressed only if the marshalled body exceeds this size.  A value of -1
+         * (the default) disables adaptive compression.
+         *
+         * @param adaptiveCompressionThreshold the threshold in bytes, or -1 to disable adaptive compression
+         * @return this builder
+         */
+        public Builder setAdaptiveCompressionThreshold(final int adaptiveCompressionThreshold) {
+            Assert.checkMinimumParameter("adaptiveCompressionThreshold", -1, adaptiveCompressionThreshold);
+            this.adaptiveCompressionThreshold = adaptiveCompressionThreshold;
+            return this;
+        }
+
+        /**
+         * Set the compression level used for adaptive compression.  The default is
+         * {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}.
+         *
+         * @param adaptiveCompressionLevel the compression level ({@link java.util.zip.Deflater#DEFAULT_COMPRESSION} or 1 through 9)
+         * @return this builder
+         */
+        public Builder setAdaptiveCompressionLevel(final int adaptiveCompressionLevel) {
+            if (adaptiveCompressionLevel != -1) {
+                Assert.checkMinimumParameter("adaptiveCompressionLevel", 1, adaptiveCompressionLevel);
+                Assert.checkMaximumParameter("adaptiveCompressionLevel", 9, adaptiveCompressionLevel);
+            }
+            this.adaptiveCompressionLevel = adaptiveCompressionLevel;
+            return this;
+        }
+
         public EJBClientContext build() {
             return new EJBClientContext(this);
         }
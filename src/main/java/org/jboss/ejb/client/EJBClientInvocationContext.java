@@ -21,13 +21,17 @@ package org.jboss.ejb.client;
 import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.URI;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
 import static java.lang.Math.max;
@@ -67,19 +71,24 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
     private final long timeout;
 
     // Invocation state
+    // transitions are made holding the lock, but nobody waits on it; threads which wait for a transition park instead
     private final Object lock = new Object();
     private EJBReceiverInvocationContext.ResultProducer resultProducer;
 
     private volatile boolean cancelRequested;
     private boolean retryRequested;
-    private State state = State.SENDING;
+    private volatile State state = State.SENDING;
+    private Waiter waiters;
+    private CompletableResponse completableResponse;
+    // the executor on which a completable response consumes the result, as given by the receiver
+    private Executor resultExecutor;
     private int remainingRetries;
     private Supplier<? extends Throwable> pendingFailure;
     private List<Supplier<? extends Throwable>> suppressedExceptions;
     private Object cachedResult;
 
     private int interceptorChainIndex;
-    private boolean blockingCaller;
+    private volatile boolean blockingCaller;
 
     EJBClientInvocationContext(final EJBInvocationHandler<?> invocationHandler, final EJBClientContext ejbClientContext, final Object invokedProxy, final Object[] parameters, final EJBProxyInformation.ProxyMethodInfo methodInfo, final int allowedRetries, final Supplier<AuthenticationContext> authenticationContextSupplier) {
         super(invocationHandler.getLocator(), ejbClientContext);
@@ -201,6 +210,17 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
         return methodInfo.isCompressResponse();
     }
 
+    /**
+     * Determine whether the method result may be streamed, that is, the declared return type of the method is
+     * {@link java.util.stream.Stream}.  The elements of a streamed result are delivered as they arrive, rather than
+     * after the whole result has been received; the stream must be closed if it is not read to the end.
+     *
+     * @return {@code true} if the method result may be streamed, {@code false} otherwise
+     */
+    public boolean isStreamingResult() {
+        return methodInfo.isStreamingResult();
+    }
+
     /**
      * Get the compression hint level.  If no compression hint is given, -1 is returned.
      *
@@ -234,9 +254,7 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
      * @return {@code true} if the calling thread is being blocked; {@code false} otherwise
      */
     public boolean isBlockingCaller() {
-        synchronized (lock) {
-            return blockingCaller;
-        }
+        return blockingCaller;
     }
 
     /**
@@ -245,9 +263,7 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
      * @param blockingCaller {@code true} if the calling thread is being blocked; {@code false} otherwise
      */
     public void setBlockingCaller(final boolean blockingCaller) {
-        synchronized (lock) {
-            this.blockingCaller = blockingCaller;
-        }
+        this.blockingCaller = blockingCaller;
     }
 
     /**
@@ -257,6 +273,9 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
      */
     public void addSuppressed(Throwable cause) {
         Assert.checkNotNullParam("cause", cause);
+        if (state == State.DONE) {
+            return;
+        }
         synchronized (lock) {
             if (state == State.DONE) {
                 return;
@@ -276,6 +295,9 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
      */
     public void addSuppressed(Supplier<? extends Throwable> cause) {
         Assert.checkNotNullParam("cause", cause);
+        if (state == State.DONE) {
+            return;
+        }
         synchronized (lock) {
             if (state == State.DONE) {
                 return;
@@ -403,9 +425,7 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
     }
 
     State checkState() {
-        synchronized (lock) {
-            return state;
-        }
+        return state;
     }
 
     /**
@@ -511,45 +531,53 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
      * @throws Exception if the invocation did not succeed
      */
     Object getResult(boolean retry) throws Exception {
-        final EJBClientContext.InterceptorList list = getClientContext().getInterceptors(getViewClass(), getInvokedMethod());
-        final EJBClientInterceptorInformation[] chain = list.getInformation();
-        final EJBReceiverInvocationContext.ResultProducer resultProducer;
+        final EJBClientInterceptorInformation[] chain = interceptorList.getInformation();
+        EJBReceiverInvocationContext.ResultProducer resultProducer;
         Throwable fail = null;
         final int idx = this.interceptorChainIndex;
         final Object lock = this.lock;
-        synchronized (lock) {
-            try {
-                if (idx == 0) {
-                    if (retry) {
-                        assert state == State.CONSUMING;
+        Waiter waiter = null;
+        for (;;) {
+            synchronized (lock) {
+                try {
+                    if (idx == 0 && ! retry && state == State.CONSUMING) {
+                        // another thread is consuming the result
+                        waiter = addWaiter(waiter);
                     } else {
-                        while (state == State.CONSUMING) try {
-                            checkStateInvariants();
-                            lock.wait();
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            throw Logs.MAIN.operationInterrupted();
-                        }
-                        if (state == State.DONE) {
-                            Supplier<? extends Throwable> pendingFailure = this.pendingFailure;
-                            if (pendingFailure != null) {
-                                fail = pendingFailure.get();
-                                if (fail == null) {
+                        removeWaiter(waiter);
+                        if (idx == 0) {
+                            if (retry) {
+                                assert state == State.CONSUMING;
+                            } else if (state == State.DONE) {
+                                Supplier<? extends Throwable> pendingFailure = this.pendingFailure;
+                                if (pendingFailure != null) {
+                                    fail = pendingFailure.get();
+                                    if (fail == null) {
+                                        return cachedResult;
+                                    }
+                                } else {
                                     return cachedResult;
                                 }
+                            } else if (state != State.READY) {
+                                throw Logs.MAIN.getResultCalledDuringWrongPhase();
                             } else {
-                                return cachedResult;
+                                transition(State.CONSUMING);
                             }
-                        } else if (state != State.READY) {
-                            throw Logs.MAIN.getResultCalledDuringWrongPhase();
-                        } else {
-                            transition(State.CONSUMING);
                         }
+                        resultProducer = this.resultProducer;
+                        break;
                     }
+                } finally {
+                    checkStateInvariants();
                 }
-                resultProducer = this.resultProducer;
-            } finally {
-                checkStateInvariants();
+            }
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                synchronized (lock) {
+                    removeWaiter(waiter);
+                }
+                Thread.currentThread().interrupt();
+                throw Logs.MAIN.operationInterrupted();
             }
         }
         if (fail != null) try {
@@ -577,6 +605,7 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
                         this.resultProducer = null;
                         checkStateInvariants();
                     }
+                    getClientContext().invocationSucceeded();
                 }
                 return result;
             } catch (Throwable t) {
@@ -638,10 +667,17 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
     }
 
     void resultReady(EJBReceiverInvocationContext.ResultProducer resultProducer) {
+        resultReady(resultProducer, null);
+    }
+
+    void resultReady(EJBReceiverInvocationContext.ResultProducer resultProducer, Executor resultExecutor) {
         Assert.checkNotNullParam("resultProducer", resultProducer);
         synchronized (lock) {
             if (state.isWaiting() && this.resultProducer == null) {
                 this.resultProducer = resultProducer;
+                if (resultExecutor != null) {
+                    this.resultExecutor = resultExecutor;
+                }
                 if (state == State.WAITING) {
                     transition(State.READY);
                 }
@@ -719,6 +755,30 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
         return new FutureResponse();
     }
 
+    /**
+     * Get a future which is completed with the outcome of this invocation without any thread having to wait for it.
+     * Once the result is ready it is consumed, and the future completed, by a task on the executor given by the
+     * receiver with the result (or the default asynchronous executor of {@link CompletableFuture} if it gave none),
+     * with the thread context class loader of the thread which first requested the future; consuming the result may
+     * have to wait for the rest of the response to arrive, so it must not happen on the thread which reported the result.
+     *
+     * @return the future (not {@code null})
+     */
+    CompletableFuture<Object> getCompletableResponse() {
+        final Object lock = this.lock;
+        assert !holdsLock(lock);
+        synchronized (lock) {
+            CompletableResponse response = completableResponse;
+            if (response == null) {
+                completableResponse = response = new CompletableResponse(getContextClassLoader());
+                if (state == State.READY || state == State.DONE) {
+                    response.schedule();
+                }
+            }
+            return response;
+        }
+    }
+
     void proceedAsynchronously() {
         if (getInvokedMethod().getReturnType() == void.class) {
             resultReady(EJBReceiverInvocationContext.ResultProducer.NULL);
@@ -731,7 +791,6 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
      * @param newState the state to transition to (must not be {@code null})
      */
     private void transition(State newState) {
-        final Object lock = this.lock;
         Assert.assertHoldsLock(lock);
         final State oldState = this.state;
         if (log.isTraceEnabled()) {
@@ -768,10 +827,14 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
             case READY:
             case DONE: {
                 this.remainingRetries = 0;
+                final CompletableResponse completableResponse = this.completableResponse;
+                if (completableResponse != null) {
+                    completableResponse.schedule();
+                }
                 // fall thru
             }
             case WAITING:{
-                lock.notifyAll();
+                wakeWaiters();
                 break;
             }
         }
@@ -779,6 +842,63 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
         this.state = newState;
     }
 
+    /**
+     * Register the current thread to be unparked on the next transition which waiting threads are interested in.
+     *
+     * @param waiter the waiter of the current thread, or {@code null} if it has none yet
+     * @return the waiter of the current thread
+     */
+    private Waiter addWaiter(Waiter waiter) {
+        Assert.assertHoldsLock(lock);
+        if (waiter == null) {
+            waiter = Waiter.current();
+        }
+        if (! waiter.queued) {
+            waiter.next = waiters;
+            waiters = waiter;
+            waiter.queued = true;
+        }
+        return waiter;
+    }
+
+    /**
+     * Deregister a waiter which is leaving without having been woken.
+     *
+     * @param waiter the waiter, or {@code null} if there is none
+     */
+    private void removeWaiter(Waiter waiter) {
+        Assert.assertHoldsLock(lock);
+        if (waiter == null || ! waiter.queued) {
+            return;
+        }
+        Waiter prev = null;
+        for (Waiter current = waiters; current != null; current = current.next) {
+            if (current == waiter) {
+                if (prev == null) {
+                    waiters = waiter.next;
+                } else {
+                    prev.next = waiter.next;
+                }
+                break;
+            }
+            prev = current;
+        }
+        waiter.next = null;
+        waiter.queued = false;
+    }
+
+    private void wakeWaiters() {
+        Waiter waiter = waiters;
+        waiters = null;
+        while (waiter != null) {
+            final Waiter next = waiter.next;
+            waiter.next = null;
+            waiter.queued = false;
+            LockSupport.unpark(waiter.thread);
+            waiter = next;
+        }
+    }
+
     /**
      * Check the invariants of the current state with assertions before the caller releases the lock.
      */
@@ -827,20 +947,26 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
     public boolean awaitCancellationResult() {
         final Object lock = this.lock;
         Assert.assertNotHoldsLock(lock);
-        synchronized (lock) {
-            for (;;) {
+        Waiter waiter = null;
+        for (;;) {
+            synchronized (lock) {
                 if (resultProducer == CANCELLED) {
+                    removeWaiter(waiter);
                     return true;
                 } else if (! state.isWaiting()) {
+                    removeWaiter(waiter);
                     return false;
                 }
-                try {
-                    checkStateInvariants();
-                    lock.wait();
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                    return false;
+                checkStateInvariants();
+                waiter = addWaiter(waiter);
+            }
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                synchronized (lock) {
+                    removeWaiter(waiter);
                 }
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
     }
@@ -851,36 +977,30 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
         try {
             final Object lock = this.lock;
             final long timeout = this.timeout;
-            synchronized (lock) {
-                try {
-                    out: for (;;) {
+            Waiter waiter = null;
+            try {
+                out: for (;;) {
+                    // zero to park without a timeout
+                    long parkNanos = 0L;
+                    synchronized (lock) {
                         switch (state) {
                             case SENDING:
                             case SENT:
                             case CONSUMING:
                             case WAITING: {
-                                if (timeout <= 0) {
-                                    // no timeout; lighter code path
-                                    try {
-                                        checkStateInvariants();
-                                        lock.wait();
-                                    } catch (InterruptedException e) {
-                                        intr = true;
-                                    }
-                                } else {
+                                if (timeout > 0 && ! timedOut) {
                                     // timeout in ms, elapsed time in nanosecs
                                     long remaining = max(0L, timeout * 1_000_000L - max(0L, System.nanoTime() - startTime));
                                     if (remaining == 0L) {
                                         // timed out
                                         timedOut = true;
                                         resultReady(new ThrowableResult(() -> new TimeoutException("No invocation response received in " + timeout + " milliseconds")));
-                                    } else try {
-                                        checkStateInvariants();
-                                        lock.wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
-                                    } catch (InterruptedException e) {
-                                        intr = true;
+                                        continue out;
                                     }
+                                    parkNanos = remaining;
                                 }
+                                checkStateInvariants();
+                                waiter = addWaiter(waiter);
                                 break;
                             }
                             case READY: {
@@ -906,9 +1026,22 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
                             }
                         }
                     }
-                } finally {
-                    blockingCaller = false;
+                    if (parkNanos == 0L) {
+                        LockSupport.park(this);
+                    } else {
+                        LockSupport.parkNanos(this, parkNanos);
+                    }
+                    if (Thread.interrupted()) {
+                        intr = true;
+                    }
+                }
+            } finally {
+                if (waiter != null && waiter.queued) {
+                    synchronized (lock) {
+                        removeWaiter(waiter);
+                    }
                 }
+                blockingCaller = false;
             }
             return getResult();
         } finally {
@@ -1003,6 +1136,15 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
         FutureResponse() {
         }
 
+        /**
+         * Get a completable future for the same invocation.
+         *
+         * @return the completable future (not {@code null})
+         */
+        CompletableFuture<Object> toCompletableFuture() {
+            return getCompletableResponse();
+        }
+
         public boolean cancel(final boolean mayInterruptIfRunning) {
             final Object lock = EJBClientInvocationContext.this.lock;
             assert !holdsLock(lock);
@@ -1077,35 +1219,48 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
                 return get();
             }
             long remaining = unit.toNanos(timeout);
-            synchronized (lock) {
+            Waiter waiter = null;
+            try {
                 out: for (;;) {
-                    switch (state) {
-                        case SENDING:
-                        case SENT:
-                        case CONSUMING:
-                        case WAITING: {
-                            checkStateInvariants();
-                            if (remaining <= 0L) {
-                                throw log.timedOut();
+                    synchronized (lock) {
+                        switch (state) {
+                            case SENDING:
+                            case SENT:
+                            case CONSUMING:
+                            case WAITING: {
+                                checkStateInvariants();
+                                if (remaining <= 0L) {
+                                    throw log.timedOut();
+                                }
+                                waiter = addWaiter(waiter);
+                                break;
                             }
-                            lock.wait(remaining / 1_000_000_000L, (int) (remaining % 1_000_000_000L));
-                            remaining = unit.toNanos(timeout) - (System.nanoTime() - ourStart);
-                            break;
-                        }
-                        case READY: {
-                            // we have to get the result, so break out of here.
-                            checkStateInvariants();
-                            break out;
-                        }
-                        case DONE: {
-                            checkStateInvariants();
-                            if (pendingFailure != null) {
-                                throw log.remoteInvFailed(pendingFailure.get());
+                            case READY: {
+                                // we have to get the result, so break out of here.
+                                checkStateInvariants();
+                                break out;
                             }
-                            return cachedResult;
+                            case DONE: {
+                                checkStateInvariants();
+                                if (pendingFailure != null) {
+                                    throw log.remoteInvFailed(pendingFailure.get());
+                                }
+                                return cachedResult;
+                            }
+                            default:
+                                throw new IllegalStateException();
                         }
-                        default:
-                            throw new IllegalStateException();
+                    }
+                    LockSupport.parkNanos(EJBClientInvocationContext.this, remaining);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    remaining = unit.toNanos(timeout) - (System.nanoTime() - ourStart);
+                }
+            } finally {
+                if (waiter != null && waiter.queued) {
+                    synchronized (lock) {
+                        removeWaiter(waiter);
                     }
                 }
             }
@@ -1120,6 +1275,118 @@ public final class EJBClientInvocationContext extends AbstractInvocationContext
         }
     }
 
+    final class CompletableResponse extends CompletableFuture<Object> {
+        // set while this future is consuming the result itself, so that the resulting transition does not schedule it again
+        private volatile boolean consuming;
+        // the context class loader of the invoking thread, which result unmarshalling resolves classes against
+        private final ClassLoader classLoader;
+
+        CompletableResponse(final ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * Arrange for the result to be consumed.  Called on each transition to {@code READY} or {@code DONE}, with the lock held.
+         */
+        void schedule() {
+            if (! consuming && ! isDone()) {
+                final Executor resultExecutor = EJBClientInvocationContext.this.resultExecutor;
+                if (resultExecutor == null) {
+                    CompletableFuture.runAsync(this::consumeWithClassLoader);
+                } else {
+                    resultExecutor.execute(this::consumeWithClassLoader);
+                }
+            }
+        }
+
+        private void consumeWithClassLoader() {
+            final ClassLoader old = setContextClassLoader(classLoader);
+            try {
+                consume();
+            } finally {
+                setContextClassLoader(old);
+            }
+        }
+
+        private void consume() {
+            if (isDone()) {
+                return;
+            }
+            synchronized (lock) {
+                if (state != State.READY && state != State.DONE) {
+                    // someone else got there first; we are scheduled again on the next transition
+                    return;
+                }
+            }
+            final Object result;
+            consuming = true;
+            try {
+                result = getResult();
+            } catch (Throwable t) {
+                consuming = false;
+                final boolean retry;
+                synchronized (lock) {
+                    retry = state == State.SENDING;
+                }
+                if (retry) {
+                    // an interceptor asked for the request to be sent again
+                    sendRequestInitial();
+                } else {
+                    completeExceptionally(t);
+                }
+                return;
+            }
+            consuming = false;
+            complete(result);
+        }
+
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (! new FutureResponse().cancel(mayInterruptIfRunning)) {
+                return false;
+            }
+            super.cancel(mayInterruptIfRunning);
+            return true;
+        }
+    }
+
+    private static ClassLoader getContextClassLoader() {
+        if (System.getSecurityManager() == null) {
+            return Thread.currentThread().getContextClassLoader();
+        }
+        return AccessController.doPrivileged((PrivilegedAction<ClassLoader>) () -> Thread.currentThread().getContextClassLoader());
+    }
+
+    private static ClassLoader setContextClassLoader(final ClassLoader classLoader) {
+        final Thread thread = Thread.currentThread();
+        if (System.getSecurityManager() == null) {
+            final ClassLoader old = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            return old;
+        }
+        return AccessController.doPrivileged((PrivilegedAction<ClassLoader>) () -> {
+            final ClassLoader old = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            return old;
+        });
+    }
+
+    static final class Waiter {
+        // a thread waits for one invocation at a time, and always dequeues its waiter before it moves on
+        private static final ThreadLocal<Waiter> CURRENT = ThreadLocal.withInitial(Waiter::new);
+
+        final Thread thread = Thread.currentThread();
+        // guarded by the lock; volatile so that a waiter can see that it was woken without taking the lock
+        volatile boolean queued;
+        Waiter next;
+
+        Waiter() {
+        }
+
+        static Waiter current() {
+            return CURRENT.get();
+        }
+    }
+
     static final class ThrowableResult implements EJBReceiverInvocationContext.ResultProducer {
         private final Supplier<? extends Throwable> pendingFailure;
 
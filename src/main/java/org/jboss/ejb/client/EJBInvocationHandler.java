@@ -25,6 +25,7 @@ import java.lang.reflect.Proxy;
 import java.rmi.RemoteException;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
@@ -158,15 +159,7 @@ final class EJBInvocationHandler<T> extends Attachable implements InvocationHand
         }
         // otherwise it's a business method
         assert methodInfo.getMethodType() == EJBProxyInformation.MT_BUSINESS;
-        final EJBClientContext clientContext = EJBClientContext.getCurrent();
-
-        if (Logs.INVOCATION.isDebugEnabled()) {
-            Logs.INVOCATION.debugf("Calling invoke(module = %s, strong affinity = %s, weak affinity = %s): ", locatorRef.get().getIdentifier(), locatorRef.get().getAffinity(), weakAffinity);
-        }
-        final EJBClientInvocationContext invocationContext = new EJBClientInvocationContext(this, clientContext, proxy, args, methodInfo, MAX_RETRIES, authenticationContextSupplier);
-        invocationContext.setLocator(locatorRef.get());
-        invocationContext.setBlockingCaller(true);
-        invocationContext.setWeakAffinity(getWeakAffinity());
+        final EJBClientInvocationContext invocationContext = createInvocationContext("invoke", proxy, methodInfo, true, args);
 
         try {
             // send the request
@@ -181,6 +174,8 @@ final class EJBInvocationHandler<T> extends Attachable implements InvocationHand
             // force async...
             if (method.getReturnType() == Future.class) {
                 return invocationContext.getFutureResponse();
+            } else if (methodInfo.isCompletionStage()) {
+                return invocationContext.getCompletableResponse();
             } else if (method.getReturnType() == void.class) {
                 invocationContext.setDiscardResult();
                 // Void return
@@ -208,6 +203,50 @@ final class EJBInvocationHandler<T> extends Attachable implements InvocationHand
         }
     }
 
+    Future<?> invokeBatched(final Object proxy, final EJBProxyInformation.ProxyMethodInfo methodInfo, final CompletableFuture<Void> batch, final Object... args) throws Exception {
+        if (methodInfo.getMethodType() != EJBProxyInformation.MT_BUSINESS) {
+            // answered locally
+            return CompletableFuture.completedFuture(invoke(proxy, methodInfo, args));
+        }
+        final EJBClientInvocationContext invocationContext = createInvocationContext("invokeBatched", proxy, methodInfo, false, args);
+        invocationContext.putAttachment(AttachmentKeys.INVOCATION_BATCH, batch);
+        invocationContext.sendRequestInitial();
+        return invocationContext.getFutureResponse();
+    }
+
+    CompletableFuture<?> invokeCompletable(final Object proxy, final EJBProxyInformation.ProxyMethodInfo methodInfo, final Object... args) throws Exception {
+        if (methodInfo.getMethodType() != EJBProxyInformation.MT_BUSINESS) {
+            // answered locally
+            return CompletableFuture.completedFuture(invoke(proxy, methodInfo, args));
+        }
+        final EJBClientInvocationContext invocationContext = createInvocationContext("invokeCompletable", proxy, methodInfo, false, args);
+        invocationContext.sendRequestInitial();
+        return invocationContext.getCompletableResponse();
+    }
+
+    /**
+     * Set up the invocation context of a business method invocation on the current EJB client context.
+     *
+     * @param operation the name of the calling operation, for the debug log
+     * @param proxy the invoked proxy
+     * @param methodInfo the invoked method
+     * @param blockingCaller {@code true} if the calling thread waits for the result
+     * @param args the invocation arguments
+     * @return the invocation context, ready to send
+     */
+    private EJBClientInvocationContext createInvocationContext(final String operation, final Object proxy, final EJBProxyInformation.ProxyMethodInfo methodInfo, final boolean blockingCaller, final Object[] args) {
+        final EJBClientContext clientContext = EJBClientContext.getCurrent();
+
+        if (Logs.INVOCATION.isDebugEnabled()) {
+            Logs.INVOCATION.debugf("Calling %s(module = %s, strong affinity = %s, weak affinity = %s): ", operation, locatorRef.get().getIdentifier(), locatorRef.get().getAffinity(), weakAffinity);
+        }
+        final EJBClientInvocationContext invocationContext = new EJBClientInvocationContext(this, clientContext, proxy, args, methodInfo, MAX_RETRIES, authenticationContextSupplier);
+        invocationContext.setLocator(locatorRef.get());
+        invocationContext.setBlockingCaller(blockingCaller);
+        invocationContext.setWeakAffinity(getWeakAffinity());
+        return invocationContext;
+    }
+
     void setWeakAffinity(Affinity newWeakAffinity) {
         weakAffinity = newWeakAffinity;
     }
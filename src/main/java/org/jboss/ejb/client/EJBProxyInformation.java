@@ -30,7 +30,10 @@ import java.security.PrivilegedAction;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
+import java.util.stream.Stream;
 import java.util.zip.Deflater;
 
 import javax.ejb.EJBHome;
@@ -103,7 +106,7 @@ final class EJBProxyInformation<T> {
                     // seems a likely match
                     try {
                         final Method method = (Method) declaredField.get(null);
-                        final boolean alwaysAsync = method.getReturnType() == Future.class;
+                        final boolean alwaysAsync = isFutureType(method.getReturnType());
                         final boolean idempotent = classIdempotent || ENABLE_SCANNING && method.getAnnotation(Idempotent.class) != null;
                         final boolean clientAsync = alwaysAsync || classAsync || ENABLE_SCANNING && method.getAnnotation(ClientAsynchronous.class) != null;
                         final CompressionHint compressionHint = ENABLE_SCANNING ? method.getAnnotation(CompressionHint.class) : null;
@@ -311,6 +314,7 @@ final class EJBProxyInformation<T> {
         final EJBMethodLocator methodLocator;
         final String signature;
         final boolean clientAsync;
+        final boolean streamingResult;
         final EJBClientContext.InterceptorList interceptors;
 
         ProxyMethodInfo(final int methodType, final int compressionLevel, final boolean compressRequest, final boolean compressResponse, final boolean idempotent, final ClientTransactionPolicy transactionPolicy, final Method method, final EJBMethodLocator methodLocator, final String signature, final boolean clientAsync, final EJBClientContext.InterceptorList interceptors) {
@@ -325,6 +329,8 @@ final class EJBProxyInformation<T> {
             this.signature = signature;
             this.clientAsync = clientAsync;
             this.interceptors = interceptors;
+            final Class<?> returnType = method.getReturnType();
+            streamingResult = returnType == Stream.class;
         }
 
         public int getMethodType() {
@@ -363,6 +369,10 @@ final class EJBProxyInformation<T> {
             return compressResponse;
         }
 
+        boolean isStreamingResult() {
+            return streamingResult;
+        }
+
         EJBMethodLocator getMethodLocator() {
             return methodLocator;
         }
@@ -373,7 +383,23 @@ final class EJBProxyInformation<T> {
 
         boolean isSynchronous() {
             final Class<?> returnType = method.getReturnType();
-            return returnType != void.class && returnType != Future.class;
+            return returnType != void.class && ! isFutureType(returnType);
+        }
+
+        boolean isCompletionStage() {
+            final Class<?> returnType = method.getReturnType();
+            return returnType == CompletionStage.class || returnType == CompletableFuture.class;
         }
     }
+
+    /**
+     * Determine whether a method return type is one through which the result of an invocation is delivered
+     * asynchronously.
+     *
+     * @param returnType the method return type
+     * @return {@code true} for {@link Future}, {@link CompletionStage} and {@link CompletableFuture}
+     */
+    static boolean isFutureType(final Class<?> returnType) {
+        return returnType == Future.class || returnType == CompletionStage.class || returnType == CompletableFuture.class;
+    }
 }
@@ -57,6 +57,18 @@ public final class EJBReceiverInvocationContext extends AbstractReceiverInvocati
         clientInvocationContext.resultReady(resultProducer);
     }
 
+    /**
+     * Indicate that the invocation result is ready.  If nobody is waiting for the result, it is consumed by a task
+     * on the given executor, which must not be the thread that delivers the rest of the response.
+     *
+     * @param resultProducer the result producer (must not be {@code null})
+     * @param resultExecutor the executor to use to consume the result (must not be {@code null})
+     */
+    public void resultReady(ResultProducer resultProducer, Executor resultExecutor) {
+        Assert.checkNotNullParam("resultExecutor", resultExecutor);
+        clientInvocationContext.resultReady(resultProducer, resultExecutor);
+    }
+
     /**
      * Indicate that the request was successfully cancelled and that no result is forthcoming.
      */
@@ -0,0 +1,156 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.jboss.remoting3.MessageOutputStream;
+
+/**
+ * A message output stream which compresses a message only once it grows beyond a size threshold.  Data is buffered
+ * until the threshold is crossed, at which point the compressed message header of the chosen codec is written to
+ * the underlying message, followed by the buffered and all subsequent data in compressed form.  A message which
+ * never reaches the threshold is written out unchanged when the stream is closed.
+ */
+final class AdaptiveCompressionOutputStream extends MessageOutputStream {
+
+    private static final int MIN_THRESHOLD_BITS = 7;
+    private static final int MAX_THRESHOLD_BITS = 21;
+
+    private final MessageOutputStream underlying;
+    private final CompressionCodec codec;
+    private final int level;
+    private final int threshold;
+    private byte[] buffer;
+    private int count;
+    private OutputStream compressed;
+    private boolean cancelled;
+
+    AdaptiveCompressionOutputStream(final MessageOutputStream underlying, final CompressionCodec codec, final int level, final int threshold) {
+        this.underlying = underlying;
+        this.codec = codec;
+        this.level = level;
+        this.threshold = threshold;
+        buffer = new byte[Math.min(threshold, 256)];
+    }
+
+    /**
+     * Encode a threshold into the {@link Protocol#COMPRESS_RESPONSE_THRESHOLD} bits of the invocation flags field.
+     * The threshold is rounded up to a power of two between 128 bytes and 2 MiB.
+     *
+     * @param threshold the threshold in bytes
+     * @return the encoded flag bits
+     */
+    static int encodeThreshold(final int threshold) {
+        final int bits = threshold <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(threshold - 1);
+        return (Math.max(MIN_THRESHOLD_BITS, Math.min(MAX_THRESHOLD_BITS, bits)) - 6) << Protocol.COMPRESS_RESPONSE_THRESHOLD_SHIFT;
+    }
+
+    /**
+     * Decode the threshold from an invocation flags field.
+     *
+     * @param flags the flags field
+     * @return the threshold in bytes, or -1 if the response is to be compressed unconditionally
+     */
+    static int decodeThreshold(final int flags) {
+        final int bits = (flags & Protocol.COMPRESS_RESPONSE_THRESHOLD) >>> Protocol.COMPRESS_RESPONSE_THRESHOLD_SHIFT;
+        return bits == 0 ? -1 : 1 << (bits + 6);
+    }
+
+    /**
+     * Determine whether the message has been switched to compressed form.
+     *
+     * @return {@code true} if the message is being compressed
+     */
+    boolean isCompressing() {
+        return compressed != null;
+    }
+
+    public void write(final int b) throws IOException {
+        if (compressed == null) {
+            if (count < threshold) {
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.min(threshold, count << 1));
+                }
+                buffer[count ++] = (byte) b;
+                return;
+            }
+            startCompressing();
+        }
+        compressed.write(b);
+    }
+
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (compressed == null) {
+            final int newCount = count + len;
+            if (newCount <= threshold) {
+                if (newCount > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.min(threshold, Math.max(newCount, count << 1)));
+                }
+                System.arraycopy(b, off, buffer, count, len);
+                count = newCount;
+                return;
+            }
+            startCompressing();
+        }
+        compressed.write(b, off, len);
+    }
+
+    private void startCompressing() throws IOException {
+        underlying.write(codec.getMessageId());
+        final OutputStream compressed = codec.compressing(underlying, level);
+        this.compressed = compressed;
+        compressed.write(buffer, 0, count);
+        buffer = null;
+    }
+
+    public void flush() throws IOException {
+        // buffered data is only written once the outcome is known
+        if (compressed != null) {
+            compressed.flush();
+        }
+    }
+
+    public void close() throws IOException {
+        final OutputStream compressed = this.compressed;
+        if (cancelled) {
+            safeClose(compressed);
+            underlying.close();
+        } else if (compressed != null) {
+            // also closes the underlying message
+            compressed.close();
+        } else {
+            final byte[] buffer = this.buffer;
+            if (buffer != null) {
+                this.buffer = null;
+                underlying.write(buffer, 0, count);
+            }
+            underlying.close();
+        }
+    }
+
+    public MessageOutputStream cancel() {
+        cancelled = true;
+        return underlying.cancel();
+    }
+}
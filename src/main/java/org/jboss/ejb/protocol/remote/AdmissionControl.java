@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.security.PrivilegedAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.ejb.client.EJBIdentifier;
+
+/**
+ * Limits on the number of invocations a server channel runs concurrently, both in total and for each EJB.  An
+ * invocation which would exceed a limit is turned away with a {@link Protocol#SERVER_BUSY} response instead of being
+ * queued, so that the client can retry it on another node.
+ */
+final class AdmissionControl {
+
+    /**
+     * The maximum number of concurrent invocations per channel, or 0 for no limit.
+     */
+    static final int MAX_CHANNEL_INVOCATIONS = getLimit("org.jboss.ejb.server.max-channel-invocations");
+
+    /**
+     * The maximum number of concurrent invocations of each EJB per channel, or 0 for no limit.
+     */
+    static final int MAX_EJB_INVOCATIONS = getLimit("org.jboss.ejb.server.max-ejb-invocations");
+
+    private final int maxChannelInvocations;
+    private final int maxEJBInvocations;
+    private final AtomicInteger channelInvocations = new AtomicInteger();
+    private final ConcurrentHashMap<EJBIdentifier, AtomicInteger> ejbInvocations = new ConcurrentHashMap<>();
+
+    AdmissionControl(final int maxChannelInvocations, final int maxEJBInvocations) {
+        this.maxChannelInvocations = maxChannelInvocations;
+        this.maxEJBInvocations = maxEJBInvocations;
+    }
+
+    private static int getLimit(final String propertyName) {
+        return doPrivileged((PrivilegedAction<Integer>) () -> {
+            String val = System.getProperty(propertyName);
+            try {
+                return Integer.valueOf(Math.max(0, Integer.parseInt(val)));
+            } catch (NumberFormatException e) {
+                return Integer.valueOf(0);
+            }
+        }).intValue();
+    }
+
+    /**
+     * Determine whether any limit is configured.
+     *
+     * @return {@code true} if there is a limit to enforce
+     */
+    static boolean isConfigured() {
+        return MAX_CHANNEL_INVOCATIONS > 0 || MAX_EJB_INVOCATIONS > 0;
+    }
+
+    /**
+     * Try to admit an invocation.  An admitted invocation must be {@linkplain #release(EJBIdentifier) released} once
+     * it is complete.
+     *
+     * @param identifier the identifier of the invoked EJB
+     * @return {@code true} if the invocation is admitted, {@code false} if a limit has been reached
+     */
+    boolean tryAcquire(final EJBIdentifier identifier) {
+        if (! tryIncrement(channelInvocations, maxChannelInvocations)) {
+            return false;
+        }
+        if (maxEJBInvocations > 0 && ! tryAcquireEJB(identifier)) {
+            channelInvocations.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean tryAcquireEJB(final EJBIdentifier identifier) {
+        for (;;) {
+            final AtomicInteger counter = ejbInvocations.computeIfAbsent(identifier, ignored -> new AtomicInteger());
+            if (! tryIncrement(counter, maxEJBInvocations)) {
+                return false;
+            }
+            if (ejbInvocations.get(identifier) == counter) {
+                return true;
+            }
+            // the counter dropped to zero and was removed before we got to it; start over with a new one
+            counter.decrementAndGet();
+        }
+    }
+
+    /**
+     * Release an admitted invocation.
+     *
+     * @param identifier the identifier of the invoked EJB
+     */
+    void release(final EJBIdentifier identifier) {
+        channelInvocations.decrementAndGet();
+        if (maxEJBInvocations > 0) {
+            // drop the counter of an idle EJB, so that the map only holds the EJBs which are being invoked
+            ejbInvocations.computeIfPresent(identifier, (ignored, counter) -> counter.decrementAndGet() == 0 ? null : counter);
+        }
+    }
+
+    /**
+     * Get the number of admitted invocations which are not yet complete.
+     *
+     * @return the number of running invocations
+     */
+    int getChannelInvocations() {
+        return channelInvocations.get();
+    }
+
+    /**
+     * Get the number of EJBs which have admitted invocations that are not yet complete.
+     *
+     * @return the number of EJBs being invoked
+     */
+    int getInvokedEJBs() {
+        return ejbInvocations.size();
+    }
+
+    private static boolean tryIncrement(final AtomicInteger counter, final int max) {
+        int oldVal;
+        do {
+            oldVal = counter.get();
+            if (max > 0 && oldVal >= max) {
+                return false;
+            }
+        } while (! counter.compareAndSet(oldVal, oldVal + 1));
+        return true;
+    }
+}
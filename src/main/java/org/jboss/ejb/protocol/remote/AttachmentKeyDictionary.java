@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jboss.ejb.client.Affinity;
+import org.jboss.ejb.client.EJBClient;
+import org.jboss.ejb.client.EJBClientInvocationContext;
+import org.jboss.ejb.client.TransactionID;
+
+/**
+ * Support for the {@link Protocol#EXTENSION_ATTACHMENT_KEYS attachment keys} protocol extension.  Each attachment key
+ * of an invocation request or response is written as a packed integer code instead of a string object:
+ * <ul>
+ *     <li>{@code 0} is followed by the key as a string object;</li>
+ *     <li>{@code 1} is followed by a packed dictionary index and the key as a string object, and defines the key for
+ *     the index (client to server only);</li>
+ *     <li>any other code refers to an entry, the first of which are the well-known keys of this class, followed by
+ *     the entries of the channel dictionary.</li>
+ * </ul>
+ * The client assigns the dictionary indexes.  Since requests may be read out of order, the client keeps sending the
+ * definition of an entry until a successful response to a request which defined it shows that the server has read
+ * the definition; the server may refer to any entry it has read in its responses.
+ */
+final class AttachmentKeyDictionary {
+
+    private static final int LITERAL = 0;
+    private static final int DEFINITION = 1;
+    private static final int FIRST_REFERENCE = 2;
+
+    private static final String[] WELL_KNOWN_KEYS = {
+        Affinity.WEAK_AFFINITY_CONTEXT_KEY,
+        EJBClient.SOURCE_ADDRESS_KEY,
+        EJBClientInvocationContext.PRIVATE_ATTACHMENTS_KEY,
+        TransactionID.PRIVATE_DATA_KEY,
+    };
+    private static final int FIRST_ENTRY = FIRST_REFERENCE + WELL_KNOWN_KEYS.length;
+    private static final Map<String, Integer> WELL_KNOWN_CODES;
+
+    static {
+        final Map<String, Integer> codes = new HashMap<>();
+        for (int i = 0; i < WELL_KNOWN_KEYS.length; i ++) {
+            codes.put(WELL_KNOWN_KEYS[i], Integer.valueOf(FIRST_REFERENCE + i));
+        }
+        WELL_KNOWN_CODES = codes;
+    }
+
+    /**
+     * The maximum number of entries of a channel dictionary; further keys are always sent as strings.
+     */
+    static final int MAX_ENTRIES = 1024;
+
+    private final boolean assigning;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> keys = new AtomicReferenceArray<>(MAX_ENTRIES);
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param assigning {@code true} for the client side, which assigns the entries, or {@code false} for the server
+     *      side, which learns them
+     */
+    AttachmentKeyDictionary(final boolean assigning) {
+        this.assigning = assigning;
+    }
+
+    /**
+     * Write an attachment key.
+     *
+     * @param output the output to write to
+     * @param key the attachment key
+     * @return the entry which was defined by this write and must be {@linkplain Entry#confirm() confirmed} once the
+     *      peer is known to have read the message, or {@code null} if there is none
+     * @throws IOException if the write fails
+     */
+    Entry writeKey(final ObjectOutput output, final String key) throws IOException {
+        final Integer wellKnown = WELL_KNOWN_CODES.get(key);
+        if (wellKnown != null) {
+            PackedInteger.writePackedInteger(output, wellKnown.intValue());
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null && assigning) {
+            entry = entries.computeIfAbsent(key, this::assign);
+        }
+        if (entry == null) {
+            PackedInteger.writePackedInteger(output, LITERAL);
+            output.writeObject(key);
+            return null;
+        } else if (entry.confirmed) {
+            PackedInteger.writePackedInteger(output, FIRST_ENTRY + entry.index);
+            return null;
+        } else {
+            PackedInteger.writePackedInteger(output, DEFINITION);
+            PackedInteger.writePackedInteger(output, entry.index);
+            output.writeObject(key);
+            return entry;
+        }
+    }
+
+    private Entry assign(final String key) {
+        int index;
+        do {
+            index = nextIndex.get();
+            if (index == MAX_ENTRIES) {
+                return null;
+            }
+        } while (! nextIndex.compareAndSet(index, index + 1));
+        keys.set(index, key);
+        return new Entry(index, false);
+    }
+
+    /**
+     * Read an attachment key.
+     *
+     * @param input the input to read from
+     * @return the attachment key
+     * @throws IOException if the read fails or the key is not valid
+     * @throws ClassNotFoundException if the key object cannot be read
+     */
+    String readKey(final ObjectInput input) throws IOException, ClassNotFoundException {
+        final int code = PackedInteger.readPackedInteger(input);
+        if (code == LITERAL) {
+            return readString(input);
+        } else if (code == DEFINITION) {
+            if (assigning) {
+                throw new StreamCorruptedException("Unexpected attachment key definition");
+            }
+            final int index = PackedInteger.readPackedInteger(input);
+            final String key = readString(input);
+            if (index < 0 || index >= MAX_ENTRIES) {
+                throw new StreamCorruptedException("Invalid attachment key index " + index);
+            }
+            keys.set(index, key);
+            entries.putIfAbsent(key, new Entry(index, true));
+            return key;
+        } else if (code < FIRST_ENTRY) {
+            return WELL_KNOWN_KEYS[code - FIRST_REFERENCE];
+        } else {
+            final int index = code - FIRST_ENTRY;
+            final String key = index < MAX_ENTRIES ? keys.get(index) : null;
+            if (key == null) {
+                throw new StreamCorruptedException("Unknown attachment key index " + index);
+            }
+            return key;
+        }
+    }
+
+    private static String readString(final ObjectInput input) throws IOException, ClassNotFoundException {
+        final Object key = input.readObject();
+        if (! (key instanceof String)) {
+            throw new StreamCorruptedException("Invalid attachment key");
+        }
+        return (String) key;
+    }
+
+    static final class Entry {
+        final int index;
+        volatile boolean confirmed;
+
+        Entry(final int index, final boolean confirmed) {
+            this.index = index;
+            this.confirmed = confirmed;
+        }
+
+        /**
+         * Record that the peer has read the definition of this entry, so that it can be referred to from now on.
+         */
+        void confirm() {
+            confirmed = true;
+        }
+    }
+}
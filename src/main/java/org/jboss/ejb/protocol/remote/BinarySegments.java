@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.Unmarshaller;
+
+/**
+ * Support for the {@link Protocol#EXTENSION_BINARY_SEGMENTS binary segments} protocol extension.  Top-level
+ * {@code byte[]} and {@link ByteBuffer} parameters and return values which are large enough are left out of the
+ * object graph; instead, once the graph is complete, each is sent as a raw segment consisting of a four byte length
+ * followed by the content.  The sender flushes the marshaller and writes the content straight to the message
+ * stream.  The receiver reads the content through the unmarshaller's data input (which may already hold the start
+ * of the segment in its buffer), which hands large reads straight to the message stream.
+ * <p>
+ * The receiver cannot read the message stream itself: the unmarshaller reads ahead, and there is no way to find out
+ * how much of the segment it has already buffered or to take those bytes back.  {@code readFully} copies out just
+ * that buffered part and then reads the rest from the message stream directly into the destination array, so going
+ * through the unmarshaller costs at most one buffer's worth of copying.
+ */
+final class BinarySegments {
+
+    static final int NONE = 0;
+    static final int BYTE_ARRAY = 1;
+    static final int BYTE_BUFFER = 2;
+
+    /**
+     * The smallest value which is sent as a segment; smaller values are cheaper to send inline.
+     */
+    static final int MIN_SEGMENT_SIZE = 8192;
+
+    private static final int COPY_SIZE = 8192;
+
+    /**
+     * The most memory which is allocated for a segment before its content has arrived; the length of a segment is
+     * chosen by the peer, so larger segments grow as they are read instead.
+     */
+    static final int MAX_INITIAL_ALLOCATION = 1 << 20;
+
+    private BinarySegments() {
+    }
+
+    /**
+     * Get the kind of segment the given value would be sent as.
+     *
+     * @param value the parameter or return value
+     * @return {@link #BYTE_ARRAY}, {@link #BYTE_BUFFER}, or {@link #NONE} if the value is sent inline
+     */
+    static int kindOf(final Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length >= MIN_SEGMENT_SIZE ? BYTE_ARRAY : NONE;
+        } else if (value instanceof ByteBuffer) {
+            // byte buffers are not serializable so they are always sent as segments
+            return BYTE_BUFFER;
+        } else {
+            return NONE;
+        }
+    }
+
+    /**
+     * Write a segment.  The segment is written after the marshaller's buffered data, directly to the stream the
+     * marshaller was started on.
+     *
+     * @param marshaller the marshaller
+     * @param out the stream the marshaller writes to
+     * @param value the value, which must be of a kind other than {@link #NONE}
+     * @throws IOException if the write fails
+     */
+    static void writeSegment(final Marshaller marshaller, final OutputStream out, final Object value) throws IOException {
+        if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            marshaller.writeInt(bytes.length);
+            marshaller.flush();
+            out.write(bytes);
+        } else {
+            // do not disturb the caller's position and limit
+            final ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            final int length = buffer.remaining();
+            marshaller.writeInt(length);
+            marshaller.flush();
+            if (buffer.hasArray()) {
+                out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            } else {
+                final byte[] chunk = new byte[Math.min(length, COPY_SIZE)];
+                while (buffer.hasRemaining()) {
+                    final int cnt = Math.min(buffer.remaining(), chunk.length);
+                    buffer.get(chunk, 0, cnt);
+                    out.write(chunk, 0, cnt);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a segment.  Up to {@link #MAX_INITIAL_ALLOCATION} bytes are allocated at first; a longer segment is read
+     * into an array which doubles in size as its content arrives.
+     *
+     * @param unmarshaller the unmarshaller
+     * @param kind the segment kind
+     * @return the {@code byte[]} or {@link ByteBuffer}
+     * @throws IOException if the read fails
+     */
+    static Object readSegment(final Unmarshaller unmarshaller, final int kind) throws IOException {
+        final int length = unmarshaller.readInt();
+        if (length < 0) {
+            throw new StreamCorruptedException("Invalid binary segment length " + length);
+        }
+        byte[] bytes = new byte[Math.min(length, MAX_INITIAL_ALLOCATION)];
+        int pos = 0;
+        for (;;) {
+            unmarshaller.readFully(bytes, pos, bytes.length - pos);
+            pos = bytes.length;
+            if (pos == length) {
+                break;
+            }
+            bytes = Arrays.copyOf(bytes, (int) Math.min(length, (long) pos << 1));
+        }
+        return kind == BYTE_BUFFER ? ByteBuffer.wrap(bytes) : bytes;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.remoting3.MessageOutputStream;
+
+/**
+ * A cache of the most recently encoded message of one kind of server broadcast, such as a cluster topology or module
+ * availability update.  The server delivers each such event to every connected channel; with the cache, the event
+ * is encoded only once and the encoded message is copied to each channel.  A copy of the content of the cached message
+ * is compared with the content of each new event, so a content list which is changed or reused between events is
+ * never matched to a stale message.
+ *
+ * @param <T> the content element type
+ */
+final class BroadcastCache<T> {
+
+    private final Encoder<T> encoder;
+    private volatile Entry<T> last;
+
+    BroadcastCache(final Encoder<T> encoder) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * Get the encoded message for the given content.  The returned message must not be modified.
+     *
+     * @param content the message content
+     * @return the encoded message
+     * @throws IOException if encoding the message failed
+     */
+    ByteArrayMessageOutputStream getMessage(final List<T> content) throws IOException {
+        final Entry<T> last = this.last;
+        if (last != null && last.content.equals(content)) {
+            return last.message;
+        }
+        final List<T> snapshot = new ArrayList<>(content);
+        final ByteArrayMessageOutputStream message = new ByteArrayMessageOutputStream();
+        encoder.encode(message, snapshot);
+        this.last = new Entry<>(snapshot, message);
+        return message;
+    }
+
+    /**
+     * An encoder for a broadcast message, including its message ID.
+     *
+     * @param <T> the content element type
+     */
+    @FunctionalInterface
+    interface Encoder<T> {
+        void encode(MessageOutputStream os, List<T> content) throws IOException;
+    }
+
+    static final class Entry<T> {
+        final List<T> content;
+        final ByteArrayMessageOutputStream message;
+
+        Entry(final List<T> content, final ByteArrayMessageOutputStream message) {
+            this.content = content;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.jboss.remoting3.MessageOutputStream;
+
+/**
+ * A message output stream which collects a message in memory so that it can be sent later, for example as one of the
+ * requests of an {@link Protocol#INVOCATION_BATCH_REQUEST invocation batch}.  Instances are not thread-safe.
+ */
+final class ByteArrayMessageOutputStream extends MessageOutputStream {
+
+    private byte[] buffer = new byte[256];
+    private int count;
+
+    public void write(final int b) {
+        if (count == buffer.length) {
+            buffer = Arrays.copyOf(buffer, count << 1);
+        }
+        buffer[count ++] = (byte) b;
+    }
+
+    public void write(final byte[] b, final int off, final int len) {
+        final int newCount = count + len;
+        if (newCount > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(newCount, buffer.length << 1));
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count = newCount;
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+
+    public MessageOutputStream cancel() {
+        count = 0;
+        return this;
+    }
+
+    /**
+     * Get the number of bytes written so far.
+     *
+     * @return the number of bytes
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Write the collected message to the given stream.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the write fails
+     */
+    void writeTo(final OutputStream out) throws IOException {
+        out.write(buffer, 0, count);
+    }
+}
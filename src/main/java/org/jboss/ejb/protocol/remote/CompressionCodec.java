@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The codecs which may be used for compressed invocation messages.  Deflate is always available; other codecs are
+ * only used once the corresponding protocol extension has been agreed in the channel greeting.
+ */
+enum CompressionCodec {
+    DEFLATE("deflate", Protocol.COMPRESSED_INVOCATION_MESSAGE) {
+        OutputStream compressing(final OutputStream out, final int level) {
+            return CompressionCodecPool.INSTANCE.deflating(out, level);
+        }
+
+        InputStream decompressing(final InputStream in) {
+            return CompressionCodecPool.INSTANCE.inflating(in);
+        }
+    },
+    LZ4(Protocol.EXTENSION_LZ4, Protocol.COMPRESSED_LZ4_INVOCATION_MESSAGE) {
+        OutputStream compressing(final OutputStream out, final int level) {
+            // LZ4 has no levels to speak of
+            return new LZ4BlockOutputStream(out);
+        }
+
+        InputStream decompressing(final InputStream in) {
+            return new LZ4BlockInputStream(in);
+        }
+    },
+    ;
+
+    private final String name;
+    private final int messageId;
+
+    CompressionCodec(final String name, final int messageId) {
+        this.name = name;
+        this.messageId = messageId;
+    }
+
+    /**
+     * Get the name of this codec, which is also the name of its protocol extension.
+     *
+     * @return the codec name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the message ID which introduces a message compressed with this codec.
+     *
+     * @return the message ID
+     */
+    int getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * Wrap the given stream with a compressing stream.  Closing the returned stream closes the given stream.
+     *
+     * @param out the stream to write compressed data to
+     * @param level the deflate compression level, which may be ignored by other codecs
+     * @return the compressing stream
+     */
+    abstract OutputStream compressing(OutputStream out, int level);
+
+    /**
+     * Wrap the given stream with a decompressing stream.  Closing the returned stream closes the given stream.
+     *
+     * @param in the stream to read compressed data from
+     * @return the decompressing stream
+     */
+    abstract InputStream decompressing(InputStream in);
+
+    /**
+     * Get the codec with the given greeting name.
+     *
+     * @param name the codec name
+     * @return the codec, or {@code null} if it is not known
+     */
+    static CompressionCodec forName(final String name) {
+        for (CompressionCodec codec : values()) {
+            if (codec.name.equals(name)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the codec for the given compressed message ID.
+     *
+     * @param messageId the message ID
+     * @return the codec, or {@code null} if the message ID is not a compressed message
+     */
+    static CompressionCodec forMessageId(final int messageId) {
+        switch (messageId) {
+            case Protocol.COMPRESSED_INVOCATION_MESSAGE: return DEFLATE;
+            case Protocol.COMPRESSED_LZ4_INVOCATION_MESSAGE: return LZ4;
+            default: return null;
+        }
+    }
+}
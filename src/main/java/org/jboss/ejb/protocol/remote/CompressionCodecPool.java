@@ -0,0 +1,176 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.PrivilegedAction;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.wildfly.common.Assert;
+
+/**
+ * A bounded pool of zlib codecs used for {@link Protocol#COMPRESSED_INVOCATION_MESSAGE compressed messages}.
+ * Deflaters are pooled separately for each compression level.  A codec is reset and handed back to the pool as soon
+ * as the stream using it is closed; codecs which do not fit back into the pool are {@code end()}ed immediately so
+ * that their native memory is released without waiting for finalization.  The hit and miss counters of the shared
+ * instance can be read through {@link CompressionCodecPoolMXBean}.
+ */
+final class CompressionCodecPool implements CompressionCodecPoolMXBean {
+
+    static final CompressionCodecPool INSTANCE = new CompressionCodecPool(doPrivileged((PrivilegedAction<Integer>) () -> {
+        String val = System.getProperty("org.jboss.ejb.client.compression.pool-size");
+        try {
+            return Integer.valueOf(val);
+        } catch (NumberFormatException e) {
+            return 16;
+        }
+    }).intValue());
+
+    static {
+        PlatformMBeans.register(PlatformMBeans.DOMAIN + ":type=CompressionCodecPool", INSTANCE);
+    }
+
+    private static final int MIN_LEVEL = Deflater.DEFAULT_COMPRESSION;
+    private static final int MAX_LEVEL = Deflater.BEST_COMPRESSION;
+
+    private final ArrayBlockingQueue<Deflater>[] deflaters;
+    private final ArrayBlockingQueue<Inflater> inflaters;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    CompressionCodecPool(final int maxPerLevel) {
+        final int capacity = Math.max(1, maxPerLevel);
+        deflaters = new ArrayBlockingQueue[MAX_LEVEL - MIN_LEVEL + 1];
+        for (int i = 0; i < deflaters.length; i ++) {
+            deflaters[i] = new ArrayBlockingQueue<>(capacity);
+        }
+        inflaters = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Wrap the given stream with a compressing stream.  Closing the returned stream finishes the compressed data
+     * and returns the deflater to this pool.
+     *
+     * @param out the stream to write compressed data to
+     * @param level the compression level ({@link Deflater#DEFAULT_COMPRESSION} or 0 through 9)
+     * @return the compressing stream
+     */
+    DeflaterOutputStream deflating(final OutputStream out, final int level) {
+        Assert.checkMinimumParameter("level", MIN_LEVEL, level);
+        Assert.checkMaximumParameter("level", MAX_LEVEL, level);
+        Deflater deflater = deflaters[level - MIN_LEVEL].poll();
+        if (deflater == null) {
+            misses.increment();
+            deflater = new Deflater(level);
+        } else {
+            hits.increment();
+        }
+        return new PooledDeflaterOutputStream(out, deflater, level);
+    }
+
+    /**
+     * Wrap the given stream with a decompressing stream.  Closing the returned stream closes the given stream and
+     * returns the inflater to this pool.
+     *
+     * @param in the stream to read compressed data from
+     * @return the decompressing stream
+     */
+    InflaterInputStream inflating(final InputStream in) {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            misses.increment();
+            inflater = new Inflater();
+        } else {
+            hits.increment();
+        }
+        return new PooledInflaterInputStream(in, inflater);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    void returnDeflater(final Deflater deflater, final int level) {
+        deflater.reset();
+        if (! deflaters[level - MIN_LEVEL].offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    void returnInflater(final Inflater inflater) {
+        inflater.reset();
+        if (! inflaters.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    final class PooledDeflaterOutputStream extends DeflaterOutputStream {
+        private final int level;
+        private boolean returned;
+
+        PooledDeflaterOutputStream(final OutputStream out, final Deflater deflater, final int level) {
+            super(out, deflater);
+            this.level = level;
+        }
+
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (! returned) {
+                    returned = true;
+                    returnDeflater(def, level);
+                }
+            }
+        }
+    }
+
+    final class PooledInflaterInputStream extends InflaterInputStream {
+        private boolean returned;
+
+        PooledInflaterInputStream(final InputStream in, final Inflater inflater) {
+            super(in, inflater);
+        }
+
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (! returned) {
+                    returned = true;
+                    returnInflater(inf);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+/**
+ * The management interface of the pool of zlib codecs which compressed invocation messages use.  It is registered
+ * with the platform MBean server as {@code org.jboss.ejb.client:type=CompressionCodecPool}.
+ */
+public interface CompressionCodecPoolMXBean {
+
+    /**
+     * Get the number of times a codec was served from the pool.
+     *
+     * @return the hit count
+     */
+    long getHitCount();
+
+    /**
+     * Get the number of times a new codec had to be created because none was pooled.
+     *
+     * @return the miss count
+     */
+    long getMissCount();
+}
@@ -35,4 +35,6 @@ interface DiscoveredNodeRegistry {
     void removeNode(String clusterName, String nodeName);
 
     void removeCluster(String clusterName);
+
+    void topologyChanged();
 }
@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The book-keeping for the connection attempts of a single discovery.  At most {@code maxConcurrent} attempts are
+ * started at once and the rest wait for a slot; a phase of the discovery is finished once every attempt submitted
+ * during it has finished and the submitter has {@linkplain #countDown() counted down} its own share.  The discovery
+ * is completed exactly once, whether by the end of a phase or early by a caller of {@link #complete()}.
+ *
+ * @param <T> the connection attempt type
+ */
+final class DiscoveryConnectTracker<T> {
+    private final int maxConcurrent;
+    private final Consumer<? super T> starter;
+    private final Runnable phaseFinished;
+    private final AtomicInteger outstandingCount = new AtomicInteger(1); // this is '1' so that we don't finish until all connections are searched
+    private final AtomicBoolean completed = new AtomicBoolean();
+    // attempts waiting for one of the slots
+    private final ArrayDeque<T> pending = new ArrayDeque<>();
+    private int inFlight; // guarded by pending
+
+    /**
+     * Construct a new instance.
+     *
+     * @param maxConcurrent the maximum number of attempts in progress at once, or 0 or less for no limit
+     * @param starter the action which starts an attempt once it holds a slot
+     * @param phaseFinished the action to run when the outstanding count of a phase drops to zero
+     */
+    DiscoveryConnectTracker(final int maxConcurrent, final Consumer<? super T> starter, final Runnable phaseFinished) {
+        this.maxConcurrent = maxConcurrent;
+        this.starter = starter;
+        this.phaseFinished = phaseFinished;
+    }
+
+    /**
+     * Submit an attempt, starting it now if a slot is free.  The attempt must report back through
+     * {@link #finished()} once it has been started and is done.
+     *
+     * @param attempt the attempt
+     */
+    void submit(final T attempt) {
+        outstandingCount.getAndIncrement();
+        synchronized (pending) {
+            if (maxConcurrent > 0 && inFlight >= maxConcurrent) {
+                pending.add(attempt);
+                return;
+            }
+            inFlight ++;
+        }
+        starter.accept(attempt);
+    }
+
+    /**
+     * Report that a started attempt is done.  Its slot is handed to the next waiting attempt, unless the discovery
+     * is already complete.
+     */
+    void finished() {
+        T next;
+        synchronized (pending) {
+            next = completed.get() ? null : pending.poll();
+            if (next == null) {
+                inFlight --;
+            }
+        }
+        if (next != null) {
+            starter.accept(next);
+        }
+        countDown();
+    }
+
+    /**
+     * Drop every attempt which is still waiting for a slot; attempts in progress are unaffected.
+     */
+    void abandonPending() {
+        final int count;
+        synchronized (pending) {
+            count = pending.size();
+            pending.clear();
+        }
+        for (int i = 0; i < count; i ++) {
+            countDown();
+        }
+    }
+
+    void countDown() {
+        if (outstandingCount.decrementAndGet() == 0) {
+            phaseFinished.run();
+        }
+    }
+
+    /**
+     * Mark the discovery as complete.
+     *
+     * @return {@code true} if this call completed the discovery, {@code false} if it was already complete
+     */
+    boolean complete() {
+        return completed.compareAndSet(false, true);
+    }
+
+    boolean isComplete() {
+        return completed.get();
+    }
+
+    /**
+     * Begin a new phase after the previous one has finished without results.  The caller holds the new phase's
+     * share of the outstanding count and must {@linkplain #countDown() count it down} once it has submitted the
+     * attempts of the phase.
+     */
+    void reopen() {
+        // no attempts are outstanding, so nothing can complete concurrently
+        completed.set(false);
+        outstandingCount.incrementAndGet();
+    }
+
+    int getInFlight() {
+        synchronized (pending) {
+            return inFlight;
+        }
+    }
+
+    int getPending() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+}
@@ -19,36 +19,49 @@
 package org.jboss.ejb.protocol.remote;
 
 import static java.lang.Math.min;
+import static java.security.AccessController.doPrivileged;
 import static org.xnio.Bits.allAreClear;
 import static org.xnio.Bits.allAreSet;
 import static org.xnio.IoUtils.safeClose;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
+import java.util.stream.StreamSupport;
 
 import javax.ejb.CreateException;
 import javax.ejb.EJBException;
 import javax.ejb.NoSuchEJBException;
+import javax.management.ObjectName;
 import javax.transaction.InvalidTransactionException;
 import javax.transaction.RollbackException;
 import javax.transaction.SystemException;
@@ -62,6 +75,7 @@ import org.jboss.ejb.client.AttachmentKey;
 import org.jboss.ejb.client.AttachmentKeys;
 import org.jboss.ejb.client.ClusterAffinity;
 import org.jboss.ejb.client.EJBClient;
+import org.jboss.ejb.client.EJBClientContext;
 import org.jboss.ejb.client.EJBClientInvocationContext;
 import org.jboss.ejb.client.EJBLocator;
 import org.jboss.ejb.client.EJBModuleIdentifier;
@@ -103,34 +117,73 @@ import org.wildfly.transaction.client.provider.remoting.SimpleIdResolver;
 import org.xnio.Cancellable;
 import org.xnio.FutureResult;
 import org.xnio.IoFuture;
+import org.xnio.XnioWorker;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  * @author <a href="mailto:tadamski@redhat.com">Tomasz Adamski</a>
  */
 @SuppressWarnings("deprecation")
-class EJBClientChannel {
+class EJBClientChannel implements EJBClientChannelMXBean {
+
+    private static final AtomicInteger channelIds = new AtomicInteger();
 
     private final MarshallerFactory marshallerFactory;
 
+    private static final Set<String> EXTENSIONS;
+
+    static {
+        final Set<String> extensions = new HashSet<>();
+        if (doPrivileged((PrivilegedAction<Boolean>) () -> Boolean.valueOf(System.getProperty("org.jboss.ejb.client.compression.lz4", "true"))).booleanValue()) {
+            extensions.add(Protocol.EXTENSION_LZ4);
+        }
+        extensions.add(Protocol.EXTENSION_BINARY_SEGMENTS);
+        extensions.add(Protocol.EXTENSION_STREAMING_RESULTS);
+        extensions.add(Protocol.EXTENSION_INVOCATION_BATCH);
+        extensions.add(Protocol.EXTENSION_SERVER_BUSY);
+        extensions.add(Protocol.EXTENSION_ATTACHMENT_KEYS);
+        extensions.add(Protocol.EXTENSION_INVOCATION_TARGETS);
+        EXTENSIONS = Collections.unmodifiableSet(extensions);
+    }
+
     private final Channel channel;
     private final int version;
+    private final CompressionCodec compressionCodec;
+    private final boolean binarySegments;
+    private final boolean invocationBatches;
+    private final MessageCoalescer<BatchedRequest> requestCoalescer;
+    private final AttachmentKeyDictionary attachmentKeys;
+    private final InvocationTargetTable invocationTargets;
     private final DiscoveredNodeRegistry discoveredNodeRegistry;
 
     private final InvocationTracker invocationTracker;
 
     private final MarshallingConfiguration configuration;
+    private final MarshallerPool marshallerPool;
+    private final Map<CompletableFuture<Void>, List<BatchedRequest>> pendingBatches = new HashMap<>();
     private final IntIndexMap<UserTransactionID> userTxnIds = new IntIndexHashMap<UserTransactionID>(UserTransactionID::getId);
 
     private final RemoteTransactionContext transactionContext;
     private final AtomicInteger finishedParts = new AtomicInteger(0);
+    private final AtomicInteger inFlightInvocations = new AtomicInteger();
+    private final AtomicInteger peakInFlightInvocations = new AtomicInteger();
+    private final AtomicLong batchRequestsSent = new AtomicLong();
+    private final int maxOutboundMessages;
     private final AtomicReference<FutureResult<EJBClientChannel>> futureResultRef;
+    // an additional channel of its connection, which leaves module availability and topology to the primary channel
+    private final boolean stripe;
 
     private final RetryExecutorWrapper retryExecutorWrapper;
 
-    EJBClientChannel(final Channel channel, final int version, final DiscoveredNodeRegistry discoveredNodeRegistry, final FutureResult<EJBClientChannel> futureResult, RetryExecutorWrapper retryExecutorWrapper) {
+    EJBClientChannel(final Channel channel, final int version, final Set<String> extensions, final DiscoveredNodeRegistry discoveredNodeRegistry, final FutureResult<EJBClientChannel> futureResult, RetryExecutorWrapper retryExecutorWrapper, final boolean stripe) {
         this.channel = channel;
         this.version = version;
+        this.stripe = stripe;
+        compressionCodec = extensions.contains(Protocol.EXTENSION_LZ4) ? CompressionCodec.LZ4 : CompressionCodec.DEFLATE;
+        binarySegments = extensions.contains(Protocol.EXTENSION_BINARY_SEGMENTS);
+        invocationBatches = extensions.contains(Protocol.EXTENSION_INVOCATION_BATCH);
+        attachmentKeys = version >= 3 && extensions.contains(Protocol.EXTENSION_ATTACHMENT_KEYS) ? new AttachmentKeyDictionary(true) : null;
+        invocationTargets = version >= 3 && extensions.contains(Protocol.EXTENSION_INVOCATION_TARGETS) ? new InvocationTargetTable() : null;
         this.discoveredNodeRegistry = discoveredNodeRegistry;
         this.retryExecutorWrapper = retryExecutorWrapper;
         marshallerFactory = Marshalling.getProvidedMarshallerFactory("river");
@@ -153,13 +206,53 @@ class EJBClientChannel {
         }
         transactionContext = RemoteTransactionContext.getInstance();
         this.configuration = configuration;
-        invocationTracker = new InvocationTracker(this.channel, channel.getOption(RemotingOptions.MAX_OUTBOUND_MESSAGES).intValue(), EJBClientChannel::mask);
+        final int maxOutboundMessages = channel.getOption(RemotingOptions.MAX_OUTBOUND_MESSAGES).intValue();
+        this.maxOutboundMessages = maxOutboundMessages;
+        invocationTracker = new InvocationTracker(this.channel, maxOutboundMessages, EJBClientChannel::mask);
+        marshallerPool = new MarshallerPool(marshallerFactory, configuration, maxOutboundMessages, maxOutboundMessages);
         futureResultRef = new AtomicReference<>(futureResult);
-        final String nodeName = connection.getRemoteEndpointName();
-        final NodeInformation nodeInformation = discoveredNodeRegistry.getNodeInformation(nodeName);
-        nodeInformation.addAddress(this);
-        nodeInformation.setInvalid(false);
-        channel.addCloseHandler((ignored1, ignored2) -> nodeInformation.removeConnection(this));
+        if (invocationBatches && MessageCoalescer.CLIENT_DELAY_MICROS >= 0) {
+            final XnioWorker worker = connection.getEndpoint().getXnioWorker();
+            requestCoalescer = new MessageCoalescer<>(worker.getIoThread(), worker, MessageCoalescer.CLIENT_DELAY_MICROS, MessageCoalescer.CLIENT_MAX_BYTES, request -> request.request.size(), this::sendRequests);
+        } else {
+            requestCoalescer = null;
+        }
+        if (! stripe) {
+            final String nodeName = connection.getRemoteEndpointName();
+            final NodeInformation nodeInformation = discoveredNodeRegistry.getNodeInformation(nodeName);
+            nodeInformation.addAddress(this);
+            nodeInformation.setInvalid(false);
+            channel.addCloseHandler((ignored1, ignored2) -> {
+                nodeInformation.removeConnection(this);
+                discoveredNodeRegistry.topologyChanged();
+            });
+        }
+        final ObjectName objectName = PlatformMBeans.register(PlatformMBeans.DOMAIN + ":type=EJBClientChannel,peer=" + ObjectName.quote(String.valueOf(connection.getPeerURI())) + ",id=" + channelIds.incrementAndGet(), this);
+        channel.addCloseHandler((ignored1, ignored2) -> PlatformMBeans.unregister(objectName));
+    }
+
+    public String getPeerURI() {
+        return String.valueOf(channel.getConnection().getPeerURI());
+    }
+
+    public boolean isPrimary() {
+        return ! stripe;
+    }
+
+    public int getInFlightInvocations() {
+        return inFlightInvocations.get();
+    }
+
+    public int getPeakInFlightInvocations() {
+        return peakInFlightInvocations.get();
+    }
+
+    public int getMaxOutboundMessages() {
+        return maxOutboundMessages;
+    }
+
+    public long getBatchRequestsSent() {
+        return batchRequestsSent.get();
     }
 
     static int mask(int original) {
@@ -170,9 +263,14 @@ class EJBClientChannel {
         boolean leaveOpen = false;
         try {
             final int msg = message.readUnsignedByte();
+            if (stripe && isBroadcast(msg)) {
+                // a server without the no-broadcasts extension sends updates on every channel; the primary one handles them
+                return;
+            }
             switch (msg) {
                 case Protocol.TXN_RESPONSE:
                 case Protocol.INVOCATION_RESPONSE:
+                case Protocol.INVOCATION_STREAM_RESPONSE:
                 case Protocol.OPEN_SESSION_RESPONSE:
                 case Protocol.APPLICATION_EXCEPTION:
                 case Protocol.CANCEL_RESPONSE:
@@ -181,18 +279,36 @@ class EJBClientChannel {
                 case Protocol.SESSION_NOT_ACTIVE:
                 case Protocol.EJB_NOT_STATEFUL:
                 case Protocol.BAD_VIEW_TYPE:
+                case Protocol.SERVER_BUSY:
                 case Protocol.PROCEED_ASYNC_RESPONSE:{
                     final int invId = message.readUnsignedShort();
                     leaveOpen = invocationTracker.signalResponse(invId, msg, message, false);
                     break;
                 }
-                case Protocol.COMPRESSED_INVOCATION_MESSAGE: {
-                    DataInputStream inputStream = new DataInputStream(new InflaterInputStream(message));
+                case Protocol.COMPRESSED_INVOCATION_MESSAGE:
+                case Protocol.COMPRESSED_LZ4_INVOCATION_MESSAGE: {
+                    DataInputStream inputStream = new DataInputStream(CompressionCodec.forMessageId(msg).decompressing(message));
                     final int realMessageId = inputStream.readByte();
                     final int invId = inputStream.readUnsignedShort();
                     leaveOpen = invocationTracker.signalResponse(invId, realMessageId, new ResponseMessageInputStream(inputStream, invId), false);
                     break;
                 }
+                case Protocol.INVOCATION_BATCH_RESPONSE: {
+                    final int count = PackedInteger.readPackedInteger(message);
+                    for (int i = 0; i < count; i ++) {
+                        final byte[] bytes = new byte[PackedInteger.readPackedInteger(message)];
+                        message.readFully(bytes);
+                        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(bytes));
+                        int realMessageId = inputStream.readUnsignedByte();
+                        if (realMessageId == Protocol.COMPRESSED_INVOCATION_MESSAGE || realMessageId == Protocol.COMPRESSED_LZ4_INVOCATION_MESSAGE) {
+                            inputStream = new DataInputStream(CompressionCodec.forMessageId(realMessageId).decompressing(inputStream));
+                            realMessageId = inputStream.readUnsignedByte();
+                        }
+                        final int invId = inputStream.readUnsignedShort();
+                        invocationTracker.signalResponse(invId, realMessageId, new ResponseMessageInputStream(inputStream, invId), false);
+                    }
+                    break;
+                }
                 case Protocol.MODULE_AVAILABLE: {
                     int count = PackedInteger.readPackedInteger(message);
                     final NodeInformation nodeInformation = discoveredNodeRegistry.getNodeInformation(getChannel().getConnection().getRemoteEndpointName());
@@ -208,6 +324,7 @@ class EJBClientChannel {
 
                     }
                     nodeInformation.addModules(this, moduleList);
+                    discoveredNodeRegistry.topologyChanged();
                     finishPart(0b01);
                     break;
                 }
@@ -224,6 +341,7 @@ class EJBClientChannel {
                         Logs.INVOCATION.debugf("Received MODULE_UNAVAILABLE(%x) message for module %s", msg, moduleIdentifier);
                     }
                     nodeInformation.removeModules(this, set);
+                    discoveredNodeRegistry.topologyChanged();
                     break;
                 }
                 case Protocol.CLUSTER_TOPOLOGY_ADDITION:
@@ -255,6 +373,7 @@ class EJBClientChannel {
                             }
                         }
                     }
+                    discoveredNodeRegistry.topologyChanged();
                     finishPart(0b10);
                     break;
                 }
@@ -270,6 +389,7 @@ class EJBClientChannel {
                             nodeInformation.removeCluster(clusterName);
                         }
                     }
+                    discoveredNodeRegistry.topologyChanged();
                     break;
                 }
                 case Protocol.CLUSTER_TOPOLOGY_NODE_REMOVAL: {
@@ -287,6 +407,7 @@ class EJBClientChannel {
 
                         }
                     }
+                    discoveredNodeRegistry.topologyChanged();
                     break;
                 }
                 default: {
@@ -302,9 +423,15 @@ class EJBClientChannel {
     }
 
     private static final AttachmentKey<MethodInvocation> INV_KEY = new AttachmentKey<>();
+    private static final AtomicIntegerFieldUpdater<MethodInvocation> refCountUpdater = AtomicIntegerFieldUpdater.newUpdater(MethodInvocation.class, "refCount");
 
     public void processInvocation(final EJBReceiverInvocationContext receiverContext, final ConnectionPeerIdentity peerIdentity) {
         MethodInvocation invocation = invocationTracker.addInvocation(id -> new MethodInvocation(id, receiverContext));
+        final int inFlight = inFlightInvocations.incrementAndGet();
+        int peak;
+        do {
+            peak = peakInFlightInvocations.get();
+        } while (inFlight > peak && ! peakInFlightInvocations.compareAndSet(peak, inFlight));
         final EJBClientInvocationContext invocationContext = receiverContext.getClientInvocationContext();
         invocationContext.putAttachment(INV_KEY, invocation);
         final EJBLocator<?> locator = invocationContext.getLocator();
@@ -314,155 +441,288 @@ class EJBClientChannel {
         } else {
             peerIdentityId = 0; // unused
         }
-        try (MessageOutputStream underlying = invocationTracker.allocateMessage()) {
-            MessageOutputStream out = handleCompression(invocationContext, underlying);
-            try {
-                out.write(Protocol.INVOCATION_REQUEST);
-                out.writeShort(invocation.getIndex());
+        final CompletableFuture<Void> batch = invocationBatches ? invocationContext.getAttachment(AttachmentKeys.INVOCATION_BATCH) : null;
+        try {
+            final boolean holdForBatch = batch != null && ! batch.isDone();
+            if (holdForBatch || requestCoalescer != null) {
+                final ByteArrayMessageOutputStream buffered = new ByteArrayMessageOutputStream();
+                final MessageOutputStream out = handleCompression(invocationContext, buffered);
+                try {
+                    writeInvocationRequest(out, invocation, invocationContext, locator, peerIdentityId);
+                } finally {
+                    out.close();
+                }
+                final BatchedRequest request = new BatchedRequest(buffered, receiverContext, peerIdentity);
+                if (holdForBatch) {
+                    // hold the request back until the rest of the batch has been submitted
+                    addToBatch(batch, request);
+                } else if (requestCoalescer.accepts(buffered.size())) {
+                    requestCoalescer.add(request);
+                } else {
+                    sendRequests(Collections.singletonList(request));
+                }
+                return;
+            }
+            try (MessageOutputStream underlying = invocationTracker.allocateMessage()) {
+                MessageOutputStream out = handleCompression(invocationContext, underlying);
+                try {
+                    writeInvocationRequest(out, invocation, invocationContext, locator, peerIdentityId);
+                } catch (IOException e) {
+                    underlying.cancel();
+                    throw e;
+                } finally {
+                    out.close();
+                }
+            }
+        } catch (IOException e) {
+            receiverContext.requestFailed(new RequestSendFailedException(e.getMessage() + " @ " + peerIdentity.getConnection().getPeerURI(), e, true), getRetryExecutor());
+        } catch (RollbackException | SystemException | RuntimeException e) {
+            receiverContext.requestFailed(new EJBException(e.getMessage(), e), getRetryExecutor());
+            return;
+        }
+    }
+
+    private void addToBatch(final CompletableFuture<Void> batch, final BatchedRequest request) {
+        final boolean first;
+        synchronized (pendingBatches) {
+            List<BatchedRequest> requests = pendingBatches.get(batch);
+            first = requests == null;
+            if (first) {
+                pendingBatches.put(batch, requests = new ArrayList<>());
+            }
+            requests.add(request);
+        }
+        if (first) {
+            // runs right away if the batch was completed in the meantime
+            batch.whenComplete((ignored, ignored2) -> sendBatch(batch));
+        }
+    }
+
+    private void sendBatch(final CompletableFuture<Void> batch) {
+        final List<BatchedRequest> requests;
+        synchronized (pendingBatches) {
+            requests = pendingBatches.remove(batch);
+        }
+        sendRequests(requests);
+    }
 
-                Marshaller marshaller = getMarshaller();
-                marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(out)));
+    private void sendRequests(final List<BatchedRequest> requests) {
+        final List<ByteArrayMessageOutputStream> messages = new ArrayList<>(requests.size());
+        for (BatchedRequest request : requests) {
+            messages.add(request.request);
+        }
+        try (MessageOutputStream out = invocationTracker.allocateMessage()) {
+            try {
+                MessageCoalescer.writeBatch(out, Protocol.INVOCATION_BATCH_REQUEST, messages);
+            } catch (IOException e) {
+                out.cancel();
+                throw e;
+            }
+            if (messages.size() > 1) {
+                batchRequestsSent.getAndIncrement();
+            }
+        } catch (IOException e) {
+            for (BatchedRequest request : requests) {
+                request.receiverContext.requestFailed(new RequestSendFailedException(e.getMessage() + " @ " + request.peerIdentity.getConnection().getPeerURI(), e, true), getRetryExecutor());
+            }
+        }
+    }
 
-                final Method invokedMethod = invocationContext.getInvokedMethod();
-                final Object[] parameters = invocationContext.getParameters();
+    private void writeInvocationRequest(final MessageOutputStream out, final MethodInvocation invocation, final EJBClientInvocationContext invocationContext, final EJBLocator<?> locator, final int peerIdentityId) throws IOException, RollbackException, SystemException {
+        out.write(Protocol.INVOCATION_REQUEST);
+        out.writeShort(invocation.getIndex());
 
-                if (version < 3) {
-                    // method name as UTF string
-                    out.writeUTF(invokedMethod.getName());
+        final Marshaller marshaller = marshallerPool.getMarshaller();
+        marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(out)));
 
-                    // write the method signature as UTF string
-                    out.writeUTF(invocationContext.getMethodSignatureString());
+        final Method invokedMethod = invocationContext.getInvokedMethod();
+        final Object[] parameters = invocationContext.getParameters();
+        final InvocationTargetTable invocationTargets = this.invocationTargets;
+        InvocationTargetTable.Entry target = null;
 
-                    // protocol 1 & 2 redundant locator objects
-                    marshaller.writeObject(locator.getAppName());
-                    marshaller.writeObject(locator.getModuleName());
-                    marshaller.writeObject(locator.getDistinctName());
-                    marshaller.writeObject(locator.getBeanName());
-                } else {
+        if (version < 3) {
+            // method name as UTF string
+            out.writeUTF(invokedMethod.getName());
 
-                    // write identifier to allow the peer to find the class loader
-                    marshaller.writeObject(locator.getIdentifier());
+            // write the method signature as UTF string
+            out.writeUTF(invocationContext.getMethodSignatureString());
 
-                    // write method locator
-                    marshaller.writeObject(invocationContext.getMethodLocator());
+            // protocol 1 & 2 redundant locator objects
+            marshaller.writeObject(locator.getAppName());
+            marshaller.writeObject(locator.getModuleName());
+            marshaller.writeObject(locator.getDistinctName());
+            marshaller.writeObject(locator.getBeanName());
+        } else {
 
-                    // write sec context
-                    marshaller.writeInt(peerIdentityId);
+            if (invocationTargets != null) {
+                // write identifier and method locator, or their table index
+                target = invocationTargets.writeTarget(marshaller, locator, invocationContext.getMethodLocator());
+                invocation.setTarget(target);
+            } else {
+                // write identifier to allow the peer to find the class loader
+                marshaller.writeObject(locator.getIdentifier());
 
-                    // write weak affinity
-                    marshaller.writeObject(invocationContext.getWeakAffinity());
+                // write method locator
+                marshaller.writeObject(invocationContext.getMethodLocator());
+            }
 
-                    // write response compression info
-                    if (invocationContext.isCompressResponse()) {
-                        int compressionLevel = invocationContext.getCompressionLevel() > 0 ? invocationContext.getCompressionLevel() : 15;
-                        marshaller.writeByte(compressionLevel);
-                    } else {
-                        marshaller.writeByte(0);
-                    }
+            // write sec context
+            marshaller.writeInt(peerIdentityId);
+
+            // write weak affinity
+            marshaller.writeObject(invocationContext.getWeakAffinity());
+
+            // write response compression info
+            final EJBClientContext clientContext = invocationContext.getClientContext();
+            if (invocationContext.isCompressResponse()) {
+                int compressionLevel = invocationContext.getCompressionLevel() > 0 ? invocationContext.getCompressionLevel() : 15;
+                marshaller.writeByte(compressionLevel);
+            } else if (clientContext.getAdaptiveCompressionThreshold() != -1) {
+                // let the server decide based on the size of the response
+                int compressionLevel = clientContext.getAdaptiveCompressionLevel() > 0 ? clientContext.getAdaptiveCompressionLevel() : 15;
+                marshaller.writeByte(AdaptiveCompressionOutputStream.encodeThreshold(clientContext.getAdaptiveCompressionThreshold()) | compressionLevel);
+            } else {
+                marshaller.writeByte(0);
+            }
 
-                    // write txn context
-                    invocation.setOutflowHandle(writeTransaction(invocationContext.getTransaction(), marshaller));
-                }
-                // write the invocation locator itself
-                marshaller.writeObject(locator);
+            // write txn context
+            invocation.setOutflowHandle(writeTransaction(invocationContext.getTransaction(), marshaller));
+        }
+        // write the invocation locator itself
+        if (invocationTargets != null) {
+            InvocationTargetTable.writeLocator(marshaller, target, locator);
+        } else {
+            marshaller.writeObject(locator);
+        }
 
-                // and the parameters
-                if (parameters != null && parameters.length > 0) {
-                    for (final Object methodParam : parameters) {
-                        marshaller.writeObject(methodParam);
+        // and the parameters
+        int[] segmentKinds = null;
+        if (binarySegments) {
+            // list the parameters which are sent as binary segments after the attachments
+            int segmentCount = 0;
+            if (parameters != null) {
+                for (int i = 0; i < parameters.length; i ++) {
+                    final int kind = BinarySegments.kindOf(parameters[i]);
+                    if (kind != BinarySegments.NONE) {
+                        if (segmentKinds == null) {
+                            segmentKinds = new int[parameters.length];
+                        }
+                        segmentKinds[i] = kind;
+                        segmentCount ++;
                     }
                 }
+            }
+            PackedInteger.writePackedInteger(marshaller, segmentCount);
+            for (int i = 0; segmentCount > 0; i ++) {
+                if (segmentKinds[i] != BinarySegments.NONE) {
+                    PackedInteger.writePackedInteger(marshaller, i << 1 | segmentKinds[i] - 1);
+                    segmentCount --;
+                }
+            }
+        }
+        if (parameters != null && parameters.length > 0) {
+            for (int i = 0; i < parameters.length; i ++) {
+                if (segmentKinds == null || segmentKinds[i] == BinarySegments.NONE) {
+                    marshaller.writeObject(parameters[i]);
+                }
+            }
+        }
 
-                // now, attachments
-                // we write out the private (a.k.a JBoss specific) attachments as well as public invocation context data
-                // (a.k.a user application specific data)
-                final Map<AttachmentKey<?>, ?> privateAttachments = invocationContext.getAttachments();
-                final Map<String, Object> contextData = invocationContext.getContextData();
+        // now, attachments
+        // we write out the private (a.k.a JBoss specific) attachments as well as public invocation context data
+        // (a.k.a user application specific data)
+        // do not create an empty context data map just to find out that it is empty
+        final Map<String, Object> contextData = invocationContext.hasContextData() ? invocationContext.getContextData() : Collections.emptyMap();
 
-                // write the attachment count which is the sum of invocation context data + 1 (since we write
-                // out the private attachments under a single key with the value being the entire attachment map)
-                int totalContextData = contextData.size();
-                if (version >= 3) {
-                    // Just write the attachments.
-                    PackedInteger.writePackedInteger(marshaller, totalContextData);
+        // write the attachment count which is the sum of invocation context data + 1 (since we write
+        // out the private attachments under a single key with the value being the entire attachment map)
+        int totalContextData = contextData.size();
+        if (version >= 3) {
+            // Just write the attachments.
+            PackedInteger.writePackedInteger(marshaller, totalContextData);
 
-                    for (Map.Entry<String, Object> invocationContextData : contextData.entrySet()) {
-                        marshaller.writeObject(invocationContextData.getKey());
-                        marshaller.writeObject(invocationContextData.getValue());
-                    }
+            final AttachmentKeyDictionary attachmentKeys = this.attachmentKeys;
+            for (Map.Entry<String, Object> invocationContextData : contextData.entrySet()) {
+                if (attachmentKeys == null) {
+                    marshaller.writeObject(invocationContextData.getKey());
                 } else {
-                    final Transaction transaction = invocationContext.getTransaction();
-
-                    // We are only marshalling those attachments whose keys are present in the object table
-                    final Map<AttachmentKey<?>, Object> marshalledPrivateAttachments = new HashMap<>();
-                    for (final Map.Entry<AttachmentKey<?>, ?> entry : privateAttachments.entrySet()) {
-                        final AttachmentKey<?> key = entry.getKey();
-                        if (key == AttachmentKeys.TRANSACTION_ID_KEY) {
-                            // skip!
-                        } else if (ProtocolV1ObjectTable.INSTANCE.getObjectWriter(key) != null) {
-                            marshalledPrivateAttachments.put(key, entry.getValue());
-                        }
-                    }
+                    invocation.addDefinedKey(attachmentKeys.writeKey(marshaller, invocationContextData.getKey()));
+                }
+                marshaller.writeObject(invocationContextData.getValue());
+            }
 
-                    if (transaction != null) {
-                        marshalledPrivateAttachments.put(AttachmentKeys.TRANSACTION_ID_KEY, calculateTransactionId(transaction));
+            // then the binary segments, in parameter order
+            if (segmentKinds != null) {
+                for (int i = 0; i < segmentKinds.length; i ++) {
+                    if (segmentKinds[i] != BinarySegments.NONE) {
+                        BinarySegments.writeSegment(marshaller, out, parameters[i]);
                     }
+                }
+            }
+        } else {
+            final Transaction transaction = invocationContext.getTransaction();
+
+            final Map<AttachmentKey<?>, ?> privateAttachments = invocationContext.getAttachments();
+
+            // We are only marshalling those attachments whose keys are present in the object table
+            final Map<AttachmentKey<?>, Object> marshalledPrivateAttachments = new HashMap<>();
+            for (final Map.Entry<AttachmentKey<?>, ?> entry : privateAttachments.entrySet()) {
+                final AttachmentKey<?> key = entry.getKey();
+                if (key == AttachmentKeys.TRANSACTION_ID_KEY) {
+                    // skip!
+                } else if (ProtocolV1ObjectTable.INSTANCE.getObjectWriter(key) != null) {
+                    marshalledPrivateAttachments.put(key, entry.getValue());
+                }
+            }
 
-                    final boolean hasPrivateAttachments = ! marshalledPrivateAttachments.isEmpty();
-                    if (hasPrivateAttachments) {
-                        totalContextData++;
-                    }
-                    // Note: The code here is just for backward compatibility of 1.x and 2.x versions of EJB client project.
-                    // Attach legacy transaction ID, if there is an active txn.
+            if (transaction != null) {
+                marshalledPrivateAttachments.put(AttachmentKeys.TRANSACTION_ID_KEY, calculateTransactionId(transaction));
+            }
 
-                    if (transaction != null) {
-                        // we additionally add/duplicate the transaction id under a different attachment key
-                        // to preserve backward compatibility. This is here just for 1.0.x backward compatibility
-                        totalContextData++;
-                    }
-                    // backward compatibility code block for transaction id ends here.
+            final boolean hasPrivateAttachments = ! marshalledPrivateAttachments.isEmpty();
+            if (hasPrivateAttachments) {
+                totalContextData++;
+            }
+            // Note: The code here is just for backward compatibility of 1.x and 2.x versions of EJB client project.
+            // Attach legacy transaction ID, if there is an active txn.
 
-                    PackedInteger.writePackedInteger(marshaller, totalContextData);
-                    // write out public (application specific) context data
-                    for (Map.Entry<String, Object> invocationContextData : contextData.entrySet()) {
-                        marshaller.writeObject(invocationContextData.getKey());
-                        marshaller.writeObject(invocationContextData.getValue());
-                    }
-                    if (hasPrivateAttachments) {
-                        // now write out the JBoss specific attachments under a single key and the value will be the
-                        // entire map of JBoss specific attachments
-                        marshaller.writeObject(EJBClientInvocationContext.PRIVATE_ATTACHMENTS_KEY);
-                        marshaller.writeObject(marshalledPrivateAttachments);
-                    }
+            if (transaction != null) {
+                // we additionally add/duplicate the transaction id under a different attachment key
+                // to preserve backward compatibility. This is here just for 1.0.x backward compatibility
+                totalContextData++;
+            }
+            // backward compatibility code block for transaction id ends here.
 
-                    // Note: The code here is just for backward compatibility of 1.0.x version of EJB client project
-                    // against AS7 7.1.x releases. Discussion here https://github.com/jbossas/jboss-ejb-client/pull/11#issuecomment-6573863
-                    if (transaction != null) {
-                        // we additionally add/duplicate the transaction id under a different attachment key
-                        // to preserve backward compatibility. This is here just for 1.0.x backward compatibility
-                        marshaller.writeObject(TransactionID.PRIVATE_DATA_KEY);
-                        // This transaction id attachment duplication *won't* cause increase in EJB protocol message payload
-                        // since we rely on JBoss Marshalling to use back references for the same transaction id object being
-                        // written out
-                        marshaller.writeObject(marshalledPrivateAttachments.get(AttachmentKeys.TRANSACTION_ID_KEY));
-                    }
-                    // backward compatibility code block for transaction id ends here.
-                }
+            PackedInteger.writePackedInteger(marshaller, totalContextData);
+            // write out public (application specific) context data
+            for (Map.Entry<String, Object> invocationContextData : contextData.entrySet()) {
+                marshaller.writeObject(invocationContextData.getKey());
+                marshaller.writeObject(invocationContextData.getValue());
+            }
+            if (hasPrivateAttachments) {
+                // now write out the JBoss specific attachments under a single key and the value will be the
+                // entire map of JBoss specific attachments
+                marshaller.writeObject(EJBClientInvocationContext.PRIVATE_ATTACHMENTS_KEY);
+                marshaller.writeObject(marshalledPrivateAttachments);
+            }
 
-                // finished
-                marshaller.finish();
-            } catch (IOException e) {
-                underlying.cancel();
-                throw e;
-            } finally {
-                out.close();
+            // Note: The code here is just for backward compatibility of 1.0.x version of EJB client project
+            // against AS7 7.1.x releases. Discussion here https://github.com/jbossas/jboss-ejb-client/pull/11#issuecomment-6573863
+            if (transaction != null) {
+                // we additionally add/duplicate the transaction id under a different attachment key
+                // to preserve backward compatibility. This is here just for 1.0.x backward compatibility
+                marshaller.writeObject(TransactionID.PRIVATE_DATA_KEY);
+                // This transaction id attachment duplication *won't* cause increase in EJB protocol message payload
+                // since we rely on JBoss Marshalling to use back references for the same transaction id object being
+                // written out
+                marshaller.writeObject(marshalledPrivateAttachments.get(AttachmentKeys.TRANSACTION_ID_KEY));
             }
-        } catch (IOException e) {
-            receiverContext.requestFailed(new RequestSendFailedException(e.getMessage() + " @ " + peerIdentity.getConnection().getPeerURI(), e, true), getRetryExecutor());
-        } catch (RollbackException | SystemException | RuntimeException e) {
-            receiverContext.requestFailed(new EJBException(e.getMessage(), e), getRetryExecutor());
-            return;
+            // backward compatibility code block for transaction id ends here.
         }
+
+        // finished
+        marshaller.finish();
+        marshallerPool.returnMarshaller(marshaller);
     }
 
     /**
@@ -486,7 +746,7 @@ class EJBClientChannel {
             if (Logs.REMOTING.isTraceEnabled()) {
                 Logs.REMOTING.trace("Hints are disabled. Ignoring any CompressionHint on methods being invoked on view " + invocationContext.getViewClass());
             }
-            return messageOutputStream;
+            return handleAdaptiveCompression(invocationContext, messageOutputStream);
         }
 
         // process any CompressionHint
@@ -502,23 +762,34 @@ class EJBClientChannel {
 
         // create a compressed invocation data *only* if the request has to be compressed (note, it's perfectly valid for certain methods to just specify that only the response is compressed)
         if (invocationContext.isCompressRequest()) {
-            // write out the header indicating that it's a compressed stream
-            messageOutputStream.write(Protocol.COMPRESSED_INVOCATION_MESSAGE);
-            // create the deflater using the specified level
-            final Deflater deflater = new Deflater(compressionLevel);
-            // wrap the message outputstream with the deflater stream so that *any subsequent* data writes to the stream are compressed
-            final DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(messageOutputStream, deflater);
+            // write out the header indicating that it's a compressed stream, and which codec was used
+            messageOutputStream.write(compressionCodec.getMessageId());
+            // wrap the message outputstream with a compressing stream so that *any subsequent* data writes to the stream are compressed;
+            // a pooled deflater goes back to the pool when the stream is closed
+            final OutputStream compressingOutputStream = compressionCodec.compressing(messageOutputStream, compressionLevel);
             if (Logs.REMOTING.isTraceEnabled()) {
-                Logs.REMOTING.trace("Using a compressing stream with compression level = " + compressionLevel + " for request data for EJB invocation on method " + invocationContext.getInvokedMethod());
+                Logs.REMOTING.trace("Using a " + compressionCodec.getName() + " compressing stream with compression level = " + compressionLevel + " for request data for EJB invocation on method " + invocationContext.getInvokedMethod());
             }
-            return new WrapperMessageOutputStream(messageOutputStream, deflaterOutputStream);
+            return new WrapperMessageOutputStream(messageOutputStream, compressingOutputStream);
         } else {
-            // just return a normal DataOutputStream without any compression
-            return messageOutputStream;
+            // compress only if the request turns out to be big enough, if so configured
+            return handleAdaptiveCompression(invocationContext, messageOutputStream);
         }
 
     }
 
+    private MessageOutputStream handleAdaptiveCompression(final EJBClientInvocationContext invocationContext, final MessageOutputStream messageOutputStream) {
+        final EJBClientContext clientContext = invocationContext.getClientContext();
+        final int threshold = clientContext.getAdaptiveCompressionThreshold();
+        if (threshold == -1) {
+            return messageOutputStream;
+        }
+        if (Logs.REMOTING.isTraceEnabled()) {
+            Logs.REMOTING.trace("Using an adaptive compressing stream with threshold = " + threshold + " bytes for request data for EJB invocation on method " + invocationContext.getInvokedMethod());
+        }
+        return new AdaptiveCompressionOutputStream(messageOutputStream, compressionCodec, clientContext.getAdaptiveCompressionLevel(), threshold);
+    }
+
     private TransactionID calculateTransactionId(final Transaction transaction) throws RollbackException, SystemException, InvalidTransactionException {
         final URI location = channel.getConnection().getPeerURI();
         Assert.assertNotNull(transaction);
@@ -600,10 +871,6 @@ class EJBClientChannel {
         return invocation.receiverInvocationContext.getClientInvocationContext().awaitCancellationResult();
     }
 
-    private Marshaller getMarshaller() throws IOException {
-        return marshallerFactory.createMarshaller(configuration);
-    }
-
     public <T> StatefulEJBLocator<T> openSession(final StatelessEJBLocator<T> statelessLocator, final ConnectionPeerIdentity identity, EJBSessionCreationInvocationContext clientInvocationContext) throws Exception {
         SessionOpenInvocation<T> invocation = invocationTracker.addInvocation(id -> new SessionOpenInvocation<>(id, statelessLocator, clientInvocationContext));
         try (MessageOutputStream out = invocationTracker.allocateMessage()) {
@@ -632,7 +899,37 @@ class EJBClientChannel {
         out.writeUTF(statelessLocator.getBeanName());
     }
 
+    private static boolean isBroadcast(final int msg) {
+        switch (msg) {
+            case Protocol.MODULE_AVAILABLE:
+            case Protocol.MODULE_UNAVAILABLE:
+            case Protocol.CLUSTER_TOPOLOGY_COMPLETE:
+            case Protocol.CLUSTER_TOPOLOGY_ADDITION:
+            case Protocol.CLUSTER_TOPOLOGY_REMOVAL:
+            case Protocol.CLUSTER_TOPOLOGY_NODE_REMOVAL: {
+                return true;
+            }
+            default: {
+                return false;
+            }
+        }
+    }
+
     static IoFuture<EJBClientChannel> construct(final Channel channel, final DiscoveredNodeRegistry discoveredNodeRegistry, RetryExecutorWrapper retryExecutorWrapper) {
+        return construct(channel, discoveredNodeRegistry, retryExecutorWrapper, false);
+    }
+
+    /**
+     * Open the EJB protocol on a channel.
+     *
+     * @param channel the channel
+     * @param discoveredNodeRegistry the registry of the nodes which are found through this channel
+     * @param retryExecutorWrapper the retry executor
+     * @param stripe {@code true} for an additional channel of a connection, which neither registers with the node
+     *      registry nor receives module availability and topology updates
+     * @return the future channel
+     */
+    static IoFuture<EJBClientChannel> construct(final Channel channel, final DiscoveredNodeRegistry discoveredNodeRegistry, RetryExecutorWrapper retryExecutorWrapper, final boolean stripe) {
         FutureResult<EJBClientChannel> futureResult = new FutureResult<>();
         // now perform opening negotiation: receive server greeting
         channel.receiveMessage(new Channel.Receiver() {
@@ -648,6 +945,21 @@ class EJBClientChannel {
                 // receive message body
                 try {
                     final int version = min(3, StreamUtils.readInt8(message));
+                    final Set<String> extensions = new LinkedHashSet<>();
+                    if (version >= 3) {
+                        // skip the marshaller names, then read the protocol extensions (if any) the server supports
+                        int count = StreamUtils.readPackedUnsignedInt31(message);
+                        for (int i = 0; i < count; i ++) {
+                            message.readUTF();
+                        }
+                        count = message.read();
+                        for (int i = 0; i < count; i ++) {
+                            final String extension = message.readUTF();
+                            if (EXTENSIONS.contains(extension) || stripe && extension.equals(Protocol.EXTENSION_NO_BROADCASTS)) {
+                                extensions.add(extension);
+                            }
+                        }
+                    }
                     // drain the rest of the message because it's just garbage really
                     while (message.read() != -1) {
                         message.skip(Long.MAX_VALUE);
@@ -656,9 +968,16 @@ class EJBClientChannel {
                     try (MessageOutputStream out = channel.writeMessage()) {
                         out.write(version);
                         out.writeUTF("river");
+                        if (! extensions.isEmpty()) {
+                            // let the server know which of its extensions will be used
+                            out.write(extensions.size());
+                            for (String extension : extensions) {
+                                out.writeUTF(extension);
+                            }
+                        }
                     }
                     // almost done; wait for initial module available report
-                    final EJBClientChannel ejbClientChannel = new EJBClientChannel(channel, version, discoveredNodeRegistry, futureResult, retryExecutorWrapper);
+                    final EJBClientChannel ejbClientChannel = new EJBClientChannel(channel, version, extensions, discoveredNodeRegistry, futureResult, retryExecutorWrapper, stripe);
                     channel.receiveMessage(new Channel.Receiver() {
                         public void handleError(final Channel channel, final IOException error) {
                             futureResult.setException(error);
@@ -678,6 +997,10 @@ class EJBClientChannel {
                             }
                         }
                     });
+                    if (stripe) {
+                        // there is no initial module availability report to wait for
+                        ejbClientChannel.finishPart(0b11);
+                    }
                 } catch (final IOException e) {
                     channel.closeAsync();
                     channel.addCloseHandler((closed, exception) -> futureResult.setException(e));
@@ -752,13 +1075,12 @@ class EJBClientChannel {
                         int size = PackedInteger.readPackedInteger(response);
                         byte[] bytes = new byte[size];
                         response.readFully(bytes);
-                        // todo: pool unmarshallers?  use very small instance count config?
                         if (1 <= version && version <= 2) {
-                            try (final Unmarshaller unmarshaller = createUnmarshaller()) {
-                                unmarshaller.start(response);
-                                affinity = unmarshaller.readObject(Affinity.class);
-                                unmarshaller.finish();
-                            }
+                            final Unmarshaller unmarshaller = marshallerPool.getUnmarshaller();
+                            unmarshaller.start(response);
+                            affinity = unmarshaller.readObject(Affinity.class);
+                            unmarshaller.finish();
+                            marshallerPool.returnUnmarshaller(unmarshaller);
                         } else {
                             affinity = statelessLocator.getAffinity();
                             final int cmd = response.readUnsignedByte();
@@ -811,15 +1133,15 @@ class EJBClientChannel {
                                 }
                             }
                         }
-                        try (final Unmarshaller unmarshaller = createUnmarshaller()) {
-                            unmarshaller.start(response);
-                            e = unmarshaller.readObject(Exception.class);
-                            unmarshaller.finish();
-                            if (version < 3) {
-                                // drain off attachments so the server doesn't complain
-                                while (response.read() != -1) {
-                                    response.skip(Long.MAX_VALUE);
-                                }
+                        final Unmarshaller unmarshaller = marshallerPool.getUnmarshaller();
+                        unmarshaller.start(response);
+                        e = unmarshaller.readObject(Exception.class);
+                        unmarshaller.finish();
+                        marshallerPool.returnUnmarshaller(unmarshaller);
+                        if (version < 3) {
+                            // drain off attachments so the server doesn't complain
+                            while (response.read() != -1) {
+                                response.skip(Long.MAX_VALUE);
                             }
                         }
                         // todo: glue stack traces
@@ -964,8 +1286,11 @@ class EJBClientChannel {
 
     final class MethodInvocation extends Invocation {
         private final EJBReceiverInvocationContext receiverInvocationContext;
-        private final AtomicInteger refCounter = new AtomicInteger(1);
+        // updated through refCountUpdater
+        volatile int refCount = 1;
         private XAOutflowHandle outflowHandle;
+        private List<AttachmentKeyDictionary.Entry> definedKeys;
+        private InvocationTargetTable.Entry target;
 
         MethodInvocation(final int index, final EJBReceiverInvocationContext receiverInvocationContext) {
             super(index);
@@ -973,22 +1298,21 @@ class EJBClientChannel {
         }
 
         boolean alloc() {
-            final AtomicInteger refCounter = this.refCounter;
             int oldVal;
             do {
-                oldVal = refCounter.get();
+                oldVal = refCount;
                 if (oldVal == 0) {
                     return false;
                 }
-            } while (! refCounter.compareAndSet(oldVal, oldVal + 1));
+            } while (! refCountUpdater.compareAndSet(this, oldVal, oldVal + 1));
             return true;
         }
 
         void free() {
-            final AtomicInteger refCounter = this.refCounter;
-            final int newVal = refCounter.decrementAndGet();
+            final int newVal = refCountUpdater.decrementAndGet(this);
             if (newVal == 0) {
                 invocationTracker.remove(this);
+                inFlightInvocations.decrementAndGet();
             }
         }
 
@@ -999,8 +1323,10 @@ class EJBClientChannel {
 
         private void handleResponse(final int id, final DataInputStream inputStream) {
             switch (id) {
-                case Protocol.INVOCATION_RESPONSE: {
+                case Protocol.INVOCATION_RESPONSE:
+                case Protocol.INVOCATION_STREAM_RESPONSE: {
                     free();
+                    confirmDefinitions();
                     if (version >= 3) try {
                         final int cmd = inputStream.readUnsignedByte();
                         final XAOutflowHandle outflowHandle = getOutflowHandle();
@@ -1038,7 +1364,7 @@ class EJBClientChannel {
                         safeClose(inputStream);
                         break;
                     }
-                    receiverInvocationContext.resultReady(new MethodCallResultProducer(inputStream, id));
+                    receiverInvocationContext.resultReady(id == Protocol.INVOCATION_STREAM_RESPONSE ? new StreamResultProducer(inputStream, id) : new MethodCallResultProducer(inputStream, id), getRetryExecutor());
                     break;
                 }
                 case Protocol.CANCEL_RESPONSE: {
@@ -1052,7 +1378,7 @@ class EJBClientChannel {
                 }
                 case Protocol.APPLICATION_EXCEPTION: {
                     free();
-                    receiverInvocationContext.resultReady(new ExceptionResultProducer(inputStream, id));
+                    receiverInvocationContext.resultReady(new ExceptionResultProducer(inputStream, id), getRetryExecutor());
                     break;
                 }
                 case Protocol.NO_SUCH_EJB: {
@@ -1075,6 +1401,24 @@ class EJBClientChannel {
                     }
                     break;
                 }
+                case Protocol.SERVER_BUSY: {
+                    free();
+                    try {
+                        if (version >= 3) {
+                            final XAOutflowHandle outflowHandle = getOutflowHandle();
+                            if (outflowHandle != null) outflowHandle.forgetEnlistment();
+                        }
+                        disassociateRemoteTxIfPossible(receiverInvocationContext.getClientInvocationContext());
+                        final String message = inputStream.readUTF();
+                        // the invocation was not run, so it can be retried elsewhere right away
+                        receiverInvocationContext.requestFailed(new RequestSendFailedException(message + " @ " + getChannel().getConnection().getPeerURI(), true), getRetryExecutor());
+                    } catch (IOException e) {
+                        receiverInvocationContext.requestFailed(new EJBException("Failed to read 'Server busy' response", e), getRetryExecutor());
+                    } finally {
+                        safeClose(inputStream);
+                    }
+                    break;
+                }
                 case Protocol.BAD_VIEW_TYPE: {
                     free();
                     try {
@@ -1175,6 +1519,33 @@ class EJBClientChannel {
             this.outflowHandle = outflowHandle;
         }
 
+        void addDefinedKey(final AttachmentKeyDictionary.Entry entry) {
+            if (entry != null) {
+                if (definedKeys == null) {
+                    definedKeys = new ArrayList<>();
+                }
+                definedKeys.add(entry);
+            }
+        }
+
+        void setTarget(final InvocationTargetTable.Entry target) {
+            this.target = target;
+        }
+
+        private void confirmDefinitions() {
+            // a successful response means that the server has read the whole request
+            final List<AttachmentKeyDictionary.Entry> definedKeys = this.definedKeys;
+            if (definedKeys != null) {
+                for (AttachmentKeyDictionary.Entry entry : definedKeys) {
+                    entry.confirm();
+                }
+            }
+            final InvocationTargetTable.Entry target = this.target;
+            if (target != null) {
+                target.confirm();
+            }
+        }
+
         class MethodCallResultProducer implements EJBReceiverInvocationContext.ResultProducer {
 
             private final InputStream inputStream;
@@ -1193,13 +1564,15 @@ class EJBClientChannel {
                     response = new ResponseMessageInputStream(inputStream, id);
                 }
                 Object result;
-                try (final Unmarshaller unmarshaller = createUnmarshaller()) {
+                try {
+                    final Unmarshaller unmarshaller = marshallerPool.getUnmarshaller();
                     unmarshaller.start(response);
-                    result = unmarshaller.readObject();
+                    final int segmentKind = binarySegments ? unmarshaller.readUnsignedByte() : BinarySegments.NONE;
+                    result = segmentKind == BinarySegments.NONE ? unmarshaller.readObject() : null;
                     int attachments = unmarshaller.readUnsignedByte();
                     final EJBClientInvocationContext clientInvocationContext = receiverInvocationContext.getClientInvocationContext();
                     for (int i = 0; i < attachments; i ++) {
-                        String key = unmarshaller.readObject(String.class);
+                        String key = attachmentKeys == null ? unmarshaller.readObject(String.class) : attachmentKeys.readKey(unmarshaller);
                         if (version < 3 && key.equals(Affinity.WEAK_AFFINITY_CONTEXT_KEY)) {
                             final Affinity affinity = unmarshaller.readObject(Affinity.class);
                             clientInvocationContext.putAttachment(AttachmentKeys.WEAK_AFFINITY, affinity);
@@ -1211,9 +1584,15 @@ class EJBClientChannel {
                             clientInvocationContext.getContextData().put(key, unmarshaller.readObject());
                         }
                     }
+                    if (segmentKind != BinarySegments.NONE) {
+                        result = BinarySegments.readSegment(unmarshaller, segmentKind);
+                    }
                     unmarshaller.finish();
+                    marshallerPool.returnUnmarshaller(unmarshaller);
                 } catch (IOException | ClassNotFoundException ex) {
                     throw new EJBException("Failed to read response", ex);
+                } finally {
+                    safeClose(response);
                 }
                 return result;
             }
@@ -1223,6 +1602,53 @@ class EJBClientChannel {
             }
         }
 
+        class StreamResultProducer implements EJBReceiverInvocationContext.ResultProducer {
+
+            private final InputStream inputStream;
+            private final int id;
+
+            StreamResultProducer(final InputStream inputStream, final int id) {
+                this.inputStream = inputStream;
+                this.id = id;
+            }
+
+            public Object getResult() throws Exception {
+                final ResponseMessageInputStream response;
+                if(inputStream instanceof ResponseMessageInputStream) {
+                    response = (ResponseMessageInputStream) inputStream;
+                } else {
+                    response = new ResponseMessageInputStream(inputStream, id);
+                }
+                final Unmarshaller unmarshaller = marshallerPool.getUnmarshaller();
+                final EJBClientInvocationContext clientInvocationContext = receiverInvocationContext.getClientInvocationContext();
+                try {
+                    unmarshaller.start(response);
+                    // the attachments precede the elements, so they are in place before the invocation returns
+                    int attachments = unmarshaller.readUnsignedByte();
+                    for (int i = 0; i < attachments; i ++) {
+                        String key = attachmentKeys == null ? unmarshaller.readObject(String.class) : attachmentKeys.readKey(unmarshaller);
+                        if (key.equals(EJBClientInvocationContext.PRIVATE_ATTACHMENTS_KEY)) {
+                            // skip
+                            unmarshaller.readObject();
+                        } else {
+                            clientInvocationContext.getContextData().put(key, unmarshaller.readObject());
+                        }
+                    }
+                } catch (IOException | ClassNotFoundException ex) {
+                    safeClose(response);
+                    throw new EJBException("Failed to read response", ex);
+                }
+                // the elements are read by the caller as they arrive; the message stays open until the stream is
+                // exhausted or closed
+                final StreamedResultIterator iterator = new StreamedResultIterator(unmarshaller, marshallerPool, response);
+                return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false).onClose(iterator::close);
+            }
+
+            public void discardResult() {
+                safeClose(inputStream);
+            }
+        }
+
         class ExceptionResultProducer implements EJBReceiverInvocationContext.ResultProducer {
 
             private final InputStream inputStream;
@@ -1253,19 +1679,19 @@ class EJBClientChannel {
                             }
                         }
                     }
-                    try (final Unmarshaller unmarshaller = createUnmarshaller()) {
-                        unmarshaller.start(response);
-                        e = unmarshaller.readObject(Exception.class);
-                        if (version < 3) {
-                            // discard attachment data, if any
-                            int attachments = unmarshaller.readUnsignedByte();
-                            for (int i = 0; i < attachments; i ++) {
-                                unmarshaller.readObject();
-                                unmarshaller.readObject();
-                            }
+                    final Unmarshaller unmarshaller = marshallerPool.getUnmarshaller();
+                    unmarshaller.start(response);
+                    e = unmarshaller.readObject(Exception.class);
+                    if (version < 3) {
+                        // discard attachment data, if any
+                        int attachments = unmarshaller.readUnsignedByte();
+                        for (int i = 0; i < attachments; i ++) {
+                            unmarshaller.readObject();
+                            unmarshaller.readObject();
                         }
-                        unmarshaller.finish();
                     }
+                    unmarshaller.finish();
+                    marshallerPool.returnUnmarshaller(unmarshaller);
                 } catch (IOException | ClassNotFoundException ex) {
                     throw new EJBException("Failed to read response", ex);
                 }
@@ -1325,4 +1751,16 @@ class EJBClientChannel {
             return id;
         }
     }
+
+    static final class BatchedRequest {
+        final ByteArrayMessageOutputStream request;
+        final EJBReceiverInvocationContext receiverContext;
+        final ConnectionPeerIdentity peerIdentity;
+
+        BatchedRequest(final ByteArrayMessageOutputStream request, final EJBReceiverInvocationContext receiverContext, final ConnectionPeerIdentity peerIdentity) {
+            this.request = request;
+            this.receiverContext = receiverContext;
+            this.peerIdentity = peerIdentity;
+        }
+    }
 }
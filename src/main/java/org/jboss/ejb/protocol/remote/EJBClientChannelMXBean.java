@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+/**
+ * The management interface of an EJB client channel, which reports how much of the channel's outbound message window
+ * is occupied.  Each open channel is registered with the platform MBean server as
+ * {@code org.jboss.ejb.client:type=EJBClientChannel,peer=<peer URI>,id=<n>} until it is closed; a connection has more
+ * than one channel if {@code org.jboss.ejb.client.channels-per-connection} is set.
+ */
+public interface EJBClientChannelMXBean {
+
+    /**
+     * Get the URI of the peer of the channel's connection.
+     *
+     * @return the peer URI
+     */
+    String getPeerURI();
+
+    /**
+     * Determine whether this is the primary channel of its connection, which also receives the module availability
+     * and topology updates of the peer.
+     *
+     * @return {@code true} for the primary channel, {@code false} for an additional one
+     */
+    boolean isPrimary();
+
+    /**
+     * Get the number of method invocations which are outstanding on this channel.
+     *
+     * @return the number of outstanding invocations
+     */
+    int getInFlightInvocations();
+
+    /**
+     * Get the highest number of method invocations which were outstanding on this channel at the same time.
+     *
+     * @return the highest number of outstanding invocations
+     */
+    int getPeakInFlightInvocations();
+
+    /**
+     * Get the number of messages which may be written to this channel concurrently.
+     *
+     * @return the outbound message limit
+     */
+    int getMaxOutboundMessages();
+
+    /**
+     * Get the number of batch request messages which were sent on this channel, each of which carries the requests of
+     * more than one invocation.
+     *
+     * @return the number of batch request messages
+     */
+    long getBatchRequestsSent();
+}
@@ -22,6 +22,7 @@ import static java.lang.Math.min;
 import static java.security.AccessController.doPrivileged;
 import static org.xnio.IoUtils.safeClose;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -33,13 +34,19 @@ import java.net.Inet6Address;
 import java.net.SocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
 
 import javax.ejb.EJBException;
 import javax.transaction.HeuristicMixedException;
@@ -66,7 +73,6 @@ import org.jboss.ejb.client.SessionID;
 import org.jboss.ejb.client.TransactionID;
 import org.jboss.ejb.client.UserTransactionID;
 import org.jboss.ejb.client.XidTransactionID;
-import org.jboss.ejb.client.annotation.CompressionHint;
 import org.jboss.ejb.server.Association;
 import org.jboss.ejb.server.CancelHandle;
 import org.jboss.ejb.server.ClusterTopologyListener;
@@ -75,6 +81,7 @@ import org.jboss.ejb.server.ListenerHandle;
 import org.jboss.ejb.server.ModuleAvailabilityListener;
 import org.jboss.ejb.server.Request;
 import org.jboss.ejb.server.SessionOpenRequest;
+import org.jboss.ejb.server.ViewMethodIndex;
 import org.jboss.marshalling.AbstractClassResolver;
 import org.jboss.marshalling.Marshaller;
 import org.jboss.marshalling.MarshallerFactory;
@@ -86,6 +93,7 @@ import org.jboss.remoting3.Channel;
 import org.jboss.remoting3.Connection;
 import org.jboss.remoting3.MessageInputStream;
 import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.RemotingOptions;
 import org.jboss.remoting3._private.IntIndexHashMap;
 import org.jboss.remoting3.util.MessageTracker;
 import org.wildfly.common.Assert;
@@ -97,6 +105,8 @@ import org.wildfly.transaction.client.LocalTransaction;
 import org.wildfly.transaction.client.SimpleXid;
 import org.wildfly.transaction.client.provider.remoting.RemotingTransactionServer;
 import org.wildfly.transaction.client.spi.SubordinateTransactionControl;
+import org.xnio.XnioExecutor;
+import org.xnio.XnioWorker;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
@@ -106,20 +116,64 @@ import org.wildfly.transaction.client.spi.SubordinateTransactionControl;
 final class EJBServerChannel {
 
     private static final char METHOD_PARAM_TYPE_SEPARATOR = ',';
+    static final int STREAM_CHUNK_SIZE = 128;
+
+    /**
+     * The time in milliseconds which the writer of a streamed result waits for the client to take a chunk before the
+     * response is cancelled, or 0 to wait indefinitely.
+     */
+    private static final long STREAM_IDLE_TIMEOUT = doPrivileged((PrivilegedAction<Long>) () -> {
+        String val = System.getProperty("org.jboss.ejb.server.stream-idle-timeout-millis");
+        try {
+            return Long.valueOf(Math.max(0, Long.parseLong(val)));
+        } catch (NumberFormatException e) {
+            return Long.valueOf(300_000);
+        }
+    }).longValue();
 
     private final RemotingTransactionServer transactionServer;
     private final Channel channel;
     private final int version;
+    private final CompressionCodec compressionCodec;
+    private final boolean binarySegments;
+    private final boolean streamingResults;
+    private final AttachmentKeyDictionary attachmentKeys;
+    private final InvocationTargetTable invocationTargets;
+    private final Executor requestExecutor;
+    private final MessageCoalescer<ByteArrayMessageOutputStream> responseCoalescer;
+    private final RequestDispatcher requestDispatcher;
+    private final AdmissionControl admissionControl;
     private final MessageTracker messageTracker;
     private final MarshallerFactory marshallerFactory;
     private final MarshallingConfiguration configuration;
+    private final MarshallerPool marshallerPool;
+    private final ArrayBlockingQueue<UnmarshallingContext> unmarshallingContexts;
     private final IntIndexHashMap<InProgress> invocations = new IntIndexHashMap<>(InProgress::getInvId);
 
-    EJBServerChannel(final RemotingTransactionServer transactionServer, final Channel channel, final int version, final MessageTracker messageTracker) {
+    EJBServerChannel(final RemotingTransactionServer transactionServer, final Channel channel, final int version, final Set<String> extensions, final MessageTracker messageTracker, final Executor requestExecutor) {
         this.transactionServer = transactionServer;
         this.channel = channel;
         this.version = version;
+        compressionCodec = extensions.contains(Protocol.EXTENSION_LZ4) ? CompressionCodec.LZ4 : CompressionCodec.DEFLATE;
+        binarySegments = extensions.contains(Protocol.EXTENSION_BINARY_SEGMENTS);
+        streamingResults = extensions.contains(Protocol.EXTENSION_STREAMING_RESULTS);
+        attachmentKeys = version >= 3 && extensions.contains(Protocol.EXTENSION_ATTACHMENT_KEYS) ? new AttachmentKeyDictionary(false) : null;
+        // requests run on the connection's worker unless the service was given an executor
+        this.requestExecutor = requestExecutor != null ? requestExecutor : channel.getConnection().getEndpoint().getXnioWorker();
+        invocationTargets = version >= 3 && extensions.contains(Protocol.EXTENSION_INVOCATION_TARGETS) ? new InvocationTargetTable() : null;
         this.messageTracker = messageTracker;
+        if (extensions.contains(Protocol.EXTENSION_INVOCATION_BATCH) && MessageCoalescer.SERVER_DELAY_MICROS >= 0) {
+            final XnioWorker worker = channel.getConnection().getEndpoint().getXnioWorker();
+            responseCoalescer = new MessageCoalescer<>(worker.getIoThread(), worker, MessageCoalescer.SERVER_DELAY_MICROS, MessageCoalescer.SERVER_MAX_BYTES, ByteArrayMessageOutputStream::size, this::sendResponses);
+        } else {
+            responseCoalescer = null;
+        }
+        if (extensions.contains(Protocol.EXTENSION_SERVER_BUSY) && AdmissionControl.isConfigured()) {
+            admissionControl = new AdmissionControl(AdmissionControl.MAX_CHANNEL_INVOCATIONS, AdmissionControl.MAX_EJB_INVOCATIONS);
+        } else {
+            admissionControl = null;
+        }
+        requestDispatcher = RequestDispatcher.QUEUE_SIZE > 0 ? new RequestDispatcher(channel.getConnection().getEndpoint().getXnioWorker(), RequestDispatcher.QUEUE_SIZE) : null;
         final MarshallingConfiguration configuration = new MarshallingConfiguration();
         if (version < 3) {
             configuration.setClassTable(ProtocolV1ClassTable.INSTANCE);
@@ -133,6 +187,50 @@ final class EJBServerChannel {
         }
         marshallerFactory = new RiverMarshallerFactory();
         this.configuration = configuration;
+        marshallerPool = new MarshallerPool(marshallerFactory, configuration, channel.getOption(RemotingOptions.MAX_OUTBOUND_MESSAGES).intValue(), 0);
+        unmarshallingContexts = new ArrayBlockingQueue<>(Math.max(1, channel.getOption(RemotingOptions.MAX_INBOUND_MESSAGES).intValue()));
+    }
+
+    /**
+     * Get an unmarshalling context for an inbound invocation.  Each context owns its own configuration and class
+     * resolver, so a pooled context only needs to be rebound to the target class loader rather than having the
+     * whole configuration cloned for every request.
+     *
+     * @return the unmarshalling context (not {@code null})
+     * @throws IOException if a new unmarshaller could not be created
+     */
+    UnmarshallingContext getUnmarshallingContext() throws IOException {
+        final UnmarshallingContext context = unmarshallingContexts.poll();
+        if (context != null) {
+            return context;
+        }
+        final MarshallingConfiguration configuration = this.configuration.clone();
+        final ServerClassResolver classResolver = new ServerClassResolver();
+        configuration.setClassResolver(classResolver);
+        return new UnmarshallingContext(classResolver, marshallerFactory.createUnmarshaller(configuration));
+    }
+
+    /**
+     * Return an unmarshalling context whose message was successfully finished.  The class loader binding is
+     * dropped so that the pool does not keep deployment class loaders reachable.
+     *
+     * @param context the context to return
+     */
+    void returnUnmarshallingContext(final UnmarshallingContext context) {
+        context.getClassResolver().setClassLoader(null);
+        unmarshallingContexts.offer(context);
+    }
+
+    /**
+     * Forget about an invocation once its response has been written.
+     *
+     * @param invId the invocation ID
+     */
+    void removeInvocation(final int invId) {
+        final InProgress inProgress = invocations.removeKey(invId);
+        if (inProgress != null && admissionControl != null) {
+            admissionControl.release(inProgress.getEJBIdentifier());
+        }
     }
 
     Channel.Receiver getReceiver(final Association association, final ListenerHandle handle1, final ListenerHandle handle2) {
@@ -168,28 +266,67 @@ final class EJBServerChannel {
             handle2.close();
         }
 
+        private void handleInvocationMessage(final int code, final InputStream message) throws IOException {
+            try (InputStream input = code == Protocol.INVOCATION_REQUEST ? message : CompressionCodec.forMessageId(code).decompressing(message)) {
+                // now if we get an error, we can respond.
+                if(code != Protocol.INVOCATION_REQUEST) {
+                    int verify = input.read();
+                    if(verify != Protocol.INVOCATION_REQUEST) {
+                        throw new RuntimeException();
+                    }
+
+                }
+                final int invId = (input.read() << 8) | input.read();
+                try {
+                    handleInvocationRequest(invId, input);
+                } catch (IOException | ClassNotFoundException e) {
+                    // write response back to client
+                    writeFailedResponse(invId, e);
+                }
+            }
+        }
+
+        /**
+         * Process an invocation message on a worker thread if possible, or else on the calling thread.
+         *
+         * @return {@code true} if the message was dispatched to a worker, which closes it when done
+         */
+        private boolean dispatchInvocationMessage(final int code, final InputStream message) throws IOException {
+            if (requestDispatcher != null && requestDispatcher.dispatch(() -> {
+                try {
+                    handleInvocationMessage(code, message);
+                } catch (IOException e) {
+                    // nothing we can do.
+                } finally {
+                    safeClose(message);
+                }
+            })) {
+                return true;
+            }
+            handleInvocationMessage(code, message);
+            return false;
+        }
+
         public void handleMessage(final Channel channel, final MessageInputStream message) {
+            boolean leaveOpen = false;
             try {
                 final int code = message.readUnsignedByte();
                 switch (code) {
                     case Protocol.COMPRESSED_INVOCATION_MESSAGE:
+                    case Protocol.COMPRESSED_LZ4_INVOCATION_MESSAGE:
                     case Protocol.INVOCATION_REQUEST: {
-                        try (InputStream input = code == Protocol.COMPRESSED_INVOCATION_MESSAGE ? new InflaterInputStream(message) : message) {
-                            // now if we get an error, we can respond.
-                            if(code == Protocol.COMPRESSED_INVOCATION_MESSAGE) {
-                                int verify = input.read();
-                                if(verify != Protocol.INVOCATION_REQUEST) {
-                                    throw new RuntimeException();
-                                }
-
-                            }
-                            final int invId = (input.read() << 8) | input.read();
-                            try {
-                                handleInvocationRequest(invId, input);
-                            } catch (IOException | ClassNotFoundException e) {
-                                // write response back to client
-                                writeFailedResponse(invId, e);
-                            }
+                        // only the header is read on the I/O thread
+                        leaveOpen = dispatchInvocationMessage(code, message);
+                        break;
+                    }
+                    case Protocol.INVOCATION_BATCH_REQUEST: {
+                        // each request of the batch is answered separately
+                        final int count = PackedInteger.readPackedInteger(message);
+                        for (int i = 0; i < count; i ++) {
+                            final byte[] request = new byte[PackedInteger.readPackedInteger(message)];
+                            message.readFully(request);
+                            final InputStream input = new ByteArrayInputStream(request);
+                            dispatchInvocationMessage(input.read(), input);
                         }
                         break;
                     }
@@ -243,7 +380,9 @@ final class EJBServerChannel {
             } catch (IOException e) {
                 // nothing we can do.
             } finally {
-                safeClose(message);
+                if (! leaveOpen) {
+                    safeClose(message);
+                }
                 channel.receiveMessage(this);
             }
         }
@@ -355,12 +494,13 @@ final class EJBServerChannel {
                 os.writeByte(Protocol.TXN_RECOVERY_RESPONSE);
                 os.writeShort(invId);
                 PackedInteger.writePackedInteger(os, xids.length);
-                final Marshaller marshaller = marshallerFactory.createMarshaller(configuration);
+                final Marshaller marshaller = marshallerPool.getMarshaller();
                 marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(os)));
                 for (Xid xid : xids) {
                     marshaller.writeObject(new XidTransactionID(xid));
                 }
                 marshaller.finish();
+                marshallerPool.returnMarshaller(marshaller);
             } catch (IOException e) {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB transaction response write failed", e);
@@ -400,49 +540,69 @@ final class EJBServerChannel {
         }
 
         void handleInvocationRequest(final int invId, final InputStream input) throws IOException, ClassNotFoundException {
-            final MarshallingConfiguration configuration = EJBServerChannel.this.configuration.clone();
-            final ServerClassResolver classResolver = new ServerClassResolver();
-            configuration.setClassResolver(classResolver);
-            final Unmarshaller unmarshaller;
+            final UnmarshallingContext unmarshallingContext = getUnmarshallingContext();
+            final Unmarshaller unmarshaller = unmarshallingContext.getUnmarshaller();
 
             final EJBIdentifier identifier;
             final EJBMethodLocator methodLocator;
+            InvocationTargetTable.Target target = null;
 
             final Connection connection = channel.getConnection();
             final SecurityIdentity identity;
-            if (version >= 3) {
-                unmarshaller = marshallerFactory.createUnmarshaller(configuration);
-                unmarshaller.start(Marshalling.createByteInput(input));
-                identifier = unmarshaller.readObject(EJBIdentifier.class);
-                methodLocator = unmarshaller.readObject(EJBMethodLocator.class);
-                int identityId = unmarshaller.readInt();
-                identity = identityId == 0 ? connection.getLocalIdentity() : connection.getLocalIdentity(identityId);
-            } else {
-                assert version <= 2;
-                DataInputStream data = new DataInputStream(input);
-                final String methodName = data.readUTF();
-                // method signature
-                final String sigString = data.readUTF();
-                unmarshaller = marshallerFactory.createUnmarshaller(configuration);
-                unmarshaller.start(Marshalling.createByteInput(data));
-                String appName = unmarshaller.readObject(String.class);
-                String moduleName = unmarshaller.readObject(String.class);
-                String distinctName = unmarshaller.readObject(String.class);
-                String beanName = unmarshaller.readObject(String.class);
-                identifier = new EJBIdentifier(appName, moduleName, beanName, distinctName);
-
-                // parse out the signature string
-                final String[] parameterTypeNames;
-                if (sigString.isEmpty()) {
-                    parameterTypeNames = new String[0];
+            // the unmarshaller (and with it the message) is closed unless it is handed over cleanly
+            boolean ok = false;
+            try {
+                if (version >= 3) {
+                    unmarshaller.start(Marshalling.createByteInput(input));
+                    if (invocationTargets != null) {
+                        target = invocationTargets.readTarget(unmarshaller);
+                        identifier = target.identifier;
+                        methodLocator = target.methodLocator;
+                    } else {
+                        identifier = unmarshaller.readObject(EJBIdentifier.class);
+                        methodLocator = unmarshaller.readObject(EJBMethodLocator.class);
+                    }
+                    int identityId = unmarshaller.readInt();
+                    identity = identityId == 0 ? connection.getLocalIdentity() : connection.getLocalIdentity(identityId);
                 } else {
-                    parameterTypeNames = sigString.split(String.valueOf(METHOD_PARAM_TYPE_SEPARATOR));
+                    assert version <= 2;
+                    DataInputStream data = new DataInputStream(input);
+                    final String methodName = data.readUTF();
+                    // method signature
+                    final String sigString = data.readUTF();
+                    unmarshaller.start(Marshalling.createByteInput(data));
+                    String appName = unmarshaller.readObject(String.class);
+                    String moduleName = unmarshaller.readObject(String.class);
+                    String distinctName = unmarshaller.readObject(String.class);
+                    String beanName = unmarshaller.readObject(String.class);
+                    identifier = new EJBIdentifier(appName, moduleName, beanName, distinctName);
+
+                    // parse out the signature string
+                    final String[] parameterTypeNames;
+                    if (sigString.isEmpty()) {
+                        parameterTypeNames = new String[0];
+                    } else {
+                        parameterTypeNames = sigString.split(String.valueOf(METHOD_PARAM_TYPE_SEPARATOR));
+                    }
+                    methodLocator = new EJBMethodLocator(methodName, parameterTypeNames);
+                    identity = connection.getLocalIdentity();
+                }
+                if (admissionControl != null && ! admissionControl.tryAcquire(identifier)) {
+                    // turn the invocation away; the rest of the request is discarded with the message
+                    unmarshaller.finish();
+                    ok = true;
+                    returnUnmarshallingContext(unmarshallingContext);
+                    writeServerBusy(invId, identifier);
+                    return;
+                }
+                ok = true;
+            } finally {
+                if (! ok) {
+                    safeClose(unmarshaller);
                 }
-                methodLocator = new EJBMethodLocator(methodName, parameterTypeNames);
-                identity = connection.getLocalIdentity();
             }
             final RemotingInvocationRequest request = new RemotingInvocationRequest(
-                invId, identifier, methodLocator, classResolver, unmarshaller, identity
+                invId, identifier, methodLocator, target, unmarshallingContext, identity
             );
             InProgress value = new InProgress(request);
             invocations.put(value);
@@ -461,6 +621,67 @@ final class EJBServerChannel {
         }
     }
 
+    /**
+     * Write the elements of a {@code Stream} result in chunks, as described in {@link StreamedResultIterator}.  Each
+     * chunk is flushed to the client as soon as it is complete; once the client stops reading, the flow control of the
+     * message holds this thread back.  If the client has not taken a chunk within the idle timeout, the message is
+     * cancelled, which fails the write and releases the client's side of the message as well.  The stream is closed
+     * in any case.
+     *
+     * @param marshaller the started marshaller of the response
+     * @param os the response message
+     * @param result the result to write
+     * @param timer the timer for the idle timeout
+     * @param idleTimeout the idle timeout in milliseconds, or 0 to wait indefinitely
+     * @throws IOException if the write fails or the message was cancelled
+     */
+    static void writeStreamedResult(final Marshaller marshaller, final MessageOutputStream os, final Stream<?> result, final XnioExecutor timer, final long idleTimeout) throws IOException {
+        final Iterator<?> iterator = result.iterator();
+        final Object[] chunk = new Object[STREAM_CHUNK_SIZE];
+        try {
+            for (;;) {
+                int count = 0;
+                RuntimeException failure = null;
+                try {
+                    while (count < chunk.length && iterator.hasNext()) {
+                        chunk[count ++] = iterator.next();
+                    }
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                if (count > 0) {
+                    final XnioExecutor.Key deadline = idleTimeout > 0 ? timer.executeAfter(os::cancel, idleTimeout, TimeUnit.MILLISECONDS) : null;
+                    try {
+                        marshaller.writeObject(Integer.valueOf(count));
+                        for (int i = 0; i < count; i ++) {
+                            marshaller.writeObject(chunk[i]);
+                            chunk[i] = null;
+                        }
+                        // do not hold on to elements which have already been sent
+                        marshaller.clearInstanceCache();
+                        marshaller.flush();
+                        os.flush();
+                    } finally {
+                        if (deadline != null) {
+                            deadline.remove();
+                        }
+                    }
+                }
+                if (failure != null) {
+                    marshaller.writeObject(Integer.valueOf(-1));
+                    marshaller.writeObject(failure);
+                    return;
+                }
+                if (count < chunk.length) {
+                    marshaller.writeObject(Integer.valueOf(0));
+                    return;
+                }
+            }
+        } finally {
+            result.close();
+        }
+    }
+
     ExceptionSupplier<ImportResult<?>, SystemException> readTransaction(final DataInput input) throws IOException {
         final int type = input.readUnsignedByte();
         if (type == 0) {
@@ -489,27 +710,50 @@ final class EJBServerChannel {
         }
     }
 
+    private void sendResponses(final List<ByteArrayMessageOutputStream> responses) {
+        try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
+            MessageCoalescer.writeBatch(os, Protocol.INVOCATION_BATCH_RESPONSE, responses);
+        } catch (IOException e) {
+            // nothing to do at this point; the client doesn't want the response
+            Logs.REMOTING.trace("EJB response write failed", e);
+        }
+    }
+
+    private void writeServerBusy(final int invId, final EJBIdentifier identifier) {
+        final String message = Logs.REMOTING.remoteMessageServerBusy(identifier);
+        try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
+            os.writeByte(Protocol.SERVER_BUSY);
+            os.writeShort(invId);
+            os.writeUTF(message);
+        } catch (IOException e) {
+            // nothing to do at this point; the client doesn't want the response
+            Logs.REMOTING.trace("EJB response write failed", e);
+        }
+    }
+
     private void writeFailedResponse(final int invId, final Throwable e) {
         try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
             os.writeByte(Protocol.APPLICATION_EXCEPTION);
             os.writeShort(invId);
-            final Marshaller marshaller = marshallerFactory.createMarshaller(configuration);
+            final Marshaller marshaller = marshallerPool.getMarshaller();
             marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(os)));
             marshaller.writeObject(new RequestSendFailedException(e.getMessage() + "@" + channel.getConnection().getPeerURI(), e));
             marshaller.writeByte(0);
             marshaller.finish();
+            marshallerPool.returnMarshaller(marshaller);
         } catch (IOException e2) {
             // nothing to do at this point; the client doesn't want the response
             Logs.REMOTING.trace("EJB response write failed", e2);
         }
     }
 
-    abstract class RemotingRequest implements Request {
+    abstract class RemotingRequest implements Request, RequestQueueTime {
         final int invId;
         SessionID sessionId;
         final SecurityIdentity identity;
         ClusterAffinity strongAffinityUpdate;
         NodeAffinity weakAffinityUpdate;
+        volatile long queueWaitNanos = -1;
 
         RemotingRequest(final int invId, final SecurityIdentity identity) {
             this.invId = invId;
@@ -517,7 +761,19 @@ final class EJBServerChannel {
         }
 
         public Executor getRequestExecutor() {
-            return channel.getConnection().getEndpoint().getXnioWorker();
+            return this::executeRequest;
+        }
+
+        void executeRequest(final Runnable task) {
+            final long submitted = System.nanoTime();
+            requestExecutor.execute(() -> {
+                queueWaitNanos = System.nanoTime() - submitted;
+                task.run();
+            });
+        }
+
+        public long getQueueWaitNanos() {
+            return queueWaitNanos;
         }
 
         public SocketAddress getPeerAddress() {
@@ -550,7 +806,7 @@ final class EJBServerChannel {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB response write failed", e);
             } finally {
-                invocations.removeKey(invId);
+                removeInvocation(invId);
             }
         }
 
@@ -564,17 +820,18 @@ final class EJBServerChannel {
                 } else {
                     os.writeByte(Protocol.APPLICATION_EXCEPTION);
                     os.writeShort(invId);
-                    final Marshaller marshaller = marshallerFactory.createMarshaller(configuration);
+                    final Marshaller marshaller = marshallerPool.getMarshaller();
                     marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(os)));
                     marshaller.writeObject(Logs.REMOTING.invalidViewTypeForInvocation(message));
                     marshaller.writeByte(0);
                     marshaller.finish();
+                    marshallerPool.returnMarshaller(marshaller);
                 }
             } catch (IOException e) {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB response write failed", e);
             } finally {
-                invocations.removeKey(invId);
+                removeInvocation(invId);
             }
         }
 
@@ -586,7 +843,7 @@ final class EJBServerChannel {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB response write failed", e);
             } finally {
-                invocations.removeKey(invId);
+                removeInvocation(invId);
             }
         }
 
@@ -600,7 +857,7 @@ final class EJBServerChannel {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB response write failed", e);
             } finally {
-                invocations.removeKey(invId);
+                removeInvocation(invId);
             }
         }
 
@@ -617,6 +874,9 @@ final class EJBServerChannel {
         }
 
         public <C> C getProviderInterface(Class<C> providerInterfaceType) {
+            if (providerInterfaceType == RequestQueueTime.class) {
+                return providerInterfaceType.cast(this);
+            }
             final Connection connection = channel.getConnection();
             return providerInterfaceType.isInstance(connection) ? providerInterfaceType.cast(connection) : null;
         }
@@ -628,16 +888,17 @@ final class EJBServerChannel {
                 os.writeByte(Protocol.APPLICATION_EXCEPTION);
                 os.writeShort(invId);
                 if (version >= 3) os.writeByte(getEnlistmentStatus());
-                final Marshaller marshaller = marshallerFactory.createMarshaller(configuration);
+                final Marshaller marshaller = marshallerPool.getMarshaller();
                 marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(os)));
                 marshaller.writeObject(reason);
                 marshaller.writeByte(0);
                 marshaller.finish();
+                marshallerPool.returnMarshaller(marshaller);
             } catch (IOException e) {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB response write failed", e);
             } finally {
-                invocations.removeKey(invId);
+                removeInvocation(invId);
             }
         }
 
@@ -711,7 +972,7 @@ final class EJBServerChannel {
                 PackedInteger.writePackedInteger(os, encodedForm.length);
                 os.write(encodedForm);
                 if (1 <= version && version <= 2) {
-                    final Marshaller marshaller = marshallerFactory.createMarshaller(configuration);
+                    final Marshaller marshaller = marshallerPool.getMarshaller();
                     marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(os)));
                     if (strongAffinityUpdate != null) {
                         marshaller.writeObject(strongAffinityUpdate);
@@ -719,6 +980,7 @@ final class EJBServerChannel {
                         marshaller.writeObject(new NodeAffinity(channel.getConnection().getEndpoint().getName()));
                     }
                     marshaller.finish();
+                    marshallerPool.returnMarshaller(marshaller);
                 } else {
                     assert version >= 3;
                     os.writeByte(txnCmd);
@@ -753,229 +1015,324 @@ final class EJBServerChannel {
     final class RemotingInvocationRequest extends RemotingRequest implements InvocationRequest {
         final EJBIdentifier identifier;
         final EJBMethodLocator methodLocator;
-        final ServerClassResolver classResolver;
-        final Unmarshaller remaining;
+        final InvocationTargetTable.Target target;
+        final UnmarshallingContext unmarshallingContext;
         int txnCmd = 0; // assume nobody will ask about the transaction
 
-        RemotingInvocationRequest(final int invId, final EJBIdentifier identifier, final EJBMethodLocator methodLocator, final ServerClassResolver classResolver, final Unmarshaller remaining, final SecurityIdentity identity) {
+        RemotingInvocationRequest(final int invId, final EJBIdentifier identifier, final EJBMethodLocator methodLocator, final InvocationTargetTable.Target target, final UnmarshallingContext unmarshallingContext, final SecurityIdentity identity) {
             super(invId, identity);
             this.identifier = identifier;
             this.methodLocator = methodLocator;
-            this.classResolver = classResolver;
-            this.remaining = remaining;
+            this.target = target;
+            this.unmarshallingContext = unmarshallingContext;
+        }
+
+        private boolean isStreamingReturnType(final Class<?> viewType) {
+            final Method method = ViewMethodIndex.forViewClass(viewType).getMethod(methodLocator);
+            if (method == null) {
+                return false;
+            }
+            final Class<?> returnType = method.getReturnType();
+            return returnType == Stream.class;
+        }
+
+        private void writeAttachments(final Marshaller marshaller, final Map<String, Object> attachments) throws IOException {
+            int count = attachments.size();
+            if (count > 255) {
+                marshaller.writeByte(255);
+            } else {
+                marshaller.writeByte(count);
+            }
+            int i = 0;
+            for (Map.Entry<String, Object> entry : attachments.entrySet()) {
+                if (attachmentKeys == null) {
+                    marshaller.writeObject(entry.getKey());
+                } else {
+                    attachmentKeys.writeKey(marshaller, entry.getKey());
+                }
+                marshaller.writeObject(entry.getValue());
+                if (i ++ == 255) {
+                    break;
+                }
+            }
         }
 
         public Resolved getRequestContent(final ClassLoader classLoader) throws IOException, ClassNotFoundException {
-            classResolver.setClassLoader(classLoader);
+            unmarshallingContext.getClassResolver().setClassLoader(classLoader);
+            final Unmarshaller unmarshaller = unmarshallingContext.getUnmarshaller();
+            boolean ok = false;
+            try {
+                final Resolved resolved = readRequestContent(classLoader, unmarshaller);
+                ok = true;
+                return resolved;
+            } finally {
+                if (ok) {
+                    returnUnmarshallingContext(unmarshallingContext);
+                } else {
+                    // also closes the message, releasing its inbound message slot
+                    safeClose(unmarshaller);
+                }
+            }
+        }
+
+        private Resolved readRequestContent(final ClassLoader classLoader, final Unmarshaller unmarshaller) throws IOException, ClassNotFoundException {
             int responseCompressLevel = 0;
+            int responseCompressThreshold = -1;
             // resolve the rest of everything here
-            try (Unmarshaller unmarshaller = remaining) {
-                Affinity weakAffinity = Affinity.NONE;
-                ExceptionSupplier<ImportResult<?>, SystemException> transactionSupplier = null;
-                final EJBLocator<?> locator;
-                if (version >= 3) {
-                    weakAffinity = unmarshaller.readObject(Affinity.class);
-                    if (weakAffinity == null) weakAffinity = Affinity.NONE;
-                    int flags = unmarshaller.readUnsignedByte();
-                    responseCompressLevel = flags & Protocol.COMPRESS_RESPONSE;
-                    transactionSupplier = readTransaction(unmarshaller);
+            Affinity weakAffinity = Affinity.NONE;
+            ExceptionSupplier<ImportResult<?>, SystemException> transactionSupplier = null;
+            final EJBLocator<?> locator;
+            if (version >= 3) {
+                weakAffinity = unmarshaller.readObject(Affinity.class);
+                if (weakAffinity == null) weakAffinity = Affinity.NONE;
+                int flags = unmarshaller.readUnsignedByte();
+                responseCompressLevel = flags & Protocol.COMPRESS_RESPONSE;
+                responseCompressThreshold = AdaptiveCompressionOutputStream.decodeThreshold(flags);
+                transactionSupplier = readTransaction(unmarshaller);
+                if (invocationTargets != null) {
+                    locator = InvocationTargetTable.readLocator(unmarshaller, target, classLoader);
+                    // the identifier of a full locator is not shared with a target from the table
+                    if (! identifier.equals(locator.getIdentifier())) {
+                        throw Logs.REMOTING.mismatchedMethodLocation();
+                    }
+                } else {
                     locator = unmarshaller.readObject(EJBLocator.class);
                     // do identity checks for these strings to guarantee integrity.
                     // noinspection StringEquality
                     if (identifier != locator.getIdentifier()) {
                         throw Logs.REMOTING.mismatchedMethodLocation();
                     }
+                }
 
-                } else {
-                    assert version <= 2;
+            } else {
+                assert version <= 2;
 
-                    locator = unmarshaller.readObject(EJBLocator.class);
-                    // do identity checks for these strings to guarantee integrity.  can't check identifier because that class didn't exist in V2
-                    //noinspection StringEquality
-                    if (identifier.getAppName() != locator.getAppName() ||
-                        identifier.getModuleName() != locator.getModuleName() ||
-                        identifier.getBeanName() != locator.getBeanName() ||
-                        identifier.getDistinctName() != locator.getDistinctName()) {
+                locator = unmarshaller.readObject(EJBLocator.class);
+                // do identity checks for these strings to guarantee integrity.  can't check identifier because that class didn't exist in V2
+                //noinspection StringEquality
+                if (identifier.getAppName() != locator.getAppName() ||
+                    identifier.getModuleName() != locator.getModuleName() ||
+                    identifier.getBeanName() != locator.getBeanName() ||
+                    identifier.getDistinctName() != locator.getDistinctName()) {
 
-                        throw Logs.REMOTING.mismatchedMethodLocation();
+                    throw Logs.REMOTING.mismatchedMethodLocation();
+                }
+            }
+            Object[] parameters = new Object[methodLocator.getParameterCount()];
+            int[] segmentKinds = null;
+            if (binarySegments) {
+                final int segmentCount = PackedInteger.readPackedInteger(unmarshaller);
+                if (segmentCount > 0) {
+                    segmentKinds = new int[parameters.length];
+                    for (int i = 0; i < segmentCount; i ++) {
+                        final int segment = PackedInteger.readPackedInteger(unmarshaller);
+                        final int index = segment >>> 1;
+                        if (index >= parameters.length) {
+                            throw Logs.REMOTING.mismatchedMethodLocation();
+                        }
+                        segmentKinds[index] = (segment & 1) + 1;
                     }
                 }
-                Object[] parameters = new Object[methodLocator.getParameterCount()];
-                for (int i = 0; i < parameters.length; i ++) {
+            }
+            for (int i = 0; i < parameters.length; i ++) {
+                if (segmentKinds == null || segmentKinds[i] == BinarySegments.NONE) {
                     parameters[i] = unmarshaller.readObject();
                 }
-                int attachmentCount = PackedInteger.readPackedInteger(unmarshaller);
-                final Map<String, Object> attachments = new HashMap<>(attachmentCount);
-                for (int i = 0; i < attachmentCount; i ++) {
-                    String attName = unmarshaller.readObject(String.class);
-                    if (attName.equals(EJBClientInvocationContext.PRIVATE_ATTACHMENTS_KEY)) {
-                        if (version <= 2) {
-                            // only supported for protocol v1/2 - read out transaction ID
-                            @SuppressWarnings("unchecked")
-                            Map<Object, Object> map = (Map<Object, Object>) unmarshaller.readObject();
-                            final Object transactionIdObject = map.get(AttachmentKeys.TRANSACTION_ID_KEY);
-                            if (transactionIdObject != null) {
-                                // attach it
-                                final TransactionID transactionId = (TransactionID) transactionIdObject;
-                                // look up the transaction
-                                if (transactionId instanceof UserTransactionID) {
-                                    transactionSupplier = () -> new ImportResult<Transaction>(transactionServer.getOrBeginTransaction(((UserTransactionID) transactionId).getId(), 0), SubordinateTransactionControl.EMPTY, false);
-                                } else if (transactionId instanceof XidTransactionID) {
-                                    transactionSupplier = () -> {
-                                        try {
-                                            return transactionServer.getTransactionService().getTransactionContext().findOrImportTransaction(((XidTransactionID) transactionId).getXid(), 0);
-                                        } catch (XAException e) {
-                                            throw new SystemException(e.getMessage());
-                                        }
-                                    };
-                                } else {
-                                    throw Assert.impossibleSwitchCase(transactionId);
-                                }
+            }
+            int attachmentCount = PackedInteger.readPackedInteger(unmarshaller);
+            final Map<String, Object> attachments = new HashMap<>(attachmentCount);
+            for (int i = 0; i < attachmentCount; i ++) {
+                String attName = attachmentKeys == null ? unmarshaller.readObject(String.class) : attachmentKeys.readKey(unmarshaller);
+                if (attName.equals(EJBClientInvocationContext.PRIVATE_ATTACHMENTS_KEY)) {
+                    if (version <= 2) {
+                        // only supported for protocol v1/2 - read out transaction ID
+                        @SuppressWarnings("unchecked")
+                        Map<Object, Object> map = (Map<Object, Object>) unmarshaller.readObject();
+                        final Object transactionIdObject = map.get(AttachmentKeys.TRANSACTION_ID_KEY);
+                        if (transactionIdObject != null) {
+                            // attach it
+                            final TransactionID transactionId = (TransactionID) transactionIdObject;
+                            // look up the transaction
+                            if (transactionId instanceof UserTransactionID) {
+                                transactionSupplier = () -> new ImportResult<Transaction>(transactionServer.getOrBeginTransaction(((UserTransactionID) transactionId).getId(), 0), SubordinateTransactionControl.EMPTY, false);
+                            } else if (transactionId instanceof XidTransactionID) {
+                                transactionSupplier = () -> {
+                                    try {
+                                        return transactionServer.getTransactionService().getTransactionContext().findOrImportTransaction(((XidTransactionID) transactionId).getXid(), 0);
+                                    } catch (XAException e) {
+                                        throw new SystemException(e.getMessage());
+                                    }
+                                };
+                            } else {
+                                throw Assert.impossibleSwitchCase(transactionId);
                             }
-                            weakAffinity = (Affinity) map.getOrDefault(AttachmentKeys.WEAK_AFFINITY, weakAffinity);
+                        }
+                        weakAffinity = (Affinity) map.getOrDefault(AttachmentKeys.WEAK_AFFINITY, weakAffinity);
 
 
-                        } else {
-                            // discard content for v3
-                            unmarshaller.readObject();
-                        }
                     } else {
-                        attachments.put(attName, unmarshaller.readObject());
+                        // discard content for v3
+                        unmarshaller.readObject();
                     }
+                } else {
+                    attachments.put(attName, unmarshaller.readObject());
                 }
-                attachments.put(EJBClient.SOURCE_ADDRESS_KEY, channel.getConnection().getPeerAddress());
-
-                final ExceptionSupplier<ImportResult<?>, SystemException> finalTransactionSupplier = transactionSupplier;
-
-                if(version == 2) {
-                    //version 2 did not send compression information in the response stream
-                    //instead it must be read from the class
-                    Method invokedMethod = findMethod(locator.getViewType(), methodLocator);
-                    CompressionHint compressionHint = invokedMethod == null ? null : invokedMethod.getAnnotation(CompressionHint.class);
-                    // then class level
-                    if (compressionHint == null) {
-                        compressionHint = invokedMethod == null ? null : invokedMethod.getDeclaringClass().getAnnotation(CompressionHint.class);
-                    }
-                    if(compressionHint != null) {
-                        if(compressionHint.compressResponse()) {
-                            responseCompressLevel = compressionHint.compressionLevel();
-                        }
+            }
+            if (segmentKinds != null) {
+                for (int i = 0; i < parameters.length; i ++) {
+                    if (segmentKinds[i] != BinarySegments.NONE) {
+                        parameters[i] = BinarySegments.readSegment(unmarshaller, segmentKinds[i]);
                     }
                 }
+            }
+            unmarshaller.finish();
+            attachments.put(EJBClient.SOURCE_ADDRESS_KEY, channel.getConnection().getPeerAddress());
 
-                final int finalResponseCompressLevel = responseCompressLevel == 15 ? Deflater.DEFAULT_COMPRESSION : min(responseCompressLevel, 9);
-                return new Resolved() {
+            final ExceptionSupplier<ImportResult<?>, SystemException> finalTransactionSupplier = transactionSupplier;
 
-                    @NotNull
-                    public Map<String, Object> getAttachments() {
-                        return attachments;
-                    }
+            if(version == 2) {
+                //version 2 did not send compression information in the response stream
+                //instead it must be read from the class
+                final int hintedLevel = ViewMethodIndex.forViewClass(locator.getViewType()).getResponseCompressionLevel(methodLocator);
+                if (hintedLevel != 0) {
+                    responseCompressLevel = hintedLevel;
+                }
+            }
 
-                    @NotNull
-                    public Object[] getParameters() {
-                        return parameters;
-                    }
+            final int finalResponseCompressLevel = responseCompressLevel == 15 ? Deflater.DEFAULT_COMPRESSION : min(responseCompressLevel, 9);
+            final int finalResponseCompressThreshold = responseCompressThreshold;
+            // only results of methods declared to return exactly Stream are streamed, as on the client
+            final boolean streamingResult = streamingResults && isStreamingReturnType(locator.getViewType());
+            return new Resolved() {
 
-                    @NotNull
-                    public EJBLocator<?> getEJBLocator() {
-                        return locator;
-                    }
+                @NotNull
+                public Map<String, Object> getAttachments() {
+                    return attachments;
+                }
+
+                @NotNull
+                public Object[] getParameters() {
+                    return parameters;
+                }
 
-                    public boolean hasTransaction() {
-                        return finalTransactionSupplier != null;
+                @NotNull
+                public EJBLocator<?> getEJBLocator() {
+                    return locator;
+                }
+
+                public boolean hasTransaction() {
+                    return finalTransactionSupplier != null;
+                }
+
+                public Transaction getTransaction() throws SystemException, IllegalStateException {
+                    if (finalTransactionSupplier == null) {
+                        return null;
+                    }
+                    if (txnCmd != 0) {
+                        throw new IllegalStateException();
+                    }
+                    final ImportResult<?> importResult = finalTransactionSupplier.get();
+                    if (importResult.isNew()) {
+                        txnCmd = 1;
+                    } else {
+                        txnCmd = 2;
                     }
+                    return importResult.getTransaction();
+                }
 
-                    public Transaction getTransaction() throws SystemException, IllegalStateException {
-                        if (finalTransactionSupplier == null) {
-                            return null;
-                        }
-                        if (txnCmd != 0) {
-                            throw new IllegalStateException();
-                        }
-                        final ImportResult<?> importResult = finalTransactionSupplier.get();
-                        if (importResult.isNew()) {
-                            txnCmd = 1;
+                public void writeInvocationResult(final Object result) {
+                    MessageOutputStream os = null;
+                    final boolean streaming = streamingResult && result instanceof Stream;
+                    final int segmentKind = binarySegments && ! streaming ? BinarySegments.kindOf(result) : BinarySegments.NONE;
+                    // small responses may be sent together with others
+                    final ByteArrayMessageOutputStream buffered = responseCoalescer != null && ! streaming && segmentKind == BinarySegments.NONE ? new ByteArrayMessageOutputStream() : null;
+                    try (MessageOutputStream underlying = buffered != null ? buffered : messageTracker.openMessageUninterruptibly()) {
+                        if (finalResponseCompressLevel != 0 && finalResponseCompressThreshold != -1) {
+                            // the client asked us to compress only if the response is big enough
+                            os = new AdaptiveCompressionOutputStream(underlying, compressionCodec, finalResponseCompressLevel, finalResponseCompressThreshold);
+                        } else if(finalResponseCompressLevel != 0) {
+                            underlying.writeByte(compressionCodec.getMessageId());
+                            os = new WrapperMessageOutputStream(underlying, compressionCodec.compressing(underlying, finalResponseCompressLevel));
                         } else {
-                            txnCmd = 2;
+                            os = underlying;
                         }
-                        return importResult.getTransaction();
-                    }
-
-                    public void writeInvocationResult(final Object result) {
-                        MessageOutputStream os;
-                        try (MessageOutputStream underlying = messageTracker.openMessageUninterruptibly()) {
-                            if(finalResponseCompressLevel != 0) {
-                                underlying.writeByte(Protocol.COMPRESSED_INVOCATION_MESSAGE);
-                                os = new WrapperMessageOutputStream(underlying, new DeflaterOutputStream(underlying, new Deflater(finalResponseCompressLevel)));
-                            } else {
-                                os = underlying;
+                        os.writeByte(streaming ? Protocol.INVOCATION_STREAM_RESPONSE : Protocol.INVOCATION_RESPONSE);
+                        os.writeShort(invId);
+                        if (version >= 3) {
+                            os.writeByte(txnCmd);
+                            int updateBits = 0;
+                            if (sessionId != null) {
+                                updateBits |= Protocol.UPDATE_BIT_SESSION_ID;
                             }
-                            os.writeByte(Protocol.INVOCATION_RESPONSE);
-                            os.writeShort(invId);
-                            if (version >= 3) {
-                                os.writeByte(txnCmd);
-                                int updateBits = 0;
-                                if (sessionId != null) {
-                                    updateBits |= Protocol.UPDATE_BIT_SESSION_ID;
-                                }
-                                if (weakAffinityUpdate != null) {
-                                    updateBits |= Protocol.UPDATE_BIT_WEAK_AFFINITY;
-                                }
-                                if (strongAffinityUpdate != null) {
-                                    updateBits |= Protocol.UPDATE_BIT_STRONG_AFFINITY;
-                                }
-                                os.writeByte(updateBits);
-                                if (sessionId != null) {
-                                    final byte[] bytes = sessionId.getEncodedForm();
-                                    PackedInteger.writePackedInteger(os, bytes.length);
-                                    os.write(bytes);
-                                }
-                                if (weakAffinityUpdate != null) {
-                                    final String nodeName = weakAffinityUpdate.getNodeName();
-                                    final byte[] bytes = nodeName.getBytes(StandardCharsets.UTF_8);
-                                    PackedInteger.writePackedInteger(os, bytes.length);
-                                    os.write(bytes);
-                                }
-                                if (strongAffinityUpdate != null) {
-                                    final String clusterName = strongAffinityUpdate.getClusterName();
-                                    final byte[] bytes = clusterName.getBytes(StandardCharsets.UTF_8);
-                                    PackedInteger.writePackedInteger(os, bytes.length);
-                                    os.write(bytes);
-                                }
+                            if (weakAffinityUpdate != null) {
+                                updateBits |= Protocol.UPDATE_BIT_WEAK_AFFINITY;
                             }
-                            final Marshaller marshaller = marshallerFactory.createMarshaller(configuration);
-                            marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(os)));
-                            marshaller.writeObject(result);
-                            attachments.remove(EJBClient.SOURCE_ADDRESS_KEY);
-                            if (version >= 3) {
-                                attachments.remove(Affinity.WEAK_AFFINITY_CONTEXT_KEY);
+                            if (strongAffinityUpdate != null) {
+                                updateBits |= Protocol.UPDATE_BIT_STRONG_AFFINITY;
                             }
-                            int count = attachments.size();
-                            if (count > 255) {
-                                marshaller.writeByte(255);
-                            } else {
-                                marshaller.writeByte(count);
+                            os.writeByte(updateBits);
+                            if (sessionId != null) {
+                                final byte[] bytes = sessionId.getEncodedForm();
+                                PackedInteger.writePackedInteger(os, bytes.length);
+                                os.write(bytes);
                             }
-                            int i = 0;
-                            for (Map.Entry<String, Object> entry : attachments.entrySet()) {
-                                marshaller.writeObject(entry.getKey());
-                                marshaller.writeObject(entry.getValue());
-                                if (i ++ == 255) {
-                                    break;
-                                }
+                            if (weakAffinityUpdate != null) {
+                                final String nodeName = weakAffinityUpdate.getNodeName();
+                                final byte[] bytes = nodeName.getBytes(StandardCharsets.UTF_8);
+                                PackedInteger.writePackedInteger(os, bytes.length);
+                                os.write(bytes);
                             }
-                            marshaller.finish();
-                            os.close();
-                        } catch (IOException e) {
-                            // nothing to do at this point; the client doesn't want the response
-                            Logs.REMOTING.trace("EJB response write failed", e);
-                        } finally {
-                            invocations.removeKey(invId);
+                            if (strongAffinityUpdate != null) {
+                                final String clusterName = strongAffinityUpdate.getClusterName();
+                                final byte[] bytes = clusterName.getBytes(StandardCharsets.UTF_8);
+                                PackedInteger.writePackedInteger(os, bytes.length);
+                                os.write(bytes);
+                            }
+                        }
+                        final Marshaller marshaller = marshallerPool.getMarshaller();
+                        marshaller.start(new NoFlushByteOutput(Marshalling.createByteOutput(os)));
+                        attachments.remove(EJBClient.SOURCE_ADDRESS_KEY);
+                        if (version >= 3) {
+                            attachments.remove(Affinity.WEAK_AFFINITY_CONTEXT_KEY);
+                        }
+                        if (streaming) {
+                            // the attachments go first so that the client has them before the invocation returns
+                            writeAttachments(marshaller, attachments);
+                            writeStreamedResult(marshaller, os, (Stream<?>) result, channel.getConnection().getEndpoint().getXnioWorker().getIoThread(), STREAM_IDLE_TIMEOUT);
+                        } else {
+                            if (binarySegments) {
+                                // a large binary result follows the attachments instead
+                                marshaller.writeByte(segmentKind);
+                            }
+                            if (segmentKind == BinarySegments.NONE) {
+                                marshaller.writeObject(result);
+                            }
+                            writeAttachments(marshaller, attachments);
+                        }
+                        if (segmentKind != BinarySegments.NONE) {
+                            BinarySegments.writeSegment(marshaller, os, result);
                         }
+                        marshaller.finish();
+                        marshallerPool.returnMarshaller(marshaller);
+                        os.close();
+                        if (buffered != null) {
+                            if (responseCoalescer.accepts(buffered.size())) {
+                                responseCoalescer.add(buffered);
+                            } else {
+                                sendResponses(Collections.singletonList(buffered));
+                            }
+                        }
+                    } catch (IOException e) {
+                        // nothing to do at this point; the client doesn't want the response
+                        Logs.REMOTING.trace("EJB response write failed", e);
+                    } finally {
+                        // make sure a pooled deflater is released even if the write failed
+                        safeClose(os);
+                        removeInvocation(invId);
                     }
+                }
 
-                };
-            }
+            };
         }
 
         @Override
@@ -1008,7 +1365,7 @@ final class EJBServerChannel {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB response write failed", e);
             } finally {
-                invocations.removeKey(invId);
+                removeInvocation(invId);
             }
         }
 
@@ -1022,7 +1379,7 @@ final class EJBServerChannel {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB response write failed", e);
             } finally {
-                invocations.removeKey(invId);
+                removeInvocation(invId);
             }
         }
 
@@ -1047,36 +1404,13 @@ final class EJBServerChannel {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB response write failed", e);
             } finally {
-                invocations.removeKey(invId);
+                removeInvocation(invId);
             } else {
                 writeFailure(Logs.REMOTING.requestCancelled());
             }
         }
     }
 
-    private static Method findMethod(final Class componentView, final EJBMethodLocator ejbMethodLocator) {
-        final Method[] viewMethods = componentView.getMethods();
-        for (final Method method : viewMethods) {
-            if (method.getName().equals(ejbMethodLocator.getMethodName())) {
-                final Class<?>[] methodParamTypes = method.getParameterTypes();
-                if (methodParamTypes.length != ejbMethodLocator.getParameterCount()) {
-                    continue;
-                }
-                boolean found = true;
-                for (int i = 0; i < methodParamTypes.length; i++) {
-                    if (!methodParamTypes[i].getName().equals(ejbMethodLocator.getParameterTypeName(i))) {
-                        found = false;
-                        break;
-                    }
-                }
-                if (found) {
-                    return method;
-                }
-            }
-        }
-        return null;
-    }
-
     static final class InProgress {
         private final RemotingInvocationRequest incomingInvocation;
         private CancelHandle cancelHandle;
@@ -1091,6 +1425,10 @@ final class EJBServerChannel {
             return incomingInvocation.invId;
         }
 
+        EJBIdentifier getEJBIdentifier() {
+            return incomingInvocation.getEJBIdentifier();
+        }
+
         CancelHandle getCancelHandle() {
             return cancelHandle;
         }
@@ -1111,6 +1449,24 @@ final class EJBServerChannel {
         }
     }
 
+    static final class UnmarshallingContext {
+        private final ServerClassResolver classResolver;
+        private final Unmarshaller unmarshaller;
+
+        UnmarshallingContext(final ServerClassResolver classResolver, final Unmarshaller unmarshaller) {
+            this.classResolver = classResolver;
+            this.unmarshaller = unmarshaller;
+        }
+
+        ServerClassResolver getClassResolver() {
+            return classResolver;
+        }
+
+        Unmarshaller getUnmarshaller() {
+            return unmarshaller;
+        }
+    }
+
     static final class ServerClassResolver extends AbstractClassResolver {
         private ClassLoader classLoader;
 
@@ -1146,35 +1502,109 @@ final class EJBServerChannel {
         }
     }
 
+    private static final BroadcastCache<ClusterTopologyListener.ClusterInfo> CLUSTER_TOPOLOGY_MESSAGES = new BroadcastCache<>((os, clusterInfoList) -> {
+        os.writeByte(Protocol.CLUSTER_TOPOLOGY_COMPLETE);
+        PackedInteger.writePackedInteger(os, clusterInfoList.size());
+        for (ClusterTopologyListener.ClusterInfo clusterInfo : clusterInfoList) {
+            writeClusterInfo(os, clusterInfo);
+        }
+    });
+
+    private static final BroadcastCache<ClusterTopologyListener.ClusterInfo> CLUSTER_ADDITION_MESSAGES = new BroadcastCache<>((os, clusterInfoList) -> {
+        os.writeByte(Protocol.CLUSTER_TOPOLOGY_ADDITION);
+        PackedInteger.writePackedInteger(os, clusterInfoList.size());
+        for (ClusterTopologyListener.ClusterInfo clusterInfo : clusterInfoList) {
+            writeClusterInfo(os, clusterInfo);
+        }
+    });
+
+    private static final BroadcastCache<String> CLUSTER_REMOVAL_MESSAGES = new BroadcastCache<>((os, clusterNames) -> {
+        os.writeByte(Protocol.CLUSTER_TOPOLOGY_REMOVAL);
+        PackedInteger.writePackedInteger(os, clusterNames.size());
+        for (String clusterName : clusterNames) {
+            os.writeUTF(clusterName);
+        }
+    });
+
+    private static final BroadcastCache<ClusterTopologyListener.ClusterRemovalInfo> CLUSTER_NODE_REMOVAL_MESSAGES = new BroadcastCache<>((os, clusterRemovalInfoList) -> {
+        os.writeByte(Protocol.CLUSTER_TOPOLOGY_NODE_REMOVAL);
+        PackedInteger.writePackedInteger(os, clusterRemovalInfoList.size());
+        for (ClusterTopologyListener.ClusterRemovalInfo removalInfo : clusterRemovalInfoList) {
+            os.writeUTF(removalInfo.getClusterName());
+            final List<String> nodeNamesList = removalInfo.getNodeNames();
+            PackedInteger.writePackedInteger(os, nodeNamesList.size());
+            for (String name : nodeNamesList) {
+                os.writeUTF(name);
+            }
+        }
+    });
+
+    private static final BroadcastCache<EJBModuleIdentifier> MODULE_AVAILABLE_MESSAGES = new BroadcastCache<>((os, modules) -> writeModules(os, Protocol.MODULE_AVAILABLE, modules));
+
+    private static final BroadcastCache<EJBModuleIdentifier> MODULE_UNAVAILABLE_MESSAGES = new BroadcastCache<>((os, modules) -> writeModules(os, Protocol.MODULE_UNAVAILABLE, modules));
+
+    /**
+     * The time in milliseconds over which bursts of module availability events are collected into one message, or 0 to
+     * send each event as it happens.
+     */
+    private static final long MODULE_EVENT_WINDOW = doPrivileged((PrivilegedAction<Long>) () -> {
+        String val = System.getProperty("org.jboss.ejb.server.module-event-window-millis");
+        try {
+            return Long.valueOf(Math.max(0, Long.parseLong(val)));
+        } catch (NumberFormatException e) {
+            return Long.valueOf(100);
+        }
+    }).longValue();
+
+    private static void writeClusterInfo(final MessageOutputStream os, final ClusterTopologyListener.ClusterInfo clusterInfo) throws IOException {
+        os.writeUTF(clusterInfo.getClusterName());
+        final List<ClusterTopologyListener.NodeInfo> nodeInfoList = clusterInfo.getNodeInfoList();
+        PackedInteger.writePackedInteger(os, nodeInfoList.size());
+        for (ClusterTopologyListener.NodeInfo nodeInfo : nodeInfoList) {
+            os.writeUTF(nodeInfo.getNodeName());
+            final List<ClusterTopologyListener.MappingInfo> mappingInfoList = nodeInfo.getMappingInfoList();
+            PackedInteger.writePackedInteger(os, mappingInfoList.size());
+            for (ClusterTopologyListener.MappingInfo mappingInfo : mappingInfoList) {
+                boolean is6 = mappingInfo.getSourceAddress() instanceof Inet6Address;
+                if (is6) {
+                    PackedInteger.writePackedInteger(os, mappingInfo.getNetmaskBits() << 1);
+                } else {
+                    PackedInteger.writePackedInteger(os, mappingInfo.getNetmaskBits() << 1 | 1);
+                }
+                os.write(mappingInfo.getSourceAddress().getAddress());
+                os.writeUTF(mappingInfo.getDestinationAddress());
+                os.writeShort(mappingInfo.getDestinationPort());
+            }
+        }
+    }
+
+    private static void writeModules(final MessageOutputStream os, final int messageId, final List<EJBModuleIdentifier> modules) throws IOException {
+        os.writeByte(messageId);
+        PackedInteger.writePackedInteger(os, modules.size());
+        for (EJBModuleIdentifier module : modules) {
+            final String appName = module.getAppName();
+            os.writeUTF(appName == null ? "" : appName);
+            final String moduleName = module.getModuleName();
+            os.writeUTF(moduleName == null ? "" : moduleName);
+            final String distinctName = module.getDistinctName();
+            os.writeUTF(distinctName == null ? "" : distinctName);
+        }
+    }
+
+    <T> void writeBroadcast(final BroadcastCache<T> cache, final List<T> content) throws IOException {
+        final ByteArrayMessageOutputStream message = cache.getMessage(content);
+        try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
+            message.writeTo(os);
+        }
+    }
+
     final class ClusterTopologyWriter implements ClusterTopologyListener {
         ClusterTopologyWriter() {
         }
 
         public void clusterTopology(final List<ClusterInfo> clusterInfoList) {
-            try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
-                os.writeByte(Protocol.CLUSTER_TOPOLOGY_COMPLETE);
-                PackedInteger.writePackedInteger(os, clusterInfoList.size());
-                for (ClusterInfo clusterInfo : clusterInfoList) {
-                    os.writeUTF(clusterInfo.getClusterName());
-                    final List<NodeInfo> nodeInfoList = clusterInfo.getNodeInfoList();
-                    PackedInteger.writePackedInteger(os, nodeInfoList.size());
-                    for (NodeInfo nodeInfo : nodeInfoList) {
-                        os.writeUTF(nodeInfo.getNodeName());
-                        final List<MappingInfo> mappingInfoList = nodeInfo.getMappingInfoList();
-                        PackedInteger.writePackedInteger(os, mappingInfoList.size());
-                        for (MappingInfo mappingInfo : mappingInfoList) {
-                            boolean is6 = mappingInfo.getSourceAddress() instanceof Inet6Address;
-                            if (is6) {
-                                PackedInteger.writePackedInteger(os, mappingInfo.getNetmaskBits() << 1);
-                            } else {
-                                PackedInteger.writePackedInteger(os, mappingInfo.getNetmaskBits() << 1 | 1);
-                            }
-                            os.write(mappingInfo.getSourceAddress().getAddress());
-                            os.writeUTF(mappingInfo.getDestinationAddress());
-                            os.writeShort(mappingInfo.getDestinationPort());
-                        }
-                    }
-                }
+            try {
+                writeBroadcast(CLUSTER_TOPOLOGY_MESSAGES, clusterInfoList);
             } catch (IOException e) {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB cluster message write failed", e);
@@ -1182,12 +1612,8 @@ final class EJBServerChannel {
         }
 
         public void clusterRemoval(final List<String> clusterNames) {
-            try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
-                os.writeByte(Protocol.CLUSTER_TOPOLOGY_REMOVAL);
-                PackedInteger.writePackedInteger(os, clusterNames.size());
-                for (String clusterName : clusterNames) {
-                    os.writeUTF(clusterName);
-                }
+            try {
+                writeBroadcast(CLUSTER_REMOVAL_MESSAGES, clusterNames);
             } catch (IOException e) {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB cluster message write failed", e);
@@ -1195,28 +1621,8 @@ final class EJBServerChannel {
         }
 
         public void clusterNewNodesAdded(final ClusterInfo clusterInfo) {
-            try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
-                os.writeByte(Protocol.CLUSTER_TOPOLOGY_ADDITION);
-                PackedInteger.writePackedInteger(os, 1);
-                os.writeUTF(clusterInfo.getClusterName());
-                final List<NodeInfo> nodeInfoList = clusterInfo.getNodeInfoList();
-                PackedInteger.writePackedInteger(os, nodeInfoList.size());
-                for (NodeInfo nodeInfo : nodeInfoList) {
-                    os.writeUTF(nodeInfo.getNodeName());
-                    final List<MappingInfo> mappingInfoList = nodeInfo.getMappingInfoList();
-                    PackedInteger.writePackedInteger(os, mappingInfoList.size());
-                    for (MappingInfo mappingInfo : mappingInfoList) {
-                        boolean is6 = mappingInfo.getSourceAddress() instanceof Inet6Address;
-                        if (is6) {
-                            PackedInteger.writePackedInteger(os, mappingInfo.getNetmaskBits() << 1);
-                        } else {
-                            PackedInteger.writePackedInteger(os, mappingInfo.getNetmaskBits() << 1 | 1);
-                        }
-                        os.write(mappingInfo.getSourceAddress().getAddress());
-                        os.writeUTF(mappingInfo.getDestinationAddress());
-                        os.writeShort(mappingInfo.getDestinationPort());
-                    }
-                }
+            try {
+                writeBroadcast(CLUSTER_ADDITION_MESSAGES, Collections.singletonList(clusterInfo));
             } catch (IOException e) {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB cluster message write failed", e);
@@ -1224,17 +1630,8 @@ final class EJBServerChannel {
         }
 
         public void clusterNodesRemoved(final List<ClusterRemovalInfo> clusterRemovalInfoList) {
-            try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
-                os.writeByte(Protocol.CLUSTER_TOPOLOGY_NODE_REMOVAL);
-                PackedInteger.writePackedInteger(os, clusterRemovalInfoList.size());
-                for (ClusterRemovalInfo removalInfo : clusterRemovalInfoList) {
-                    os.writeUTF(removalInfo.getClusterName());
-                    final List<String> nodeNamesList = removalInfo.getNodeNames();
-                    PackedInteger.writePackedInteger(os, nodeNamesList.size());
-                    for (String name : nodeNamesList) {
-                        os.writeUTF(name);
-                    }
-                }
+            try {
+                writeBroadcast(CLUSTER_NODE_REMOVAL_MESSAGES, clusterRemovalInfoList);
             } catch (IOException e) {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB cluster message write failed", e);
@@ -1243,29 +1640,76 @@ final class EJBServerChannel {
     }
 
     final class ModuleAvailabilityWriter implements ModuleAvailabilityListener {
+        // the latest state of each module changed since the last message; guarded by itself
+        private final Map<EJBModuleIdentifier, Boolean> pendingModules = new LinkedHashMap<>();
+        private boolean windowOpen;
+
         ModuleAvailabilityWriter() {
         }
 
         public void moduleAvailable(final List<EJBModuleIdentifier> modules) {
-            doWrite(true, modules);
+            handleEvent(true, modules);
         }
 
         public void moduleUnavailable(final List<EJBModuleIdentifier> modules) {
-            doWrite(false, modules);
+            handleEvent(false, modules);
+        }
+
+        /**
+         * Send an event right away if none was sent in the current window, or else hold it back until the window ends
+         * and send it along with the rest of the burst.
+         */
+        private void handleEvent(final boolean available, final List<EJBModuleIdentifier> modules) {
+            if (MODULE_EVENT_WINDOW > 0) {
+                synchronized (pendingModules) {
+                    if (windowOpen) {
+                        final Boolean state = Boolean.valueOf(available);
+                        for (EJBModuleIdentifier module : modules) {
+                            // keep the order of the latest changes
+                            pendingModules.remove(module);
+                            pendingModules.put(module, state);
+                        }
+                        return;
+                    }
+                    windowOpen = true;
+                }
+                scheduleWindowEnd();
+            }
+            doWrite(available, modules);
         }
 
-        private void doWrite(final boolean available, final List<EJBModuleIdentifier> modules) {
-            try (MessageOutputStream os = messageTracker.openMessageUninterruptibly()) {
-                os.writeByte(available ? Protocol.MODULE_AVAILABLE : Protocol.MODULE_UNAVAILABLE);
-                PackedInteger.writePackedInteger(os, modules.size());
-                for (EJBModuleIdentifier module : modules) {
-                    final String appName = module.getAppName();
-                    os.writeUTF(appName == null ? "" : appName);
-                    final String moduleName = module.getModuleName();
-                    os.writeUTF(moduleName == null ? "" : moduleName);
-                    final String distinctName = module.getDistinctName();
-                    os.writeUTF(distinctName == null ? "" : distinctName);
+        private void scheduleWindowEnd() {
+            // the window ends on the worker, since writing the update may block on the message window
+            final XnioWorker worker = channel.getConnection().getEndpoint().getXnioWorker();
+            worker.getIoThread().executeAfter(() -> worker.execute(this::endWindow), MODULE_EVENT_WINDOW, TimeUnit.MILLISECONDS);
+        }
+
+        private void endWindow() {
+            final List<EJBModuleIdentifier> available = new ArrayList<>();
+            final List<EJBModuleIdentifier> unavailable = new ArrayList<>();
+            synchronized (pendingModules) {
+                if (pendingModules.isEmpty()) {
+                    windowOpen = false;
+                    return;
+                }
+                for (Map.Entry<EJBModuleIdentifier, Boolean> entry : pendingModules.entrySet()) {
+                    (entry.getValue().booleanValue() ? available : unavailable).add(entry.getKey());
                 }
+                pendingModules.clear();
+            }
+            // the window stays open while events keep coming
+            scheduleWindowEnd();
+            if (! unavailable.isEmpty()) {
+                doWrite(false, unavailable);
+            }
+            if (! available.isEmpty()) {
+                doWrite(true, available);
+            }
+        }
+
+        private void doWrite(final boolean available, final List<EJBModuleIdentifier> modules) {
+            try {
+                writeBroadcast(available ? MODULE_AVAILABLE_MESSAGES : MODULE_UNAVAILABLE_MESSAGES, modules);
             } catch (IOException e) {
                 // nothing to do at this point; the client doesn't want the response
                 Logs.REMOTING.trace("EJB availability message write failed", e);
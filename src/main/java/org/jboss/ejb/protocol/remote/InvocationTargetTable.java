@@ -0,0 +1,264 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jboss.ejb.client.Affinity;
+import org.jboss.ejb.client.EJBIdentifier;
+import org.jboss.ejb.client.EJBLocator;
+import org.jboss.ejb.client.EJBMethodLocator;
+import org.jboss.ejb.client.StatelessEJBLocator;
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.Unmarshaller;
+
+/**
+ * Support for the {@link Protocol#EXTENSION_INVOCATION_TARGETS invocation targets} protocol extension.  An invocation
+ * target is the combination of a view type, an EJB identifier and a method locator.  Instead of the identifier and
+ * method locator objects, an invocation request starts with a packed integer code:
+ * <ul>
+ *     <li>{@code 0} is followed by the identifier and the method locator;</li>
+ *     <li>{@code 1} is followed by a packed table index, the view type name, the identifier and the method locator,
+ *     and defines the target for the index;</li>
+ *     <li>any other code refers to the table entry at the code minus two.</li>
+ * </ul>
+ * In place of the invocation locator, a request then has a byte which is {@code 1} if the locator is a stateless
+ * locator for the defined or referred target, in which case only its affinity follows, or else {@code 0}, followed by
+ * the locator object.
+ * <p>
+ * As with the {@link AttachmentKeyDictionary attachment key dictionary}, the client assigns the table indexes and
+ * keeps sending the definition of an entry until a successful response shows that the server has read it.  The server
+ * resolves the view type of an entry against the class loader of the target EJB and keeps the resolved class for the
+ * following requests.
+ */
+final class InvocationTargetTable {
+
+    /**
+     * The maximum number of entries of a channel table; further targets are always sent in full.
+     */
+    static final int MAX_ENTRIES = 1024;
+
+    private static final int LITERAL = 0;
+    private static final int DEFINITION = 1;
+    private static final int FIRST_REFERENCE = 2;
+
+    private static final int FULL_LOCATOR = 0;
+    private static final int STATELESS_LOCATOR = 1;
+
+    // client side
+    private final ConcurrentHashMap<TargetKey, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    // server side
+    private final AtomicReferenceArray<Target> targets = new AtomicReferenceArray<>(MAX_ENTRIES);
+
+    InvocationTargetTable() {
+    }
+
+    /**
+     * Write the invocation target of a request (client side).
+     *
+     * @param marshaller the marshaller to write to
+     * @param locator the invocation locator
+     * @param methodLocator the method locator
+     * @return the table entry, which must be {@linkplain Entry#confirm() confirmed} once a successful response is
+     *      received, or {@code null} if the target was sent in full
+     * @throws IOException if the write fails
+     */
+    Entry writeTarget(final Marshaller marshaller, final EJBLocator<?> locator, final EJBMethodLocator methodLocator) throws IOException {
+        final Entry entry = entries.computeIfAbsent(new TargetKey(locator.getViewType(), locator.getIdentifier(), methodLocator), this::assign);
+        if (entry == null) {
+            PackedInteger.writePackedInteger(marshaller, LITERAL);
+        } else if (entry.confirmed) {
+            PackedInteger.writePackedInteger(marshaller, FIRST_REFERENCE + entry.index);
+            return entry;
+        } else {
+            PackedInteger.writePackedInteger(marshaller, DEFINITION);
+            PackedInteger.writePackedInteger(marshaller, entry.index);
+            marshaller.writeUTF(locator.getViewType().getName());
+        }
+        marshaller.writeObject(locator.getIdentifier());
+        marshaller.writeObject(methodLocator);
+        return entry;
+    }
+
+    private Entry assign(final TargetKey key) {
+        int index;
+        do {
+            index = nextIndex.get();
+            if (index == MAX_ENTRIES) {
+                return null;
+            }
+        } while (! nextIndex.compareAndSet(index, index + 1));
+        return new Entry(index, key.viewType);
+    }
+
+    /**
+     * Write the invocation locator of a request (client side).
+     *
+     * @param marshaller the marshaller to write to
+     * @param entry the entry returned by {@link #writeTarget}, or {@code null} if there is none
+     * @param locator the invocation locator
+     * @throws IOException if the write fails
+     */
+    static void writeLocator(final Marshaller marshaller, final Entry entry, final EJBLocator<?> locator) throws IOException {
+        if (entry != null && locator.getClass() == StatelessEJBLocator.class && locator.getViewType() == entry.viewType) {
+            marshaller.writeByte(STATELESS_LOCATOR);
+            marshaller.writeObject(locator.getAffinity());
+        } else {
+            marshaller.writeByte(FULL_LOCATOR);
+            marshaller.writeObject(locator);
+        }
+    }
+
+    /**
+     * Read the invocation target of a request (server side).
+     *
+     * @param unmarshaller the unmarshaller to read from
+     * @return the target
+     * @throws IOException if the read fails or the target is not valid
+     * @throws ClassNotFoundException if a target object cannot be read
+     */
+    Target readTarget(final Unmarshaller unmarshaller) throws IOException, ClassNotFoundException {
+        final int code = PackedInteger.readPackedInteger(unmarshaller);
+        if (code == LITERAL) {
+            return new Target(null, unmarshaller.readObject(EJBIdentifier.class), unmarshaller.readObject(EJBMethodLocator.class));
+        } else if (code == DEFINITION) {
+            final int index = PackedInteger.readPackedInteger(unmarshaller);
+            if (index < 0 || index >= MAX_ENTRIES) {
+                throw new StreamCorruptedException("Invalid invocation target index " + index);
+            }
+            final String viewTypeName = unmarshaller.readUTF();
+            final Target target = new Target(viewTypeName, unmarshaller.readObject(EJBIdentifier.class), unmarshaller.readObject(EJBMethodLocator.class));
+            // a repeated definition keeps the first target, along with its resolved view type
+            return targets.compareAndSet(index, null, target) ? target : targets.get(index);
+        } else {
+            final int index = code - FIRST_REFERENCE;
+            final Target target = index < MAX_ENTRIES ? targets.get(index) : null;
+            if (target == null) {
+                throw new StreamCorruptedException("Unknown invocation target index " + index);
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Read the invocation locator of a request (server side).
+     *
+     * @param unmarshaller the unmarshaller to read from
+     * @param target the target of the request
+     * @param classLoader the class loader of the target EJB
+     * @return the locator
+     * @throws IOException if the read fails or the locator is not valid
+     * @throws ClassNotFoundException if the view type or a locator object cannot be loaded
+     */
+    static EJBLocator<?> readLocator(final Unmarshaller unmarshaller, final Target target, final ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        final int form = unmarshaller.readUnsignedByte();
+        if (form == FULL_LOCATOR) {
+            return unmarshaller.readObject(EJBLocator.class);
+        } else if (form == STATELESS_LOCATOR && target.viewTypeName != null) {
+            final Affinity affinity = unmarshaller.readObject(Affinity.class);
+            return StatelessEJBLocator.create(target.getViewType(classLoader), target.identifier, affinity == null ? Affinity.NONE : affinity);
+        } else {
+            throw new StreamCorruptedException("Invalid invocation locator form " + form);
+        }
+    }
+
+    static final class Entry {
+        final int index;
+        final Class<?> viewType;
+        volatile boolean confirmed;
+
+        Entry(final int index, final Class<?> viewType) {
+            this.index = index;
+            this.viewType = viewType;
+        }
+
+        /**
+         * Record that the peer has read the definition of this entry, so that it can be referred to from now on.
+         */
+        void confirm() {
+            confirmed = true;
+        }
+    }
+
+    static final class Target {
+        final String viewTypeName;
+        final EJBIdentifier identifier;
+        final EJBMethodLocator methodLocator;
+        private volatile ResolvedViewType resolved;
+
+        Target(final String viewTypeName, final EJBIdentifier identifier, final EJBMethodLocator methodLocator) {
+            this.viewTypeName = viewTypeName;
+            this.identifier = identifier;
+            this.methodLocator = methodLocator;
+        }
+
+        Class<?> getViewType(final ClassLoader classLoader) throws ClassNotFoundException {
+            ResolvedViewType resolved = this.resolved;
+            // the EJB may have been redeployed with a new class loader since the type was resolved
+            if (resolved == null || resolved.classLoader != classLoader) {
+                // same as the server class resolver
+                final ClassLoader loader = classLoader == null ? InvocationTargetTable.class.getClassLoader() : classLoader;
+                resolved = new ResolvedViewType(classLoader, Class.forName(viewTypeName, false, loader));
+                this.resolved = resolved;
+            }
+            return resolved.viewType;
+        }
+    }
+
+    static final class ResolvedViewType {
+        final ClassLoader classLoader;
+        final Class<?> viewType;
+
+        ResolvedViewType(final ClassLoader classLoader, final Class<?> viewType) {
+            this.classLoader = classLoader;
+            this.viewType = viewType;
+        }
+    }
+
+    static final class TargetKey {
+        final Class<?> viewType;
+        final EJBIdentifier identifier;
+        final EJBMethodLocator methodLocator;
+        private final int hashCode;
+
+        TargetKey(final Class<?> viewType, final EJBIdentifier identifier, final EJBMethodLocator methodLocator) {
+            this.viewType = viewType;
+            this.identifier = identifier;
+            this.methodLocator = methodLocator;
+            hashCode = (viewType.hashCode() * 31 + identifier.hashCode()) * 31 + methodLocator.hashCode();
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(final Object other) {
+            return other instanceof TargetKey && equals((TargetKey) other);
+        }
+
+        boolean equals(final TargetKey other) {
+            return this == other || other != null && viewType == other.viewType && identifier.equals(other.identifier) && methodLocator.equals(other.methodLocator);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * A pure Java implementation of the LZ4 block format.  The compressor is a simple single-probe hash table matcher
+ * which favors speed over ratio; any conforming LZ4 block decoder can read its output.
+ */
+final class LZ4BlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xffff;
+    private static final int MIN_HASH_LOG = 8;
+    private static final int MAX_HASH_LOG = 12;
+    private static final int RUN_MASK = 0xf;
+
+    private LZ4BlockCodec() {
+    }
+
+    /**
+     * Get the maximum size of the compressed form of a block of the given size.
+     *
+     * @param length the uncompressed size
+     * @return the maximum compressed size
+     */
+    static int maxCompressedLength(final int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compress a block.  The destination must have room for at least {@link #maxCompressedLength(int)} bytes.
+     *
+     * @param src the source array
+     * @param srcOff the source offset
+     * @param srcLen the number of bytes to compress
+     * @param dst the destination array
+     * @param dstOff the destination offset
+     * @return the number of bytes written to the destination
+     */
+    static int compress(final byte[] src, final int srcOff, final int srcLen, final byte[] dst, final int dstOff) {
+        final int srcEnd = srcOff + srcLen;
+        int sp = srcOff;
+        int anchor = srcOff;
+        int dp = dstOff;
+        if (srcLen > MF_LIMIT) {
+            final int hashLog = Math.max(MIN_HASH_LOG, Math.min(MAX_HASH_LOG, 32 - Integer.numberOfLeadingZeros(srcLen)));
+            final int hashShift = 32 - hashLog;
+            final int[] table = new int[1 << hashLog];
+            Arrays.fill(table, -1);
+            final int matchLimit = srcEnd - LAST_LITERALS;
+            final int mfLimit = srcEnd - MF_LIMIT;
+            while (sp < mfLimit) {
+                final int seq = readInt(src, sp);
+                final int h = (seq * -1640531535) >>> hashShift;
+                int ref = table[h];
+                table[h] = sp;
+                if (ref == -1 || sp - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                    sp ++;
+                    continue;
+                }
+                // extend the match backwards into the pending literals
+                while (sp > anchor && ref > srcOff && src[sp - 1] == src[ref - 1]) {
+                    sp --;
+                    ref --;
+                }
+                int len = MIN_MATCH;
+                while (sp + len < matchLimit && src[sp + len] == src[ref + len]) {
+                    len ++;
+                }
+                dp = writeLiterals(src, anchor, sp - anchor, len - MIN_MATCH, dst, dp);
+                final int offset = sp - ref;
+                dst[dp ++] = (byte) offset;
+                dst[dp ++] = (byte) (offset >>> 8);
+                if (len - MIN_MATCH >= RUN_MASK) {
+                    dp = writeLength(len - MIN_MATCH - RUN_MASK, dst, dp);
+                }
+                sp += len;
+                anchor = sp;
+            }
+        }
+        // the last sequence consists of literals only
+        dp = writeLiterals(src, anchor, srcEnd - anchor, 0, dst, dp);
+        return dp - dstOff;
+    }
+
+    /**
+     * Decompress a block.
+     *
+     * @param src the source array
+     * @param srcOff the source offset
+     * @param srcLen the number of compressed bytes
+     * @param dst the destination array
+     * @param dstOff the destination offset
+     * @param dstLen the space available in the destination
+     * @return the number of bytes written to the destination
+     * @throws StreamCorruptedException if the compressed data is malformed
+     */
+    static int decompress(final byte[] src, final int srcOff, final int srcLen, final byte[] dst, final int dstOff, final int dstLen) throws StreamCorruptedException {
+        final int srcEnd = srcOff + srcLen;
+        final int dstEnd = dstOff + dstLen;
+        int sp = srcOff;
+        int dp = dstOff;
+        for (;;) {
+            if (sp == srcEnd) {
+                throw corrupt();
+            }
+            final int token = src[sp ++] & 0xff;
+            int literals = token >>> 4;
+            if (literals == RUN_MASK) {
+                int b;
+                do {
+                    if (sp == srcEnd) {
+                        throw corrupt();
+                    }
+                    b = src[sp ++] & 0xff;
+                    literals += b;
+                } while (b == 0xff);
+            }
+            if (literals > srcEnd - sp || literals > dstEnd - dp) {
+                throw corrupt();
+            }
+            System.arraycopy(src, sp, dst, dp, literals);
+            sp += literals;
+            dp += literals;
+            if (sp == srcEnd) {
+                return dp - dstOff;
+            }
+            if (srcEnd - sp < 2) {
+                throw corrupt();
+            }
+            final int offset = (src[sp] & 0xff) | (src[sp + 1] & 0xff) << 8;
+            sp += 2;
+            if (offset == 0 || offset > dp - dstOff) {
+                throw corrupt();
+            }
+            int len = token & RUN_MASK;
+            if (len == RUN_MASK) {
+                int b;
+                do {
+                    if (sp == srcEnd) {
+                        throw corrupt();
+                    }
+                    b = src[sp ++] & 0xff;
+                    len += b;
+                } while (b == 0xff);
+            }
+            len += MIN_MATCH;
+            if (len > dstEnd - dp) {
+                throw corrupt();
+            }
+            final int ref = dp - offset;
+            if (offset >= len) {
+                System.arraycopy(dst, ref, dst, dp, len);
+            } else {
+                // overlapping copy repeats the pattern
+                for (int i = 0; i < len; i ++) {
+                    dst[dp + i] = dst[ref + i];
+                }
+            }
+            dp += len;
+        }
+    }
+
+    private static int writeLiterals(final byte[] src, final int off, final int len, final int matchLen, final byte[] dst, int dp) {
+        final int token = dp ++;
+        final int matchBits = Math.min(matchLen, RUN_MASK);
+        if (len >= RUN_MASK) {
+            dst[token] = (byte) (RUN_MASK << 4 | matchBits);
+            dp = writeLength(len - RUN_MASK, dst, dp);
+        } else {
+            dst[token] = (byte) (len << 4 | matchBits);
+        }
+        System.arraycopy(src, off, dst, dp, len);
+        return dp + len;
+    }
+
+    private static int writeLength(int len, final byte[] dst, int dp) {
+        while (len >= 0xff) {
+            dst[dp ++] = (byte) 0xff;
+            len -= 0xff;
+        }
+        dst[dp ++] = (byte) len;
+        return dp;
+    }
+
+    private static int readInt(final byte[] b, final int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | b[off + 3] << 24;
+    }
+
+    private static StreamCorruptedException corrupt() {
+        return new StreamCorruptedException("Malformed LZ4 block");
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * An input stream which reads data written by an {@link LZ4BlockOutputStream}.
+ */
+final class LZ4BlockInputStream extends FilterInputStream {
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private byte[] compressed;
+
+    LZ4BlockInputStream(final InputStream in) {
+        super(in);
+    }
+
+    public int read() throws IOException {
+        if (position == limit && ! readBlock()) {
+            return -1;
+        }
+        return buffer[position ++] & 0xff;
+    }
+
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && ! readBlock()) {
+            return -1;
+        }
+        final int cnt = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, cnt);
+        position += cnt;
+        return cnt;
+    }
+
+    public long skip(final long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && (position < limit || readBlock())) {
+            final int cnt = (int) Math.min(n - skipped, limit - position);
+            position += cnt;
+            skipped += cnt;
+        }
+        return skipped;
+    }
+
+    public int available() {
+        return limit - position;
+    }
+
+    public boolean markSupported() {
+        return false;
+    }
+
+    public void mark(final int readlimit) {
+    }
+
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private boolean readBlock() throws IOException {
+        final InputStream in = this.in;
+        final int b0 = in.read();
+        if (b0 == -1) {
+            return false;
+        }
+        final int rawLength = (b0 << 8 | readByte(in)) + 1;
+        final int length = readByte(in) << 8 | readByte(in);
+        if (length >= rawLength) {
+            throw new StreamCorruptedException("Malformed LZ4 block header");
+        }
+        byte[] buffer = this.buffer;
+        if (buffer == null || buffer.length < rawLength) {
+            this.buffer = buffer = new byte[rawLength];
+        }
+        if (length == 0) {
+            readFully(in, buffer, rawLength);
+        } else {
+            byte[] compressed = this.compressed;
+            if (compressed == null || compressed.length < length) {
+                this.compressed = compressed = new byte[length];
+            }
+            readFully(in, compressed, length);
+            if (LZ4BlockCodec.decompress(compressed, 0, length, buffer, 0, rawLength) != rawLength) {
+                throw new StreamCorruptedException("Malformed LZ4 block");
+            }
+        }
+        position = 0;
+        limit = rawLength;
+        return true;
+    }
+
+    private static int readByte(final InputStream in) throws IOException {
+        final int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static void readFully(final InputStream in, final byte[] b, final int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            final int res = in.read(b, off, len - off);
+            if (res == -1) {
+                throw new EOFException();
+            }
+            off += res;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * An output stream which writes data as a sequence of {@link LZ4BlockCodec LZ4} blocks.  Each block is preceded by
+ * a four byte header holding the uncompressed length minus one and the compressed length as two unsigned 16-bit
+ * big-endian values; a compressed length of zero means that the block is stored uncompressed because compression
+ * did not make it any smaller.  The end of the data is the end of the underlying stream.
+ */
+final class LZ4BlockOutputStream extends FilterOutputStream {
+
+    static final int MAX_BLOCK_SIZE = 1 << 16;
+
+    private byte[] buffer = new byte[1024];
+    private int count;
+    private byte[] compressed;
+    private boolean closed;
+
+    LZ4BlockOutputStream(final OutputStream out) {
+        super(out);
+    }
+
+    public void write(final int b) throws IOException {
+        if (count == buffer.length) {
+            if (count == MAX_BLOCK_SIZE) {
+                writeBlock();
+            } else {
+                buffer = Arrays.copyOf(buffer, count << 1);
+            }
+        }
+        buffer[count ++] = (byte) b;
+    }
+
+    public void write(final byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                if (count == MAX_BLOCK_SIZE) {
+                    writeBlock();
+                } else {
+                    buffer = Arrays.copyOf(buffer, Math.min(MAX_BLOCK_SIZE, Math.max(count + len, count << 1)));
+                }
+            }
+            final int cnt = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, cnt);
+            count += cnt;
+            off += cnt;
+            len -= cnt;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        final int count = this.count;
+        byte[] compressed = this.compressed;
+        final int maxLength = LZ4BlockCodec.maxCompressedLength(count);
+        if (compressed == null || compressed.length < maxLength) {
+            this.compressed = compressed = new byte[maxLength];
+        }
+        final int length = LZ4BlockCodec.compress(buffer, 0, count, compressed, 0);
+        final OutputStream out = this.out;
+        out.write((count - 1) >>> 8);
+        out.write(count - 1);
+        if (length < count) {
+            out.write(length >>> 8);
+            out.write(length);
+            out.write(compressed, 0, length);
+        } else {
+            out.write(0);
+            out.write(0);
+            out.write(buffer, 0, count);
+        }
+        this.count = 0;
+    }
+
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count > 0) {
+                writeBlock();
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.MarshallerFactory;
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.jboss.marshalling.Unmarshaller;
+
+/**
+ * A bounded pool of marshallers and unmarshallers which all share one marshalling configuration.  A marshaller
+ * or unmarshaller is reset by {@code finish()}, so an instance which has completed a message may be handed back
+ * and used again for the next message, keeping its internal caches and buffers.  Instances which failed part way
+ * through a message must not be returned; they are simply left for the garbage collector.
+ */
+final class MarshallerPool {
+    private final MarshallerFactory marshallerFactory;
+    private final MarshallingConfiguration configuration;
+    private final ArrayBlockingQueue<Marshaller> marshallers;
+    private final ArrayBlockingQueue<Unmarshaller> unmarshallers;
+
+    MarshallerPool(final MarshallerFactory marshallerFactory, final MarshallingConfiguration configuration, final int maxMarshallers, final int maxUnmarshallers) {
+        this.marshallerFactory = marshallerFactory;
+        this.configuration = configuration;
+        marshallers = new ArrayBlockingQueue<>(Math.max(1, maxMarshallers));
+        unmarshallers = new ArrayBlockingQueue<>(Math.max(1, maxUnmarshallers));
+    }
+
+    /**
+     * Get a marshaller, reusing a pooled one if possible.
+     *
+     * @return the marshaller (not {@code null})
+     * @throws IOException if a new marshaller could not be created
+     */
+    Marshaller getMarshaller() throws IOException {
+        final Marshaller marshaller = marshallers.poll();
+        return marshaller == null ? marshallerFactory.createMarshaller(configuration) : marshaller;
+    }
+
+    /**
+     * Return a marshaller whose message was successfully {@linkplain Marshaller#finish() finished}.  If the pool
+     * is full, the marshaller is discarded.
+     *
+     * @param marshaller the marshaller to return
+     */
+    void returnMarshaller(final Marshaller marshaller) {
+        marshallers.offer(marshaller);
+    }
+
+    /**
+     * Get an unmarshaller, reusing a pooled one if possible.
+     *
+     * @return the unmarshaller (not {@code null})
+     * @throws IOException if a new unmarshaller could not be created
+     */
+    Unmarshaller getUnmarshaller() throws IOException {
+        final Unmarshaller unmarshaller = unmarshallers.poll();
+        return unmarshaller == null ? marshallerFactory.createUnmarshaller(configuration) : unmarshaller;
+    }
+
+    /**
+     * Return an unmarshaller whose message was successfully {@linkplain Unmarshaller#finish() finished}.  If the
+     * pool is full, the unmarshaller is discarded.
+     *
+     * @param unmarshaller the unmarshaller to return
+     */
+    void returnUnmarshaller(final Unmarshaller unmarshaller) {
+        unmarshallers.offer(unmarshaller);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.io.IOException;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+import org.jboss.remoting3.MessageOutputStream;
+import org.xnio.XnioExecutor;
+
+/**
+ * Holds small messages back for a short time so that messages which are produced concurrently can be sent together
+ * in a single batch message, sharing one write to the connection.  A batch is sent once the configured delay has
+ * passed since its first message was added, or as soon as the messages in it reach the configured size budget.
+ * The delay is honored at the resolution of the given timer; a delay of zero sends the batch as soon as the executor
+ * gets to it, which coalesces messages produced while it is busy.
+ * <p>
+ * Sending a batch may block until the outbound message window has room, which needs the I/O thread to process the
+ * acknowledgements of the peer, so the timer (normally an I/O thread) is only used to hand the batch to the executor
+ * (normally the worker).
+ *
+ * @param <T> the type of the held messages
+ */
+final class MessageCoalescer<T> {
+
+    /**
+     * The coalescing delay of client requests in microseconds, or -1 if coalescing is disabled.
+     */
+    static final long CLIENT_DELAY_MICROS = getDelayMicros("org.jboss.ejb.client.coalesce-delay-micros");
+
+    /**
+     * The size budget of a batch of client requests in bytes.
+     */
+    static final int CLIENT_MAX_BYTES = getMaxBytes("org.jboss.ejb.client.coalesce-max-bytes");
+
+    /**
+     * The coalescing delay of server responses in microseconds, or -1 if coalescing is disabled.
+     */
+    static final long SERVER_DELAY_MICROS = getDelayMicros("org.jboss.ejb.server.coalesce-delay-micros");
+
+    /**
+     * The size budget of a batch of server responses in bytes.
+     */
+    static final int SERVER_MAX_BYTES = getMaxBytes("org.jboss.ejb.server.coalesce-max-bytes");
+
+    private static long getDelayMicros(final String propertyName) {
+        return doPrivileged((PrivilegedAction<Long>) () -> {
+            String val = System.getProperty(propertyName);
+            try {
+                return Long.valueOf(val);
+            } catch (NumberFormatException e) {
+                return Long.valueOf(-1);
+            }
+        }).longValue();
+    }
+
+    private static int getMaxBytes(final String propertyName) {
+        return doPrivileged((PrivilegedAction<Integer>) () -> {
+            String val = System.getProperty(propertyName);
+            try {
+                return Integer.valueOf(val);
+            } catch (NumberFormatException e) {
+                return Integer.valueOf(16384);
+            }
+        }).intValue();
+    }
+
+    private final XnioExecutor timer;
+    private final Executor executor;
+    private final long delayMicros;
+    private final int maxBytes;
+    private final ToIntFunction<T> sizeFunction;
+    private final Consumer<List<T>> sender;
+    private List<T> pending;
+    private int pendingBytes;
+
+    MessageCoalescer(final XnioExecutor timer, final Executor executor, final long delayMicros, final int maxBytes, final ToIntFunction<T> sizeFunction, final Consumer<List<T>> sender) {
+        this.timer = timer;
+        this.executor = executor;
+        this.delayMicros = delayMicros;
+        this.maxBytes = maxBytes;
+        this.sizeFunction = sizeFunction;
+        this.sender = sender;
+    }
+
+    /**
+     * Determine whether a message of the given size should be coalesced at all.
+     *
+     * @param size the message size
+     * @return {@code true} if the message is small enough to be coalesced
+     */
+    boolean accepts(final int size) {
+        return size < maxBytes;
+    }
+
+    /**
+     * Add a message to the current batch.  The sender is called from this method if the batch is full, or otherwise
+     * from the executor.  The caller must not be an I/O thread, since the sender may block.
+     *
+     * @param message the message
+     */
+    void add(final T message) {
+        final List<T> full;
+        final boolean first;
+        synchronized (this) {
+            List<T> pending = this.pending;
+            first = pending == null;
+            if (first) {
+                this.pending = pending = new ArrayList<>();
+            }
+            pending.add(message);
+            pendingBytes += sizeFunction.applyAsInt(message);
+            if (pendingBytes >= maxBytes) {
+                full = pending;
+                this.pending = null;
+                pendingBytes = 0;
+            } else {
+                full = null;
+            }
+        }
+        if (full != null) {
+            sender.accept(full);
+        } else if (first) {
+            // a timer left over from a batch which filled up early may send the next batch a little early; that's fine
+            if (delayMicros == 0) {
+                executor.execute(this::flush);
+            } else {
+                timer.executeAfter(() -> executor.execute(this::flush), delayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Send the current batch, if there is one.
+     */
+    void flush() {
+        final List<T> pending;
+        synchronized (this) {
+            pending = this.pending;
+            this.pending = null;
+            pendingBytes = 0;
+        }
+        if (pending != null) {
+            sender.accept(pending);
+        }
+    }
+
+    /**
+     * Write a batch message.  A batch of one message is written as the message itself.
+     *
+     * @param out the stream to write to
+     * @param batchMessageId the batch message ID
+     * @param messages the messages
+     * @throws IOException if the write fails
+     */
+    static void writeBatch(final MessageOutputStream out, final int batchMessageId, final List<ByteArrayMessageOutputStream> messages) throws IOException {
+        if (messages.size() == 1) {
+            // no need for the batch envelope
+            messages.get(0).writeTo(out);
+        } else {
+            out.writeByte(batchMessageId);
+            PackedInteger.writePackedInteger(out, messages.size());
+            for (ByteArrayMessageOutputStream message : messages) {
+                PackedInteger.writePackedInteger(out, message.size());
+                message.writeTo(out);
+            }
+        }
+    }
+}
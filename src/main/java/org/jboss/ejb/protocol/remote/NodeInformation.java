@@ -23,6 +23,7 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -52,7 +53,16 @@ final class NodeInformation {
     private final ConcurrentMap<String, ClusterNodeInformation> clustersByName = new ConcurrentHashMap<>(1);
     private final ConcurrentMap<EJBClientChannel, InetSocketAddress> addressesByConnection = new ConcurrentHashMap<>(1);
 
-    private volatile List<ServiceURL> serviceURLCache;
+    /**
+     * The immutable service URL snapshot for each destination of this node.  The snapshot is replaced (under the
+     * object monitor) by every update, and only the entries of the destinations affected by the update are rebuilt,
+     * so that discovery never has to wait for, or repeat, the construction of the service URLs.
+     */
+    private volatile Map<URI, ServiceURLIndex> serviceURLsByDestination = Collections.emptyMap();
+
+    // topology loaded from a snapshot which has been neither confirmed nor expired yet; guarded by this
+    private final Map<URI, Set<EJBModuleIdentifier>> provisionalModules = new HashMap<>(1);
+    private final Set<String> provisionalClusters = new HashSet<>(1);
 
     private volatile boolean invalid;
 
@@ -67,11 +77,9 @@ final class NodeInformation {
     boolean discover(ServiceType serviceType, FilterSpec filterSpec, DiscoveryResult discoveryResult) {
         if (invalid) return false;
         boolean found = false;
-        List<ServiceURL> serviceURLCache = getServiceURLCache();
-        for (ServiceURL serviceURL : serviceURLCache) {
-            if (serviceURL.satisfies(filterSpec) && serviceType.implies(serviceURL)) {
+        for (ServiceURLIndex index : serviceURLsByDestination.values()) {
+            if (index.discover(serviceType, filterSpec, discoveryResult)) {
                 found = true;
-                discoveryResult.addMatch(serviceURL);
             }
         }
         return found;
@@ -81,112 +89,134 @@ final class NodeInformation {
         return clustersByName;
     }
 
-    // this structure mashes together the cluster topo reports from various nodes, and the mod avail report from this node
-    static class TempInfo {
-        Map<String, CidrAddress> clusters;
-        Set<EJBModuleIdentifier> modules;
-        URI destination;
-
-        TempInfo(URI destination) {
-            this.destination = destination;
+    // must be called under the object monitor
+    private void refresh(final Collection<URI> destinations) {
+        if (destinations.isEmpty()) {
+            return;
+        }
+        final Map<URI, ServiceURLIndex> newMap = new HashMap<>(serviceURLsByDestination);
+        for (URI destination : destinations) {
+            final List<ServiceURL> serviceURLs = createServiceURLs(destination);
+            if (serviceURLs.isEmpty()) {
+                newMap.remove(destination);
+            } else {
+                newMap.put(destination, new ServiceURLIndex(serviceURLs));
+            }
         }
+        serviceURLsByDestination = Collections.unmodifiableMap(newMap);
     }
 
-    private List<ServiceURL> getServiceURLCache() {
-        List<ServiceURL> serviceURLCache = this.serviceURLCache;
-        if (serviceURLCache == null) {
-            synchronized (this) {
-                serviceURLCache = this.serviceURLCache;
-                if (serviceURLCache == null) {
-                    // the final list to store
-                    serviceURLCache = new ArrayList<>();
-                    HashMap<URI, TempInfo> map = new HashMap<>();
-                    // populate the modules first
-                    for (Map.Entry<EJBClientChannel, Set<EJBModuleIdentifier>> entry : modulesByConnection.entrySet()) {
-                        final EJBClientChannel channel = entry.getKey();
-                        final URI peerURI = channel.getChannel().getConnection().getPeerURI();
-                        TempInfo tempInfo = new TempInfo(peerURI);
-                        tempInfo.modules = entry.getValue();
-                        map.put(tempInfo.destination, tempInfo);
-                    }
-                    // populate standalone nodes next (these will most likely be duplicates of above)
-                    for (Map.Entry<EJBClientChannel, InetSocketAddress> entry : addressesByConnection.entrySet()) {
-                        final EJBClientChannel channel = entry.getKey();
-                        final URI peerURI = channel.getChannel().getConnection().getPeerURI();
-                        map.computeIfAbsent(peerURI, TempInfo::new);
-                    }
-                    // populate the clusters next
-                    for (final Map.Entry<String, ClusterNodeInformation> entry : clustersByName.entrySet()) {
-                        final String clusterName = entry.getKey();
-                        final ClusterNodeInformation clusterNodeInformation = entry.getValue();
-                        for (Map.Entry<String, CidrAddressTable<InetSocketAddress>> entry1 : clusterNodeInformation.getAddressTablesByProtocol().entrySet()) {
-                            final String protocol = entry1.getKey();
-                            final CidrAddressTable<InetSocketAddress> table = entry1.getValue();
-                            for (CidrAddressTable.Mapping<InetSocketAddress> mapping : table) {
-                                CidrAddress cidrAddress = mapping.getRange();
-                                final InetSocketAddress address = mapping.getValue();
-                                URI uri;
-                                try {
-                                    uri = new URI(protocol, null, address.getHostString(), address.getPort(), null, null, null);
-                                } catch (URISyntaxException e) {
-                                    continue;
-                                }
-                                TempInfo tempInfo = map.computeIfAbsent(uri, TempInfo::new);
-                                if (tempInfo.clusters == null) {
-                                    tempInfo.clusters = new HashMap<>();
-                                }
-                                tempInfo.clusters.put(clusterName, cidrAddress);
-                            }
-                        }
-                    }
-                    // populate the service URLs from the cross product (!) of clusters and modules
-                    final AttributeValue nodeNameValue = AttributeValue.fromString(nodeName);
-                    for (TempInfo info : map.values()) {
-                        final ServiceURL.Builder builder = new ServiceURL.Builder();
-                        builder.setUri(info.destination);
-                        builder.setAbstractType(EJBClientContext.EJB_SERVICE_TYPE.getAbstractType());
-                        builder.setAbstractTypeAuthority(EJBClientContext.EJB_SERVICE_TYPE.getAbstractTypeAuthority());
-                        builder.addAttribute(EJBClientContext.FILTER_ATTR_NODE, nodeNameValue);
-                        if (info.modules != null) for (EJBModuleIdentifier moduleIdentifier : info.modules) {
-                            final String appName = moduleIdentifier.getAppName();
-                            final String moduleName = moduleIdentifier.getModuleName();
-                            final String distinctName = moduleIdentifier.getDistinctName();
-                            if (distinctName.isEmpty()) {
-                                if (appName.isEmpty()) {
-                                    builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE, AttributeValue.fromString(moduleName));
-                                } else {
-                                    builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE, AttributeValue.fromString(appName + "/" + moduleName));
-                                }
-                            } else {
-                                if (appName.isEmpty()) {
-                                    builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE_DISTINCT, AttributeValue.fromString(moduleName + "/" + distinctName));
-                                } else {
-                                    builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE_DISTINCT, AttributeValue.fromString(appName + "/" + moduleName + "/" + distinctName));
-                                }
-                            }
-                        }
-                        // create a no-cluster mapping
-                        serviceURLCache.add(builder.create());
-                        if (info.clusters != null) for (Map.Entry<String, CidrAddress> entry : info.clusters.entrySet()) {
-                            final String clusterName = entry.getKey();
-                            builder.addAttribute(EJBClientContext.FILTER_ATTR_CLUSTER, AttributeValue.fromString(clusterName));
-                            final CidrAddress cidrAddress = entry.getValue();
-                            if (cidrAddress.getNetmaskBits() == 0) {
-                                // historically we treat IPv4 and IPv6 any addresses as any
-                                builder.removeAttribute(EJBClientContext.FILTER_ATTR_SOURCE_IP);
-                            } else {
-                                final AttributeValue value = AttributeValue.fromString(cidrAddress.toString());
-                                builder.addAttribute(EJBClientContext.FILTER_ATTR_SOURCE_IP, value);
-                            }
-                            serviceURLCache.add(builder.create());
+    // must be called under the object monitor
+    private List<ServiceURL> createServiceURLs(final URI destination) {
+        // this mashes together the cluster topo reports from various nodes, and the mod avail report from this node
+        boolean known = false;
+        final Set<EJBModuleIdentifier> modules = new HashSet<>();
+        for (Map.Entry<EJBClientChannel, Set<EJBModuleIdentifier>> entry : modulesByConnection.entrySet()) {
+            if (destination.equals(getPeerURI(entry.getKey()))) {
+                known = true;
+                modules.addAll(entry.getValue());
+            }
+        }
+        final Set<EJBModuleIdentifier> provisional = provisionalModules.get(destination);
+        if (provisional != null) {
+            known = true;
+            modules.addAll(provisional);
+        }
+        // standalone nodes (these will most likely be duplicates of above)
+        if (! known) for (EJBClientChannel channel : addressesByConnection.keySet()) {
+            if (destination.equals(getPeerURI(channel))) {
+                known = true;
+                break;
+            }
+        }
+        Map<String, CidrAddress> clusters = null;
+        for (final Map.Entry<String, ClusterNodeInformation> entry : clustersByName.entrySet()) {
+            for (Map.Entry<String, CidrAddressTable<InetSocketAddress>> entry1 : entry.getValue().getAddressTablesByProtocol().entrySet()) {
+                final String protocol = entry1.getKey();
+                for (CidrAddressTable.Mapping<InetSocketAddress> mapping : entry1.getValue()) {
+                    if (destination.equals(getClusterURI(protocol, mapping.getValue()))) {
+                        if (clusters == null) {
+                            clusters = new HashMap<>();
                         }
+                        clusters.put(entry.getKey(), mapping.getRange());
                     }
+                }
+            }
+        }
+        if (! known && clusters == null) {
+            return Collections.emptyList();
+        }
+        // populate the service URLs from the cross product (!) of clusters and modules
+        final List<ServiceURL> serviceURLs = new ArrayList<>();
+        final ServiceURL.Builder builder = new ServiceURL.Builder();
+        builder.setUri(destination);
+        builder.setAbstractType(EJBClientContext.EJB_SERVICE_TYPE.getAbstractType());
+        builder.setAbstractTypeAuthority(EJBClientContext.EJB_SERVICE_TYPE.getAbstractTypeAuthority());
+        builder.addAttribute(EJBClientContext.FILTER_ATTR_NODE, AttributeValue.fromString(nodeName));
+        for (EJBModuleIdentifier moduleIdentifier : modules) {
+            final String appName = moduleIdentifier.getAppName();
+            final String moduleName = moduleIdentifier.getModuleName();
+            final String distinctName = moduleIdentifier.getDistinctName();
+            if (distinctName.isEmpty()) {
+                if (appName.isEmpty()) {
+                    builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE, AttributeValue.fromString(moduleName));
+                } else {
+                    builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE, AttributeValue.fromString(appName + "/" + moduleName));
+                }
+            } else {
+                if (appName.isEmpty()) {
+                    builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE_DISTINCT, AttributeValue.fromString(moduleName + "/" + distinctName));
+                } else {
+                    builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE_DISTINCT, AttributeValue.fromString(appName + "/" + moduleName + "/" + distinctName));
+                }
+            }
+        }
+        // create a no-cluster mapping
+        serviceURLs.add(builder.create());
+        if (clusters != null) for (Map.Entry<String, CidrAddress> entry : clusters.entrySet()) {
+            final String clusterName = entry.getKey();
+            builder.addAttribute(EJBClientContext.FILTER_ATTR_CLUSTER, AttributeValue.fromString(clusterName));
+            final CidrAddress cidrAddress = entry.getValue();
+            if (cidrAddress.getNetmaskBits() == 0) {
+                // historically we treat IPv4 and IPv6 any addresses as any
+                builder.removeAttribute(EJBClientContext.FILTER_ATTR_SOURCE_IP);
+            } else {
+                final AttributeValue value = AttributeValue.fromString(cidrAddress.toString());
+                builder.addAttribute(EJBClientContext.FILTER_ATTR_SOURCE_IP, value);
+            }
+            serviceURLs.add(builder.create());
+        }
+        return serviceURLs;
+    }
 
-                    this.serviceURLCache = serviceURLCache;
+    // must be called under the object monitor
+    private Set<URI> getClusterURIs(final String clusterName) {
+        final ClusterNodeInformation clusterNodeInformation = clustersByName.get(clusterName);
+        if (clusterNodeInformation == null) {
+            return Collections.emptySet();
+        }
+        final Set<URI> uris = new HashSet<>();
+        for (Map.Entry<String, CidrAddressTable<InetSocketAddress>> entry : clusterNodeInformation.getAddressTablesByProtocol().entrySet()) {
+            for (CidrAddressTable.Mapping<InetSocketAddress> mapping : entry.getValue()) {
+                final URI uri = getClusterURI(entry.getKey(), mapping.getValue());
+                if (uri != null) {
+                    uris.add(uri);
                 }
             }
         }
-        return serviceURLCache;
+        return uris;
+    }
+
+    private static URI getClusterURI(final String protocol, final InetSocketAddress address) {
+        try {
+            return new URI(protocol, null, address.getHostString(), address.getPort(), null, null, null);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static URI getPeerURI(final EJBClientChannel clientChannel) {
+        return clientChannel.getChannel().getConnection().getPeerURI();
     }
 
     boolean isInvalid() {
@@ -199,45 +229,60 @@ final class NodeInformation {
 
     void addAddress(final String protocol, final String clusterName, final CidrAddress block, final InetSocketAddress destination) {
         synchronized (this) {
-            serviceURLCache = null;
+            // the block may have been mapped to some other destination before
+            final Set<URI> affected = getClusterURIs(clusterName);
+            if (provisionalClusters.remove(clusterName)) {
+                // the live topology replaces the provisional one
+                clustersByName.remove(clusterName);
+            }
             clustersByName.computeIfAbsent(clusterName, name -> new ClusterNodeInformation())
                 .getAddressTablesByProtocol()
                 .computeIfAbsent(protocol, ignored -> new CidrAddressTable<>())
                 .put(block, destination);
+            final Set<URI> refreshed = new HashSet<>(affected);
+            final URI uri = getClusterURI(protocol, destination);
+            if (uri != null) {
+                refreshed.add(uri);
+            }
+            refresh(refreshed);
         }
     }
 
 
     void removeCluster(final String clusterName) {
         synchronized (this) {
-            serviceURLCache = null;
+            final Set<URI> affected = getClusterURIs(clusterName);
             clustersByName.remove(clusterName);
+            provisionalClusters.remove(clusterName);
+            refresh(affected);
         }
     }
 
     void addModules(final EJBClientChannel clientChannel, final EJBModuleIdentifier[] moduleList) {
         synchronized (this) {
-            serviceURLCache = null;
+            // the live module list replaces the provisional one
+            final Set<URI> affected = new HashSet<>(provisionalModules.keySet());
+            provisionalModules.clear();
             Collections.addAll(modulesByConnection.computeIfAbsent(clientChannel, ignored -> new HashSet<>()), moduleList);
+            affected.add(getPeerURI(clientChannel));
+            refresh(affected);
         }
     }
 
     void removeModules(final EJBClientChannel clientChannel, final HashSet<EJBModuleIdentifier> toRemove) {
         synchronized (this) {
-            serviceURLCache = null;
             final Set<EJBModuleIdentifier> set = modulesByConnection.get(clientChannel);
-            if (set != null) {
-                set.removeAll(toRemove);
+            if (set != null && set.removeAll(toRemove)) {
+                refresh(Collections.singleton(getPeerURI(clientChannel)));
             }
         }
     }
 
     void removeModule(final EJBClientChannel clientChannel, final EJBModuleIdentifier toRemove) {
         synchronized (this) {
-            serviceURLCache = null;
             final Set<EJBModuleIdentifier> set = modulesByConnection.get(clientChannel);
-            if (set != null) {
-                set.remove(toRemove);
+            if (set != null && set.remove(toRemove)) {
+                refresh(Collections.singleton(getPeerURI(clientChannel)));
             }
         }
     }
@@ -245,7 +290,7 @@ final class NodeInformation {
     void addAddress(EJBClientChannel clientChannel) {
         synchronized (this) {
             addressesByConnection.put(clientChannel, (InetSocketAddress) clientChannel.getChannel().getConnection().getPeerAddress());
-            serviceURLCache = null;
+            refresh(Collections.singleton(getPeerURI(clientChannel)));
         }
     }
 
@@ -254,7 +299,77 @@ final class NodeInformation {
             boolean moduleRemoved = modulesByConnection.remove(clientChannel) != null;
             boolean addressRemoved = addressesByConnection.remove(clientChannel) != null;
             if (moduleRemoved || addressRemoved) {
-                serviceURLCache = null;
+                refresh(Collections.singleton(getPeerURI(clientChannel)));
+            }
+        }
+    }
+
+    void addProvisionalModules(final URI destination, final Collection<EJBModuleIdentifier> modules) {
+        synchronized (this) {
+            if (modulesByConnection.isEmpty()) {
+                provisionalModules.computeIfAbsent(destination, ignored -> new HashSet<>()).addAll(modules);
+                refresh(Collections.singleton(destination));
+            }
+        }
+    }
+
+    void addProvisionalAddress(final String protocol, final String clusterName, final CidrAddress block, final InetSocketAddress destination) {
+        synchronized (this) {
+            if (clustersByName.containsKey(clusterName) && ! provisionalClusters.contains(clusterName)) {
+                // already known from the live topology
+                return;
+            }
+            provisionalClusters.add(clusterName);
+            clustersByName.computeIfAbsent(clusterName, name -> new ClusterNodeInformation())
+                .getAddressTablesByProtocol()
+                .computeIfAbsent(protocol, ignored -> new CidrAddressTable<>())
+                .put(block, destination);
+            final URI uri = getClusterURI(protocol, destination);
+            if (uri != null) {
+                refresh(Collections.singleton(uri));
+            }
+        }
+    }
+
+    /**
+     * Discard the provisional topology which has not been confirmed by the live topology.
+     *
+     * @return the names of the clusters which this node is no longer known to be a member of
+     */
+    Set<String> expireProvisional() {
+        synchronized (this) {
+            final Set<URI> affected = new HashSet<>(provisionalModules.keySet());
+            provisionalModules.clear();
+            final Set<String> expired = new HashSet<>(provisionalClusters);
+            provisionalClusters.clear();
+            for (String clusterName : expired) {
+                affected.addAll(getClusterURIs(clusterName));
+                clustersByName.remove(clusterName);
+            }
+            refresh(affected);
+            return expired;
+        }
+    }
+
+    void addTo(final TopologySnapshot snapshot) {
+        synchronized (this) {
+            for (Map.Entry<EJBClientChannel, Set<EJBModuleIdentifier>> entry : modulesByConnection.entrySet()) {
+                final URI destination = getPeerURI(entry.getKey());
+                for (EJBModuleIdentifier module : entry.getValue()) {
+                    snapshot.addModule(nodeName, destination, module);
+                }
+            }
+            for (Map.Entry<URI, Set<EJBModuleIdentifier>> entry : provisionalModules.entrySet()) {
+                for (EJBModuleIdentifier module : entry.getValue()) {
+                    snapshot.addModule(nodeName, entry.getKey(), module);
+                }
+            }
+            for (Map.Entry<String, ClusterNodeInformation> entry : clustersByName.entrySet()) {
+                for (Map.Entry<String, CidrAddressTable<InetSocketAddress>> entry1 : entry.getValue().getAddressTablesByProtocol().entrySet()) {
+                    for (CidrAddressTable.Mapping<InetSocketAddress> mapping : entry1.getValue()) {
+                        snapshot.addAddress(nodeName, entry.getKey(), entry1.getKey(), mapping.getRange(), mapping.getValue());
+                    }
+                }
             }
         }
     }
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.lang.management.ManagementFactory;
+import java.security.PrivilegedAction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.ejb._private.Logs;
+
+/**
+ * Registration of the management beans of the remoting transport with the platform MBean server.  Registration is best
+ * effort: a bean which cannot be registered, for example because another copy of this library registered the same
+ * name first, is only logged.
+ */
+final class PlatformMBeans {
+
+    static final String DOMAIN = "org.jboss.ejb.client";
+
+    private PlatformMBeans() {
+    }
+
+    /**
+     * Register a management bean.
+     *
+     * @param name the object name, which is parsed with {@link ObjectName#getInstance(String)}
+     * @param bean the bean
+     * @return the registered name, or {@code null} if the bean was not registered
+     */
+    static ObjectName register(final String name, final Object bean) {
+        return doPrivileged((PrivilegedAction<ObjectName>) () -> {
+            try {
+                final ObjectName objectName = ObjectName.getInstance(name);
+                getServer().registerMBean(bean, objectName);
+                return objectName;
+            } catch (JMException | RuntimeException e) {
+                Logs.REMOTING.debugf(e, "Failed to register management bean %s", name);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Unregister a management bean.
+     *
+     * @param objectName the name returned by {@link #register(String, Object)}, or {@code null} for none
+     */
+    static void unregister(final ObjectName objectName) {
+        if (objectName == null) {
+            return;
+        }
+        doPrivileged((PrivilegedAction<Void>) () -> {
+            try {
+                getServer().unregisterMBean(objectName);
+            } catch (JMException | RuntimeException e) {
+                Logs.REMOTING.debugf(e, "Failed to unregister management bean %s", objectName);
+            }
+            return null;
+        });
+    }
+
+    private static MBeanServer getServer() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+}
@@ -27,6 +27,21 @@ final class Protocol {
 
     // flags field (v3 and up)
     public static final int COMPRESS_RESPONSE = 0b0000_1111;
+    // adaptive response compression: log2(threshold) - 6, or 0 to always compress at the given level
+    public static final int COMPRESS_RESPONSE_THRESHOLD = 0b1111_0000;
+    public static final int COMPRESS_RESPONSE_THRESHOLD_SHIFT = 4;
+
+    // protocol extensions (v3 and up), listed by name after the marshaller names in the greeting; the client answers
+    // with the subset it also supports, and only that subset may be used on the channel
+    public static final String EXTENSION_LZ4             = "lz4";
+    public static final String EXTENSION_BINARY_SEGMENTS = "binary-segments";
+    public static final String EXTENSION_STREAMING_RESULTS = "streaming-results";
+    public static final String EXTENSION_INVOCATION_BATCH = "invocation-batch";
+    public static final String EXTENSION_SERVER_BUSY = "server-busy";
+    public static final String EXTENSION_ATTACHMENT_KEYS = "attachment-keys";
+    public static final String EXTENSION_INVOCATION_TARGETS = "invocation-targets";
+    // only accepted on the additional channels of a connection: no module availability or topology updates are sent
+    public static final String EXTENSION_NO_BROADCASTS = "no-broadcasts";
 
     public static final int OPEN_SESSION_REQUEST   = 0x01; // c → s
     public static final int OPEN_SESSION_RESPONSE  = 0x02; // s → c
@@ -64,6 +79,16 @@ final class Protocol {
     // v3 and up
     public static final int BAD_VIEW_TYPE         = 0x1C; // s → c
 
+    // v3 and up, only with the "lz4" extension
+    public static final int COMPRESSED_LZ4_INVOCATION_MESSAGE = 0x1D; // s → c & c → s
+    // v3 and up, only with the "streaming-results" extension
+    public static final int INVOCATION_STREAM_RESPONSE = 0x1E; // s → c
+    // v3 and up, only with the "invocation-batch" extension
+    public static final int INVOCATION_BATCH_REQUEST = 0x1F; // c → s
+    public static final int INVOCATION_BATCH_RESPONSE = 0x20; // s → c
+    // v3 and up, only with the "server-busy" extension
+    public static final int SERVER_BUSY = 0x21; // s → c
+
     static final int UPDATE_BIT_STRONG_AFFINITY = 0b100;
     static final int UPDATE_BIT_WEAK_AFFINITY   = 0b010;
     static final int UPDATE_BIT_SESSION_ID      = 0b001;
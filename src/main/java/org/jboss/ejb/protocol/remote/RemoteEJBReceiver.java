@@ -25,6 +25,10 @@ import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
 import javax.ejb.CreateException;
 
@@ -56,11 +60,23 @@ import org.xnio.OptionMap;
 class RemoteEJBReceiver extends EJBReceiver {
     static final AttachmentKey<EJBClientChannel> EJBCC_KEY = new AttachmentKey<>();
 
+    private static final int CHANNELS_PER_CONNECTION =
+            doPrivileged((PrivilegedAction<Integer>) () -> {
+                String val = System.getProperty("org.jboss.ejb.client.channels-per-connection");
+                try {
+                    return Integer.valueOf(Math.max(1, Integer.parseInt(val)));
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }).intValue();
+
     private final RemoteTransportProvider remoteTransportProvider;
     private final EJBReceiverContext receiverContext;
     private final RemotingEJBDiscoveryProvider discoveredNodeRegistry;
 
     final ClientServiceHandle<EJBClientChannel> serviceHandle;
+    // additional channels per connection which invocations are spread across, each opened on first use
+    private final List<ClientServiceHandle<EJBClientChannel>> stripeHandles;
 
     private final RetryExecutorWrapper retryExecutorWrapper = new RetryExecutorWrapper();
 
@@ -69,28 +85,23 @@ class RemoteEJBReceiver extends EJBReceiver {
         this.receiverContext = receiverContext;
         this.discoveredNodeRegistry = discoveredNodeRegistry;
         serviceHandle = new ClientServiceHandle<>("jboss.ejb", channel -> EJBClientChannel.construct(channel, this.discoveredNodeRegistry, retryExecutorWrapper));
+        final List<ClientServiceHandle<EJBClientChannel>> stripeHandles = new ArrayList<>(CHANNELS_PER_CONNECTION - 1);
+        for (int i = 1; i < CHANNELS_PER_CONNECTION; i ++) {
+            // each handle keeps its own channel on a connection; only the primary channel follows the topology
+            stripeHandles.add(new ClientServiceHandle<>("jboss.ejb", channel -> EJBClientChannel.construct(channel, this.discoveredNodeRegistry, retryExecutorWrapper, true)));
+        }
+        this.stripeHandles = stripeHandles;
     }
 
     final IoFuture.HandlingNotifier<ConnectionPeerIdentity, EJBReceiverInvocationContext> notifier = new IoFuture.HandlingNotifier<ConnectionPeerIdentity, EJBReceiverInvocationContext>() {
         public void handleDone(final ConnectionPeerIdentity peerIdentity, final EJBReceiverInvocationContext attachment) {
-            serviceHandle.getClientService(peerIdentity.getConnection(), OptionMap.EMPTY).addNotifier((ioFuture, attachment1) -> {
-                final EJBClientChannel ejbClientChannel;
-                try {
-
-                    ejbClientChannel = ioFuture.getInterruptibly();
-                } catch (IOException e) {
-                    // should generally not be possible but we should handle it cleanly regardless
-                    attachment1.requestFailed(new RequestSendFailedException(e + "@" + peerIdentity.getConnection().getPeerURI(), false), retryExecutorWrapper.getExecutor(peerIdentity.getConnection().getEndpoint().getXnioWorker()));
-                    return;
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    attachment1.requestFailed(new RequestSendFailedException(e + "@" + peerIdentity.getConnection().getPeerURI(), false), retryExecutorWrapper.getExecutor(peerIdentity.getConnection().getEndpoint().getXnioWorker()));
-                    return;
-                }
-                attachment1.getClientInvocationContext().putAttachment(EJBCC_KEY, ejbClientChannel);
-                ejbClientChannel.processInvocation(attachment1, peerIdentity);
-            }, attachment);
-
+            final IoFuture<EJBClientChannel> futureChannel = serviceHandle.getClientService(peerIdentity.getConnection(), OptionMap.EMPTY);
+            if (futureChannel.getStatus() == IoFuture.Status.DONE) {
+                // the usual case; the channel is open already, so do not allocate a notifier for it
+                channelReady(futureChannel, peerIdentity, attachment);
+            } else {
+                futureChannel.addNotifier((ioFuture, attachment1) -> channelReady(ioFuture, peerIdentity, attachment1), attachment);
+            }
         }
 
         public void handleCancelled(final EJBReceiverInvocationContext attachment) {
@@ -102,6 +113,24 @@ class RemoteEJBReceiver extends EJBReceiver {
         }
     };
 
+    void channelReady(final IoFuture<EJBClientChannel> futureChannel, final ConnectionPeerIdentity peerIdentity, final EJBReceiverInvocationContext receiverContext) {
+        final EJBClientChannel ejbClientChannel;
+        try {
+            ejbClientChannel = futureChannel.getInterruptibly();
+        } catch (IOException e) {
+            // should generally not be possible but we should handle it cleanly regardless
+            receiverContext.requestFailed(new RequestSendFailedException(e + "@" + peerIdentity.getConnection().getPeerURI(), false), retryExecutorWrapper.getExecutor(peerIdentity.getConnection().getEndpoint().getXnioWorker()));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            receiverContext.requestFailed(new RequestSendFailedException(e + "@" + peerIdentity.getConnection().getPeerURI(), false), retryExecutorWrapper.getExecutor(peerIdentity.getConnection().getEndpoint().getXnioWorker()));
+            return;
+        }
+        final EJBClientChannel selectedChannel = selectClientChannel(ejbClientChannel, peerIdentity.getConnection(), receiverContext);
+        receiverContext.getClientInvocationContext().putAttachment(EJBCC_KEY, selectedChannel);
+        selectedChannel.processInvocation(receiverContext, peerIdentity);
+    }
+
     RemoteTransportProvider getRemoteTransportProvider() {
         return remoteTransportProvider;
     }
@@ -123,11 +152,79 @@ class RemoteEJBReceiver extends EJBReceiver {
         }
     }
 
+    /**
+     * Select the channel of a connection for an invocation.  If more than one channel per connection is configured,
+     * the invocation goes to the open channel which has the fewest outstanding invocations, which lifts the limit
+     * that the outbound message window of a single channel places on concurrent invocations.
+     *
+     * @param primary the primary channel of the connection
+     * @param connection the connection
+     * @param receiverContext the invocation
+     * @return the channel to use
+     */
+    EJBClientChannel selectClientChannel(final EJBClientChannel primary, final Connection connection, final EJBReceiverInvocationContext receiverContext) {
+        if (stripeHandles.isEmpty()) {
+            return primary;
+        }
+        final boolean transactional = receiverContext.getClientInvocationContext().getTransaction() != null;
+        return selectLeastInFlight(primary, transactional, stripeHandles.size(), i -> getOpenChannel(stripeHandles.get(i), connection), EJBClientChannel::getInFlightInvocations);
+    }
+
+    /**
+     * Select the channel with the fewest outstanding invocations, preferring the primary channel on a tie.  Transactional
+     * invocations always use the primary channel, since transactions are tracked per channel.
+     *
+     * @param primary the primary channel
+     * @param transactional {@code true} if the invocation is part of a transaction
+     * @param stripes the number of additional channels
+     * @param openStripe the function which returns the additional channel of an index, or {@code null} if it is not open
+     *      (yet)
+     * @param inFlight the function which returns the number of outstanding invocations of a channel
+     * @param <C> the channel type
+     * @return the channel to use
+     */
+    static <C> C selectLeastInFlight(final C primary, final boolean transactional, final int stripes, final IntFunction<C> openStripe, final ToIntFunction<? super C> inFlight) {
+        if (transactional) {
+            return primary;
+        }
+        C selected = primary;
+        int selectedCount = inFlight.applyAsInt(primary);
+        for (int i = 0; i < stripes && selectedCount > 0; i ++) {
+            final C channel = openStripe.apply(i);
+            if (channel != null) {
+                final int count = inFlight.applyAsInt(channel);
+                if (count < selectedCount) {
+                    selected = channel;
+                    selectedCount = count;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static EJBClientChannel getOpenChannel(final ClientServiceHandle<EJBClientChannel> handle, final Connection connection) {
+        // this also opens the channel if it is not open yet; it is not waited for
+        final IoFuture<EJBClientChannel> future = handle.getClientService(connection, OptionMap.EMPTY);
+        if (future.getStatus() != IoFuture.Status.DONE) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (IOException e) {
+            // impossible
+            throw Assert.unreachableCode();
+        }
+    }
+
     protected void processInvocation(final EJBReceiverInvocationContext receiverContext) throws Exception {
         final AuthenticationContext authenticationContext = receiverContext.getAuthenticationContext();
         final IoFuture<ConnectionPeerIdentity> futureConnection = getConnection(receiverContext.getClientInvocationContext(), receiverContext.getClientInvocationContext().getDestination(), authenticationContext);
         // this actually causes the invocation to move forward
-        futureConnection.addNotifier(notifier, receiverContext);
+        if (futureConnection.getStatus() == IoFuture.Status.DONE) {
+            notifier.handleDone(futureConnection.get(), receiverContext);
+        } else {
+            futureConnection.addNotifier(notifier, receiverContext);
+        }
     }
 
     protected boolean cancelInvocation(final EJBReceiverInvocationContext receiverContext, final boolean cancelIfRunning) {
@@ -177,6 +274,14 @@ class RemoteEJBReceiver extends EJBReceiver {
         Affinity affinity = context.getLocator().getAffinity();
         String cluster = (affinity instanceof ClusterAffinity) ? ((ClusterAffinity) affinity).getClusterName() : context.getInitialCluster();
 
+        if (System.getSecurityManager() == null) {
+            // skip the privileged action (and the allocation of its lambda) when there is nothing to check
+            if (cluster != null) {
+                return discoveredNodeRegistry.getConnectedIdentityUsingClusterEffective(Endpoint.getCurrent(), target, "ejb", "jboss", authenticationContext, cluster);
+            }
+            return Endpoint.getCurrent().getConnectedIdentity(target, "ejb", "jboss", authenticationContext);
+        }
+
         if (cluster != null) {
             return doPrivileged((PrivilegedAction<IoFuture<ConnectionPeerIdentity>>) () ->
                                 discoveredNodeRegistry.getConnectedIdentityUsingClusterEffective(Endpoint.getCurrent(), target, "ejb", "jboss", authenticationContext, cluster));
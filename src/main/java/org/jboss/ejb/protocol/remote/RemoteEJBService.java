@@ -22,6 +22,12 @@ import static java.lang.Math.min;
 import static org.xnio.IoUtils.safeClose;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.jboss.ejb.server.Association;
 import org.jboss.ejb.server.ListenerHandle;
@@ -41,10 +47,23 @@ import org.wildfly.transaction.client.provider.remoting.RemotingTransactionServi
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public final class RemoteEJBService {
+    private static final Set<String> EXTENSIONS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+        Protocol.EXTENSION_LZ4,
+        Protocol.EXTENSION_BINARY_SEGMENTS,
+        Protocol.EXTENSION_STREAMING_RESULTS,
+        Protocol.EXTENSION_INVOCATION_BATCH,
+        Protocol.EXTENSION_SERVER_BUSY,
+        Protocol.EXTENSION_ATTACHMENT_KEYS,
+        Protocol.EXTENSION_INVOCATION_TARGETS,
+        Protocol.EXTENSION_NO_BROADCASTS
+    )));
+
+    private static final ListenerHandle NO_LISTENER = () -> {};
+
     private final OpenListener openListener;
     private final CallbackBuffer callbackBuffer = new CallbackBuffer();
 
-    private RemoteEJBService(final Association association, final RemotingTransactionService transactionService) {
+    private RemoteEJBService(final Association association, final RemotingTransactionService transactionService, final Executor requestExecutor) {
         openListener = new OpenListener() {
             public void channelOpened(final Channel channel) {
                 final MessageTracker messageTracker = new MessageTracker(channel, channel.getOption(RemotingOptions.MAX_OUTBOUND_MESSAGES).intValue());
@@ -57,8 +76,20 @@ public final class RemoteEJBService {
 
                     public void handleMessage(final Channel channel, final MessageInputStream message) {
                         final int version;
+                        final Set<String> extensions = new HashSet<>();
                         try {
                             version = min(3, StreamUtils.readInt8(message));
+                            if (version >= 3) {
+                                // skip the marshaller name, then read the protocol extensions (if any) the client accepted
+                                message.readUTF();
+                                final int count = message.read();
+                                for (int i = 0; i < count; i ++) {
+                                    final String extension = message.readUTF();
+                                    if (EXTENSIONS.contains(extension)) {
+                                        extensions.add(extension);
+                                    }
+                                }
+                            }
                             // drain the rest of the message because it's just garbage really
                             while (message.read() != - 1) {
                                 message.skip(Long.MAX_VALUE);
@@ -67,10 +98,11 @@ public final class RemoteEJBService {
                             safeClose(channel);
                             return;
                         }
-                        final EJBServerChannel serverChannel = new EJBServerChannel(transactionService.getServerForConnection(channel.getConnection()), channel, version, messageTracker);
+                        final EJBServerChannel serverChannel = new EJBServerChannel(transactionService.getServerForConnection(channel.getConnection()), channel, version, extensions, messageTracker, requestExecutor);
+                        final boolean broadcasts = ! extensions.contains(Protocol.EXTENSION_NO_BROADCASTS);
                         callbackBuffer.addListener((sc, a) -> {
-                            final ListenerHandle handle1 = a.registerClusterTopologyListener(sc.createTopologyListener());
-                            final ListenerHandle handle2 = a.registerModuleAvailabilityListener(sc.createModuleListener());
+                            final ListenerHandle handle1 = broadcasts ? a.registerClusterTopologyListener(sc.createTopologyListener()) : NO_LISTENER;
+                            final ListenerHandle handle2 = broadcasts ? a.registerModuleAvailabilityListener(sc.createModuleListener()) : NO_LISTENER;
                             channel.receiveMessage(sc.getReceiver(a, handle1, handle2));
                         }, serverChannel, association);
                     }
@@ -79,6 +111,10 @@ public final class RemoteEJBService {
                     mos.writeByte(Protocol.LATEST_VERSION);
                     StreamUtils.writePackedUnsignedInt31(mos, 1);
                     mos.writeUTF("river");
+                    mos.writeByte(EXTENSIONS.size());
+                    for (String extension : EXTENSIONS) {
+                        mos.writeUTF(extension);
+                    }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     safeClose(channel);
@@ -102,7 +138,24 @@ public final class RemoteEJBService {
     public static RemoteEJBService create(final Association association, final RemotingTransactionService transactionService) {
         Assert.checkNotNullParam("association", association);
         Assert.checkNotNullParam("transactionService", transactionService);
-        return new RemoteEJBService(association, transactionService);
+        return new RemoteEJBService(association, transactionService, null);
+    }
+
+    /**
+     * Create a new remote EJB service instance whose requests run on the given executor, such as one of the executors
+     * of {@link RequestExecutors}.  The time each request waits for the executor is available from the request via
+     * the {@link RequestQueueTime} provider interface.
+     *
+     * @param association the association to use (must not be {@code null})
+     * @param transactionService the Remoting transaction server to use (must not be {@code null})
+     * @param requestExecutor the executor which runs requests (must not be {@code null})
+     * @return the remote EJB service instance (not {@code null})
+     */
+    public static RemoteEJBService create(final Association association, final RemotingTransactionService transactionService, final Executor requestExecutor) {
+        Assert.checkNotNullParam("association", association);
+        Assert.checkNotNullParam("transactionService", transactionService);
+        Assert.checkNotNullParam("requestExecutor", requestExecutor);
+        return new RemoteEJBService(association, transactionService, requestExecutor);
     }
 
     /**
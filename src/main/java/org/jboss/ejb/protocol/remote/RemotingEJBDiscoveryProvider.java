@@ -31,6 +31,8 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.GeneralSecurityException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -40,17 +42,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.SSLContext;
 
 import org.jboss.ejb._private.Logs;
 import org.jboss.ejb.client.EJBClientConnection;
+import org.jboss.ejb.client.DiscoveryEJBClientInterceptor;
 import org.jboss.ejb.client.EJBClientContext;
 import org.jboss.ejb.client.EJBModuleIdentifier;
 import org.jboss.remoting3.ConnectionPeerIdentity;
 import org.jboss.remoting3.Endpoint;
 import org.wildfly.common.Assert;
+import org.wildfly.common.net.CidrAddress;
 import org.wildfly.common.net.CidrAddressTable;
 import org.wildfly.common.net.Inet;
 import org.wildfly.discovery.AllFilterSpec;
@@ -68,6 +75,8 @@ import org.wildfly.security.auth.client.AuthenticationContextConfigurationClient
 import org.xnio.FailedIoFuture;
 import org.xnio.IoFuture;
 import org.xnio.OptionMap;
+import org.xnio.XnioExecutor;
+import org.xnio.XnioWorker;
 
 /**
  * Provides discovery service based on all known EJBClientChannel service registry entries.
@@ -78,6 +87,56 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
 
     static final AuthenticationContextConfigurationClient AUTH_CONFIGURATION_CLIENT = doPrivileged(AuthenticationContextConfigurationClient.ACTION);
 
+    /**
+     * The maximum number of connection attempts which a single discovery keeps in progress at once; further
+     * attempts wait for one of these to finish.  A value of zero or less removes the limit.
+     */
+    static final int MAX_CONCURRENT_CONNECTS = doPrivileged((PrivilegedAction<Integer>) () -> {
+        String val = System.getProperty("org.jboss.ejb.client.discovery.max-concurrent-connects");
+        try {
+            return Integer.valueOf(val);
+        } catch (NumberFormatException e) {
+            return Integer.valueOf(32);
+        }
+    }).intValue();
+
+    /**
+     * The time in milliseconds after which a discovery connection attempt is abandoned and the destination is
+     * marked as failed.  A value of zero or less leaves the attempt to the connection timeout of the transport.
+     */
+    static final long CONNECT_TIMEOUT_MILLIS = doPrivileged((PrivilegedAction<Long>) () -> {
+        String val = System.getProperty("org.jboss.ejb.client.discovery.connect-timeout-millis");
+        try {
+            return Long.valueOf(val);
+        } catch (NumberFormatException e) {
+            return Long.valueOf(0);
+        }
+    }).longValue();
+
+    /**
+     * The number of matching nodes after which a discovery completes without waiting for the remaining connection
+     * attempts.  A value of zero or less always waits for every attempt.
+     */
+    static final int EARLY_COMPLETION_NODES = doPrivileged((PrivilegedAction<Integer>) () -> {
+        String val = System.getProperty("org.jboss.ejb.client.discovery.early-completion-nodes");
+        try {
+            return Integer.valueOf(val);
+        } catch (NumberFormatException e) {
+            return Integer.valueOf(0);
+        }
+    }).intValue();
+
+    private static final DiscoveryResult IGNORED_RESULT = new DiscoveryResult() {
+        public void complete() {
+        }
+
+        public void reportProblem(final Throwable description) {
+        }
+
+        public void addMatch(final ServiceURL serviceURL) {
+        }
+    };
+
     private final ConcurrentHashMap<String, NodeInformation> nodes = new ConcurrentHashMap<>();
 
     private final Set<URI> failedDestinations = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
@@ -86,10 +145,111 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
 
     private final ConcurrentHashMap<String, URI> effectiveAuthURIs = new ConcurrentHashMap<>();
 
+    // clusters whose effective authentication URI was loaded from the topology snapshot
+    private final Set<String> provisionalAuthClusters = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
 
+    private volatile boolean provisional;
+    private volatile long provisionalDeadline;
 
     public RemotingEJBDiscoveryProvider() {
         Endpoint.getCurrent(); //this will blow up if remoting is not present, preventing this from being registered
+        final Path snapshotFile = TopologySnapshot.FILE;
+        if (snapshotFile != null) {
+            loadTopologySnapshot(snapshotFile);
+        }
+    }
+
+    private void loadTopologySnapshot(final Path file) {
+        final Map<String, Map<URI, Set<EJBModuleIdentifier>>> modules = new HashMap<>();
+        try {
+            if (! Files.exists(file)) {
+                return;
+            }
+            TopologySnapshot.load(file, new TopologySnapshot.Handler() {
+                public void handleCluster(final String clusterName, final URI registeredBy) {
+                    if (effectiveAuthURIs.putIfAbsent(clusterName, registeredBy) == null) {
+                        provisionalAuthClusters.add(clusterName);
+                    }
+                }
+
+                public void handleModule(final String nodeName, final URI destination, final EJBModuleIdentifier module) {
+                    modules.computeIfAbsent(nodeName, ignored -> new HashMap<>()).computeIfAbsent(destination, ignored -> new HashSet<>()).add(module);
+                }
+
+                public void handleAddress(final String nodeName, final String clusterName, final String protocol, final CidrAddress block, final InetSocketAddress destination) {
+                    clusterNodes.computeIfAbsent(clusterName, ignored -> Collections.newSetFromMap(new ConcurrentHashMap<>())).add(nodeName);
+                    getNodeInformation(nodeName).addProvisionalAddress(protocol, clusterName, block, destination);
+                }
+            });
+        } catch (IOException | SecurityException e) {
+            Logs.REMOTING.debugf(e, "Failed to read the topology snapshot %s", file);
+            return;
+        }
+        for (Map.Entry<String, Map<URI, Set<EJBModuleIdentifier>>> entry : modules.entrySet()) {
+            final NodeInformation nodeInformation = getNodeInformation(entry.getKey());
+            for (Map.Entry<URI, Set<EJBModuleIdentifier>> entry1 : entry.getValue().entrySet()) {
+                nodeInformation.addProvisionalModules(entry1.getKey(), entry1.getValue());
+            }
+        }
+        provisionalDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TopologySnapshot.PROVISIONAL_MILLIS);
+        provisional = true;
+        Logs.REMOTING.debugf("Loaded the provisional topology of %d nodes from %s", nodes.size(), file);
+    }
+
+    private void expireProvisionalTopology() {
+        if (provisional && System.nanoTime() - provisionalDeadline >= 0) {
+            provisional = false;
+            for (NodeInformation nodeInformation : nodes.values()) {
+                for (String clusterName : nodeInformation.expireProvisional()) {
+                    removeNode(clusterName, nodeInformation.getNodeName());
+                }
+            }
+            for (String clusterName : provisionalAuthClusters) {
+                if (clusterNodes.getOrDefault(clusterName, Collections.emptySet()).isEmpty()) {
+                    provisionalAuthClusters.remove(clusterName);
+                    effectiveAuthURIs.remove(clusterName);
+                }
+            }
+            topologyChanged();
+        }
+    }
+
+    private void saveTopologySnapshot() {
+        snapshotScheduled.set(false);
+        final TopologySnapshot snapshot = new TopologySnapshot();
+        for (Map.Entry<String, URI> entry : effectiveAuthURIs.entrySet()) {
+            snapshot.addCluster(entry.getKey(), entry.getValue());
+        }
+        for (NodeInformation nodeInformation : nodes.values()) {
+            nodeInformation.addTo(snapshot);
+        }
+        try {
+            snapshot.save(TopologySnapshot.FILE);
+        } catch (IOException | SecurityException e) {
+            Logs.REMOTING.debugf(e, "Failed to write the topology snapshot %s", TopologySnapshot.FILE);
+        }
+    }
+
+    public void topologyChanged() {
+        DiscoveryEJBClientInterceptor.invalidateDiscoveryCache();
+        if (TopologySnapshot.FILE != null && snapshotScheduled.compareAndSet(false, true)) {
+            final XnioWorker worker = Endpoint.getCurrent().getXnioWorker();
+            // write from a worker thread, after any further changes of the same burst
+            try {
+                worker.getIoThread().executeAfter(() -> {
+                    try {
+                        worker.execute(this::saveTopologySnapshot);
+                    } catch (RejectedExecutionException e) {
+                        snapshotScheduled.set(false);
+                    }
+                }, TopologySnapshot.SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                snapshotScheduled.set(false);
+            }
+        }
     }
 
     public NodeInformation getNodeInformation(final String nodeName) {
@@ -101,7 +261,11 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
     }
 
     public void addNode(final String clusterName, final String nodeName, URI registeredBy) {
-        effectiveAuthURIs.putIfAbsent(clusterName, registeredBy);
+        if (provisionalAuthClusters.remove(clusterName)) {
+            effectiveAuthURIs.put(clusterName, registeredBy);
+        } else {
+            effectiveAuthURIs.putIfAbsent(clusterName, registeredBy);
+        }
         clusterNodes.computeIfAbsent(clusterName, ignored -> Collections.newSetFromMap(new ConcurrentHashMap<>())).add(nodeName);
     }
 
@@ -113,6 +277,7 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
         final Set<String> removed = clusterNodes.remove(clusterName);
         if (removed != null) removed.clear();
         effectiveAuthURIs.remove(clusterName);
+        provisionalAuthClusters.remove(clusterName);
     }
 
     public DiscoveryRequest discover(final ServiceType serviceType, final FilterSpec filterSpec, final DiscoveryResult result) {
@@ -121,6 +286,7 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
             result.complete();
             return DiscoveryRequest.NULL;
         }
+        expireProvisionalTopology();
         final EJBClientContext ejbClientContext = getCurrent();
         final RemoteEJBReceiver ejbReceiver = ejbClientContext.getAttachment(RemoteTransportProvider.ATTACHMENT_KEY);
         if (ejbReceiver == null) {
@@ -325,11 +491,14 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
         private final AuthenticationContext authenticationContext;
 
         private final Endpoint endpoint;
-        private final AtomicInteger outstandingCount = new AtomicInteger(1); // this is '1' so that we don't finish until all connections are searched
+        private final DiscoveryConnectTracker<Connect> tracker = new DiscoveryConnectTracker<>(MAX_CONCURRENT_CONNECTS, Connect::start, this::phaseFinished);
         private volatile boolean phase2;
+        private volatile long phaseStart = System.nanoTime();
+        private final AtomicInteger connectCount = new AtomicInteger();
+        private final AtomicInteger failureCount = new AtomicInteger();
         private final List<Runnable> cancellers = Collections.synchronizedList(new ArrayList<>());
-        private final IoFuture.HandlingNotifier<ConnectionPeerIdentity, URI> outerNotifier;
-        private final IoFuture.HandlingNotifier<EJBClientChannel, URI> innerNotifier;
+        private final IoFuture.HandlingNotifier<ConnectionPeerIdentity, Connect> outerNotifier;
+        private final IoFuture.HandlingNotifier<EJBClientChannel, Connect> innerNotifier;
 
         DiscoveryAttempt(final ServiceType serviceType, final FilterSpec filterSpec, final DiscoveryResult discoveryResult, final RemoteEJBReceiver ejbReceiver, final AuthenticationContext authenticationContext) {
             this.serviceType = serviceType;
@@ -339,37 +508,40 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
 
             this.authenticationContext = authenticationContext;
             endpoint = Endpoint.getCurrent();
-            outerNotifier = new IoFuture.HandlingNotifier<ConnectionPeerIdentity, URI>() {
-                public void handleCancelled(final URI destination) {
-                    countDown();
+            outerNotifier = new IoFuture.HandlingNotifier<ConnectionPeerIdentity, Connect>() {
+                public void handleCancelled(final Connect connect) {
+                    connect.cancelled();
                 }
 
-                public void handleFailed(final IOException exception, final URI destination) {
-                    DiscoveryAttempt.this.discoveryResult.reportProblem(exception);
-                    failedDestinations.add(destination);
-                    countDown();
+                public void handleFailed(final IOException exception, final Connect connect) {
+                    connect.finish(exception);
                 }
 
-                public void handleDone(final ConnectionPeerIdentity data, final URI destination) {
+                public void handleDone(final ConnectionPeerIdentity data, final Connect connect) {
                     final IoFuture<EJBClientChannel> future = DiscoveryAttempt.this.ejbReceiver.serviceHandle.getClientService(data.getConnection(), OptionMap.EMPTY);
+                    connect.current = future;
                     onCancel(future::cancel);
-                    future.addNotifier(innerNotifier, destination);
+                    if (connect.timedOut) {
+                        future.cancel();
+                    }
+                    future.addNotifier(innerNotifier, connect);
                 }
             };
-            innerNotifier = new IoFuture.HandlingNotifier<EJBClientChannel, URI>() {
-                public void handleCancelled(final URI destination) {
-                    countDown();
+            innerNotifier = new IoFuture.HandlingNotifier<EJBClientChannel, Connect>() {
+                public void handleCancelled(final Connect connect) {
+                    connect.cancelled();
                 }
 
-                public void handleFailed(final IOException exception, final URI destination) {
-                    DiscoveryAttempt.this.discoveryResult.reportProblem(exception);
-                    failedDestinations.add(destination);
-                    countDown();
+                public void handleFailed(final IOException exception, final Connect connect) {
+                    connect.finish(exception);
                 }
 
-                public void handleDone(final EJBClientChannel clientChannel, final URI destination) {
-                    failedDestinations.remove(destination);
-                    countDown();
+                public void handleDone(final EJBClientChannel clientChannel, final Connect connect) {
+                    failedDestinations.remove(connect.destination);
+                    if (EARLY_COMPLETION_NODES > 0 && ! tracker.isComplete() && discoverNodes(IGNORED_RESULT) >= EARLY_COMPLETION_NODES) {
+                        completeEarly();
+                    }
+                    connect.finish(null);
                 }
             };
         }
@@ -377,98 +549,110 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
         void connectAndDiscover(URI uri, String clusterEffective) {
             final String scheme = uri.getScheme();
             if (scheme == null || ! ejbReceiver.getRemoteTransportProvider().supportsProtocol(scheme) || ! endpoint.isValidUriScheme(scheme)) {
-                countDown();
                 return;
             }
-            outstandingCount.getAndIncrement();
-            final IoFuture<ConnectionPeerIdentity> future = doPrivileged((PrivilegedAction<IoFuture<ConnectionPeerIdentity>>) () -> getConnectedIdentityUsingClusterEffective(endpoint, uri, "ejb", "jboss", authenticationContext, clusterEffective));
-            onCancel(future::cancel);
-            future.addNotifier(outerNotifier, uri);
+            connectCount.getAndIncrement();
+            tracker.submit(new Connect(uri, clusterEffective));
+        }
+
+        int discoverNodes(final DiscoveryResult result) {
+            int found = 0;
+            // optimize for simple node name queries
+            final String node = filterSpec.accept(NODE_EXTRACTOR);
+            if (node != null) {
+                final NodeInformation information = nodes.get(node);
+                if (information != null && information.discover(serviceType, filterSpec, result)) {
+                    found ++;
+                }
+            } else for (NodeInformation information : nodes.values()) {
+                if (information.discover(serviceType, filterSpec, result)) {
+                    found ++;
+                }
+            }
+            return found;
+        }
+
+        void completeEarly() {
+            if (tracker.complete()) {
+                final int found = discoverNodes(discoveryResult);
+                Logs.INVOCATION.debugf("EJB discovery provider: %d matching nodes found after %d ms, not waiting for the remaining connections", found, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart));
+                discoveryResult.complete();
+                tracker.abandonPending();
+            }
         }
 
         void countDown() {
-            if (outstandingCount.decrementAndGet() == 0) {
-                final DiscoveryResult result = this.discoveryResult;
-                final String node = filterSpec.accept(NODE_EXTRACTOR);
-                final EJBModuleIdentifier module = filterSpec.accept(MI_EXTRACTOR);
-                if (phase2) {
-                    if (node != null) {
-                        final NodeInformation information = nodes.get(node);
-                        if (information != null) information.discover(serviceType, filterSpec, result);
-                    } else for (NodeInformation information : nodes.values()) {
-                        information.discover(serviceType, filterSpec, result);
-                    }
+            tracker.countDown();
+        }
+
+        void phaseFinished() {
+            Logs.INVOCATION.debugf("EJB discovery provider: %s phase finished in %d ms (%d connection attempts, %d failed)", phase2 ? "reconnect" : "initial", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart), connectCount.get(), failureCount.get());
+            if (! tracker.complete()) {
+                // completed early
+                return;
+            }
+            final DiscoveryResult result = this.discoveryResult;
+            if (phase2) {
+                discoverNodes(result);
+                result.complete();
+            } else {
+                if (discoverNodes(result) > 0) {
                     result.complete();
                 } else {
-                    boolean ok = false;
-                    // optimize for simple module identifier and node name queries
-                    if (node != null) {
-                        final NodeInformation information = nodes.get(node);
-                        if (information != null) {
-                            if (information.discover(serviceType, filterSpec, result)) {
-                                ok = true;
-                            }
-                        }
-                    } else for (NodeInformation information : nodes.values()) {
-                        if (information.discover(serviceType, filterSpec, result)) {
-                            ok = true;
+                    // everything failed.  We have to reconnect everything.
+                    Set<URI> everything = new HashSet<>();
+                    Map<URI, String> effectiveAuthMappings = new HashMap<>();
+                    for (EJBClientConnection connection : ejbReceiver.getReceiverContext().getClientContext().getConfiguredConnections()) {
+                        if (connection.isForDiscovery()) {
+                            everything.add(connection.getDestination());
                         }
                     }
-                    if (ok) {
-                        result.complete();
-                    } else {
-                        // everything failed.  We have to reconnect everything.
-                        Set<URI> everything = new HashSet<>();
-                        Map<URI, String> effectiveAuthMappings = new HashMap<>();
-                        for (EJBClientConnection connection : ejbReceiver.getReceiverContext().getClientContext().getConfiguredConnections()) {
-                            if (connection.isForDiscovery()) {
-                                everything.add(connection.getDestination());
-                            }
-                        }
-                        outer: for (NodeInformation information : nodes.values()) {
-                            for (NodeInformation.ClusterNodeInformation cni : information.getClustersByName().values()) {
-                                final Map<String, CidrAddressTable<InetSocketAddress>> atm = cni.getAddressTablesByProtocol();
-                                for (Map.Entry<String, CidrAddressTable<InetSocketAddress>> entry2 : atm.entrySet()) {
-                                    final String protocol = entry2.getKey();
-                                    final CidrAddressTable<InetSocketAddress> addressTable = entry2.getValue();
-                                    for (CidrAddressTable.Mapping<InetSocketAddress> mapping : addressTable) {
-                                        final InetSocketAddress destination = mapping.getValue();
-                                        final InetSocketAddress source = ejbReceiver.getSourceAddress(destination);
-                                        if (source == null ? mapping.getRange().getNetmaskBits() == 0 : source.equals(destination)) {
-                                            try {
-                                                final InetAddress destinationAddress = destination.getAddress();
-                                                String hostName = Inet.getHostNameIfResolved(destinationAddress);
-                                                if (hostName == null) {
-                                                    if (destinationAddress instanceof Inet6Address) {
-                                                        hostName = '[' + Inet.toOptimalString(destinationAddress) + ']';
-                                                    } else {
-                                                        hostName = Inet.toOptimalString(destinationAddress);
-                                                    }
-                                                }
-                                                URI location = new URI(protocol, null, hostName, destination.getPort(), null, null, null);
-                                                String cluster = effectiveAuthMappings.get(location);
-                                                if (cluster != null) {
-                                                    effectiveAuthMappings.put(location, cluster);
+                    outer: for (NodeInformation information : nodes.values()) {
+                        for (NodeInformation.ClusterNodeInformation cni : information.getClustersByName().values()) {
+                            final Map<String, CidrAddressTable<InetSocketAddress>> atm = cni.getAddressTablesByProtocol();
+                            for (Map.Entry<String, CidrAddressTable<InetSocketAddress>> entry2 : atm.entrySet()) {
+                                final String protocol = entry2.getKey();
+                                final CidrAddressTable<InetSocketAddress> addressTable = entry2.getValue();
+                                for (CidrAddressTable.Mapping<InetSocketAddress> mapping : addressTable) {
+                                    final InetSocketAddress destination = mapping.getValue();
+                                    final InetSocketAddress source = ejbReceiver.getSourceAddress(destination);
+                                    if (source == null ? mapping.getRange().getNetmaskBits() == 0 : source.equals(destination)) {
+                                        try {
+                                            final InetAddress destinationAddress = destination.getAddress();
+                                            String hostName = Inet.getHostNameIfResolved(destinationAddress);
+                                            if (hostName == null) {
+                                                if (destinationAddress instanceof Inet6Address) {
+                                                    hostName = '[' + Inet.toOptimalString(destinationAddress) + ']';
+                                                } else {
+                                                    hostName = Inet.toOptimalString(destinationAddress);
                                                 }
-
-                                                everything.add(location);
-                                                continue outer;
-                                            } catch (URISyntaxException e) {
-                                                // ignore URI and try the next one
                                             }
+                                            URI location = new URI(protocol, null, hostName, destination.getPort(), null, null, null);
+                                            String cluster = effectiveAuthMappings.get(location);
+                                            if (cluster != null) {
+                                                effectiveAuthMappings.put(location, cluster);
+                                            }
+
+                                            everything.add(location);
+                                            continue outer;
+                                        } catch (URISyntaxException e) {
+                                            // ignore URI and try the next one
                                         }
                                     }
                                 }
                             }
                         }
-                        // now connect them ALL
-                        phase2 = true;
-                        outstandingCount.incrementAndGet();
-                        for (URI uri : everything) {
-                            connectAndDiscover(uri, effectiveAuthMappings.get(uri));
-                        }
-                        countDown();
                     }
+                    // now connect them ALL
+                    phase2 = true;
+                    phaseStart = System.nanoTime();
+                    connectCount.set(0);
+                    failureCount.set(0);
+                    tracker.reopen();
+                    for (URI uri : everything) {
+                        connectAndDiscover(uri, effectiveAuthMappings.get(uri));
+                    }
+                    countDown();
                 }
             }
         }
@@ -496,6 +680,7 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
                     canceller.run();
                 }
             }
+            tracker.abandonPending();
         }
 
         void onCancel(final Runnable action) {
@@ -504,5 +689,55 @@ final class RemotingEJBDiscoveryProvider implements DiscoveryProvider, Discovere
                 cancellers.add(action);
             }
         }
+
+        /**
+         * A single connection attempt, which holds one of the concurrency slots of the discovery from the time it is
+         * started until it is finished.
+         */
+        final class Connect implements Runnable {
+            final URI destination;
+            final String clusterEffective;
+            volatile IoFuture<?> current;
+            volatile boolean timedOut;
+            private volatile XnioExecutor.Key timeoutKey;
+
+            Connect(final URI destination, final String clusterEffective) {
+                this.destination = destination;
+                this.clusterEffective = clusterEffective;
+            }
+
+            void start() {
+                final IoFuture<ConnectionPeerIdentity> future = doPrivileged((PrivilegedAction<IoFuture<ConnectionPeerIdentity>>) () -> getConnectedIdentityUsingClusterEffective(endpoint, destination, "ejb", "jboss", authenticationContext, clusterEffective));
+                current = future;
+                onCancel(future::cancel);
+                if (CONNECT_TIMEOUT_MILLIS > 0) {
+                    timeoutKey = endpoint.getXnioWorker().getIoThread().executeAfter(this, CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                future.addNotifier(outerNotifier, this);
+            }
+
+            // the deadline has passed; the attempt only counts as timed out if the cancellation takes effect
+            public void run() {
+                timedOut = true;
+                current.cancel();
+            }
+
+            void cancelled() {
+                finish(timedOut ? Logs.REMOTING.discoveryConnectTimedOut(destination, CONNECT_TIMEOUT_MILLIS) : null);
+            }
+
+            void finish(final IOException problem) {
+                final XnioExecutor.Key timeoutKey = this.timeoutKey;
+                if (timeoutKey != null) {
+                    timeoutKey.remove();
+                }
+                if (problem != null) {
+                    failureCount.getAndIncrement();
+                    discoveryResult.reportProblem(problem);
+                    failedDestinations.add(destination);
+                }
+                tracker.finished();
+            }
+        }
     }
 }
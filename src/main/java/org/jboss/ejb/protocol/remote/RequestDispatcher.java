@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.security.PrivilegedAction;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A dispatch stage which moves the processing of incoming requests from the I/O thread which read their header to a
+ * worker executor, so that inflating and unmarshalling a large or compressed request does not hold up the other
+ * messages of the connection.  Dispatching is off by default, since it gives up the processing order of requests.
+ * The number of requests which are waiting for a worker is bounded; once the bound is reached, requests are processed
+ * on the I/O thread again, which in turn slows down reading from the connection.
+ */
+final class RequestDispatcher {
+
+    /**
+     * The maximum number of requests waiting for a worker, or 0 (the default) if requests are always processed on the
+     * I/O thread.  Dispatched requests run concurrently and a request which overflows the queue runs on the I/O thread
+     * straight away, so requests of a channel are no longer processed in the order in which they were received; this
+     * includes consecutive invocations of the same stateful session or transaction.  Only enable dispatching for
+     * clients which do not depend on that ordering.
+     */
+    static final int QUEUE_SIZE = doPrivileged((PrivilegedAction<Integer>) () -> {
+        String val = System.getProperty("org.jboss.ejb.server.dispatch-queue-size");
+        try {
+            return Integer.valueOf(Math.max(0, Integer.parseInt(val)));
+        } catch (NumberFormatException e) {
+            return Integer.valueOf(0);
+        }
+    }).intValue();
+
+    private final Executor executor;
+    private final int maxQueued;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    RequestDispatcher(final Executor executor, final int maxQueued) {
+        this.executor = executor;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Hand a request to the worker executor.
+     *
+     * @param task the task which processes the request
+     * @return {@code true} if the task was dispatched, or {@code false} if the queue is full and the caller must run
+     *      the task itself
+     */
+    boolean dispatch(final Runnable task) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                queued.decrementAndGet();
+                task.run();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Get the number of requests which are waiting for a worker.
+     *
+     * @return the number of waiting requests
+     */
+    int getQueued() {
+        return queued.get();
+    }
+}
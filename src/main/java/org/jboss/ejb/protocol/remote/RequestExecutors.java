@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.wildfly.common.Assert;
+
+/**
+ * Factory methods for executors which run the requests of a {@link RemoteEJBService}.  By default, requests run on the
+ * XNIO worker of the connection; an EJB which blocks for a long time ties up one of its threads for the duration.  With
+ * a virtual thread per request, a blocked request only costs its virtual thread, so that many thousands of blocking
+ * requests can be in progress at once.
+ */
+public final class RequestExecutors {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            // virtual threads may also be present as a preview feature which is not enabled
+            ((ExecutorService) handle.invokeExact()).shutdown();
+        } catch (Throwable ignored) {
+            handle = null;
+        }
+        NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = handle;
+    }
+
+    private RequestExecutors() {
+    }
+
+    /**
+     * Determine whether the runtime supports virtual threads.
+     *
+     * @return {@code true} if {@link #newVirtualThreadPerRequestExecutor()} may be used
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor which runs each request on a new virtual thread.
+     *
+     * @return the executor (not {@code null})
+     * @throws UnsupportedOperationException if the runtime does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerRequestExecutor() throws UnsupportedOperationException {
+        final MethodHandle handle = NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+        if (handle == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this runtime");
+        }
+        try {
+            return (ExecutorService) handle.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Create an executor which runs requests on a bounded pool of platform threads.  Requests which arrive while all of
+     * the threads are busy wait in a queue; idle threads end after a minute.
+     *
+     * @param maxThreads the maximum number of threads (must be at least 1)
+     * @return the executor (not {@code null})
+     */
+    public static ExecutorService newBoundedExecutor(final int maxThreads) {
+        Assert.checkMinimumParameter("maxThreads", 1, maxThreads);
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new RequestThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create an executor which runs each request on a new virtual thread if the runtime supports it, or on a bounded
+     * pool of platform threads otherwise.
+     *
+     * @param maxThreads the maximum number of threads of the pool, if a pool is used (must be at least 1)
+     * @return the executor (not {@code null})
+     */
+    public static ExecutorService newDefaultExecutor(final int maxThreads) {
+        Assert.checkMinimumParameter("maxThreads", 1, maxThreads);
+        return isVirtualThreadSupported() ? newVirtualThreadPerRequestExecutor() : newBoundedExecutor(maxThreads);
+    }
+
+    static final class RequestThreadFactory implements ThreadFactory {
+        private static final AtomicInteger poolCount = new AtomicInteger();
+
+        private final int pool = poolCount.incrementAndGet();
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "EJB request " + pool + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
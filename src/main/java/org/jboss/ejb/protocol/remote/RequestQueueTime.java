@@ -0,0 +1,35 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+/**
+ * A provider interface of the requests of a {@link RemoteEJBService}, which gives the time a request waited in the
+ * queue of the request executor.  It can be obtained from a request via
+ * {@link org.jboss.ejb.server.Request#getProviderInterface(Class) getProviderInterface(RequestQueueTime.class)}.
+ */
+public interface RequestQueueTime {
+
+    /**
+     * Get the time between the submission of the request to the {@linkplain
+     * org.jboss.ejb.server.Request#getRequestExecutor() request executor} and the start of its execution.
+     *
+     * @return the time in nanoseconds, or -1 if the request was not (yet) run by the request executor
+     */
+    long getQueueWaitNanos();
+}
@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.jboss.ejb.client.EJBClientContext.FILTER_ATTR_CLUSTER;
+import static org.jboss.ejb.client.EJBClientContext.FILTER_ATTR_EJB_MODULE;
+import static org.jboss.ejb.client.EJBClientContext.FILTER_ATTR_EJB_MODULE_DISTINCT;
+import static org.jboss.ejb.client.EJBClientContext.FILTER_ATTR_NODE;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.wildfly.discovery.AllFilterSpec;
+import org.wildfly.discovery.AttributeValue;
+import org.wildfly.discovery.EqualsFilterSpec;
+import org.wildfly.discovery.FilterSpec;
+import org.wildfly.discovery.ServiceType;
+import org.wildfly.discovery.ServiceURL;
+import org.wildfly.discovery.spi.DiscoveryResult;
+
+/**
+ * An immutable set of service URLs, indexed by the values of the {@code ejb-module}, {@code ejb-module-distinct},
+ * {@code cluster} and {@code node} attributes.  A filter spec which is an equality test on one of these attributes,
+ * or a conjunction containing at least one such test, is answered by checking only the service URLs listed under the
+ * most selective of those tests; any other filter spec is matched against every service URL.
+ */
+final class ServiceURLIndex {
+
+    private static final String[] INDEXED_ATTRIBUTES = {
+        FILTER_ATTR_EJB_MODULE,
+        FILTER_ATTR_EJB_MODULE_DISTINCT,
+        FILTER_ATTR_CLUSTER,
+        FILTER_ATTR_NODE,
+    };
+
+    private final List<ServiceURL> serviceURLs;
+    private final Map<String, Map<AttributeValue, List<ServiceURL>>> index;
+
+    private final FilterSpec.Visitor<Void, List<ServiceURL>, RuntimeException> candidateFinder = new FilterSpec.Visitor<Void, List<ServiceURL>, RuntimeException>() {
+        public List<ServiceURL> handle(final EqualsFilterSpec filterSpec, final Void parameter) throws RuntimeException {
+            final Map<AttributeValue, List<ServiceURL>> byValue = index.get(filterSpec.getAttribute());
+            return byValue == null ? null : byValue.getOrDefault(filterSpec.getValue(), Collections.emptyList());
+        }
+
+        public List<ServiceURL> handle(final AllFilterSpec filterSpec, final Void parameter) throws RuntimeException {
+            List<ServiceURL> best = null;
+            for (FilterSpec child : filterSpec) {
+                final List<ServiceURL> candidates = child.accept(this);
+                if (candidates != null && (best == null || candidates.size() < best.size())) {
+                    best = candidates;
+                }
+            }
+            return best;
+        }
+    };
+
+    ServiceURLIndex(final List<ServiceURL> serviceURLs) {
+        this.serviceURLs = serviceURLs;
+        final Map<String, Map<AttributeValue, List<ServiceURL>>> index = new HashMap<>(INDEXED_ATTRIBUTES.length);
+        for (String attribute : INDEXED_ATTRIBUTES) {
+            final Map<AttributeValue, List<ServiceURL>> byValue = new HashMap<>();
+            for (ServiceURL serviceURL : serviceURLs) {
+                for (AttributeValue value : serviceURL.getAttributeValues(attribute)) {
+                    final List<ServiceURL> list = byValue.computeIfAbsent(value, ignored -> new ArrayList<>(1));
+                    // a service URL may repeat a value, but should only be reported once
+                    if (list.isEmpty() || list.get(list.size() - 1) != serviceURL) {
+                        list.add(serviceURL);
+                    }
+                }
+            }
+            index.put(attribute, byValue);
+        }
+        this.index = index;
+    }
+
+    /**
+     * Get all of the service URLs.
+     *
+     * @return the service URLs (not {@code null})
+     */
+    List<ServiceURL> getServiceURLs() {
+        return serviceURLs;
+    }
+
+    /**
+     * Report every service URL which is of the given type and satisfies the given filter spec.
+     *
+     * @param serviceType the service type
+     * @param filterSpec the filter spec
+     * @param discoveryResult the result to add matches to
+     * @return {@code true} if at least one match was found, {@code false} otherwise
+     */
+    boolean discover(final ServiceType serviceType, final FilterSpec filterSpec, final DiscoveryResult discoveryResult) {
+        List<ServiceURL> candidates = filterSpec.accept(candidateFinder);
+        if (candidates == null) {
+            candidates = serviceURLs;
+        }
+        boolean found = false;
+        for (ServiceURL serviceURL : candidates) {
+            if (serviceURL.satisfies(filterSpec) && serviceType.implies(serviceURL)) {
+                found = true;
+                discoveryResult.addMatch(serviceURL);
+            }
+        }
+        return found;
+    }
+}
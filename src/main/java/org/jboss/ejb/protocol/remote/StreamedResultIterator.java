@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.ejb.EJBException;
+
+import org.jboss.marshalling.Unmarshaller;
+
+/**
+ * The client side of an {@link Protocol#INVOCATION_STREAM_RESPONSE} message.  The body of the message starts with the
+ * usual response attachments, which the caller reads before creating the iterator, and continues with a sequence of
+ * chunks, each of which is an {@code Integer} element count followed by that many elements; the server clears the
+ * instance cache after each chunk so that neither side retains the elements which were already transferred.  A count
+ * of zero ends the sequence, and a count of -1 is followed by the exception which stopped the server from producing
+ * further elements.
+ * <p>
+ * Elements are only read as the caller asks for them, so the server is held back by the flow control of the message
+ * once the caller stops consuming.  The iterator is only handed out behind a {@code Stream} whose close action
+ * {@linkplain #close() closes} it; a stream which is abandoned without being closed is cancelled by the server once its
+ * idle timeout expires.  Instances are not thread-safe.
+ */
+final class StreamedResultIterator implements Iterator<Object>, AutoCloseable {
+
+    private final Unmarshaller unmarshaller;
+    private final MarshallerPool marshallerPool;
+    private final InputStream input;
+    private int remaining;
+    private boolean finished;
+
+    StreamedResultIterator(final Unmarshaller unmarshaller, final MarshallerPool marshallerPool, final InputStream input) {
+        this.unmarshaller = unmarshaller;
+        this.marshallerPool = marshallerPool;
+        this.input = input;
+    }
+
+    public boolean hasNext() {
+        while (remaining == 0) {
+            if (finished) {
+                return false;
+            }
+            readChunkHeader();
+        }
+        return true;
+    }
+
+    public Object next() {
+        if (! hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            final Object element = unmarshaller.readObject();
+            remaining --;
+            return element;
+        } catch (IOException | ClassNotFoundException ex) {
+            close();
+            throw new EJBException("Failed to read response", ex);
+        }
+    }
+
+    private void readChunkHeader() {
+        final RuntimeException failure;
+        try {
+            // reading an object (rather than a primitive) also consumes the preceding clear-cache marker
+            final int count = unmarshaller.readObject(Integer.class).intValue();
+            if (count > 0) {
+                remaining = count;
+                return;
+            }
+            failure = count < 0 ? unmarshaller.readObject(RuntimeException.class) : null;
+            unmarshaller.finish();
+            finished = true;
+            marshallerPool.returnUnmarshaller(unmarshaller);
+            safeClose(input);
+        } catch (IOException | ClassNotFoundException ex) {
+            close();
+            throw new EJBException("Failed to read response", ex);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stop reading the result, discarding any elements which have not been read yet.
+     */
+    public void close() {
+        if (! finished) {
+            finished = true;
+            remaining = 0;
+            safeClose(input);
+        }
+    }
+}
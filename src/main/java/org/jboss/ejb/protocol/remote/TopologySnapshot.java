@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.PrivilegedAction;
+
+import org.jboss.ejb.client.EJBModuleIdentifier;
+import org.wildfly.common.net.CidrAddress;
+import org.wildfly.common.net.Inet;
+
+/**
+ * A copy of the discovered topology which is kept in a local file, so that a restarted client knows about the nodes,
+ * modules and cluster mappings it had discovered before without waiting to rediscover them.  The file is a UTF-8
+ * text file with one tab-separated record per line:
+ * <ul>
+ *     <li>{@code cluster} <em>cluster name</em> <em>URI of the connection which registered the cluster</em></li>
+ *     <li>{@code module} <em>node name</em> <em>destination URI</em> <em>app name</em> <em>module name</em> <em>distinct name</em></li>
+ *     <li>{@code address} <em>node name</em> <em>cluster name</em> <em>protocol</em> <em>source block</em> <em>destination host</em> <em>destination port</em></li>
+ * </ul>
+ * Lines starting with {@code #}, unknown records and records which cannot be parsed are ignored.
+ */
+final class TopologySnapshot {
+
+    /**
+     * The snapshot file, or {@code null} if no snapshot is kept.
+     */
+    static final Path FILE = doPrivileged((PrivilegedAction<Path>) () -> {
+        String val = System.getProperty("org.jboss.ejb.client.discovery.topology-snapshot-file");
+        try {
+            return val == null || val.isEmpty() ? null : Paths.get(val);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    });
+
+    /**
+     * The time in milliseconds for which topology loaded from the snapshot is used, unless it is confirmed by the
+     * live topology before then.
+     */
+    static final long PROVISIONAL_MILLIS = doPrivileged((PrivilegedAction<Long>) () -> {
+        String val = System.getProperty("org.jboss.ejb.client.discovery.topology-snapshot-provisional-millis");
+        try {
+            return Long.valueOf(val);
+        } catch (NumberFormatException e) {
+            return Long.valueOf(120_000);
+        }
+    }).longValue();
+
+    /**
+     * The delay in milliseconds between a topology change and the writing of the snapshot, so that a burst of
+     * changes is written once.
+     */
+    static final long SAVE_DELAY_MILLIS = 1000;
+
+    private final StringBuilder builder = new StringBuilder("# EJB client topology snapshot\n");
+
+    void addCluster(final String clusterName, final URI registeredBy) {
+        record("cluster", clusterName, registeredBy.toString());
+    }
+
+    void addModule(final String nodeName, final URI destination, final EJBModuleIdentifier module) {
+        record("module", nodeName, destination.toString(), module.getAppName(), module.getModuleName(), module.getDistinctName());
+    }
+
+    void addAddress(final String nodeName, final String clusterName, final String protocol, final CidrAddress block, final InetSocketAddress destination) {
+        record("address", nodeName, clusterName, protocol, block.toString(), destination.getHostString(), Integer.toString(destination.getPort()));
+    }
+
+    private void record(final String... fields) {
+        for (String field : fields) {
+            if (field.indexOf('\t') != -1 || field.indexOf('\n') != -1 || field.indexOf('\r') != -1) {
+                // cannot be represented
+                return;
+            }
+        }
+        builder.append(String.join("\t", fields)).append('\n');
+    }
+
+    /**
+     * Write the snapshot.  The file is replaced atomically where the file system allows it, so that a reader never
+     * sees a partially written snapshot.
+     *
+     * @param file the file to write
+     * @throws IOException if the write fails
+     */
+    void save(final Path file) throws IOException {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, builder.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param file the file to read
+     * @param handler the handler to pass the records to
+     * @throws IOException if the read fails
+     */
+    static void load(final Path file, final Handler handler) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                final String[] fields = line.split("\t", -1);
+                try {
+                    switch (fields[0]) {
+                        case "cluster": {
+                            if (fields.length == 3) {
+                                handler.handleCluster(fields[1], new URI(fields[2]));
+                            }
+                            break;
+                        }
+                        case "module": {
+                            if (fields.length == 6) {
+                                handler.handleModule(fields[1], new URI(fields[2]), new EJBModuleIdentifier(fields[3], fields[4], fields[5]));
+                            }
+                            break;
+                        }
+                        case "address": {
+                            if (fields.length == 7) {
+                                final CidrAddress block = Inet.parseCidrAddress(fields[4]);
+                                final InetSocketAddress destination = new InetSocketAddress(fields[5], Integer.parseInt(fields[6]));
+                                if (block != null && ! destination.isUnresolved()) {
+                                    handler.handleAddress(fields[1], fields[2], fields[3], block, destination);
+                                }
+                            }
+                            break;
+                        }
+                        default: {
+                            // ignore record
+                        }
+                    }
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    // ignore damaged record
+                }
+            }
+        }
+    }
+
+    /**
+     * The receiver of the records of a snapshot which is being read.
+     */
+    interface Handler {
+        void handleCluster(String clusterName, URI registeredBy);
+
+        void handleModule(String nodeName, URI destination, EJBModuleIdentifier module);
+
+        void handleAddress(String nodeName, String clusterName, String protocol, CidrAddress block, InetSocketAddress destination);
+    }
+}
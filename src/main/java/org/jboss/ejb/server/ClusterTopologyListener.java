@@ -20,6 +20,7 @@ package org.jboss.ejb.server;
 
 import java.net.InetAddress;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * A legacy cluster topology notification client.
@@ -52,6 +53,21 @@ public interface ClusterTopologyListener {
         public List<NodeInfo> getNodeInfoList() {
             return nodeInfoList;
         }
+
+        public boolean equals(final Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (! (other instanceof ClusterInfo)) {
+                return false;
+            }
+            final ClusterInfo info = (ClusterInfo) other;
+            return Objects.equals(clusterName, info.clusterName) && Objects.equals(nodeInfoList, info.nodeInfoList);
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(clusterName) + 13 * Objects.hashCode(nodeInfoList);
+        }
     }
 
     final class NodeInfo {
@@ -70,6 +86,21 @@ public interface ClusterTopologyListener {
         public List<MappingInfo> getMappingInfoList() {
             return mappingInfoList;
         }
+
+        public boolean equals(final Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (! (other instanceof NodeInfo)) {
+                return false;
+            }
+            final NodeInfo info = (NodeInfo) other;
+            return Objects.equals(nodeName, info.nodeName) && Objects.equals(mappingInfoList, info.mappingInfoList);
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(nodeName) + 13 * Objects.hashCode(mappingInfoList);
+        }
     }
 
     final class MappingInfo {
@@ -100,6 +131,22 @@ public interface ClusterTopologyListener {
         public int getNetmaskBits() {
             return netmaskBits;
         }
+
+        public boolean equals(final Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (! (other instanceof MappingInfo)) {
+                return false;
+            }
+            final MappingInfo info = (MappingInfo) other;
+            return destinationPort == info.destinationPort && netmaskBits == info.netmaskBits
+                && Objects.equals(destinationAddress, info.destinationAddress) && Objects.equals(sourceAddress, info.sourceAddress);
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(destinationAddress) + 13 * (destinationPort + 13 * (Objects.hashCode(sourceAddress) + 13 * netmaskBits));
+        }
     }
 
     final class ClusterRemovalInfo {
@@ -118,5 +165,20 @@ public interface ClusterTopologyListener {
         public List<String> getNodeNames() {
             return nodeNames;
         }
+
+        public boolean equals(final Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (! (other instanceof ClusterRemovalInfo)) {
+                return false;
+            }
+            final ClusterRemovalInfo info = (ClusterRemovalInfo) other;
+            return Objects.equals(clusterName, info.clusterName) && Objects.equals(nodeNames, info.nodeNames);
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(clusterName) + 13 * Objects.hashCode(nodeNames);
+        }
     }
 }
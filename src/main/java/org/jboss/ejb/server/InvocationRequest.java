@@ -47,7 +47,8 @@ public interface InvocationRequest extends Request {
     Resolved getRequestContent(ClassLoader classLoader) throws IOException, ClassNotFoundException;
 
     /**
-     * Get the EJB method locator.
+     * Get the EJB method locator.  The method of a view class which it refers to can be looked up using a
+     * {@link ViewMethodIndex}.
      *
      * @return the EJB method locator (must not be {@code null})
      */
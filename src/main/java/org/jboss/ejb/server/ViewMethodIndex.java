@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.server;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.lang.reflect.Method;
+import java.security.PrivilegedAction;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.ejb.client.EJBMethodLocator;
+import org.jboss.ejb.client.annotation.CompressionHint;
+import org.wildfly.common.Assert;
+
+/**
+ * An index of the public methods of an EJB view class by {@linkplain EJBMethodLocator method locator}.  The index of
+ * each view class is built once and cached for the lifetime of the class, so that resolving the method of an
+ * incoming invocation does not need to scan the view class.
+ */
+public final class ViewMethodIndex {
+
+    private static final ClassValue<ViewMethodIndex> CLASS_VALUE = new ClassValue<ViewMethodIndex>() {
+        protected ViewMethodIndex computeValue(final Class<?> type) {
+            final SecurityManager sm = System.getSecurityManager();
+            if (sm != null) {
+                return doPrivileged((PrivilegedAction<ViewMethodIndex>) () -> new ViewMethodIndex(type));
+            } else {
+                return new ViewMethodIndex(type);
+            }
+        }
+    };
+
+    private final Map<EJBMethodLocator, Method> methods;
+    private final Map<EJBMethodLocator, Integer> responseCompressionLevels;
+
+    private ViewMethodIndex(final Class<?> viewClass) {
+        final Method[] viewMethods = viewClass.getMethods();
+        final HashMap<EJBMethodLocator, Method> methods = new HashMap<>(viewMethods.length);
+        final HashMap<EJBMethodLocator, Integer> responseCompressionLevels = new HashMap<>();
+        for (Method method : viewMethods) {
+            final EJBMethodLocator locator = EJBMethodLocator.forMethod(method);
+            // the first match wins
+            if (methods.putIfAbsent(locator, method) == null) {
+                CompressionHint compressionHint = method.getAnnotation(CompressionHint.class);
+                // then class level
+                if (compressionHint == null) {
+                    compressionHint = method.getDeclaringClass().getAnnotation(CompressionHint.class);
+                }
+                if (compressionHint != null && compressionHint.compressResponse()) {
+                    responseCompressionLevels.put(locator, Integer.valueOf(compressionHint.compressionLevel()));
+                }
+            }
+        }
+        this.methods = methods;
+        this.responseCompressionLevels = responseCompressionLevels;
+    }
+
+    /**
+     * Get the method index of a view class.
+     *
+     * @param viewClass the view class (must not be {@code null})
+     * @return the method index (not {@code null})
+     */
+    public static ViewMethodIndex forViewClass(Class<?> viewClass) {
+        Assert.checkNotNullParam("viewClass", viewClass);
+        return CLASS_VALUE.get(viewClass);
+    }
+
+    /**
+     * Get the public method of the view class which matches a method locator.
+     *
+     * @param methodLocator the method locator (must not be {@code null})
+     * @return the method, or {@code null} if the view class has no such method
+     */
+    public Method getMethod(EJBMethodLocator methodLocator) {
+        Assert.checkNotNullParam("methodLocator", methodLocator);
+        return methods.get(methodLocator);
+    }
+
+    /**
+     * Get the response compression level requested by the {@link CompressionHint} of the method which matches a method
+     * locator, or of its declaring class.
+     *
+     * @param methodLocator the method locator (must not be {@code null})
+     * @return the compression level of the hint, or 0 if the response is not to be compressed
+     */
+    public int getResponseCompressionLevel(EJBMethodLocator methodLocator) {
+        Assert.checkNotNullParam("methodLocator", methodLocator);
+        final Integer level = responseCompressionLevels.get(methodLocator);
+        return level == null ? 0 : level.intValue();
+    }
+}
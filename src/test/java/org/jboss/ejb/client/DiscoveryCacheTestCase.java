@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.client;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.wildfly.discovery.Discovery;
+import org.wildfly.discovery.FilterSpec;
+import org.wildfly.discovery.ServiceURL;
+import org.wildfly.security.auth.client.AuthenticationContext;
+
+/**
+ * Tests for {@link DiscoveryCache}.
+ */
+public final class DiscoveryCacheTestCase {
+
+    private static final DiscoveryCache.Key MODULE = key(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/module"), null);
+
+    private final Discovery discovery = Discovery.create();
+
+    @Test
+    public void testResultIsReused() {
+        final DiscoveryCache cache = new DiscoveryCache();
+        assertNull(cache.get(discovery, MODULE));
+        final DiscoveryCache.Result result = cache.put(discovery, MODULE, DiscoveryCache.currentGeneration(), services("remote://a:8080"), Collections.emptyList());
+        assertSame(result, cache.get(discovery, key(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/module"), null)));
+        assertNull(cache.get(discovery, key(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/other"), null)));
+        assertNull(cache.get(Discovery.create(), MODULE));
+        assertNull(cache.get(discovery, key(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/module"), new EJBClientContext.Builder().build())));
+    }
+
+    @Test
+    public void testInvalidation() {
+        final DiscoveryCache cache = new DiscoveryCache();
+        cache.put(discovery, MODULE, DiscoveryCache.currentGeneration(), services("remote://a:8080"), Collections.emptyList());
+        DiscoveryCache.invalidateAll();
+        assertNull(cache.get(discovery, MODULE));
+
+        final DiscoveryCache.Result result = cache.put(discovery, MODULE, DiscoveryCache.currentGeneration(), services("remote://a:8080"), Collections.emptyList());
+        cache.remove(result);
+        assertNull(cache.get(discovery, MODULE));
+    }
+
+    @Test
+    public void testChangeDuringDiscovery() {
+        final DiscoveryCache cache = new DiscoveryCache();
+        final int generation = DiscoveryCache.currentGeneration();
+        DiscoveryCache.invalidateAll();
+        final DiscoveryCache.Result result = cache.put(discovery, MODULE, generation, services("remote://a:8080"), Collections.emptyList());
+        assertEquals(1, result.getServices().size());
+        assertNull(cache.get(discovery, MODULE));
+    }
+
+    @Test
+    public void testIncompleteResultIsNotCached() {
+        final DiscoveryCache cache = new DiscoveryCache();
+        cache.put(discovery, MODULE, DiscoveryCache.currentGeneration(), services(), Collections.emptyList());
+        assertNull(cache.get(discovery, MODULE));
+        final DiscoveryCache.Result result = cache.put(discovery, MODULE, DiscoveryCache.currentGeneration(), services("remote://a:8080"), Collections.singletonList(new Exception()));
+        assertEquals(1, result.getProblems().size());
+        assertNull(cache.get(discovery, MODULE));
+    }
+
+    @Test
+    public void testSingleEntryIsEvicted() {
+        final DiscoveryCache cache = new DiscoveryCache();
+        final int generation = DiscoveryCache.currentGeneration();
+        for (int i = 0; i < DiscoveryCache.MAX_ENTRIES; i ++) {
+            cache.put(discovery, key(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/module" + i), null), generation, services("remote://a:8080"), Collections.emptyList());
+        }
+        final DiscoveryCache.Key last = key(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/last"), null);
+        cache.put(discovery, last, generation, services("remote://a:8080"), Collections.emptyList());
+        assertNotNull(cache.get(discovery, last));
+        int cached = 0;
+        for (int i = 0; i < DiscoveryCache.MAX_ENTRIES; i ++) {
+            if (cache.get(discovery, key(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/module" + i), null)) != null) {
+                cached ++;
+            }
+        }
+        assertEquals(DiscoveryCache.MAX_ENTRIES - 1, cached);
+    }
+
+    private static DiscoveryCache.Key key(final FilterSpec filterSpec, final EJBClientContext clientContext) {
+        return new DiscoveryCache.Key(filterSpec.toString(), clientContext, AuthenticationContext.empty());
+    }
+
+    private static List<ServiceURL> services(final String... uris) {
+        final List<ServiceURL> services = new ArrayList<>();
+        for (String uri : uris) {
+            services.add(new ServiceURL.Builder().setUri(URI.create(uri)).create());
+        }
+        return services;
+    }
+}
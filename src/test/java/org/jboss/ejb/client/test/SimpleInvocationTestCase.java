@@ -17,9 +17,14 @@
  */
 package org.jboss.ejb.client.test;
 
+import org.jboss.ejb.client.AttachmentKeys;
 import org.jboss.ejb.client.EJBClient;
 import org.jboss.ejb.client.EJBClientConnection;
 import org.jboss.ejb.client.EJBClientContext;
+import org.jboss.ejb.client.EJBClientInterceptor;
+import org.jboss.ejb.client.EJBClientInvocationContext;
+import org.jboss.ejb.client.EJBMethodCall;
+import org.jboss.ejb.client.EJBMethodLocator;
 import org.jboss.ejb.client.StatelessEJBLocator;
 import org.jboss.ejb.client.URIAffinity;
 import org.jboss.ejb.client.legacy.JBossEJBProperties;
@@ -36,12 +41,20 @@ import org.junit.Test;
 import org.wildfly.common.context.ContextManager;
 import org.wildfly.common.context.Contextual;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests basic invocation of a bean deployed on a single server node.
@@ -131,6 +144,132 @@ public class SimpleInvocationTestCase {
         Assert.assertEquals("Got an unexpected echo", echo, message);
     }
 
+    /**
+     * Test an invocation whose result is delivered through a {@link CompletableFuture}
+     */
+    @Test
+    public void testCompletableInvocation() throws Exception {
+        logger.info("Testing completable invocation on proxy with URIAffinity");
+
+        final StatelessEJBLocator<Echo> statelessEJBLocator = new StatelessEJBLocator<Echo>(Echo.class, APP_NAME, MODULE_NAME, Echo.class.getSimpleName(), DISTINCT_NAME);
+        final Echo proxy = EJBClient.createProxy(statelessEJBLocator);
+        EJBClient.setStrongAffinity(proxy, URIAffinity.forUri(new URI("remote", null, "localhost", 6999, null, null, null)));
+
+        final String message = "hello!";
+        final CompletableFuture<?> future = EJBClient.invokeCompletable(proxy, new EJBMethodLocator("echo", String.class.getName()), message);
+        final CompletableFuture<String> echo = future.thenApply(String::valueOf);
+        Assert.assertEquals("Got an unexpected echo", message, echo.get(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test a batch of invocations, which is sent to the server as one message
+     */
+    @Test
+    public void testBatchInvocation() throws Exception {
+        logger.info("Testing batch invocation on proxy with URIAffinity");
+
+        final Echo proxy = createEchoProxy();
+        // open the channel first, so that every call of the batch reaches it before the batch is complete
+        Assert.assertEquals("Got an unexpected echo", "warm-up", proxy.echo("warm-up"));
+
+        final List<EJBMethodCall> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i ++) {
+            calls.add(new EJBMethodCall(new EJBMethodLocator("echo", String.class.getName()), "hello " + i));
+        }
+        final long batchesBefore = getBatchRequestsSent();
+        final List<Future<?>> results = EJBClient.invokeBatch(proxy, calls);
+        Assert.assertEquals("Got an unexpected number of results", calls.size(), results.size());
+        for (int i = 0; i < results.size(); i ++) {
+            Assert.assertEquals("Got an unexpected echo", "hello " + i, results.get(i).get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals("The batch was not sent as one message", 1, getBatchRequestsSent() - batchesBefore);
+    }
+
+    /**
+     * Test a batch which calls several methods; the server answers each request of the batch separately
+     */
+    @Test
+    public void testBatchInvocationOfSeveralMethods() throws Exception {
+        logger.info("Testing batch invocation of several methods on proxy with URIAffinity");
+
+        final Echo proxy = createEchoProxy();
+        Assert.assertEquals("Got an unexpected echo", "warm-up", proxy.echo("warm-up"));
+
+        final List<EJBMethodCall> calls = new ArrayList<>();
+        calls.add(new EJBMethodCall(new EJBMethodLocator("echo", String.class.getName()), "first"));
+        calls.add(new EJBMethodCall(new EJBMethodLocator("whoAreYou")));
+        calls.add(new EJBMethodCall(new EJBMethodLocator("echo", String.class.getName()), "second"));
+        calls.add(new EJBMethodCall(new EJBMethodLocator("whoAreYouNonTX")));
+        final long batchesBefore = getBatchRequestsSent();
+        final List<Future<?>> results = EJBClient.invokeBatch(proxy, calls);
+        Assert.assertEquals("Got an unexpected echo", "first", results.get(0).get(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Got an unexpected identity", "noidea", results.get(1).get(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Got an unexpected echo", "second", results.get(2).get(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Got an unexpected identity", "noidea", results.get(3).get(10, TimeUnit.SECONDS));
+        Assert.assertEquals("The batch was not sent as one message", 1, getBatchRequestsSent() - batchesBefore);
+    }
+
+    /**
+     * Test a batch whose future completes while its calls are still being submitted; the calls which reach the
+     * channel afterwards are sent on their own
+     */
+    @Test
+    public void testBatchInvocationAfterBatchCompleted() throws Exception {
+        logger.info("Testing batch invocation with calls after the batch completed on proxy with URIAffinity");
+
+        // completes the batch when the call with the "complete" argument is submitted
+        final EJBClientInterceptor completer = new EJBClientInterceptor() {
+            public void handleInvocation(final EJBClientInvocationContext context) throws Exception {
+                final CompletableFuture<Void> batch = context.getAttachment(AttachmentKeys.INVOCATION_BATCH);
+                if (batch != null && "complete".equals(context.getParameters()[0])) {
+                    batch.complete(null);
+                }
+                context.sendRequest();
+            }
+
+            public Object handleInvocationResult(final EJBClientInvocationContext context) throws Exception {
+                return context.getResult();
+            }
+        };
+        final EJBClientContext context = EJBClientContext.getCurrent().withAddedInterceptors(completer);
+        context.runCallable(() -> {
+            final Echo proxy = createEchoProxy();
+            Assert.assertEquals("Got an unexpected echo", "warm-up", proxy.echo("warm-up"));
+
+            final String[] messages = { "a", "b", "complete", "c", "d" };
+            final List<EJBMethodCall> calls = new ArrayList<>();
+            for (String message : messages) {
+                calls.add(new EJBMethodCall(new EJBMethodLocator("echo", String.class.getName()), message));
+            }
+            final long batchesBefore = getBatchRequestsSent();
+            final List<Future<?>> results = EJBClient.invokeBatch(proxy, calls);
+            for (int i = 0; i < messages.length; i ++) {
+                Assert.assertEquals("Got an unexpected echo", messages[i], results.get(i).get(10, TimeUnit.SECONDS));
+            }
+            // only the two calls held back before the completion went out together
+            Assert.assertEquals("Got an unexpected number of batch messages", 1, getBatchRequestsSent() - batchesBefore);
+            return null;
+        });
+    }
+
+    private Echo createEchoProxy() throws URISyntaxException {
+        final StatelessEJBLocator<Echo> statelessEJBLocator = new StatelessEJBLocator<Echo>(Echo.class, APP_NAME, MODULE_NAME, Echo.class.getSimpleName(), DISTINCT_NAME);
+        final Echo proxy = EJBClient.createProxy(statelessEJBLocator);
+        EJBClient.setStrongAffinity(proxy, URIAffinity.forUri(new URI("remote", null, "localhost", 6999, null, null, null)));
+        Assert.assertNotNull("Received a null proxy", proxy);
+        return proxy;
+    }
+
+    // the batch request messages sent on all client channels, from their management interfaces
+    private static long getBatchRequestsSent() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        long total = 0;
+        for (ObjectName name : server.queryNames(new ObjectName("org.jboss.ejb.client:type=EJBClientChannel,*"), null)) {
+            total += ((Long) server.getAttribute(name, "BatchRequestsSent")).longValue();
+        }
+        return total;
+    }
+
     /**
      * Do any test-specific tear down here.
      */
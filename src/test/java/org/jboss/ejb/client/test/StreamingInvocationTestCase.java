@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.ejb.client.test;
+
+import org.jboss.ejb.client.EJBClient;
+import org.jboss.ejb.client.StatelessEJBLocator;
+import org.jboss.ejb.client.URIAffinity;
+import org.jboss.ejb.client.legacy.JBossEJBProperties;
+import org.jboss.ejb.client.test.common.DummyServer;
+import org.jboss.ejb.client.test.common.Streamer;
+import org.jboss.ejb.client.test.common.StreamerBean;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests invocations whose {@link Stream} results are streamed from a single server node in chunks.
+ */
+public class StreamingInvocationTestCase {
+
+    private static final Logger logger = Logger.getLogger(StreamingInvocationTestCase.class);
+    private static final String PROPERTIES_FILE = "jboss-ejb-client.properties";
+
+    private DummyServer server;
+    private boolean serverStarted = false;
+    private StreamerBean bean;
+
+    // module
+    private static final String APP_NAME = "my-foo-app";
+    private static final String MODULE_NAME = "my-bar-module";
+    private static final String DISTINCT_NAME = "";
+
+    private static final String SERVER_NAME = "test-server";
+
+    /**
+     * Do any general setup here
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        // a short idle timeout, so that an abandoned stream is cancelled quickly; this relies on forkMode=always
+        System.setProperty("org.jboss.ejb.server.stream-idle-timeout-millis", "500");
+
+        JBossEJBProperties ejbProperties = JBossEJBProperties.fromClassPath(StreamingInvocationTestCase.class.getClassLoader(), PROPERTIES_FILE);
+        JBossEJBProperties.getContextManager().setGlobalDefault(ejbProperties);
+
+        // Launch callback if needed
+        ClassCallback.beforeClassCallback();
+    }
+
+    /**
+     * Do any test specific setup here
+     */
+    @Before
+    public void beforeTest() throws Exception {
+        server = new DummyServer("localhost", 6999, SERVER_NAME);
+        server.start();
+        serverStarted = true;
+        logger.info("Started server ...");
+
+        bean = new StreamerBean();
+        server.register(APP_NAME, MODULE_NAME, DISTINCT_NAME, Streamer.class.getSimpleName(), bean);
+        logger.info("Registered module ...");
+    }
+
+    /**
+     * Test a result which spans several chunks
+     */
+    @Test
+    public void testChunkedResult() throws Exception {
+        final Streamer proxy = createProxy();
+        final List<Integer> elements;
+        try (Stream<Integer> stream = proxy.range(1000)) {
+            elements = stream.collect(Collectors.toList());
+        }
+        Assert.assertEquals("Got an unexpected number of elements", 1000, elements.size());
+        for (int i = 0; i < 1000; i ++) {
+            Assert.assertEquals("Got an unexpected element", Integer.valueOf(i), elements.get(i));
+        }
+        Assert.assertTrue("Server stream was not closed", bean.awaitClosed(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test a result whose server side stream fails after some elements were sent
+     */
+    @Test
+    public void testExceptionMidStream() throws Exception {
+        final Streamer proxy = createProxy();
+        int count = 0;
+        try (Stream<Integer> stream = proxy.failAt(300)) {
+            final Iterator<Integer> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                Assert.assertEquals("Got an unexpected element", Integer.valueOf(count), iterator.next());
+                count ++;
+            }
+            Assert.fail("Expected exception");
+        } catch (IllegalStateException expected) {
+            Assert.assertEquals("Got an unexpected exception", "Failed at element 300", expected.getMessage());
+        }
+        Assert.assertEquals("Elements before the failure were not delivered", 300, count);
+        Assert.assertTrue("Server stream was not closed", bean.awaitClosed(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test a result which the client closes before reading it to the end
+     */
+    @Test
+    public void testEarlyClose() throws Exception {
+        final Streamer proxy = createProxy();
+        try (Stream<String> stream = proxy.payload(100_000, 256)) {
+            final Iterator<String> iterator = stream.iterator();
+            for (int i = 0; i < 3; i ++) {
+                Assert.assertEquals("Got an unexpected element length", 256, iterator.next().length());
+            }
+        }
+        Assert.assertTrue("Server stream was not closed", bean.awaitClosed(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test a result which the client stops reading without closing it; the server gives up after its idle timeout
+     */
+    @Test
+    public void testAbandonedStream() throws Exception {
+        final Streamer proxy = createProxy();
+        final Stream<String> stream = proxy.payload(100_000, 256);
+        Assert.assertEquals("Got an unexpected element length", 256, stream.iterator().next().length());
+        Assert.assertTrue("Server stream was not closed", bean.awaitClosed(10, TimeUnit.SECONDS));
+    }
+
+    private Streamer createProxy() throws Exception {
+        final StatelessEJBLocator<Streamer> statelessEJBLocator = new StatelessEJBLocator<Streamer>(Streamer.class, APP_NAME, MODULE_NAME, Streamer.class.getSimpleName(), DISTINCT_NAME);
+        final Streamer proxy = EJBClient.createProxy(statelessEJBLocator);
+        EJBClient.setStrongAffinity(proxy, URIAffinity.forUri(new URI("remote", null, "localhost", 6999, null, null, null)));
+        Assert.assertNotNull("Received a null proxy", proxy);
+        return proxy;
+    }
+
+    /**
+     * Do any test-specific tear down here.
+     */
+    @After
+    public void afterTest() {
+        server.unregister(APP_NAME, MODULE_NAME, DISTINCT_NAME, Streamer.class.getSimpleName());
+        logger.info("Unregistered module ...");
+
+        if (serverStarted) {
+            try {
+                this.server.stop();
+            } catch (Throwable t) {
+                logger.info("Could not stop server", t);
+            }
+        }
+        logger.info("Stopped server ...");
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.ejb.client.test.common;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.jboss.logging.Logger;
+
+public class StreamerBean implements Streamer {
+
+    private static final Logger logger = Logger.getLogger(StreamerBean.class);
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    @Override
+    public Stream<Integer> range(int count) {
+        logger.info(this.getClass().getSimpleName() + " streaming " + count + " elements");
+        return IntStream.range(0, count).boxed().onClose(this::streamClosed);
+    }
+
+    @Override
+    public Stream<Integer> failAt(int index) {
+        return IntStream.range(0, index * 2).mapToObj(i -> {
+            if (i == index) {
+                throw new IllegalStateException("Failed at element " + i);
+            }
+            return Integer.valueOf(i);
+        }).onClose(this::streamClosed);
+    }
+
+    @Override
+    public Stream<String> payload(int count, int length) {
+        final char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        final String element = new String(chars);
+        return IntStream.range(0, count).mapToObj(i -> element).onClose(this::streamClosed);
+    }
+
+    /**
+     * Wait for the server side of a streamed result to be closed.
+     *
+     * @param timeout the time to wait
+     * @param unit the unit of the time to wait
+     * @return {@code true} if the stream was closed in time
+     * @throws InterruptedException if the wait was interrupted
+     */
+    public boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+        return closed.await(timeout, unit);
+    }
+
+    private void streamClosed() {
+        logger.info(this.getClass().getSimpleName() + " stream closed");
+        closed.countDown();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jboss.remoting3.MessageOutputStream;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AdaptiveCompressionOutputStream}.
+ */
+public final class AdaptiveCompressionOutputStreamTestCase {
+
+    @Test
+    public void testThresholdEncoding() {
+        assertEquals(128, AdaptiveCompressionOutputStream.decodeThreshold(AdaptiveCompressionOutputStream.encodeThreshold(0)));
+        assertEquals(128, AdaptiveCompressionOutputStream.decodeThreshold(AdaptiveCompressionOutputStream.encodeThreshold(128)));
+        assertEquals(1024, AdaptiveCompressionOutputStream.decodeThreshold(AdaptiveCompressionOutputStream.encodeThreshold(1000)));
+        assertEquals(1 << 21, AdaptiveCompressionOutputStream.decodeThreshold(AdaptiveCompressionOutputStream.encodeThreshold(Integer.MAX_VALUE)));
+        // the level bits are left alone
+        assertEquals(0, AdaptiveCompressionOutputStream.encodeThreshold(4096) & Protocol.COMPRESS_RESPONSE);
+        assertEquals(-1, AdaptiveCompressionOutputStream.decodeThreshold(9));
+    }
+
+    @Test
+    public void testSmallMessageIsNotCompressed() throws IOException {
+        final ByteMessageOutputStream target = new ByteMessageOutputStream();
+        final byte[] payload = payload(100);
+        try (AdaptiveCompressionOutputStream os = new AdaptiveCompressionOutputStream(target, CompressionCodec.DEFLATE, Deflater.DEFAULT_COMPRESSION, 128)) {
+            os.write(Protocol.INVOCATION_RESPONSE);
+            os.write(payload);
+            assertFalse(os.isCompressing());
+        }
+        final byte[] bytes = target.toByteArray();
+        assertEquals(Protocol.INVOCATION_RESPONSE, bytes[0]);
+        assertArrayEquals(payload, Arrays.copyOfRange(bytes, 1, bytes.length));
+        assertTrue(target.closed);
+    }
+
+    @Test
+    public void testLargeMessageIsCompressed() throws IOException {
+        final ByteMessageOutputStream target = new ByteMessageOutputStream();
+        final byte[] payload = payload(10000);
+        try (AdaptiveCompressionOutputStream os = new AdaptiveCompressionOutputStream(target, CompressionCodec.DEFLATE, Deflater.DEFAULT_COMPRESSION, 128)) {
+            os.write(Protocol.INVOCATION_RESPONSE);
+            for (int i = 0; i < payload.length; i += 100) {
+                os.write(payload, i, 100);
+            }
+            assertTrue(os.isCompressing());
+        }
+        final byte[] bytes = target.toByteArray();
+        assertEquals(Protocol.COMPRESSED_INVOCATION_MESSAGE, bytes[0]);
+        assertTrue(bytes.length < payload.length);
+        final byte[] result = new byte[payload.length + 1];
+        try (InputStream is = new InflaterInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            new DataInputStream(is).readFully(result);
+            assertEquals(-1, is.read());
+        }
+        assertEquals(Protocol.INVOCATION_RESPONSE, result[0]);
+        assertArrayEquals(payload, Arrays.copyOfRange(result, 1, result.length));
+        assertTrue(target.closed);
+    }
+
+    private static byte[] payload(final int length) {
+        final byte[] payload = new byte[length];
+        for (int i = 0; i < length; i ++) {
+            payload[i] = (byte) (i % 13);
+        }
+        return payload;
+    }
+
+    static final class ByteMessageOutputStream extends MessageOutputStream {
+        private final ByteArrayOutputStream delegate = new ByteArrayOutputStream();
+        boolean closed;
+
+        public void write(final int b) {
+            delegate.write(b);
+        }
+
+        public void write(final byte[] b, final int off, final int len) {
+            delegate.write(b, off, len);
+        }
+
+        public void close() {
+            closed = true;
+        }
+
+        public MessageOutputStream cancel() {
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return delegate.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import org.jboss.ejb.client.EJBIdentifier;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AdmissionControl}.
+ */
+public final class AdmissionControlTestCase {
+
+    private static final EJBIdentifier BEAN_A = new EJBIdentifier("app", "module", "A", "");
+    private static final EJBIdentifier BEAN_B = new EJBIdentifier("app", "module", "B", "");
+
+    @Test
+    public void testChannelLimit() {
+        final AdmissionControl admissionControl = new AdmissionControl(2, 0);
+        assertTrue(admissionControl.tryAcquire(BEAN_A));
+        assertTrue(admissionControl.tryAcquire(BEAN_B));
+        assertFalse(admissionControl.tryAcquire(BEAN_A));
+        admissionControl.release(BEAN_B);
+        assertTrue(admissionControl.tryAcquire(BEAN_A));
+        assertEquals(2, admissionControl.getChannelInvocations());
+    }
+
+    @Test
+    public void testEJBLimit() {
+        final AdmissionControl admissionControl = new AdmissionControl(0, 1);
+        assertTrue(admissionControl.tryAcquire(BEAN_A));
+        assertFalse(admissionControl.tryAcquire(BEAN_A));
+        // a rejected invocation does not count against the channel
+        assertEquals(1, admissionControl.getChannelInvocations());
+        assertTrue(admissionControl.tryAcquire(BEAN_B));
+        admissionControl.release(BEAN_A);
+        assertTrue(admissionControl.tryAcquire(BEAN_A));
+    }
+
+    @Test
+    public void testIdleEJBIsForgotten() {
+        final AdmissionControl admissionControl = new AdmissionControl(0, 2);
+        assertTrue(admissionControl.tryAcquire(BEAN_A));
+        assertTrue(admissionControl.tryAcquire(BEAN_A));
+        assertTrue(admissionControl.tryAcquire(BEAN_B));
+        assertEquals(2, admissionControl.getInvokedEJBs());
+        admissionControl.release(BEAN_A);
+        assertEquals(2, admissionControl.getInvokedEJBs());
+        admissionControl.release(BEAN_A);
+        admissionControl.release(BEAN_B);
+        assertEquals(0, admissionControl.getInvokedEJBs());
+        assertTrue(admissionControl.tryAcquire(BEAN_A));
+        assertEquals(1, admissionControl.getInvokedEJBs());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+
+import org.jboss.ejb.client.Affinity;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AttachmentKeyDictionary}.
+ */
+public final class AttachmentKeyDictionaryTestCase {
+
+    @Test
+    public void testDefinitionUntilConfirmed() throws Exception {
+        final AttachmentKeyDictionary client = new AttachmentKeyDictionary(true);
+        final AttachmentKeyDictionary server = new AttachmentKeyDictionary(false);
+
+        final ByteArrayOutputStream first = new ByteArrayOutputStream();
+        final AttachmentKeyDictionary.Entry entry;
+        try (ObjectOutputStream oos = new ObjectOutputStream(first)) {
+            entry = client.writeKey(oos, "app.key");
+            assertNotNull(entry);
+            // still unconfirmed, so it is defined again
+            assertSame(entry, client.writeKey(oos, "app.key"));
+            assertNull(client.writeKey(oos, Affinity.WEAK_AFFINITY_CONTEXT_KEY));
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(first.toByteArray()))) {
+            assertEquals("app.key", server.readKey(ois));
+            assertEquals("app.key", server.readKey(ois));
+            assertEquals(Affinity.WEAK_AFFINITY_CONTEXT_KEY, server.readKey(ois));
+        }
+
+        entry.confirm();
+        final ByteArrayOutputStream second = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(second)) {
+            assertNull(client.writeKey(oos, "app.key"));
+        }
+        // a reference is a single byte, while the definition also carries the key
+        assertTrue(second.size() < first.size() / 2);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(second.toByteArray()))) {
+            assertEquals("app.key", server.readKey(ois));
+        }
+    }
+
+    @Test
+    public void testServerRefersToLearnedKeys() throws Exception {
+        final AttachmentKeyDictionary client = new AttachmentKeyDictionary(true);
+        final AttachmentKeyDictionary server = new AttachmentKeyDictionary(false);
+        final ByteArrayOutputStream request = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(request)) {
+            client.writeKey(oos, "app.key");
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(request.toByteArray()))) {
+            server.readKey(ois);
+        }
+        final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(response)) {
+            assertNull(server.writeKey(oos, "app.key"));
+            assertNull(server.writeKey(oos, "server.key"));
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(response.toByteArray()))) {
+            assertEquals("app.key", client.readKey(ois));
+            assertEquals("server.key", client.readKey(ois));
+        }
+    }
+
+    @Test
+    public void testUnknownReference() throws IOException, ClassNotFoundException {
+        final AttachmentKeyDictionary server = new AttachmentKeyDictionary(false);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            PackedInteger.writePackedInteger(oos, 100);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            server.readKey(ois);
+            fail("Expected exception");
+        } catch (StreamCorruptedException expected) {
+        }
+    }
+}
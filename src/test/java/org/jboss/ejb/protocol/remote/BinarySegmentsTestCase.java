@@ -0,0 +1,250 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jboss.marshalling.InputStreamByteInput;
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.MarshallerFactory;
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.jboss.marshalling.OutputStreamByteOutput;
+import org.jboss.marshalling.Unmarshaller;
+import org.jboss.marshalling.river.RiverMarshallerFactory;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BinarySegments}.  The messages are laid out as invocation requests are: the segment kinds, the
+ * inline parameters, the attachments and then the segments.
+ */
+public final class BinarySegmentsTestCase {
+
+    private final MarshallerFactory factory = new RiverMarshallerFactory();
+    private final MarshallingConfiguration configuration = new MarshallingConfiguration();
+
+    public BinarySegmentsTestCase() {
+        configuration.setVersion(4);
+        configuration.setObjectTable(ProtocolV3ObjectTable.INSTANCE);
+    }
+
+    @Test
+    public void testKinds() {
+        assertEquals(BinarySegments.NONE, BinarySegments.kindOf(new byte[BinarySegments.MIN_SEGMENT_SIZE - 1]));
+        assertEquals(BinarySegments.BYTE_ARRAY, BinarySegments.kindOf(new byte[BinarySegments.MIN_SEGMENT_SIZE]));
+        // byte buffers are never sent inline
+        assertEquals(BinarySegments.BYTE_BUFFER, BinarySegments.kindOf(ByteBuffer.allocate(1)));
+        assertEquals(BinarySegments.NONE, BinarySegments.kindOf("text"));
+        assertEquals(BinarySegments.NONE, BinarySegments.kindOf(null));
+    }
+
+    @Test
+    public void testByteArrayBelowMinimum() throws IOException, ClassNotFoundException {
+        final byte[] bytes = fill(new byte[BinarySegments.MIN_SEGMENT_SIZE - 1], 1);
+        assertArrayEquals(bytes, (byte[]) roundTrip(bytes)[0]);
+    }
+
+    @Test
+    public void testByteArray() throws IOException, ClassNotFoundException {
+        final byte[] bytes = fill(new byte[BinarySegments.MIN_SEGMENT_SIZE], 2);
+        assertArrayEquals(bytes, (byte[]) roundTrip(bytes)[0]);
+    }
+
+    @Test
+    public void testLargeByteArray() throws IOException, ClassNotFoundException {
+        // larger than the initial allocation, so the array grows as it is read
+        final byte[] bytes = fill(new byte[BinarySegments.MAX_INITIAL_ALLOCATION * 3 + 17], 3);
+        assertArrayEquals(bytes, (byte[]) roundTrip(bytes)[0]);
+    }
+
+    @Test
+    public void testHeapByteBuffer() throws IOException, ClassNotFoundException {
+        final byte[] backing = fill(new byte[BinarySegments.MIN_SEGMENT_SIZE * 2], 4);
+        // a slice has a non-zero array offset, and the position and limit select part of it
+        final ByteBuffer buffer = ByteBuffer.wrap(backing, 10, backing.length - 10).slice();
+        buffer.position(5).limit(buffer.limit() - 7);
+        final ByteBuffer result = (ByteBuffer) roundTrip(buffer)[0];
+        assertEquals(ByteBuffer.wrap(backing, 15, backing.length - 22), result);
+        // the caller's buffer is left alone
+        assertEquals(5, buffer.position());
+    }
+
+    @Test
+    public void testSmallHeapByteBuffer() throws IOException, ClassNotFoundException {
+        final ByteBuffer buffer = ByteBuffer.wrap(fill(new byte[100], 5));
+        assertEquals(buffer, roundTrip(buffer)[0]);
+        final ByteBuffer empty = ByteBuffer.allocate(0);
+        assertEquals(empty, roundTrip(empty)[0]);
+    }
+
+    @Test
+    public void testDirectByteBuffer() throws IOException, ClassNotFoundException {
+        // several chunks of the copy loop plus a partial one
+        final byte[] bytes = fill(new byte[BinarySegments.MIN_SEGMENT_SIZE * 3 + 5], 6);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        final ByteBuffer result = (ByteBuffer) roundTrip(buffer)[0];
+        assertEquals(ByteBuffer.wrap(bytes), result);
+        assertEquals(0, buffer.position());
+        assertEquals(bytes.length, buffer.limit());
+    }
+
+    @Test
+    public void testSegmentsWithParametersAndAttachments() throws IOException, ClassNotFoundException {
+        final byte[] large = fill(new byte[BinarySegments.MIN_SEGMENT_SIZE + 1], 7);
+        final byte[] small = fill(new byte[16], 8);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(BinarySegments.MIN_SEGMENT_SIZE * 2);
+        direct.put(fill(new byte[direct.capacity()], 9)).flip();
+        final Object[] parameters = { "first", large, Integer.valueOf(42), small, direct, null };
+        final Map<String, Object> attachments = new LinkedHashMap<>();
+        attachments.put("key1", "value1");
+        attachments.put("key2", Long.valueOf(7));
+        final Map<String, Object> readAttachments = new LinkedHashMap<>();
+        final Object[] result = read(write(parameters, attachments), parameters.length, readAttachments);
+        assertEquals("first", result[0]);
+        assertArrayEquals(large, (byte[]) result[1]);
+        assertEquals(Integer.valueOf(42), result[2]);
+        assertArrayEquals(small, (byte[]) result[3]);
+        assertEquals(direct, result[4]);
+        assertNull(result[5]);
+        assertEquals(attachments, readAttachments);
+    }
+
+    @Test
+    public void testInvalidLength() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Marshaller marshaller = factory.createMarshaller(configuration);
+        marshaller.start(new OutputStreamByteOutput(bytes));
+        marshaller.writeInt(-1);
+        marshaller.finish();
+        try {
+            readSegment(bytes.toByteArray());
+            fail("Expected exception");
+        } catch (StreamCorruptedException expected) {
+        }
+    }
+
+    @Test
+    public void testTruncatedSegment() throws IOException {
+        // the peer claims far more than it sends; this must fail without allocating the claimed length
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Marshaller marshaller = factory.createMarshaller(configuration);
+        marshaller.start(new OutputStreamByteOutput(bytes));
+        marshaller.writeInt(Integer.MAX_VALUE);
+        marshaller.write(new byte[100]);
+        marshaller.finish();
+        try {
+            readSegment(bytes.toByteArray());
+            fail("Expected exception");
+        } catch (EOFException expected) {
+        }
+    }
+
+    private Object[] roundTrip(final Object parameter) throws IOException, ClassNotFoundException {
+        return read(write(new Object[] { parameter }, new LinkedHashMap<>()), 1, new LinkedHashMap<>());
+    }
+
+    // the request layout of EJBClientChannel.writeRequest
+    private byte[] write(final Object[] parameters, final Map<String, Object> attachments) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Marshaller marshaller = factory.createMarshaller(configuration);
+        marshaller.start(new OutputStreamByteOutput(bytes));
+        final int[] segmentKinds = new int[parameters.length];
+        int segmentCount = 0;
+        for (int i = 0; i < parameters.length; i ++) {
+            segmentKinds[i] = BinarySegments.kindOf(parameters[i]);
+            if (segmentKinds[i] != BinarySegments.NONE) {
+                segmentCount ++;
+            }
+        }
+        PackedInteger.writePackedInteger(marshaller, segmentCount);
+        for (int i = 0; i < parameters.length; i ++) {
+            if (segmentKinds[i] != BinarySegments.NONE) {
+                PackedInteger.writePackedInteger(marshaller, i << 1 | segmentKinds[i] - 1);
+            }
+        }
+        for (int i = 0; i < parameters.length; i ++) {
+            if (segmentKinds[i] == BinarySegments.NONE) {
+                marshaller.writeObject(parameters[i]);
+            }
+        }
+        PackedInteger.writePackedInteger(marshaller, attachments.size());
+        for (Map.Entry<String, Object> entry : attachments.entrySet()) {
+            marshaller.writeObject(entry.getKey());
+            marshaller.writeObject(entry.getValue());
+        }
+        for (int i = 0; i < parameters.length; i ++) {
+            if (segmentKinds[i] != BinarySegments.NONE) {
+                BinarySegments.writeSegment(marshaller, bytes, parameters[i]);
+            }
+        }
+        marshaller.finish();
+        return bytes.toByteArray();
+    }
+
+    // the request layout as read by EJBServerChannel
+    private Object[] read(final byte[] message, final int parameterCount, final Map<String, Object> attachments) throws IOException, ClassNotFoundException {
+        final Unmarshaller unmarshaller = factory.createUnmarshaller(configuration);
+        unmarshaller.start(new InputStreamByteInput(new ByteArrayInputStream(message)));
+        final Object[] parameters = new Object[parameterCount];
+        final int[] segmentKinds = new int[parameterCount];
+        final int segmentCount = PackedInteger.readPackedInteger(unmarshaller);
+        for (int i = 0; i < segmentCount; i ++) {
+            final int segment = PackedInteger.readPackedInteger(unmarshaller);
+            segmentKinds[segment >>> 1] = (segment & 1) + 1;
+        }
+        for (int i = 0; i < parameterCount; i ++) {
+            if (segmentKinds[i] == BinarySegments.NONE) {
+                parameters[i] = unmarshaller.readObject();
+            }
+        }
+        final int attachmentCount = PackedInteger.readPackedInteger(unmarshaller);
+        for (int i = 0; i < attachmentCount; i ++) {
+            attachments.put(unmarshaller.readObject(String.class), unmarshaller.readObject());
+        }
+        for (int i = 0; i < parameterCount; i ++) {
+            if (segmentKinds[i] != BinarySegments.NONE) {
+                parameters[i] = BinarySegments.readSegment(unmarshaller, segmentKinds[i]);
+            }
+        }
+        unmarshaller.finish();
+        return parameters;
+    }
+
+    private Object readSegment(final byte[] message) throws IOException {
+        final Unmarshaller unmarshaller = factory.createUnmarshaller(configuration);
+        unmarshaller.start(new InputStreamByteInput(new ByteArrayInputStream(message)));
+        return BinarySegments.readSegment(unmarshaller, BinarySegments.BYTE_ARRAY);
+    }
+
+    private static byte[] fill(final byte[] bytes, final int seed) {
+        for (int i = 0; i < bytes.length; i ++) {
+            bytes[i] = (byte) (i * 31 + seed);
+        }
+        return bytes;
+    }
+}
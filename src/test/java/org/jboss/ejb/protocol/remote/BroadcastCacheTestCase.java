@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.ejb.server.ClusterTopologyListener.ClusterInfo;
+import org.jboss.ejb.server.ClusterTopologyListener.MappingInfo;
+import org.jboss.ejb.server.ClusterTopologyListener.NodeInfo;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BroadcastCache}.
+ */
+public final class BroadcastCacheTestCase {
+
+    @Test
+    public void testEqualContentIsEncodedOnce() throws Exception {
+        final AtomicInteger encodings = new AtomicInteger();
+        final BroadcastCache<String> cache = new BroadcastCache<>((os, content) -> {
+            encodings.incrementAndGet();
+            os.writeByte(Protocol.CLUSTER_TOPOLOGY_REMOVAL);
+            os.writeByte(content.size());
+        });
+        final ByteArrayMessageOutputStream first = cache.getMessage(Arrays.asList("a", "b"));
+        assertSame(first, cache.getMessage(Arrays.asList("a", "b")));
+        assertEquals(1, encodings.get());
+        assertEquals(2, first.size());
+        assertNotSame(first, cache.getMessage(Arrays.asList("a")));
+        assertEquals(2, encodings.get());
+    }
+
+    @Test
+    public void testReusedListIsNotMatched() throws Exception {
+        final AtomicInteger encodings = new AtomicInteger();
+        final BroadcastCache<String> cache = new BroadcastCache<>((os, content) -> {
+            encodings.incrementAndGet();
+            os.writeByte(content.size());
+        });
+        final List<String> content = new ArrayList<>(Arrays.asList("a"));
+        cache.getMessage(content);
+        content.add("b");
+        assertEquals(1, cache.getMessage(content).size());
+        assertEquals(2, encodings.get());
+    }
+
+    @Test
+    public void testEqualTopologyIsEncodedOnce() throws Exception {
+        final AtomicInteger encodings = new AtomicInteger();
+        final BroadcastCache<ClusterInfo> cache = new BroadcastCache<>((os, content) -> {
+            encodings.incrementAndGet();
+            os.writeByte(content.size());
+        });
+        final ByteArrayMessageOutputStream first = cache.getMessage(Collections.singletonList(clusterInfo("node1", 8080)));
+        assertSame(first, cache.getMessage(Collections.singletonList(clusterInfo("node1", 8080))));
+        assertEquals(1, encodings.get());
+        assertNotSame(first, cache.getMessage(Collections.singletonList(clusterInfo("node1", 8180))));
+        assertEquals(2, encodings.get());
+    }
+
+    private static ClusterInfo clusterInfo(final String nodeName, final int port) {
+        final MappingInfo mappingInfo = new MappingInfo("10.0.0.1", port, null, 0);
+        return new ClusterInfo("ejb", Collections.singletonList(new NodeInfo(nodeName, Collections.singletonList(mappingInfo))));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ByteArrayMessageOutputStream}.
+ */
+public final class ByteArrayMessageOutputStreamTestCase {
+
+    @Test
+    public void testCollectsAndReplays() throws IOException {
+        final byte[] payload = new byte[1000];
+        for (int i = 0; i < payload.length; i ++) {
+            payload[i] = (byte) i;
+        }
+        final ByteArrayMessageOutputStream os = new ByteArrayMessageOutputStream();
+        os.write(Protocol.INVOCATION_REQUEST);
+        os.write(payload, 0, 100);
+        os.write(payload, 100, 900);
+        os.close();
+        assertEquals(1001, os.size());
+        final ByteArrayOutputStream target = new ByteArrayOutputStream();
+        os.writeTo(target);
+        final byte[] bytes = target.toByteArray();
+        assertEquals(Protocol.INVOCATION_REQUEST, bytes[0]);
+        assertArrayEquals(payload, Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+
+    @Test
+    public void testCancelDiscards() throws IOException {
+        final ByteArrayMessageOutputStream os = new ByteArrayMessageOutputStream();
+        os.write(new byte[300], 0, 300);
+        os.cancel();
+        assertEquals(0, os.size());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.zip.Deflater;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompressionCodecPool}.
+ */
+public final class CompressionCodecPoolTestCase {
+
+    @Test
+    public void testRoundTripReusesCodecs() throws IOException {
+        final CompressionCodecPool pool = new CompressionCodecPool(2);
+        final byte[] payload = new byte[4096];
+        for (int i = 0; i < payload.length; i ++) {
+            payload[i] = (byte) (i % 17);
+        }
+        for (int i = 0; i < 3; i ++) {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream os = pool.deflating(compressed, Deflater.DEFAULT_COMPRESSION)) {
+                os.write(payload);
+            }
+            final byte[] result = new byte[payload.length];
+            try (InputStream is = pool.inflating(new ByteArrayInputStream(compressed.toByteArray()))) {
+                new DataInputStream(is).readFully(result);
+                assertEquals(-1, is.read());
+            }
+            assertArrayEquals(payload, result);
+        }
+        // first deflater and inflater are new, the rest come from the pool
+        assertEquals(2, pool.getMissCount());
+        assertEquals(4, pool.getHitCount());
+    }
+
+    @Test
+    public void testLevelsArePooledSeparately() throws IOException {
+        final CompressionCodecPool pool = new CompressionCodecPool(1);
+        pool.deflating(new ByteArrayOutputStream(), 1).close();
+        pool.deflating(new ByteArrayOutputStream(), 9).close();
+        assertEquals(2, pool.getMissCount());
+        pool.deflating(new ByteArrayOutputStream(), 9).close();
+        assertEquals(1, pool.getHitCount());
+    }
+
+    @Test
+    public void testDoubleCloseReturnsOnce() throws IOException {
+        final CompressionCodecPool pool = new CompressionCodecPool(4);
+        final OutputStream os = pool.deflating(new ByteArrayOutputStream(), 5);
+        os.close();
+        os.close();
+        pool.deflating(new ByteArrayOutputStream(), 5).close();
+        pool.deflating(new ByteArrayOutputStream(), 5).close();
+        // the second close must not have put the same deflater in the pool twice
+        final OutputStream a = pool.deflating(new ByteArrayOutputStream(), 5);
+        final OutputStream b = pool.deflating(new ByteArrayOutputStream(), 5);
+        a.close();
+        b.close();
+        assertEquals(2, pool.getMissCount());
+    }
+
+    @Test
+    public void testCountersAreReadableThroughMXBean() throws Exception {
+        final long hits = CompressionCodecPool.INSTANCE.getHitCount();
+        final ObjectName name = new ObjectName("org.jboss.ejb.client:type=CompressionCodecPool");
+        assertEquals(Long.valueOf(hits), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HitCount"));
+        assertEquals(Long.valueOf(CompressionCodecPool.INSTANCE.getMissCount()), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "MissCount"));
+    }
+}
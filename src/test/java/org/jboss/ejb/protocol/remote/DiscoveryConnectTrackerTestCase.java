@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link DiscoveryConnectTracker}.
+ */
+public final class DiscoveryConnectTrackerTestCase {
+
+    private final List<String> started = new ArrayList<>();
+    private int phasesFinished;
+    private boolean phase2;
+    private int completions;
+    private DiscoveryConnectTracker<String> tracker;
+
+    @Test
+    public void testSlotHandOff() {
+        final DiscoveryConnectTracker<String> tracker = new DiscoveryConnectTracker<>(2, started::add, () -> phasesFinished ++);
+        tracker.submit("a");
+        tracker.submit("b");
+        tracker.submit("c");
+        tracker.countDown();
+        assertEquals(Arrays.asList("a", "b"), started);
+        assertEquals(2, tracker.getInFlight());
+        assertEquals(1, tracker.getPending());
+        // the slot of the first attempt to finish goes to the waiting one
+        tracker.finished();
+        assertEquals(Arrays.asList("a", "b", "c"), started);
+        assertEquals(2, tracker.getInFlight());
+        assertEquals(0, tracker.getPending());
+        tracker.finished();
+        assertEquals(0, phasesFinished);
+        tracker.finished();
+        assertEquals(0, tracker.getInFlight());
+        assertEquals(1, phasesFinished);
+    }
+
+    @Test
+    public void testUnlimited() {
+        final DiscoveryConnectTracker<String> tracker = new DiscoveryConnectTracker<>(0, started::add, () -> phasesFinished ++);
+        tracker.submit("a");
+        tracker.submit("b");
+        tracker.submit("c");
+        assertEquals(Arrays.asList("a", "b", "c"), started);
+        assertEquals(0, tracker.getPending());
+    }
+
+    @Test
+    public void testPhaseWaitsForSubmitter() {
+        final DiscoveryConnectTracker<String> tracker = new DiscoveryConnectTracker<>(1, started::add, () -> phasesFinished ++);
+        tracker.submit("a");
+        tracker.finished();
+        // the submitter still holds its share, so more attempts may follow
+        assertEquals(0, phasesFinished);
+        tracker.countDown();
+        assertEquals(1, phasesFinished);
+    }
+
+    @Test
+    public void testAbandonPending() {
+        final DiscoveryConnectTracker<String> tracker = new DiscoveryConnectTracker<>(1, started::add, () -> phasesFinished ++);
+        tracker.submit("a");
+        tracker.submit("b");
+        tracker.submit("c");
+        tracker.countDown();
+        tracker.abandonPending();
+        assertEquals(0, tracker.getPending());
+        // the attempt in progress still holds the phase open
+        assertEquals(0, phasesFinished);
+        tracker.finished();
+        assertEquals(Arrays.asList("a"), started);
+        assertEquals(0, tracker.getInFlight());
+        assertEquals(1, phasesFinished);
+    }
+
+    @Test
+    public void testNoHandOffAfterCompletion() {
+        final DiscoveryConnectTracker<String> tracker = new DiscoveryConnectTracker<>(1, started::add, () -> phasesFinished ++);
+        tracker.submit("a");
+        tracker.submit("b");
+        tracker.countDown();
+        assertTrue(tracker.complete());
+        assertFalse(tracker.complete());
+        tracker.finished();
+        assertEquals(Arrays.asList("a"), started);
+        assertEquals(0, tracker.getInFlight());
+        assertEquals(1, tracker.getPending());
+        tracker.abandonPending();
+        assertEquals(1, phasesFinished);
+    }
+
+    @Test
+    public void testEarlyCompletionAcrossReconnect() {
+        tracker = new DiscoveryConnectTracker<>(1, started::add, this::phaseFinished);
+        tracker.submit("a");
+        tracker.countDown();
+        // the only initial attempt fails, which starts the reconnect phase
+        tracker.finished();
+        assertTrue(phase2);
+        assertFalse(tracker.isComplete());
+        assertEquals(0, completions);
+        assertEquals(Arrays.asList("a", "x"), started);
+        assertEquals(1, tracker.getPending());
+        // the first reconnect finds enough nodes
+        if (tracker.complete()) {
+            completions ++;
+            tracker.abandonPending();
+        }
+        tracker.finished();
+        assertEquals(Arrays.asList("a", "x"), started);
+        assertEquals(0, tracker.getInFlight());
+        assertEquals(0, tracker.getPending());
+        assertEquals(2, phasesFinished);
+        assertEquals(1, completions);
+    }
+
+    @Test
+    public void testEarlyCompletionSkipsReconnect() {
+        tracker = new DiscoveryConnectTracker<>(1, started::add, this::phaseFinished);
+        tracker.submit("a");
+        tracker.submit("b");
+        tracker.countDown();
+        assertTrue(tracker.complete());
+        completions ++;
+        tracker.abandonPending();
+        tracker.finished();
+        assertFalse(phase2);
+        assertEquals(Arrays.asList("a"), started);
+        assertEquals(1, phasesFinished);
+        assertEquals(1, completions);
+    }
+
+    // the shape of DiscoveryAttempt.phaseFinished, where the initial phase never finds a node
+    private void phaseFinished() {
+        phasesFinished ++;
+        if (! tracker.complete()) {
+            // completed early
+            return;
+        }
+        if (phase2) {
+            completions ++;
+        } else {
+            phase2 = true;
+            tracker.reopen();
+            tracker.submit("x");
+            tracker.submit("y");
+            tracker.countDown();
+        }
+    }
+}
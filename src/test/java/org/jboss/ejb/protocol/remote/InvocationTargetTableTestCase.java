@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.jboss.ejb.client.ClusterAffinity;
+import org.jboss.ejb.client.EJBLocator;
+import org.jboss.ejb.client.EJBMethodLocator;
+import org.jboss.ejb.client.SimpleInterface;
+import org.jboss.ejb.client.StatelessEJBLocator;
+import org.jboss.marshalling.InputStreamByteInput;
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.MarshallerFactory;
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.jboss.marshalling.OutputStreamByteOutput;
+import org.jboss.marshalling.Unmarshaller;
+import org.jboss.marshalling.river.RiverMarshallerFactory;
+import org.junit.Test;
+
+/**
+ * Tests for {@link InvocationTargetTable}.
+ */
+public final class InvocationTargetTableTestCase {
+
+    private final MarshallerFactory factory = new RiverMarshallerFactory();
+    private final MarshallingConfiguration configuration = new MarshallingConfiguration();
+
+    public InvocationTargetTableTestCase() {
+        configuration.setVersion(4);
+        configuration.setObjectTable(ProtocolV3ObjectTable.INSTANCE);
+    }
+
+    @Test
+    public void testReferenceAfterConfirmation() throws IOException, ClassNotFoundException {
+        final InvocationTargetTable client = new InvocationTargetTable();
+        final InvocationTargetTable server = new InvocationTargetTable();
+        final StatelessEJBLocator<SimpleInterface> locator = new StatelessEJBLocator<>(SimpleInterface.class, "a", "m", "b", "d");
+        final EJBMethodLocator methodLocator = new EJBMethodLocator("echo", "java.lang.String");
+
+        final byte[] first = writeRequest(client, locator, methodLocator);
+        final InvocationTargetTable.Target target = readRequest(server, first, locator);
+        assertEquals(locator.getIdentifier(), target.identifier);
+        assertEquals(methodLocator, target.methodLocator);
+
+        // unconfirmed, so the next request defines the entry again
+        assertEquals(first.length, writeRequest(client, locator, methodLocator).length);
+
+        final InvocationTargetTable.Entry entry = writeTarget(client, locator, methodLocator);
+        entry.confirm();
+        final byte[] second = writeRequest(client, locator, methodLocator);
+        assertTrue(second.length < first.length);
+        assertSame(target, readRequest(server, second, locator));
+    }
+
+    @Test
+    public void testFullLocator() throws IOException, ClassNotFoundException {
+        final InvocationTargetTable client = new InvocationTargetTable();
+        final InvocationTargetTable server = new InvocationTargetTable();
+        final EJBLocator<SimpleInterface> locator = new StatelessEJBLocator<>(SimpleInterface.class, "a", "m", "b", "d");
+        final EJBMethodLocator methodLocator = new EJBMethodLocator("echo", "java.lang.String");
+        writeTarget(client, locator, methodLocator).confirm();
+        // a locator with another affinity is still sent in the short form
+        final EJBLocator<SimpleInterface> clustered = locator.withNewAffinity(new ClusterAffinity("c"));
+        readRequest(server, writeRequest(client, locator, methodLocator), locator);
+        readRequest(server, writeRequest(client, clustered, methodLocator), clustered);
+    }
+
+    @Test
+    public void testUnknownReference() throws IOException, ClassNotFoundException {
+        final InvocationTargetTable client = new InvocationTargetTable();
+        final EJBLocator<SimpleInterface> locator = new StatelessEJBLocator<>(SimpleInterface.class, "a", "m", "b", "d");
+        final EJBMethodLocator methodLocator = new EJBMethodLocator("echo");
+        writeTarget(client, locator, methodLocator).confirm();
+        try {
+            readRequest(new InvocationTargetTable(), writeRequest(client, locator, methodLocator), locator);
+            fail("Expected exception");
+        } catch (IOException expected) {
+        }
+    }
+
+    private InvocationTargetTable.Entry writeTarget(final InvocationTargetTable table, final EJBLocator<?> locator, final EJBMethodLocator methodLocator) throws IOException {
+        final Marshaller marshaller = factory.createMarshaller(configuration);
+        marshaller.start(new OutputStreamByteOutput(new ByteArrayOutputStream()));
+        final InvocationTargetTable.Entry entry = table.writeTarget(marshaller, locator, methodLocator);
+        marshaller.finish();
+        return entry;
+    }
+
+    private byte[] writeRequest(final InvocationTargetTable table, final EJBLocator<?> locator, final EJBMethodLocator methodLocator) throws IOException {
+        final Marshaller marshaller = factory.createMarshaller(configuration);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        marshaller.start(new OutputStreamByteOutput(bytes));
+        final InvocationTargetTable.Entry entry = table.writeTarget(marshaller, locator, methodLocator);
+        InvocationTargetTable.writeLocator(marshaller, entry, locator);
+        marshaller.finish();
+        return bytes.toByteArray();
+    }
+
+    private InvocationTargetTable.Target readRequest(final InvocationTargetTable table, final byte[] request, final EJBLocator<?> expected) throws IOException, ClassNotFoundException {
+        final Unmarshaller unmarshaller = factory.createUnmarshaller(configuration);
+        unmarshaller.start(new InputStreamByteInput(new ByteArrayInputStream(request)));
+        final InvocationTargetTable.Target target = table.readTarget(unmarshaller);
+        final EJBLocator<?> locator = InvocationTargetTable.readLocator(unmarshaller, target, getClass().getClassLoader());
+        unmarshaller.finish();
+        assertEquals(expected, locator);
+        assertEquals(target.identifier, locator.getIdentifier());
+        return target;
+    }
+}
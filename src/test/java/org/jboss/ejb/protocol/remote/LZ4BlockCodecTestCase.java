@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LZ4BlockCodec} and the block streams built on it.
+ */
+public final class LZ4BlockCodecTestCase {
+
+    @Test
+    public void testBlockRoundTrip() throws IOException {
+        final Random random = new Random(1234);
+        for (int length : new int[] { 0, 1, 12, 13, 100, 4096, 65536 }) {
+            final byte[] random1 = new byte[length];
+            random.nextBytes(random1);
+            assertBlockRoundTrip(random1);
+            final byte[] repetitive = new byte[length];
+            for (int i = 0; i < length; i ++) {
+                repetitive[i] = (byte) (i % 7 == 0 ? random.nextInt() : i % 31);
+            }
+            assertBlockRoundTrip(repetitive);
+            assertBlockRoundTrip(new byte[length]);
+        }
+    }
+
+    @Test
+    public void testCompressesRepetitiveData() {
+        final byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i ++) {
+            data[i] = (byte) (i % 100);
+        }
+        final byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(data.length)];
+        assertTrue(LZ4BlockCodec.compress(data, 0, data.length, compressed, 0) < data.length / 10);
+    }
+
+    @Test
+    public void testRejectsBadOffset() throws IOException {
+        // one literal followed by a match reaching back two bytes
+        final byte[] block = { 0x10, 'a', 2, 0, 0x00 };
+        try {
+            LZ4BlockCodec.decompress(block, 0, block.length, new byte[64], 0, 64);
+            fail("Expected StreamCorruptedException");
+        } catch (StreamCorruptedException expected) {
+        }
+    }
+
+    @Test
+    public void testStreamRoundTrip() throws IOException {
+        final byte[] payload = new byte[200000];
+        final Random random = new Random(42);
+        for (int i = 0; i < payload.length; i ++) {
+            payload[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt() : i % 50);
+        }
+        final ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (OutputStream os = new LZ4BlockOutputStream(target)) {
+            os.write(payload[0]);
+            os.write(payload, 1, 999);
+            os.write(payload, 1000, payload.length - 1000);
+        }
+        assertTrue(target.size() < payload.length);
+        final byte[] result = new byte[payload.length];
+        try (InputStream is = new LZ4BlockInputStream(new ByteArrayInputStream(target.toByteArray()))) {
+            new DataInputStream(is).readFully(result);
+            assertEquals(-1, is.read());
+        }
+        assertArrayEquals(payload, result);
+    }
+
+    private static void assertBlockRoundTrip(final byte[] data) throws IOException {
+        final byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(data.length) + 3];
+        final int length = LZ4BlockCodec.compress(data, 0, data.length, compressed, 3);
+        final byte[] result = new byte[data.length];
+        assertEquals(data.length, LZ4BlockCodec.decompress(compressed, 3, length, result, 0, result.length));
+        assertArrayEquals(data, result);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.XnioExecutor;
+
+/**
+ * Tests for {@link MessageCoalescer}.
+ */
+public final class MessageCoalescerTestCase {
+
+    @Test
+    public void testBatchIsSentAfterDelay() {
+        final ManualExecutor executor = new ManualExecutor();
+        final List<List<String>> sent = new ArrayList<>();
+        final MessageCoalescer<String> coalescer = new MessageCoalescer<>(executor, executor, 50, 100, String::length, sent::add);
+        coalescer.add("one");
+        coalescer.add("two");
+        assertTrue(sent.isEmpty());
+        assertEquals(1, executor.tasks.size());
+        assertEquals(50, executor.delayMicros);
+        // the timer only hands the batch to the executor
+        executor.runAll();
+        assertTrue(sent.isEmpty());
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(Arrays.asList(Arrays.asList("one", "two")), sent);
+        // the next message starts a new batch
+        coalescer.add("three");
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        executor.runAll();
+        assertEquals(Arrays.asList("three"), sent.get(1));
+    }
+
+    @Test
+    public void testBatchIsSentWhenFull() {
+        final ManualExecutor executor = new ManualExecutor();
+        final List<List<String>> sent = new ArrayList<>();
+        final MessageCoalescer<String> coalescer = new MessageCoalescer<>(executor, executor, 50, 10, String::length, sent::add);
+        assertTrue(coalescer.accepts(9));
+        assertFalse(coalescer.accepts(10));
+        coalescer.add("12345");
+        coalescer.add("67890");
+        assertEquals(Arrays.asList(Arrays.asList("12345", "67890")), sent);
+        // the timer has nothing left to send
+        executor.runAll();
+        executor.runAll();
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void testWriteBatch() throws IOException {
+        final ByteArrayMessageOutputStream first = new ByteArrayMessageOutputStream();
+        first.write(new byte[] { 1, 2, 3 }, 0, 3);
+        final ByteArrayMessageOutputStream second = new ByteArrayMessageOutputStream();
+        second.write(4);
+
+        ByteArrayMessageOutputStream out = new ByteArrayMessageOutputStream();
+        MessageCoalescer.writeBatch(out, Protocol.INVOCATION_BATCH_RESPONSE, Arrays.asList(first));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, toByteArray(out));
+
+        out = new ByteArrayMessageOutputStream();
+        MessageCoalescer.writeBatch(out, Protocol.INVOCATION_BATCH_RESPONSE, Arrays.asList(first, second));
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(toByteArray(out)));
+        assertEquals(Protocol.INVOCATION_BATCH_RESPONSE, in.readUnsignedByte());
+        assertEquals(2, PackedInteger.readPackedInteger(in));
+        assertEquals(3, PackedInteger.readPackedInteger(in));
+        final byte[] bytes = new byte[3];
+        in.readFully(bytes);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, bytes);
+        assertEquals(1, PackedInteger.readPackedInteger(in));
+        assertEquals(4, in.read());
+        assertEquals(-1, in.read());
+    }
+
+    private static byte[] toByteArray(final ByteArrayMessageOutputStream out) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        out.writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    static final class ManualExecutor implements XnioExecutor {
+        final List<Runnable> tasks = new ArrayList<>();
+        long delayMicros = -1;
+
+        public void execute(final Runnable command) {
+            tasks.add(command);
+        }
+
+        public Key executeAfter(final Runnable command, final long time, final TimeUnit unit) {
+            delayMicros = unit.toMicros(time);
+            tasks.add(command);
+            return null;
+        }
+
+        void runAll() {
+            final List<Runnable> tasks = new ArrayList<>(this.tasks);
+            this.tasks.clear();
+            for (Runnable task : tasks) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.jboss.ejb.client.EJBClientContext;
+import org.jboss.ejb.client.EJBModuleIdentifier;
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.junit.Test;
+import org.wildfly.common.net.CidrAddress;
+import org.wildfly.common.net.Inet;
+import org.wildfly.discovery.AttributeValue;
+import org.wildfly.discovery.FilterSpec;
+import org.wildfly.discovery.ServiceURL;
+import org.wildfly.discovery.spi.DiscoveryResult;
+import org.xnio.FutureResult;
+
+/**
+ * Tests for {@link NodeInformation}.
+ */
+public final class NodeInformationTestCase {
+
+    private static final URI DESTINATION_A = URI.create("remote://10.0.0.1:8080");
+    private static final URI DESTINATION_B = URI.create("remote://10.0.0.2:8080");
+
+    private static final EJBModuleIdentifier ONE = new EJBModuleIdentifier("app", "one", "");
+    private static final EJBModuleIdentifier TWO = new EJBModuleIdentifier("app", "two", "");
+    private static final EJBModuleIdentifier THREE = new EJBModuleIdentifier("app", "three", "");
+
+    private final NodeInformation nodeInformation = new NodeInformation("node1");
+
+    @Test
+    public void testModulesOnTwoConnectionsToOneDestination() {
+        final EJBClientChannel first = channel(DESTINATION_A);
+        final EJBClientChannel second = channel(DESTINATION_A);
+        nodeInformation.addModules(first, new EJBModuleIdentifier[] { ONE, TWO });
+        nodeInformation.addModules(second, new EJBModuleIdentifier[] { TWO, THREE });
+        assertEquals(set("app/one", "app/two", "app/three"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_EJB_MODULE));
+
+        // the other connection still reports the module
+        nodeInformation.removeModules(first, new HashSet<>(Arrays.asList(TWO)));
+        assertEquals(set("app/one", "app/two", "app/three"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_EJB_MODULE));
+
+        nodeInformation.removeModule(second, TWO);
+        assertEquals(set("app/one", "app/three"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_EJB_MODULE));
+        assertEquals(Arrays.asList(), discover(DESTINATION_B));
+    }
+
+    @Test
+    public void testRemoveConnection() {
+        final EJBClientChannel first = channel(DESTINATION_A);
+        final EJBClientChannel second = channel(DESTINATION_A);
+        nodeInformation.addAddress(first);
+        nodeInformation.addModules(second, new EJBModuleIdentifier[] { ONE });
+        assertEquals(set("app/one"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_EJB_MODULE));
+
+        // the remaining connection keeps the destination discoverable, without modules
+        nodeInformation.removeConnection(second);
+        assertEquals(1, discover(DESTINATION_A).size());
+        assertEquals(set(), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_EJB_MODULE));
+
+        nodeInformation.removeConnection(first);
+        assertEquals(Arrays.asList(), discover(DESTINATION_A));
+    }
+
+    @Test
+    public void testClusterBlockMovesToNewDestination() {
+        final CidrAddress block = Inet.parseCidrAddress("10.0.0.0/8");
+        nodeInformation.addModules(channel(DESTINATION_A), new EJBModuleIdentifier[] { ONE });
+        nodeInformation.addAddress("remote", "ejb", block, new InetSocketAddress("10.0.0.1", 8080));
+        assertEquals(set("ejb"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_CLUSTER));
+
+        nodeInformation.addAddress("remote", "ejb", block, new InetSocketAddress("10.0.0.2", 8080));
+        assertEquals(set(), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_CLUSTER));
+        assertEquals(set("app/one"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_EJB_MODULE));
+        assertEquals(set("ejb"), attributes(DESTINATION_B, EJBClientContext.FILTER_ATTR_CLUSTER));
+        assertEquals(set(block.toString()), attributes(DESTINATION_B, EJBClientContext.FILTER_ATTR_SOURCE_IP));
+    }
+
+    @Test
+    public void testRemoveCluster() {
+        nodeInformation.addModules(channel(DESTINATION_A), new EJBModuleIdentifier[] { ONE });
+        nodeInformation.addAddress("remote", "ejb", Inet.parseCidrAddress("10.0.0.0/8"), new InetSocketAddress("10.0.0.1", 8080));
+        nodeInformation.addAddress("remote", "web", Inet.parseCidrAddress("10.0.0.0/8"), new InetSocketAddress("10.0.0.1", 8080));
+        nodeInformation.addAddress("remote", "ejb", Inet.parseCidrAddress("192.168.0.0/16"), new InetSocketAddress("10.0.0.2", 8080));
+        assertEquals(set("ejb", "web"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_CLUSTER));
+        assertEquals(set("ejb"), attributes(DESTINATION_B, EJBClientContext.FILTER_ATTR_CLUSTER));
+
+        nodeInformation.removeCluster("ejb");
+        assertEquals(set("web"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_CLUSTER));
+        assertEquals(set("app/one"), attributes(DESTINATION_A, EJBClientContext.FILTER_ATTR_EJB_MODULE));
+        // the destination was only known through the removed cluster
+        assertEquals(Arrays.asList(), discover(DESTINATION_B));
+    }
+
+    private List<ServiceURL> discover(final URI destination) {
+        final List<ServiceURL> matches = new ArrayList<>();
+        nodeInformation.discover(EJBClientContext.EJB_SERVICE_TYPE, FilterSpec.hasAttribute(EJBClientContext.FILTER_ATTR_NODE), new DiscoveryResult() {
+            public void complete() {
+            }
+
+            public void reportProblem(final Throwable description) {
+            }
+
+            public void addMatch(final ServiceURL serviceURL) {
+                if (destination.equals(serviceURL.getLocationURI())) {
+                    matches.add(serviceURL);
+                }
+            }
+        });
+        return matches;
+    }
+
+    private Set<AttributeValue> attributes(final URI destination, final String name) {
+        final Set<AttributeValue> values = new HashSet<>();
+        for (ServiceURL serviceURL : discover(destination)) {
+            values.addAll(serviceURL.getAttributeValues(name));
+        }
+        return values;
+    }
+
+    private static Set<AttributeValue> set(final String... values) {
+        final Set<AttributeValue> set = new HashSet<>();
+        for (String value : values) {
+            set.add(AttributeValue.fromString(value));
+        }
+        return set;
+    }
+
+    private static EJBClientChannel channel(final URI peerURI) {
+        final InetSocketAddress peerAddress = new InetSocketAddress(peerURI.getHost(), peerURI.getPort());
+        final Endpoint endpoint = proxy(Endpoint.class, method -> null);
+        final Connection connection = proxy(Connection.class, method -> {
+            switch (method.getName()) {
+                case "getPeerURI": return peerURI;
+                case "getPeerAddress": return peerAddress;
+                case "getEndpoint": return endpoint;
+                default: return null;
+            }
+        });
+        final Channel channel = proxy(Channel.class, method -> {
+            switch (method.getName()) {
+                case "getConnection": return connection;
+                case "getOption": return Integer.valueOf(16);
+                default: return null;
+            }
+        });
+        // a striped channel does not register itself with a node registry
+        return new EJBClientChannel(channel, 3, Collections.emptySet(), null, new FutureResult<>(), new RetryExecutorWrapper(), true);
+    }
+
+    private static <T> T proxy(final Class<T> type, final Function<Method, Object> answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals": return Boolean.valueOf(proxy == args[0]);
+                    case "hashCode": return Integer.valueOf(System.identityHashCode(proxy));
+                    default: return type.getSimpleName();
+                }
+            }
+            return answer.apply(method);
+        }));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the channel selection of {@link RemoteEJBReceiver}.
+ */
+public final class RemoteEJBReceiverTestCase {
+
+    @Test
+    public void testLeastInFlightChannelIsSelected() {
+        final Channel primary = new Channel(3);
+        final List<Channel> stripes = Arrays.asList(new Channel(2), new Channel(1), new Channel(4));
+        assertSame(stripes.get(1), select(primary, false, stripes));
+    }
+
+    @Test
+    public void testPrimaryChannelWinsTies() {
+        final Channel primary = new Channel(1);
+        assertSame(primary, select(primary, false, Arrays.asList(new Channel(1), new Channel(1))));
+        final Channel idle = new Channel(0);
+        // an idle primary channel is used without looking at the others
+        assertSame(idle, RemoteEJBReceiver.selectLeastInFlight(idle, false, 2, i -> {
+            throw new AssertionError();
+        }, Channel::getInFlight));
+    }
+
+    @Test
+    public void testUnopenedChannelsAreSkipped() {
+        final Channel primary = new Channel(5);
+        final List<Channel> stripes = Arrays.asList(null, new Channel(3), null);
+        assertSame(stripes.get(1), select(primary, false, stripes));
+        assertSame(primary, select(primary, false, Arrays.asList(null, null)));
+    }
+
+    @Test
+    public void testTransactionsArePinnedToPrimaryChannel() {
+        final Channel primary = new Channel(10);
+        assertSame(primary, select(primary, true, Arrays.asList(new Channel(0), new Channel(1))));
+    }
+
+    private static Channel select(final Channel primary, final boolean transactional, final List<Channel> stripes) {
+        return RemoteEJBReceiver.selectLeastInFlight(primary, transactional, stripes.size(), stripes::get, Channel::getInFlight);
+    }
+
+    static final class Channel {
+        private final int inFlight;
+
+        Channel(final int inFlight) {
+            this.inFlight = inFlight;
+        }
+
+        int getInFlight() {
+            return inFlight;
+        }
+    }
+}
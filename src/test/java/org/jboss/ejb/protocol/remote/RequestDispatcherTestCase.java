@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RequestDispatcher}.
+ */
+public final class RequestDispatcherTestCase {
+
+    @Test
+    public void testQueueIsBounded() {
+        final List<Runnable> tasks = new ArrayList<>();
+        final RequestDispatcher dispatcher = new RequestDispatcher(tasks::add, 2);
+        final int[] runs = new int[1];
+        assertTrue(dispatcher.dispatch(() -> runs[0] ++));
+        assertTrue(dispatcher.dispatch(() -> runs[0] ++));
+        // the caller has to process the request itself
+        assertFalse(dispatcher.dispatch(() -> runs[0] ++));
+        assertEquals(2, dispatcher.getQueued());
+        tasks.remove(0).run();
+        assertEquals(1, runs[0]);
+        assertEquals(1, dispatcher.getQueued());
+        assertTrue(dispatcher.dispatch(() -> runs[0] ++));
+        assertEquals(2, dispatcher.getQueued());
+    }
+
+    @Test
+    public void testRejectedTaskIsNotCounted() {
+        final RequestDispatcher dispatcher = new RequestDispatcher(task -> {
+            throw new RejectedExecutionException();
+        }, 2);
+        assertFalse(dispatcher.dispatch(() -> {}));
+        assertEquals(0, dispatcher.getQueued());
+    }
+}
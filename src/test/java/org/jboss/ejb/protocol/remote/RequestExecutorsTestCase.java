@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RequestExecutors}.
+ */
+public final class RequestExecutorsTestCase {
+
+    @Test
+    public void testBoundedExecutor() throws InterruptedException {
+        final ExecutorService executor = RequestExecutors.newBoundedExecutor(2);
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(3);
+            for (int i = 0; i < 3; i ++) {
+                executor.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                });
+            }
+            // the third request waits for one of the two threads
+            assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadExecutor() throws InterruptedException {
+        if (! RequestExecutors.isVirtualThreadSupported()) {
+            try {
+                RequestExecutors.newVirtualThreadPerRequestExecutor();
+                fail("Expected exception");
+            } catch (UnsupportedOperationException expected) {
+            }
+            return;
+        }
+        final ExecutorService executor = RequestExecutors.newDefaultExecutor(1);
+        try {
+            final CountDownLatch done = new CountDownLatch(100);
+            for (int i = 0; i < 100; i ++) {
+                executor.execute(() -> {
+                    try {
+                        // all of the requests block at once
+                        done.countDown();
+                        done.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.ejb.client.EJBClientContext;
+import org.junit.Test;
+import org.wildfly.discovery.AttributeValue;
+import org.wildfly.discovery.FilterSpec;
+import org.wildfly.discovery.ServiceType;
+import org.wildfly.discovery.ServiceURL;
+import org.wildfly.discovery.spi.DiscoveryResult;
+
+/**
+ * Tests for {@link ServiceURLIndex}.
+ */
+public final class ServiceURLIndexTestCase {
+
+    private static final ServiceType EJB = ServiceType.of("ejb", "jboss");
+
+    private final ServiceURL plain = serviceURL("remote://a:8080", "node1", null, "app/one", "app/two");
+    private final ServiceURL clustered = serviceURL("remote://a:8080", "node1", "ejb", "app/one", "app/two");
+    private final ServiceURL other = serviceURL("remote://b:8080", "node2", "ejb", "app/one");
+    private final ServiceURLIndex index = new ServiceURLIndex(Arrays.asList(plain, clustered, other));
+
+    @Test
+    public void testEquality() {
+        assertEquals(Arrays.asList(plain, clustered, other), discover(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/one")));
+        assertEquals(Arrays.asList(plain, clustered), discover(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/two")));
+        assertEquals(Arrays.asList(clustered, other), discover(FilterSpec.equal(EJBClientContext.FILTER_ATTR_CLUSTER, "ejb")));
+        assertEquals(Arrays.asList(other), discover(FilterSpec.equal(EJBClientContext.FILTER_ATTR_NODE, "node2")));
+        assertEquals(Arrays.asList(), discover(FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/three")));
+    }
+
+    @Test
+    public void testConjunction() {
+        assertEquals(Arrays.asList(clustered), discover(FilterSpec.all(
+            FilterSpec.equal(EJBClientContext.FILTER_ATTR_EJB_MODULE, "app/two"),
+            FilterSpec.equal(EJBClientContext.FILTER_ATTR_CLUSTER, "ejb")
+        )));
+        // the non-indexed term is still applied to the candidates
+        assertEquals(Arrays.asList(), discover(FilterSpec.all(
+            FilterSpec.equal(EJBClientContext.FILTER_ATTR_NODE, "node2"),
+            FilterSpec.equal(EJBClientContext.FILTER_ATTR_SOURCE_IP, "10.0.0.0/8")
+        )));
+    }
+
+    @Test
+    public void testUnindexedFilter() {
+        assertEquals(Arrays.asList(clustered, other), discover(FilterSpec.hasAttribute(EJBClientContext.FILTER_ATTR_CLUSTER)));
+        assertEquals(Arrays.asList(), discover(FilterSpec.equal(EJBClientContext.FILTER_ATTR_SOURCE_IP, "10.0.0.0/8")));
+    }
+
+    private List<ServiceURL> discover(final FilterSpec filterSpec) {
+        final List<ServiceURL> matches = new ArrayList<>();
+        final boolean found = index.discover(EJB, filterSpec, new DiscoveryResult() {
+            public void complete() {
+            }
+
+            public void reportProblem(final Throwable description) {
+            }
+
+            public void addMatch(final ServiceURL serviceURL) {
+                matches.add(serviceURL);
+            }
+        });
+        assertEquals(! matches.isEmpty(), found);
+        return matches;
+    }
+
+    private static ServiceURL serviceURL(final String uri, final String node, final String cluster, final String... modules) {
+        final ServiceURL.Builder builder = new ServiceURL.Builder();
+        builder.setUri(URI.create(uri));
+        builder.setAbstractType(EJB.getAbstractType());
+        builder.setAbstractTypeAuthority(EJB.getAbstractTypeAuthority());
+        builder.addAttribute(EJBClientContext.FILTER_ATTR_NODE, AttributeValue.fromString(node));
+        for (String module : modules) {
+            builder.addAttribute(EJBClientContext.FILTER_ATTR_EJB_MODULE, AttributeValue.fromString(module));
+        }
+        if (cluster != null) {
+            builder.addAttribute(EJBClientContext.FILTER_ATTR_CLUSTER, AttributeValue.fromString(cluster));
+        }
+        return builder.create();
+    }
+}
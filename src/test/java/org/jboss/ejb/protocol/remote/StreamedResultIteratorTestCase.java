@@ -0,0 +1,259 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.jboss.marshalling.InputStreamByteInput;
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.MarshallerFactory;
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.jboss.marshalling.OutputStreamByteOutput;
+import org.jboss.marshalling.Unmarshaller;
+import org.jboss.marshalling.river.RiverMarshallerFactory;
+import org.jboss.remoting3.MessageOutputStream;
+import org.junit.Test;
+import org.xnio.XnioExecutor;
+
+/**
+ * Tests for {@link StreamedResultIterator} together with the server side writer of a streamed result,
+ * {@link EJBServerChannel#writeStreamedResult}.
+ */
+public final class StreamedResultIteratorTestCase {
+
+    private final MarshallerFactory factory = new RiverMarshallerFactory();
+    private final MarshallingConfiguration configuration = new MarshallingConfiguration();
+    private final MarshallerPool pool;
+    private final AtomicBoolean streamClosed = new AtomicBoolean();
+    private final AtomicBoolean inputClosed = new AtomicBoolean();
+
+    public StreamedResultIteratorTestCase() {
+        configuration.setVersion(4);
+        configuration.setObjectTable(ProtocolV3ObjectTable.INSTANCE);
+        pool = new MarshallerPool(factory, configuration, 1, 1);
+    }
+
+    @Test
+    public void testChunking() throws IOException {
+        final int size = EJBServerChannel.STREAM_CHUNK_SIZE * 2 + 5;
+        final byte[] message = write(IntStream.range(0, size).mapToObj(Integer::valueOf));
+        assertTrue(streamClosed.get());
+        final Unmarshaller unmarshaller = pool.getUnmarshaller();
+        final StreamedResultIterator iterator = read(unmarshaller, message);
+        final List<Object> elements = new ArrayList<>();
+        while (iterator.hasNext()) {
+            elements.add(iterator.next());
+        }
+        assertEquals(size, elements.size());
+        for (int i = 0; i < size; i ++) {
+            assertEquals(Integer.valueOf(i), elements.get(i));
+        }
+        assertFalse(iterator.hasNext());
+        assertTrue(inputClosed.get());
+        // the unmarshaller finished the message, so it was handed back
+        assertSame(unmarshaller, pool.getUnmarshaller());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final StreamedResultIterator iterator = read(pool.getUnmarshaller(), write(Stream.empty()));
+        assertFalse(iterator.hasNext());
+        assertTrue(inputClosed.get());
+    }
+
+    @Test
+    public void testExceptionMidStream() throws IOException {
+        final int failAt = EJBServerChannel.STREAM_CHUNK_SIZE + 10;
+        final byte[] message = write(IntStream.range(0, failAt * 2).mapToObj(i -> {
+            if (i == failAt) {
+                throw new IllegalStateException("element " + i);
+            }
+            return Integer.valueOf(i);
+        }));
+        assertTrue(streamClosed.get());
+        final StreamedResultIterator iterator = read(pool.getUnmarshaller(), message);
+        // every element produced before the failure is delivered first
+        for (int i = 0; i < failAt; i ++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(Integer.valueOf(i), iterator.next());
+        }
+        try {
+            iterator.hasNext();
+            fail("Expected exception");
+        } catch (IllegalStateException expected) {
+            assertEquals("element " + failAt, expected.getMessage());
+        }
+        assertFalse(iterator.hasNext());
+        assertTrue(inputClosed.get());
+    }
+
+    @Test
+    public void testEarlyClose() throws IOException {
+        final StreamedResultIterator iterator = read(pool.getUnmarshaller(), write(IntStream.range(0, 1000).mapToObj(Integer::valueOf)));
+        assertEquals(Integer.valueOf(0), iterator.next());
+        assertEquals(Integer.valueOf(1), iterator.next());
+        iterator.close();
+        assertTrue(inputClosed.get());
+        assertFalse(iterator.hasNext());
+        iterator.close();
+    }
+
+    @Test
+    public void testClosedMessageStopsWriter() throws IOException {
+        // the client closed its side, so the writes fail
+        final FailingMessageOutputStream os = new FailingMessageOutputStream();
+        final Marshaller marshaller = factory.createMarshaller(configuration);
+        marshaller.start(new OutputStreamByteOutput(os));
+        try {
+            EJBServerChannel.writeStreamedResult(marshaller, os, IntStream.range(0, 1000).mapToObj(Integer::valueOf).onClose(() -> streamClosed.set(true)), null, 0);
+            fail("Expected exception");
+        } catch (IOException expected) {
+        }
+        assertTrue(streamClosed.get());
+    }
+
+    @Test(timeout = 10_000L)
+    public void testAbandonedStreamIsCancelled() throws IOException {
+        // the client never reads, so the flow control of the message never lets the first chunk through
+        final StalledMessageOutputStream os = new StalledMessageOutputStream();
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final Marshaller marshaller = factory.createMarshaller(configuration);
+            marshaller.start(new OutputStreamByteOutput(os));
+            try {
+                EJBServerChannel.writeStreamedResult(marshaller, os, IntStream.range(0, 1000).mapToObj(Integer::valueOf).onClose(() -> streamClosed.set(true)), new ScheduledTimer(executor), 100);
+                fail("Expected exception");
+            } catch (IOException expected) {
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(os.cancelled);
+        assertTrue(streamClosed.get());
+    }
+
+    private byte[] write(final Stream<?> stream) throws IOException {
+        final ByteArrayMessageOutputStream os = new ByteArrayMessageOutputStream();
+        final Marshaller marshaller = factory.createMarshaller(configuration);
+        marshaller.start(new OutputStreamByteOutput(os));
+        EJBServerChannel.writeStreamedResult(marshaller, os, stream.onClose(() -> streamClosed.set(true)), null, 0);
+        marshaller.finish();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        os.writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    private StreamedResultIterator read(final Unmarshaller unmarshaller, final byte[] message) throws IOException {
+        final ByteArrayInputStream input = new ByteArrayInputStream(message) {
+            public void close() {
+                inputClosed.set(true);
+            }
+        };
+        unmarshaller.start(new InputStreamByteInput(input));
+        return new StreamedResultIterator(unmarshaller, pool, input);
+    }
+
+    static final class FailingMessageOutputStream extends MessageOutputStream {
+        public void write(final int b) throws IOException {
+            throw new IOException("Closed by peer");
+        }
+
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            throw new IOException("Closed by peer");
+        }
+
+        public void flush() throws IOException {
+            throw new IOException("Closed by peer");
+        }
+
+        public void close() {
+        }
+
+        public MessageOutputStream cancel() {
+            return this;
+        }
+    }
+
+    static final class StalledMessageOutputStream extends MessageOutputStream {
+        boolean cancelled; // guarded by this
+
+        public void write(final int b) {
+        }
+
+        public void write(final byte[] b, final int off, final int len) {
+        }
+
+        public synchronized void flush() throws IOException {
+            while (! cancelled) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            throw new IOException("Message cancelled");
+        }
+
+        public void close() {
+        }
+
+        public synchronized MessageOutputStream cancel() {
+            cancelled = true;
+            notifyAll();
+            return this;
+        }
+    }
+
+    static final class ScheduledTimer implements XnioExecutor {
+        private final ScheduledExecutorService executor;
+
+        ScheduledTimer(final ScheduledExecutorService executor) {
+            this.executor = executor;
+        }
+
+        public void execute(final Runnable command) {
+            executor.execute(command);
+        }
+
+        public Key executeAfter(final Runnable command, final long time, final TimeUnit unit) {
+            final ScheduledFuture<?> future = executor.schedule(command, time, unit);
+            return () -> future.cancel(false);
+        }
+
+        public Key executeAtInterval(final Runnable command, final long time, final TimeUnit unit) {
+            final ScheduledFuture<?> future = executor.scheduleAtFixedRate(command, time, time, unit);
+            return () -> future.cancel(false);
+        }
+    }
+}
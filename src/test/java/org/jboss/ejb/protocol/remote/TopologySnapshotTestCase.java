@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.protocol.remote;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.ejb.client.EJBModuleIdentifier;
+import org.junit.Test;
+import org.wildfly.common.net.CidrAddress;
+import org.wildfly.common.net.Inet;
+
+/**
+ * Tests for {@link TopologySnapshot}.
+ */
+public final class TopologySnapshotTestCase {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final URI registeredBy = URI.create("remote+http://localhost:8080");
+        final CidrAddress block = Inet.parseCidrAddress("10.0.0.0/8");
+        final InetSocketAddress destination = new InetSocketAddress("127.0.0.1", 8180);
+        final TopologySnapshot snapshot = new TopologySnapshot();
+        snapshot.addCluster("ejb", registeredBy);
+        snapshot.addModule("node1", registeredBy, new EJBModuleIdentifier("app", "module", ""));
+        snapshot.addModule("node1", registeredBy, new EJBModuleIdentifier("", "standalone", "distinct"));
+        snapshot.addAddress("node2", "ejb", "remote+http", block, destination);
+
+        final Path file = Files.createTempFile("topology", ".txt");
+        try {
+            snapshot.save(file);
+            final List<String> records = load(file);
+            assertEquals(Arrays.asList(
+                "cluster ejb " + registeredBy,
+                "module node1 " + registeredBy + " app/module/",
+                "module node1 " + registeredBy + " /standalone/distinct",
+                "address node2 ejb remote+http " + block + " " + destination
+            ), records);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testDamagedRecordsAreSkipped() throws IOException {
+        final Path file = Files.createTempFile("topology", ".txt");
+        try {
+            Files.write(file, Arrays.asList(
+                "# comment",
+                "",
+                "cluster\tejb",
+                "cluster\tejb\tnot a uri",
+                "address\tnode2\tejb\tremote\tnot a block\t127.0.0.1\t8080",
+                "address\tnode2\tejb\tremote\t0.0.0.0/0\t127.0.0.1\tnot a port",
+                "unknown\trecord",
+                "module\tnode1\tremote://localhost:8080\tapp\tmodule\t"
+            ), StandardCharsets.UTF_8);
+            assertEquals(Arrays.asList("module node1 remote://localhost:8080 app/module/"), load(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<String> load(final Path file) throws IOException {
+        final List<String> records = new ArrayList<>();
+        TopologySnapshot.load(file, new TopologySnapshot.Handler() {
+            public void handleCluster(final String clusterName, final URI registeredBy) {
+                records.add("cluster " + clusterName + " " + registeredBy);
+            }
+
+            public void handleModule(final String nodeName, final URI destination, final EJBModuleIdentifier module) {
+                records.add("module " + nodeName + " " + destination + " " + module.getAppName() + "/" + module.getModuleName() + "/" + module.getDistinctName());
+            }
+
+            public void handleAddress(final String nodeName, final String clusterName, final String protocol, final CidrAddress block, final InetSocketAddress destination) {
+                records.add("address " + nodeName + " " + clusterName + " " + protocol + " " + block + " " + destination);
+            }
+        });
+        return records;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.ejb.server;
+
+import static org.junit.Assert.*;
+
+import java.util.zip.Deflater;
+
+import org.jboss.ejb.client.EJBMethodLocator;
+import org.jboss.ejb.client.annotation.CompressionHint;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ViewMethodIndex}.
+ */
+public final class ViewMethodIndexTestCase {
+
+    @Test
+    public void testMethodLookup() throws NoSuchMethodException {
+        final ViewMethodIndex index = ViewMethodIndex.forViewClass(View.class);
+        assertSame(index, ViewMethodIndex.forViewClass(View.class));
+        assertEquals(View.class.getMethod("echo", String.class), index.getMethod(new EJBMethodLocator("echo", "java.lang.String")));
+        assertEquals(View.class.getMethod("echo", String.class, int.class), index.getMethod(new EJBMethodLocator("echo", "java.lang.String", "int")));
+        assertNull(index.getMethod(new EJBMethodLocator("echo", "int")));
+        assertNull(index.getMethod(new EJBMethodLocator("missing")));
+    }
+
+    @Test
+    public void testResponseCompressionLevel() {
+        final ViewMethodIndex index = ViewMethodIndex.forViewClass(View.class);
+        assertEquals(0, index.getResponseCompressionLevel(new EJBMethodLocator("echo", "java.lang.String")));
+        assertEquals(5, index.getResponseCompressionLevel(new EJBMethodLocator("echo", "java.lang.String", "int")));
+        assertEquals(Deflater.DEFAULT_COMPRESSION, ViewMethodIndex.forViewClass(HintedView.class).getResponseCompressionLevel(new EJBMethodLocator("get")));
+    }
+
+    public interface View {
+        String echo(String value);
+
+        @CompressionHint(compressionLevel = 5)
+        String echo(String value, int count);
+
+        @CompressionHint(compressResponse = false)
+        String request(String value);
+    }
+
+    @CompressionHint
+    public interface HintedView {
+        String get();
+    }
+}